@@ -19,13 +19,25 @@
 package org.ofbiz.accounting.ledger;
 
 import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
+import org.ofbiz.accounting.util.UtilAccounting;
 import org.ofbiz.base.util.Debug;
 import org.ofbiz.base.util.UtilGenerics;
 import org.ofbiz.base.util.UtilMisc;
 import org.ofbiz.base.util.UtilValidate;
+import org.ofbiz.entity.Delegator;
+import org.ofbiz.entity.GenericEntityException;
 import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.condition.EntityCondition;
+import org.ofbiz.entity.condition.EntityOperator;
+import org.ofbiz.entity.util.EntityQuery;
 import org.ofbiz.service.DispatchContext;
 import org.ofbiz.service.GenericServiceException;
 import org.ofbiz.service.LocalDispatcher;
@@ -77,4 +89,224 @@ public class GeneralLedgerServices {
         }
         return totalAmountPercentage;
     }
+
+    /**
+     * Incrementally updates the GlAccountHistory balance snapshots with the entries of a posted AcctgTrans (SCIPIO).
+     * <p>
+     * Existing snapshots of the organization and GL account are adjusted by the posted amounts: the posted debits/credits
+     * and ending balance of the periods containing the transaction date, the opening and ending balances of the later periods.
+     * Missing snapshots of the fiscal periods containing the transaction date are created from the raw entries
+     * (computeGlAccountBalanceForTimePeriod), which already include the transaction because this runs in the posting transaction.
+     * The snapshots are recomputed from the raw entries when the period is closed (closeFinancialTimePeriod).
+     * <p>
+     * The GlAccount row is locked (SELECT ... FOR UPDATE) before its snapshots are read, so concurrent postings to the same
+     * account are serialized until commit: the read-modify-write of the balances cannot lose an update and only one posting
+     * creates a missing snapshot. Accounts are locked in organization and GL account order to avoid lock-order deadlocks.
+     */
+    public static Map<String, Object> updateGlAccountHistoryForAcctgTrans(DispatchContext dctx, Map<String, ? extends Object> context) {
+        Delegator delegator = dctx.getDelegator();
+        LocalDispatcher dispatcher = dctx.getDispatcher();
+        GenericValue userLogin = (GenericValue) context.get("userLogin");
+        String acctgTransId = (String) context.get("acctgTransId");
+        try {
+            GenericValue acctgTrans = EntityQuery.use(delegator).from("AcctgTrans").where("acctgTransId", acctgTransId).queryOne();
+            if (acctgTrans == null || !"Y".equals(acctgTrans.getString("isPosted")) || !"ACTUAL".equals(acctgTrans.getString("glFiscalTypeId"))) {
+                // Only posted ACTUAL transactions are part of the balances (see computeGlAccountBalanceForTimePeriod)
+                return ServiceUtil.returnSuccess();
+            }
+            Timestamp transactionDate = acctgTrans.getTimestamp("transactionDate");
+            if (transactionDate == null) {
+                return ServiceUtil.returnSuccess();
+            }
+
+            // Sum the debits and credits per organization and GL account
+            Map<String, Map<String, BigDecimal[]>> amountsByOrganization = new TreeMap<>(); // sorted: lock order
+            List<GenericValue> acctgTransEntries = EntityQuery.use(delegator).from("AcctgTransEntry").where("acctgTransId", acctgTransId).queryList();
+            for (GenericValue acctgTransEntry : acctgTransEntries) {
+                String organizationPartyId = acctgTransEntry.getString("organizationPartyId");
+                String glAccountId = acctgTransEntry.getString("glAccountId");
+                BigDecimal amount = acctgTransEntry.getBigDecimal("amount");
+                if (organizationPartyId == null || glAccountId == null || amount == null) {
+                    continue;
+                }
+                BigDecimal[] debitsAndCredits = amountsByOrganization.computeIfAbsent(organizationPartyId, k -> new TreeMap<>())
+                        .computeIfAbsent(glAccountId, k -> new BigDecimal[] { BigDecimal.ZERO, BigDecimal.ZERO });
+                if ("D".equals(acctgTransEntry.getString("debitCreditFlag"))) {
+                    debitsAndCredits[0] = debitsAndCredits[0].add(amount);
+                } else if ("C".equals(acctgTransEntry.getString("debitCreditFlag"))) {
+                    debitsAndCredits[1] = debitsAndCredits[1].add(amount);
+                }
+            }
+
+            for (Map.Entry<String, Map<String, BigDecimal[]>> organizationEntry : amountsByOrganization.entrySet()) {
+                String organizationPartyId = organizationEntry.getKey();
+                List<GenericValue> currentTimePeriods = EntityQuery.use(delegator).from("CustomTimePeriod")
+                        .where(EntityCondition.makeCondition("organizationPartyId", organizationPartyId),
+                                EntityCondition.makeCondition("periodTypeId", EntityOperator.IN, glAccountHistoryPeriodTypeIds),
+                                EntityCondition.makeCondition("fromDate", EntityOperator.LESS_THAN_EQUAL_TO, transactionDate),
+                                EntityCondition.makeCondition("thruDate", EntityOperator.GREATER_THAN, transactionDate))
+                        .cache().queryList();
+                for (Map.Entry<String, BigDecimal[]> accountEntry : organizationEntry.getValue().entrySet()) {
+                    String glAccountId = accountEntry.getKey();
+                    BigDecimal postedDebits = accountEntry.getValue()[0];
+                    BigDecimal postedCredits = accountEntry.getValue()[1];
+                    // Lock the account: serializes the snapshot updates and creations of concurrent postings
+                    GenericValue glAccount = EntityQuery.use(delegator).from("GlAccount").where("glAccountId", glAccountId).forUpdate(true).queryOne();
+                    if (glAccount == null) {
+                        continue;
+                    }
+                    BigDecimal balanceDelta = UtilAccounting.isDebitAccount(glAccount) ? postedDebits.subtract(postedCredits) : postedCredits.subtract(postedDebits);
+
+                    Map<String, GenericValue> historyByTimePeriodId = new HashMap<>();
+                    for (GenericValue glAccountHistory : EntityQuery.use(delegator).from("GlAccountHistory")
+                            .where("organizationPartyId", organizationPartyId, "glAccountId", glAccountId).forUpdate(true).queryList()) {
+                        historyByTimePeriodId.put(glAccountHistory.getString("customTimePeriodId"), glAccountHistory);
+                    }
+                    if (!historyByTimePeriodId.isEmpty()) {
+                        List<GenericValue> historyTimePeriods = EntityQuery.use(delegator).from("CustomTimePeriod")
+                                .where(EntityCondition.makeCondition("customTimePeriodId", EntityOperator.IN, historyByTimePeriodId.keySet())).cache().queryList();
+                        for (GenericValue customTimePeriod : historyTimePeriods) {
+                            GenericValue glAccountHistory = historyByTimePeriodId.get(customTimePeriod.getString("customTimePeriodId"));
+                            Timestamp fromDate = customTimePeriod.getTimestamp("fromDate");
+                            Timestamp thruDate = customTimePeriod.getTimestamp("thruDate");
+                            if (fromDate == null || thruDate == null || !transactionDate.before(thruDate)) {
+                                continue;
+                            }
+                            if (transactionDate.before(fromDate)) {
+                                glAccountHistory.set("openingBalance", addAmount(glAccountHistory.getBigDecimal("openingBalance"), balanceDelta));
+                            } else {
+                                glAccountHistory.set("postedDebits", addAmount(glAccountHistory.getBigDecimal("postedDebits"), postedDebits));
+                                glAccountHistory.set("postedCredits", addAmount(glAccountHistory.getBigDecimal("postedCredits"), postedCredits));
+                            }
+                            glAccountHistory.set("endingBalance", addAmount(glAccountHistory.getBigDecimal("endingBalance"), balanceDelta));
+                            glAccountHistory.store();
+                        }
+                    }
+
+                    for (GenericValue customTimePeriod : currentTimePeriods) {
+                        String customTimePeriodId = customTimePeriod.getString("customTimePeriodId");
+                        if (!historyByTimePeriodId.containsKey(customTimePeriodId)) {
+                            Map<String, Object> serviceResult = createGlAccountHistoryFromEntries(dispatcher, userLogin, organizationPartyId, glAccountId, customTimePeriodId);
+                            if (ServiceUtil.isError(serviceResult)) {
+                                return ServiceUtil.returnError(ServiceUtil.getErrorMessage(serviceResult));
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (GenericEntityException | GenericServiceException e) {
+            Debug.logError(e, "Could not update GL account history snapshots for AcctgTrans [" + acctgTransId + "]", module);
+            return ServiceUtil.returnError(e.getMessage());
+        }
+        return ServiceUtil.returnSuccess();
+    }
+
+    /**
+     * Returns the balances of the GL accounts of an organization for a time period from the GlAccountHistory snapshots (SCIPIO).
+     * <p>
+     * This is a read-only report: the balances of the requested accounts that have no snapshot are computed from the raw entries
+     * but not stored (snapshots are only written by posting and by closeFinancialTimePeriod).
+     * If verify is true, every returned snapshot is cross-checked against the raw entries (computeGlAccountBalanceForTimePeriod);
+     * for mismatching snapshots a warning is logged, the balances computed from the entries are returned and their accounts
+     * are listed in mismatchedGlAccountIds.
+     */
+    public static Map<String, Object> getGlAccountHistoryBalances(DispatchContext dctx, Map<String, ? extends Object> context) {
+        Delegator delegator = dctx.getDelegator();
+        LocalDispatcher dispatcher = dctx.getDispatcher();
+        GenericValue userLogin = (GenericValue) context.get("userLogin");
+        String organizationPartyId = (String) context.get("organizationPartyId");
+        String customTimePeriodId = (String) context.get("customTimePeriodId");
+        List<String> glAccountIds = UtilGenerics.checkList(context.get("glAccountIds"));
+        boolean verify = Boolean.TRUE.equals(context.get("verify"));
+
+        Map<String, Map<String, Object>> glAccountBalances = new LinkedHashMap<>();
+        List<String> mismatchedGlAccountIds = new ArrayList<>();
+        try {
+            Map<String, GenericValue> historyByGlAccountId = new HashMap<>();
+            for (GenericValue glAccountHistory : EntityQuery.use(delegator).from("GlAccountHistory")
+                    .where("organizationPartyId", organizationPartyId, "customTimePeriodId", customTimePeriodId).queryList()) {
+                historyByGlAccountId.put(glAccountHistory.getString("glAccountId"), glAccountHistory);
+            }
+            if (glAccountIds == null) {
+                glAccountIds = new ArrayList<>(historyByGlAccountId.keySet());
+            }
+            for (String glAccountId : glAccountIds) {
+                GenericValue glAccountHistory = historyByGlAccountId.get(glAccountId);
+                if (glAccountHistory == null || verify) {
+                    Map<String, Object> serviceResult = computeGlAccountBalanceFromEntries(dispatcher, userLogin, organizationPartyId, glAccountId, customTimePeriodId);
+                    if (ServiceUtil.isError(serviceResult)) {
+                        return ServiceUtil.returnError(ServiceUtil.getErrorMessage(serviceResult));
+                    }
+                    if (glAccountHistory == null) {
+                        glAccountBalances.put(glAccountId, getGlAccountBalanceFields(serviceResult));
+                        continue;
+                    }
+                    boolean matches = true;
+                    for (String fieldName : glAccountBalanceFieldNames) {
+                        if (!amountEquals(glAccountHistory.getBigDecimal(fieldName), (BigDecimal) serviceResult.get(fieldName))) {
+                            matches = false;
+                            break;
+                        }
+                    }
+                    if (!matches) {
+                        Debug.logWarning("GL account history snapshot for organization [" + organizationPartyId + "], GL account [" + glAccountId
+                                + "] and time period [" + customTimePeriodId + "] does not match the posted entries; snapshot: " + getGlAccountBalanceFields(glAccountHistory)
+                                + ", entries: " + getGlAccountBalanceFields(serviceResult) + "; returning the entry balances", module);
+                        glAccountBalances.put(glAccountId, getGlAccountBalanceFields(serviceResult));
+                        mismatchedGlAccountIds.add(glAccountId);
+                        continue;
+                    }
+                }
+                glAccountBalances.put(glAccountId, getGlAccountBalanceFields(glAccountHistory));
+            }
+        } catch (GenericEntityException | GenericServiceException e) {
+            Debug.logError(e, "Could not get GL account history balances for organization [" + organizationPartyId + "] and time period [" + customTimePeriodId + "]", module);
+            return ServiceUtil.returnError(e.getMessage());
+        }
+        Map<String, Object> result = ServiceUtil.returnSuccess();
+        result.put("glAccountBalances", glAccountBalances);
+        result.put("mismatchedGlAccountIds", mismatchedGlAccountIds);
+        return result;
+    }
+
+    /** The period types for which GL account history snapshots are maintained during posting (same as checked by postAcctgTrans). */
+    private static final List<String> glAccountHistoryPeriodTypeIds = UtilMisc.toList("FISCAL_YEAR", "FISCAL_QUARTER", "FISCAL_MONTH", "FISCAL_WEEK", "FISCAL_BIWEEK");
+
+    private static final List<String> glAccountBalanceFieldNames = UtilMisc.toList("openingBalance", "postedDebits", "postedCredits", "endingBalance");
+
+    private static Map<String, Object> computeGlAccountBalanceFromEntries(LocalDispatcher dispatcher, GenericValue userLogin, String organizationPartyId,
+            String glAccountId, String customTimePeriodId) throws GenericServiceException {
+        return dispatcher.runSync("computeGlAccountBalanceForTimePeriod", UtilMisc.toMap("organizationPartyId", organizationPartyId,
+                "customTimePeriodId", customTimePeriodId, "glAccountId", glAccountId, "userLogin", userLogin));
+    }
+
+    private static Map<String, Object> createGlAccountHistoryFromEntries(LocalDispatcher dispatcher, GenericValue userLogin, String organizationPartyId,
+            String glAccountId, String customTimePeriodId) throws GenericServiceException, GenericEntityException {
+        Map<String, Object> serviceResult = computeGlAccountBalanceFromEntries(dispatcher, userLogin, organizationPartyId, glAccountId, customTimePeriodId);
+        if (ServiceUtil.isError(serviceResult)) {
+            return serviceResult;
+        }
+        GenericValue glAccountHistory = dispatcher.getDelegator().makeValue("GlAccountHistory", UtilMisc.toMap("organizationPartyId", organizationPartyId,
+                "glAccountId", glAccountId, "customTimePeriodId", customTimePeriodId));
+        glAccountHistory.setNonPKFields(getGlAccountBalanceFields(serviceResult));
+        glAccountHistory.create();
+        return serviceResult;
+    }
+
+    private static Map<String, Object> getGlAccountBalanceFields(Map<String, ? extends Object> balances) {
+        Map<String, Object> balanceFields = new LinkedHashMap<>();
+        for (String fieldName : glAccountBalanceFieldNames) {
+            BigDecimal amount = (BigDecimal) balances.get(fieldName);
+            balanceFields.put(fieldName, (amount != null) ? amount : BigDecimal.ZERO);
+        }
+        return balanceFields;
+    }
+
+    private static BigDecimal addAmount(BigDecimal amount, BigDecimal delta) {
+        return (amount != null) ? amount.add(delta) : delta;
+    }
+
+    private static boolean amountEquals(BigDecimal first, BigDecimal second) {
+        return ((first != null) ? first : BigDecimal.ZERO).compareTo((second != null) ? second : BigDecimal.ZERO) == 0;
+    }
 }
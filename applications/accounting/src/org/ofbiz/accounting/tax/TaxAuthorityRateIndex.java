@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.accounting.tax;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilMisc;
+import org.ofbiz.base.util.cache.UtilCache;
+import org.ofbiz.entity.Delegator;
+import org.ofbiz.entity.GenericEntityException;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.util.EntityQuery;
+import org.ofbiz.entity.util.EntityUtil;
+
+/**
+ * Compiled index of the TaxAuthorityRateProduct rules of one tax authority, keyed by product category (SCIPIO).
+ * <p>
+ * Replaces the per-item, uncached TaxAuthorityRateProduct condition query of {@link TaxAuthorityServices} when
+ * the tax calculation runs with useCache (the default): the rules of each tax authority are read once, made
+ * immutable and grouped by productCategoryId, so rating a whole cart or order only does in-memory lookups.
+ * The in-memory matching mirrors the SQL condition built by TaxAuthorityServices (store, category,
+ * shipping/promotions, minimum item price and purchase, validity dates) and its ordering
+ * (minItemPrice, minPurchase, fromDate).
+ * <p>
+ * Indexes are rebuilt on demand after the <code>clearTaxAuthorityRateIndex</code> service, triggered by the
+ * TaxAuthorityRateProduct entity ECAs, removes them (again once the change is committed or rolled back).
+ */
+public final class TaxAuthorityRateIndex {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    /** Key format: taxAuthGeoId::taxAuthPartyId::delegatorName */
+    private static final UtilCache<String, TaxAuthorityRateIndex> indexCache = UtilCache.createUtilCache("accounting.tax.authority.rateIndex", true);
+
+    /** Map key for the rules having no productCategoryId. */
+    private static final String NO_CATEGORY = "";
+
+    private static final List<String> orderBy = UtilMisc.toList("minItemPrice", "minPurchase", "fromDate");
+
+    private final String taxAuthGeoId;
+    private final String taxAuthPartyId;
+    private final Map<String, List<GenericValue>> ratesByCategoryId;
+    private final List<GenericValue> allRates;
+
+    private TaxAuthorityRateIndex(String taxAuthGeoId, String taxAuthPartyId, List<GenericValue> rates) {
+        this.taxAuthGeoId = taxAuthGeoId;
+        this.taxAuthPartyId = taxAuthPartyId;
+        Map<String, List<GenericValue>> ratesByCategoryId = new HashMap<>();
+        List<GenericValue> allRates = new ArrayList<>(rates.size());
+        for (GenericValue rate : rates) {
+            rate.setImmutable();
+            allRates.add(rate);
+            String productCategoryId = rate.getString("productCategoryId");
+            ratesByCategoryId.computeIfAbsent((productCategoryId != null) ? productCategoryId : NO_CATEGORY, k -> new ArrayList<>()).add(rate);
+        }
+        this.ratesByCategoryId = ratesByCategoryId;
+        this.allRates = Collections.unmodifiableList(allRates);
+    }
+
+    /**
+     * Returns the compiled rate index of the given tax authority, building it if needed.
+     */
+    public static TaxAuthorityRateIndex getIndex(Delegator delegator, String taxAuthGeoId, String taxAuthPartyId) throws GenericEntityException {
+        String cacheKey = taxAuthGeoId + "::" + taxAuthPartyId + "::" + delegator.getDelegatorName();
+        TaxAuthorityRateIndex index = indexCache.get(cacheKey);
+        if (index == null) {
+            List<GenericValue> rates = EntityQuery.use(delegator).from("TaxAuthorityRateProduct")
+                    .where("taxAuthGeoId", taxAuthGeoId, "taxAuthPartyId", taxAuthPartyId).queryList();
+            index = indexCache.putIfAbsentAndGet(cacheKey, new TaxAuthorityRateIndex(taxAuthGeoId, taxAuthPartyId, rates));
+            if (Debug.verboseOn()) {
+                Debug.logVerbose("Built tax rate index for tax authority [" + taxAuthGeoId + "/" + taxAuthPartyId + "] with " + rates.size() + " rules", module);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns the rules of all the given tax authorities matching the given item, valid at the given moment and ordered
+     * as the TaxAuthorityRateProduct query of TaxAuthorityServices.
+     * @param productStoreId the product store, or null
+     * @param productCategoryIds the categories of the product (and its virtual), or null if not rating a product
+     * @param taxShipping true if rating shipping amounts without product (matches taxShipping null or Y rules of any category)
+     * @param taxPromotions true if rating promotion amounts without product (matches taxPromotions null or Y rules of any category)
+     */
+    public static List<GenericValue> findRates(Delegator delegator, Collection<GenericValue> taxAuthorities, String productStoreId,
+            Collection<String> productCategoryIds, boolean taxShipping, boolean taxPromotions, BigDecimal itemPrice, BigDecimal itemAmount,
+            Timestamp moment) throws GenericEntityException {
+        List<GenericValue> rates = new ArrayList<>();
+        getIndex(delegator, "_NA_", "_NA_").collectRates(rates, productStoreId, productCategoryIds, taxShipping, taxPromotions, itemPrice, itemAmount, moment);
+        for (GenericValue taxAuthority : taxAuthorities) {
+            String geoId = taxAuthority.getString("taxAuthGeoId");
+            String partyId = taxAuthority.getString("taxAuthPartyId");
+            if ("_NA_".equals(geoId) && "_NA_".equals(partyId)) {
+                continue;
+            }
+            getIndex(delegator, geoId, partyId).collectRates(rates, productStoreId, productCategoryIds, taxShipping, taxPromotions, itemPrice, itemAmount, moment);
+        }
+        return EntityUtil.orderBy(rates, orderBy);
+    }
+
+    private void collectRates(List<GenericValue> out, String productStoreId, Collection<String> productCategoryIds, boolean taxShipping,
+            boolean taxPromotions, BigDecimal itemPrice, BigDecimal itemAmount, Timestamp moment) {
+        if (taxShipping || taxPromotions) {
+            // Shipping and promotion rules may match regardless of category, so the whole authority is scanned
+            for (GenericValue rate : allRates) {
+                if ((rate.get("productCategoryId") == null || (taxShipping && isNullOrY(rate.getString("taxShipping")))
+                        || (taxPromotions && isNullOrY(rate.getString("taxPromotions")))) && matches(rate, productStoreId, itemPrice, itemAmount, moment)) {
+                    out.add(rate);
+                }
+            }
+            return;
+        }
+        collectRates(out, ratesByCategoryId.get(NO_CATEGORY), productStoreId, itemPrice, itemAmount, moment);
+        if (productCategoryIds != null) {
+            for (String productCategoryId : productCategoryIds) {
+                collectRates(out, ratesByCategoryId.get(productCategoryId), productStoreId, itemPrice, itemAmount, moment);
+            }
+        }
+    }
+
+    private static void collectRates(List<GenericValue> out, List<GenericValue> rates, String productStoreId, BigDecimal itemPrice, BigDecimal itemAmount, Timestamp moment) {
+        if (rates == null) {
+            return;
+        }
+        for (GenericValue rate : rates) {
+            if (matches(rate, productStoreId, itemPrice, itemAmount, moment)) {
+                out.add(rate);
+            }
+        }
+    }
+
+    private static boolean matches(GenericValue rate, String productStoreId, BigDecimal itemPrice, BigDecimal itemAmount, Timestamp moment) {
+        String rateProductStoreId = rate.getString("productStoreId");
+        if (rateProductStoreId != null && !rateProductStoreId.equals(productStoreId)) {
+            return false;
+        }
+        if (!isMinimumMet(rate.getBigDecimal("minItemPrice"), itemPrice) || !isMinimumMet(rate.getBigDecimal("minPurchase"), itemAmount)) {
+            return false;
+        }
+        return EntityUtil.isValueActive(rate, moment);
+    }
+
+    /** Same as the SQL "minimum IS NULL OR minimum &lt;= value" condition (a null value never meets a non-null minimum). */
+    private static boolean isMinimumMet(BigDecimal minimum, BigDecimal value) {
+        return minimum == null || (value != null && minimum.compareTo(value) <= 0);
+    }
+
+    private static boolean isNullOrY(String indicator) {
+        return indicator == null || "Y".equals(indicator);
+    }
+
+    public String getTaxAuthGeoId() {
+        return taxAuthGeoId;
+    }
+
+    public String getTaxAuthPartyId() {
+        return taxAuthPartyId;
+    }
+
+    /**
+     * Returns all the rules of the tax authority, regardless of dates.
+     */
+    public List<GenericValue> getAllRates() {
+        return allRates;
+    }
+
+    /**
+     * Removes the index of the given tax authority, or all the indexes of the delegator if either id is null.
+     */
+    public static void clear(Delegator delegator, String taxAuthGeoId, String taxAuthPartyId) {
+        if (taxAuthGeoId == null || taxAuthPartyId == null) {
+            String keySuffix = "::" + delegator.getDelegatorName();
+            indexCache.removeByFilter((key, value) -> key.endsWith(keySuffix));
+            return;
+        }
+        indexCache.remove(taxAuthGeoId + "::" + taxAuthPartyId + "::" + delegator.getDelegatorName());
+    }
+}
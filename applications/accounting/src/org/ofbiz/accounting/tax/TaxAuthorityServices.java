@@ -32,6 +32,8 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import javax.transaction.Synchronization;
+
 import org.ofbiz.base.util.Debug;
 import org.ofbiz.base.util.UtilDateTime;
 import org.ofbiz.base.util.UtilGenerics;
@@ -45,6 +47,8 @@ import org.ofbiz.entity.GenericEntityException;
 import org.ofbiz.entity.GenericValue;
 import org.ofbiz.entity.condition.EntityCondition;
 import org.ofbiz.entity.condition.EntityOperator;
+import org.ofbiz.entity.transaction.GenericTransactionException;
+import org.ofbiz.entity.transaction.TransactionUtil;
 import org.ofbiz.entity.util.EntityQuery;
 import org.ofbiz.party.contact.ContactMechWorker;
 import org.ofbiz.product.product.ProductWorker;
@@ -69,6 +73,34 @@ public class TaxAuthorityServices {
     public static final RoundingMode salestaxRounding = UtilNumber.getRoundingMode("salestax.rounding");
     public static final String resource = "AccountingUiLabels";
 
+    /**
+     * Clears the compiled tax rate indexes of the current delegator (SCIPIO).
+     * <p>
+     * All the indexes are cleared because a stored TaxAuthorityRateProduct may have moved from another tax authority.
+     * The TaxAuthorityRateProduct ECAs run before the change is committed, so the indexes are cleared again when the
+     * current transaction completes; otherwise an index rebuilt in the meantime would keep the old rates.
+     */
+    public static Map<String, Object> clearTaxAuthorityRateIndex(DispatchContext dctx, Map<String, ? extends Object> context) {
+        final Delegator delegator = dctx.getDelegator();
+        TaxAuthorityRateIndex.clear(delegator, null, null);
+        try {
+            if (TransactionUtil.isTransactionInPlace()) {
+                TransactionUtil.registerSynchronization(new Synchronization() {
+                    @Override
+                    public void beforeCompletion() {
+                    }
+                    @Override
+                    public void afterCompletion(int status) {
+                        TaxAuthorityRateIndex.clear(delegator, null, null);
+                    }
+                });
+            }
+        } catch (GenericTransactionException e) {
+            Debug.logWarning(e, "Unable to register tax rate index clear with the current transaction", module);
+        }
+        return ServiceUtil.returnSuccess();
+    }
+
     public static Map<String, Object> rateProductTaxCalcForDisplay(DispatchContext dctx, Map<String, ? extends Object> context) {
         Delegator delegator = dctx.getDelegator();
         String productStoreId = (String) context.get("productStoreId");
@@ -387,6 +419,7 @@ public class TaxAuthorityServices {
 
         try {
             EntityCondition productCategoryCond = null;
+            Set<String> productCategoryIdSet = null; // SCIPIO: also used for TaxAuthorityRateIndex
             if (product != null) {
                 // find the tax categories associated with the product and filter by those, with an IN clause or some such
                 // if this product is variant, find the virtual product id and consider also the categories of the virtual
@@ -395,7 +428,7 @@ public class TaxAuthorityServices {
                 if ("Y".equals(product.getString("isVariant"))) {
                     virtualProductId = ProductWorker.getVariantVirtualId(product, useCache);
                 }
-                Set<String> productCategoryIdSet = new HashSet<>();
+                productCategoryIdSet = new HashSet<>();
                 EntityCondition productIdCond = null;
                 if (virtualProductId != null) {
                     productIdCond = EntityCondition.makeCondition(
@@ -459,9 +492,18 @@ public class TaxAuthorityServices {
             EntityCondition mainCondition = EntityCondition.makeCondition(mainExprs, EntityOperator.AND);
 
             // finally ready... do the rate query
-            // SCIPIO: 2017-12-19: not adding useCache here because no cache() call in original code (same below)
-            List<GenericValue> lookupList = EntityQuery.use(delegator).from("TaxAuthorityRateProduct")
-                    .where(mainCondition).orderBy("minItemPrice", "minPurchase", "fromDate").filterByDate().queryList();
+            List<GenericValue> lookupList;
+            if (useCache) {
+                // SCIPIO: Match the rules against the compiled per-authority rate index instead of querying them for each item;
+                // with useCache=false (ECAs) the uncached query below is still used
+                lookupList = TaxAuthorityRateIndex.findRates(delegator, taxAuthoritySet, (productStore != null) ? productStore.getString("productStoreId") : null,
+                        productCategoryIdSet, product == null && shippingAmount != null, product == null && orderPromotionsAmount != null,
+                        itemPrice, itemAmount, nowTimestamp);
+            } else {
+                // SCIPIO: 2017-12-19: not adding useCache here because no cache() call in original code (same below)
+                lookupList = EntityQuery.use(delegator).from("TaxAuthorityRateProduct")
+                        .where(mainCondition).orderBy("minItemPrice", "minPurchase", "fromDate").filterByDate().queryList();
+            }
 
             result.resetRateProducts(lookupList); // SCIPIO
             if (lookupList.size() == 0) {
@@ -498,7 +540,7 @@ public class TaxAuthorityServices {
 
                 // get glAccountId from TaxAuthorityGlAccount entity using the payToPartyId as the organizationPartyId
                 GenericValue taxAuthorityGlAccount = EntityQuery.use(delegator).from("TaxAuthorityGlAccount")
-                        .where("taxAuthPartyId", taxAuthPartyId, "taxAuthGeoId", taxAuthGeoId, "organizationPartyId", payToPartyId).queryOne();
+                        .where("taxAuthPartyId", taxAuthPartyId, "taxAuthGeoId", taxAuthGeoId, "organizationPartyId", payToPartyId).cache(useCache).queryOne(); // SCIPIO: useCache
                 String taxAuthGlAccountId = null;
                 if (taxAuthorityGlAccount != null) {
                     taxAuthGlAccountId = taxAuthorityGlAccount.getString("glAccountId");
@@ -0,0 +1,155 @@
+/*
+ Licensed to the Apache Software Foundation (ASF) under one
+ or more contributor license agreements.  See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership.  The ASF licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+ */
+
+package org.ofbiz.accounting.test;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.ofbiz.base.util.UtilGenerics;
+import org.ofbiz.base.util.UtilMisc;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.util.EntityQuery;
+import org.ofbiz.service.ServiceUtil;
+import org.ofbiz.service.testtools.OFBizTestCase;
+
+/**
+ * GlAccountHistoryTests (SCIPIO): checks the GlAccountHistory snapshots maintained on posting (updateGlAccountHistoryForAcctgTrans)
+ * against the posted entries, under concurrent postings, and that the balance report (getGlAccountHistoryBalances) does not write.
+ */
+public class GlAccountHistoryTests extends OFBizTestCase {
+
+    private static final String DEBIT_GL_ACCOUNT_ID = "111100";
+    private static final String CREDIT_GL_ACCOUNT_ID = "120000";
+
+    public GlAccountHistoryTests(String name) {
+        super(name);
+    }
+
+    public void testPostingUpdatesSnapshots() throws Exception {
+        Map<String, Map<String, Object>> balancesBefore = getBalances("GLHIST_TEST_2090", false);
+        postTransaction(new BigDecimal("100.00"));
+
+        Map<String, Map<String, Object>> balances = getBalances("GLHIST_TEST_2090", true);
+        assertAmountEquals("Posted debits of debit account", getAmount(balancesBefore, DEBIT_GL_ACCOUNT_ID, "postedDebits").add(new BigDecimal("100.00")),
+                getAmount(balances, DEBIT_GL_ACCOUNT_ID, "postedDebits"));
+        assertAmountEquals("Posted credits of credit account", getAmount(balancesBefore, CREDIT_GL_ACCOUNT_ID, "postedCredits").add(new BigDecimal("100.00")),
+                getAmount(balances, CREDIT_GL_ACCOUNT_ID, "postedCredits"));
+        for (String customTimePeriodId : UtilMisc.toList("GLHIST_TEST_2090", "GLHIST_TEST_209006")) {
+            assertNotNull("Snapshot of period " + customTimePeriodId, EntityQuery.use(delegator).from("GlAccountHistory").where("organizationPartyId", "Company",
+                    "glAccountId", DEBIT_GL_ACCOUNT_ID, "customTimePeriodId", customTimePeriodId).queryOne());
+        }
+    }
+
+    public void testConcurrentPostings() throws Exception {
+        // The first posting creates the missing snapshots; the concurrent ones then update them
+        postTransaction(new BigDecimal("1.00"));
+        Map<String, Map<String, Object>> balancesBefore = getBalances("GLHIST_TEST_2090", true);
+
+        int threadCount = 4;
+        int postingsPerThread = 5;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        List<Future<List<String>>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < threadCount; i++) {
+                futures.add(executor.submit(() -> {
+                    List<String> acctgTransIds = new ArrayList<>();
+                    for (int j = 0; j < postingsPerThread; j++) {
+                        acctgTransIds.add(postTransaction(new BigDecimal("10.00")));
+                    }
+                    return acctgTransIds;
+                }));
+            }
+            for (Future<List<String>> future : futures) {
+                for (String acctgTransId : future.get()) {
+                    GenericValue acctgTrans = EntityQuery.use(delegator).from("AcctgTrans").where("acctgTransId", acctgTransId).queryOne();
+                    assertEquals("AcctgTrans " + acctgTransId + " posted", "Y", acctgTrans.getString("isPosted"));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        BigDecimal expectedIncrease = new BigDecimal("10.00").multiply(new BigDecimal(threadCount * postingsPerThread));
+        Map<String, Map<String, Object>> balances = getBalances("GLHIST_TEST_2090", true);
+        assertAmountEquals("Posted debits of debit account", getAmount(balancesBefore, DEBIT_GL_ACCOUNT_ID, "postedDebits").add(expectedIncrease),
+                getAmount(balances, DEBIT_GL_ACCOUNT_ID, "postedDebits"));
+        assertAmountEquals("Ending balance of debit account", getAmount(balancesBefore, DEBIT_GL_ACCOUNT_ID, "endingBalance").add(expectedIncrease),
+                getAmount(balances, DEBIT_GL_ACCOUNT_ID, "endingBalance"));
+        assertAmountEquals("Posted credits of credit account", getAmount(balancesBefore, CREDIT_GL_ACCOUNT_ID, "postedCredits").add(expectedIncrease),
+                getAmount(balances, CREDIT_GL_ACCOUNT_ID, "postedCredits"));
+    }
+
+    public void testBalanceReportIsReadOnly() throws Exception {
+        // No posting in 2091: the balances are computed from the entries and nothing is stored
+        Map<String, Map<String, Object>> balances = getBalances("GLHIST_TEST_2091", true);
+        assertAmountEquals("Posted debits without postings", BigDecimal.ZERO, getAmount(balances, DEBIT_GL_ACCOUNT_ID, "postedDebits"));
+        assertEquals("Snapshots stored by the balance report", 0, EntityQuery.use(delegator).from("GlAccountHistory")
+                .where("organizationPartyId", "Company", "customTimePeriodId", "GLHIST_TEST_2091").queryCount());
+    }
+
+    private String postTransaction(BigDecimal amount) throws Exception {
+        GenericValue userLogin = EntityQuery.use(delegator).from("UserLogin").where("userLoginId", "system").queryOne();
+        List<Map<String, Object>> acctgTransEntries = new ArrayList<>();
+        acctgTransEntries.add(makeEntry(DEBIT_GL_ACCOUNT_ID, "D", amount));
+        acctgTransEntries.add(makeEntry(CREDIT_GL_ACCOUNT_ID, "C", amount));
+        Map<String, Object> ctx = new HashMap<>();
+        ctx.put("acctgTransTypeId", "INTERNAL_ACCTG_TRANS");
+        ctx.put("glFiscalTypeId", "ACTUAL");
+        ctx.put("transactionDate", Timestamp.valueOf("2090-06-15 12:00:00"));
+        ctx.put("acctgTransEntries", acctgTransEntries);
+        ctx.put("userLogin", userLogin);
+        Map<String, Object> resp = dispatcher.runSync("createAcctgTransAndEntries", ctx);
+        assertTrue("Service 'createAcctgTransAndEntries' result success", ServiceUtil.isSuccess(resp));
+        return (String) resp.get("acctgTransId");
+    }
+
+    private static Map<String, Object> makeEntry(String glAccountId, String debitCreditFlag, BigDecimal amount) {
+        return UtilMisc.toMap("acctgTransEntryTypeId", "_NA_", "organizationPartyId", "Company", "glAccountId", glAccountId,
+                "debitCreditFlag", debitCreditFlag, "origAmount", amount, "origCurrencyUomId", "USD");
+    }
+
+    private Map<String, Map<String, Object>> getBalances(String customTimePeriodId, boolean verify) throws Exception {
+        GenericValue userLogin = EntityQuery.use(delegator).from("UserLogin").where("userLoginId", "system").queryOne();
+        Map<String, Object> resp = dispatcher.runSync("getGlAccountHistoryBalances", UtilMisc.toMap("organizationPartyId", "Company",
+                "customTimePeriodId", customTimePeriodId, "glAccountIds", UtilMisc.toList(DEBIT_GL_ACCOUNT_ID, CREDIT_GL_ACCOUNT_ID),
+                "verify", verify, "userLogin", userLogin));
+        assertTrue("Service 'getGlAccountHistoryBalances' result success", ServiceUtil.isSuccess(resp));
+        if (verify) {
+            assertEquals("Snapshots not matching the posted entries", 0, ((List<?>) resp.get("mismatchedGlAccountIds")).size());
+        }
+        return UtilGenerics.checkMap(resp.get("glAccountBalances"));
+    }
+
+    private static BigDecimal getAmount(Map<String, Map<String, Object>> balances, String glAccountId, String fieldName) {
+        BigDecimal amount = (BigDecimal) balances.get(glAccountId).get(fieldName);
+        return (amount != null) ? amount : BigDecimal.ZERO;
+    }
+
+    private static void assertAmountEquals(String message, BigDecimal expected, BigDecimal actual) {
+        assertTrue(message + ": expected " + expected + " but was " + actual, expected.compareTo(actual) == 0);
+    }
+}
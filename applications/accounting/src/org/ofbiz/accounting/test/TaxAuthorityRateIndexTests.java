@@ -0,0 +1,89 @@
+/*
+ Licensed to the Apache Software Foundation (ASF) under one
+ or more contributor license agreements.  See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership.  The ASF licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+ */
+
+package org.ofbiz.accounting.test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ofbiz.base.util.UtilMisc;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.util.EntityQuery;
+import org.ofbiz.service.ServiceUtil;
+import org.ofbiz.service.testtools.OFBizTestCase;
+
+/**
+ * TaxAuthorityRateIndexTests (SCIPIO): checks that the tax rate index used by rateProductTaxCalc with useCache
+ * returns the same adjustments as the uncached TaxAuthorityRateProduct query.
+ */
+public class TaxAuthorityRateIndexTests extends OFBizTestCase {
+
+    public TaxAuthorityRateIndexTests(String name) {
+        super(name);
+    }
+
+    public void testRateIndexParity() throws Exception {
+        GenericValue product1 = EntityQuery.use(delegator).from("Product").where("productId", "TAXIDX_TEST_1").queryOne();
+        GenericValue product2 = EntityQuery.use(delegator).from("Product").where("productId", "TAXIDX_TEST_2").queryOne();
+        for (String stateProvinceGeoId : UtilMisc.toList("CA", "NY", "TX", "UT")) {
+            GenericValue shippingAddress = delegator.makeValue("PostalAddress", UtilMisc.toMap("contactMechId", "TAXIDX_TEST",
+                    "countryGeoId", "USA", "stateProvinceGeoId", stateProvinceGeoId, "postalCode", "00000"));
+            Map<String, Object> ctx = new HashMap<>();
+            ctx.put("payToPartyId", "Company");
+            ctx.put("itemProductList", UtilMisc.toList(product1, product2, product1));
+            ctx.put("itemAmountList", UtilMisc.toList(new BigDecimal("20.00"), new BigDecimal("250.00"), new BigDecimal("300.00")));
+            ctx.put("itemPriceList", UtilMisc.toList(new BigDecimal("10.00"), new BigDecimal("125.00"), new BigDecimal("150.00")));
+            ctx.put("itemQuantityList", UtilMisc.toList(new BigDecimal("2"), new BigDecimal("2"), new BigDecimal("2")));
+            ctx.put("orderShippingAmount", new BigDecimal("15.00"));
+            ctx.put("orderPromotionsAmount", new BigDecimal("-5.00"));
+            ctx.put("shippingAddress", shippingAddress);
+
+            ctx.put("useCache", Boolean.FALSE);
+            Map<String, Object> uncachedResult = dispatcher.runSync("calcTax", ctx);
+            assertTrue("Service 'calcTax' (uncached) result success for " + stateProvinceGeoId, ServiceUtil.isSuccess(uncachedResult));
+            ctx.put("useCache", Boolean.TRUE);
+            Map<String, Object> cachedResult = dispatcher.runSync("calcTax", ctx);
+            assertTrue("Service 'calcTax' (cached) result success for " + stateProvinceGeoId, ServiceUtil.isSuccess(cachedResult));
+
+            assertEquals("Order adjustments for " + stateProvinceGeoId, toComparable(uncachedResult.get("orderAdjustments")),
+                    toComparable(cachedResult.get("orderAdjustments")));
+            List<?> uncachedItemAdjustments = (List<?>) uncachedResult.get("itemAdjustments");
+            List<?> cachedItemAdjustments = (List<?>) cachedResult.get("itemAdjustments");
+            assertEquals("Item count for " + stateProvinceGeoId, uncachedItemAdjustments.size(), cachedItemAdjustments.size());
+            for (int i = 0; i < uncachedItemAdjustments.size(); i++) {
+                assertEquals("Item " + i + " adjustments for " + stateProvinceGeoId, toComparable(uncachedItemAdjustments.get(i)),
+                        toComparable(cachedItemAdjustments.get(i)));
+            }
+        }
+    }
+
+    private static List<String> toComparable(Object adjustments) {
+        List<String> result = new ArrayList<>();
+        for (Object adjustmentObj : (List<?>) adjustments) {
+            GenericValue adjustment = (GenericValue) adjustmentObj;
+            BigDecimal amount = adjustment.getBigDecimal("amount");
+            result.add(adjustment.getString("orderAdjustmentTypeId") + ":" + adjustment.getString("taxAuthorityRateSeqId")
+                    + ":" + ((amount != null) ? amount.stripTrailingZeros().toPlainString() : null));
+        }
+        return result;
+    }
+}
@@ -69,6 +69,59 @@ mainAndExprs.add(EntityCondition.makeCondition("acctgTransTypeId", EntityOperato
 mainAndExprs.add(EntityCondition.makeCondition("transactionDate", EntityOperator.GREATER_THAN_EQUAL_TO, fromDate));
 mainAndExprs.add(EntityCondition.makeCondition("transactionDate", EntityOperator.LESS_THAN, thruDate));
 
+// SCIPIO: If the report covers exactly one fiscal period of every organization, the ACTUAL posted debits and credits of the
+// accounts are read from the GlAccountHistory snapshots (getGlAccountHistoryBalances) instead of summing the raw entries.
+// The snapshots include the closing transactions, so the entries are summed as before if the period has any.
+Map customTimePeriodIdsByParty = [:];
+if ("ACTUAL".equals(glFiscalTypeId)) {
+    partyIds.each { partyId ->
+        GenericValue customTimePeriod = from("CustomTimePeriod").where(EntityCondition.makeCondition("organizationPartyId", partyId),
+                EntityCondition.makeCondition("periodTypeId", EntityOperator.IN, ["FISCAL_YEAR", "FISCAL_QUARTER", "FISCAL_MONTH", "FISCAL_WEEK", "FISCAL_BIWEEK"]),
+                EntityCondition.makeCondition("fromDate", fromDate), EntityCondition.makeCondition("thruDate", thruDate)).cache(true).queryFirst();
+        if (customTimePeriod) {
+            customTimePeriodIdsByParty.put(partyId, customTimePeriod.customTimePeriodId);
+        }
+    }
+    if (customTimePeriodIdsByParty.size() != partyIds.size()) {
+        customTimePeriodIdsByParty = [:];
+    } else {
+        List closingAndExprs = [];
+        closingAndExprs.add(EntityCondition.makeCondition("organizationPartyId", EntityOperator.IN, partyIds));
+        closingAndExprs.add(EntityCondition.makeCondition("isPosted", EntityOperator.EQUALS, "Y"));
+        closingAndExprs.add(EntityCondition.makeCondition("glFiscalTypeId", EntityOperator.EQUALS, glFiscalTypeId));
+        closingAndExprs.add(EntityCondition.makeCondition("acctgTransTypeId", EntityOperator.EQUALS, "PERIOD_CLOSING"));
+        closingAndExprs.add(EntityCondition.makeCondition("transactionDate", EntityOperator.GREATER_THAN_EQUAL_TO, fromDate));
+        closingAndExprs.add(EntityCondition.makeCondition("transactionDate", EntityOperator.LESS_THAN, thruDate));
+        if (select("glAccountId").from("AcctgTransEntrySums").where(closingAndExprs).queryFirst()) {
+            customTimePeriodIdsByParty = [:];
+        }
+    }
+}
+
+// Returns the debit and credit totals of the accounts of the classes, as rows of AcctgTransEntrySums ordered by glAccountId
+getTransactionTotals = { List accountClassIds, List andExprs ->
+    if (!customTimePeriodIdsByParty) {
+        return select("glAccountId", "accountName", "accountCode", "debitCreditFlag", "amount").from("AcctgTransEntrySums").where(andExprs).orderBy("glAccountId").queryList();
+    }
+    List totals = [];
+    List organizationGlAccounts = from("GlAccountOrganizationAndClass").where(EntityCondition.makeCondition("organizationPartyId", EntityOperator.IN, partyIds),
+            EntityCondition.makeCondition("glAccountClassId", EntityOperator.IN, accountClassIds)).orderBy("glAccountId").queryList();
+    organizationGlAccounts.groupBy { it.organizationPartyId }.each { orgPartyId, orgGlAccounts ->
+        balancesResult = runService('getGlAccountHistoryBalances', [organizationPartyId: orgPartyId, customTimePeriodId: customTimePeriodIdsByParty.get(orgPartyId),
+            glAccountIds: orgGlAccounts.collect { it.glAccountId }]);
+        orgGlAccounts.each { organizationGlAccount ->
+            Map balance = balancesResult.glAccountBalances?.get(organizationGlAccount.glAccountId);
+            [D: balance?.postedDebits, C: balance?.postedCredits].each { debitCreditFlag, amount ->
+                if (amount) {
+                    totals.add([glAccountId: organizationGlAccount.glAccountId, accountName: organizationGlAccount.accountName,
+                        accountCode: organizationGlAccount.accountCode, debitCreditFlag: debitCreditFlag, amount: amount]);
+                }
+            }
+        }
+    }
+    return totals.sort { it.glAccountId };
+}
+
 List balanceTotalList = [];
 
 // REVENUE
@@ -78,7 +131,7 @@ transactionTotals = [];
 balanceTotal = BigDecimal.ZERO;
 List revenueAndExprs = new ArrayList(mainAndExprs);
 revenueAndExprs.add(EntityCondition.makeCondition("glAccountClassId", EntityOperator.IN, revenueAccountClassIds));
-transactionTotals = select("glAccountId", "accountName", "accountCode", "debitCreditFlag", "amount").from("AcctgTransEntrySums").where(revenueAndExprs).orderBy("glAccountId").queryList();
+transactionTotals = getTransactionTotals(revenueAccountClassIds, revenueAndExprs);
 if (transactionTotals) {
     Map transactionTotalsMap = [:];
     balanceTotalCredit = BigDecimal.ZERO;
@@ -121,7 +174,7 @@ transactionTotals = [];
 balanceTotal = BigDecimal.ZERO;
 List contraRevenueAndExprs = new ArrayList(mainAndExprs);
 contraRevenueAndExprs.add(EntityCondition.makeCondition("glAccountClassId", EntityOperator.IN, contraRevenueAccountClassIds));
-transactionTotals = select("glAccountId", "accountName", "accountCode", "debitCreditFlag", "amount").from("AcctgTransEntrySums").where(contraRevenueAndExprs).orderBy("glAccountId").queryList();
+transactionTotals = getTransactionTotals(contraRevenueAccountClassIds, contraRevenueAndExprs);
 if (transactionTotals) {
     Map transactionTotalsMap = [:];
     balanceTotalCredit = BigDecimal.ZERO;
@@ -163,7 +216,7 @@ transactionTotals = [];
 balanceTotal = BigDecimal.ZERO;
 List expenseAndExprs = new ArrayList(mainAndExprs);
 expenseAndExprs.add(EntityCondition.makeCondition("glAccountClassId", EntityOperator.IN, expenseAccountClassIds));
-transactionTotals = select("glAccountId", "accountName", "accountCode", "debitCreditFlag", "amount").from("AcctgTransEntrySums").where(expenseAndExprs).queryList();
+transactionTotals = getTransactionTotals(expenseAccountClassIds, expenseAndExprs);
 if (transactionTotals) {
     Map transactionTotalsMap = [:];
     balanceTotalCredit = BigDecimal.ZERO;
@@ -206,7 +259,7 @@ transactionTotals = [];
 balanceTotal = BigDecimal.ZERO;
 List cogsExpenseAndExprs = new ArrayList(mainAndExprs);
 cogsExpenseAndExprs.add(EntityCondition.makeCondition("glAccountClassId", EntityOperator.IN, cogsExpenseAccountClassIds));
-transactionTotals = select("glAccountId", "accountName", "accountCode", "debitCreditFlag", "amount").from("AcctgTransEntrySums").where(cogsExpenseAndExprs).orderBy("glAccountId").queryList();
+transactionTotals = getTransactionTotals(cogsExpenseAccountClassIds, cogsExpenseAndExprs);
 if (transactionTotals) {
     Map transactionTotalsMap = [:];
     balanceTotalCredit = BigDecimal.ZERO;
@@ -248,7 +301,7 @@ transactionTotals = [];
 balanceTotal = BigDecimal.ZERO;
 List sgaExpenseAndExprs = new ArrayList(mainAndExprs);
 sgaExpenseAndExprs.add(EntityCondition.makeCondition("glAccountClassId", EntityOperator.IN, sgaExpenseAccountClassIds));
-transactionTotals = select("glAccountId", "accountName", "accountCode", "debitCreditFlag", "amount").from("AcctgTransEntrySums").where(sgaExpenseAndExprs).orderBy("glAccountId").queryList();
+transactionTotals = getTransactionTotals(sgaExpenseAccountClassIds, sgaExpenseAndExprs);
 if (transactionTotals) {
     Map transactionTotalsMap = [:];
     balanceTotalCredit = BigDecimal.ZERO;
@@ -289,7 +342,7 @@ transactionTotals = [];
 balanceTotal = BigDecimal.ZERO;
 List depreciationAndExprs = new ArrayList(mainAndExprs);
 depreciationAndExprs.add(EntityCondition.makeCondition("glAccountClassId", EntityOperator.IN, depreciationAccountClassIds));
-transactionTotals = select("glAccountId", "accountName", "accountCode", "debitCreditFlag", "amount").from("AcctgTransEntrySums").where(depreciationAndExprs).orderBy("glAccountId").queryList();
+transactionTotals = getTransactionTotals(depreciationAccountClassIds, depreciationAndExprs);
 if (transactionTotals) {
 Map transactionTotalsMap = [:];
 balanceTotalCredit = BigDecimal.ZERO;
@@ -330,7 +383,7 @@ transactionTotals = [];
 balanceTotal = BigDecimal.ZERO;
 List incomeAndExprs = new ArrayList(mainAndExprs);
 incomeAndExprs.add(EntityCondition.makeCondition("glAccountClassId", EntityOperator.IN, incomeAccountClassIds));
-transactionTotals = select("glAccountId", "accountName", "accountCode", "debitCreditFlag", "amount").from("AcctgTransEntrySums").where(incomeAndExprs).orderBy("glAccountId").queryList();
+transactionTotals = getTransactionTotals(incomeAccountClassIds, incomeAndExprs);
 if (transactionTotals) {
     Map transactionTotalsMap = [:];
     balanceTotalCredit = BigDecimal.ZERO;
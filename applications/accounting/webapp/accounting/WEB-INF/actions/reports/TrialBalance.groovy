@@ -36,12 +36,21 @@ if (parameters.customTimePeriodId) {
     exprList.add(EntityCondition.makeCondition(EntityCondition.makeCondition('thruDate', EntityOperator.GREATER_THAN_EQUAL_TO, customTimePeriod.getTimestamp('fromDate')), EntityOperator.OR, EntityCondition.makeCondition('thruDate', EntityOperator.EQUALS, null)))
     List organizationGlAccounts = from("GlAccountOrganizationAndClass").where(exprList).orderBy("accountCode").queryList();
 
+    // SCIPIO: Read the balances from the GlAccountHistory snapshots, one service call per organization instead of one per account;
+    // pass verifySnapshots=Y to cross-check the snapshots against the posted entries
+    glAccountBalancesByOrganization = [:]
+    organizationGlAccounts.groupBy { it.organizationPartyId }.each { orgPartyId, orgGlAccounts ->
+        balancesResult = runService('getGlAccountHistoryBalances', [organizationPartyId: orgPartyId, customTimePeriodId: customTimePeriod.customTimePeriodId,
+            glAccountIds: orgGlAccounts.collect { it.glAccountId }, verify: "Y" == parameters.verifySnapshots]);
+        glAccountBalancesByOrganization[orgPartyId] = balancesResult.glAccountBalances
+    }
+
     accountBalances = []
     postedDebitsTotal = 0
     postedCreditsTotal = 0
     organizationGlAccounts.each { organizationGlAccount ->
         accountBalance = [:]
-        accountBalance = runService('computeGlAccountBalanceForTimePeriod', [organizationPartyId: organizationGlAccount.organizationPartyId, customTimePeriodId: customTimePeriod.customTimePeriodId, glAccountId: organizationGlAccount.glAccountId]);
+        accountBalance.putAll(glAccountBalancesByOrganization[organizationGlAccount.organizationPartyId]?.get(organizationGlAccount.glAccountId) ?: [:])
         if (accountBalance.postedDebits != 0 || accountBalance.postedCredits != 0) {
             accountBalance.glAccountId = organizationGlAccount.glAccountId
             accountBalance.accountCode = organizationGlAccount.accountCode
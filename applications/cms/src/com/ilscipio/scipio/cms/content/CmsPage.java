@@ -2032,6 +2032,10 @@ public class CmsPage extends CmsDataObject implements CmsMajorObject, CmsVersion
          */
         public CmsPage findById(Delegator delegator, String pageId, boolean useCache, HttpServletRequest request) throws CmsException {
             boolean useGlobalCache = isUseGlobalObjCacheStatic(useCache);
+            if (useGlobalCache && CmsPageRenderGraph.isEnabled()) {
+                // SCIPIO: live render pages are served from their preloaded render graph, which does not expire
+                return CmsPageRenderGraph.getPage(delegator, pageId);
+            }
             CmsObjectCache<CmsPage> cache = null;
             if (useGlobalCache) {
                 cache = idCache;
@@ -2351,6 +2355,7 @@ public class CmsPage extends CmsDataObject implements CmsMajorObject, CmsVersion
         @Override
         public void clearMemoryCaches() {
             idCache.clear();
+            CmsPageRenderGraph.clear();
         }
     }
 
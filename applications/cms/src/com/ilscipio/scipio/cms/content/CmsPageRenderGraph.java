@@ -0,0 +1,278 @@
+package com.ilscipio.scipio.cms.content;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.ofbiz.base.concurrent.ExecutionPool;
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilMisc;
+import org.ofbiz.base.util.UtilProperties;
+import org.ofbiz.base.util.cache.UtilCache;
+import org.ofbiz.entity.Delegator;
+import org.ofbiz.entity.GenericEntityException;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.util.EntityQuery;
+
+import com.ilscipio.scipio.cms.CmsUtil;
+import com.ilscipio.scipio.cms.data.CmsObjectCache;
+import com.ilscipio.scipio.cms.data.Preloadable.PreloadWorker;
+
+/**
+ * Preloaded, immutable render graph of a live CMS page (SCIPIO).
+ * <p>
+ * A graph is the {@link CmsPage} instance fully preloaded for live render: content model of the active version,
+ * page template with its asset templates, attribute templates (expanders) and parsed Freemarker templates, and
+ * the page and template scripts. Unlike the <code>cms.content.page.id</code> cache, graphs do not expire: each is
+ * kept until it is replaced by a newer graph of the same page (or evicted, least recently used first, beyond
+ * <code>cache.page.renderGraph.maxSize</code> graphs), so a render never waits for the page to be
+ * re-resolved and cache expiry no longer causes every request to rebuild the same page at once.
+ * Concurrent renders of a page without graph share a single build. A page that does not exist is cached as a
+ * missing-page graph ({@link #isMissing()}), so repeated requests for it do not query the database; it is removed
+ * when the page is created (see the <code>cmsRemovePageRenderGraph</code> entity ECA) and otherwise refreshed like
+ * any other graph.
+ * <p>
+ * Graphs are replaced (swapped) atomically:
+ * <ul>
+ * <li>when a page version is published or the page unpublished (see the <code>cmsSwapPageRenderGraph</code> SECAs),</li>
+ * <li>in the background, by the first render of a graph older than <code>cache.page.renderGraph.refreshInterval</code>,
+ * so changes made elsewhere (templates, assets, mappings) become visible with the same delay as the
+ * regular object caches; meanwhile the current graph keeps being served.</li>
+ * </ul>
+ * The graphs of all published pages are built in parallel at startup by the <code>cmsLoadPageRenderGraphs</code> service.
+ */
+public final class CmsPageRenderGraph {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    private static final boolean ENABLED = UtilProperties.getPropertyAsBoolean("cms", "cache.page.renderGraph.enable", true)
+            && UtilProperties.getPropertyAsBoolean("cms", "cache.obj.global.allow", true);
+    private static final long REFRESH_INTERVAL = UtilProperties.getPropertyAsLong("cms", "cache.page.renderGraph.refreshInterval",
+            CmsObjectCache.getDefaultExpiration());
+    private static final int MAX_SIZE = UtilProperties.getPropertyAsInteger("cms", "cache.page.renderGraph.maxSize", 1000);
+
+    private static final PreloadWorker graphPreloadWorker = PreloadWorker.getPreloadWorker(CmsObjectCache.CACHE_PRELOAD_MUTABLE);
+
+    /** Key format: delegatorName::pageId; LRU-bounded, no expiry (the maximum can be overridden in cache.properties) */
+    private static final UtilCache<String, CmsPageRenderGraph> graphs = UtilCache.createUtilCache("cms.content.page.renderGraph",
+            0, MAX_SIZE, 0, false);
+    /** Builds in progress for pages without graph, so concurrent renders of a page share a single build */
+    private static final ConcurrentHashMap<String, CompletableFuture<CmsPageRenderGraph>> pendingBuilds = new ConcurrentHashMap<>();
+    /** Guards the compare-and-put of refreshed graphs against swaps (builds run outside of it) */
+    private static final Object swapLock = new Object();
+
+    private final String pageId;
+    private final String activeVersionId;
+    private final CmsPage page;
+    private final long loadedTime;
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+    private CmsPageRenderGraph(String pageId, String activeVersionId, CmsPage page, long loadedTime) {
+        this.pageId = pageId;
+        this.activeVersionId = activeVersionId;
+        this.page = page;
+        this.loadedTime = loadedTime;
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Returns the preloaded, immutable page for live render, building its graph if not loaded yet,
+     * or null if the page does not exist.
+     */
+    public static CmsPage getPage(Delegator delegator, String pageId) {
+        return getGraph(delegator, pageId).getPage();
+    }
+
+    /**
+     * Returns the current render graph of the page, building it if not loaded yet.
+     * <p>
+     * If the graph is older than the refresh interval, its replacement is built in the background
+     * and the current graph is returned meanwhile.
+     */
+    public static CmsPageRenderGraph getGraph(Delegator delegator, String pageId) {
+        String key = makeKey(delegator, pageId);
+        CmsPageRenderGraph graph = graphs.get(key);
+        if (graph == null) {
+            graph = buildShared(delegator, pageId, key);
+        } else if (graph.isRefreshDue() && graph.refreshing.compareAndSet(false, true)) {
+            final CmsPageRenderGraph staleGraph = graph;
+            ExecutionPool.GLOBAL_BATCH.execute(() -> {
+                try {
+                    CmsPageRenderGraph newGraph = build(delegator, pageId);
+                    synchronized (swapLock) {
+                        if (graphs.get(key) == staleGraph) {
+                            graphs.put(key, newGraph);
+                        }
+                    }
+                } catch (Exception e) {
+                    Debug.logError(e, "Cms: Could not refresh render graph for page " + CmsPage.getLogIdRepr(pageId, null)
+                            + "; keeping current graph", module);
+                    staleGraph.refreshing.set(false);
+                }
+            });
+        }
+        return graph;
+    }
+
+    /**
+     * Builds a new render graph of the page from the database and atomically swaps it in place of
+     * the current one, if any. Renders in progress keep using the graph they started with.
+     */
+    public static CmsPageRenderGraph swap(Delegator delegator, String pageId) {
+        CmsPageRenderGraph graph = build(delegator, pageId);
+        CmsPageRenderGraph oldGraph;
+        synchronized (swapLock) {
+            oldGraph = graphs.put(makeKey(delegator, pageId), graph);
+        }
+        if (CmsUtil.verboseOn()) {
+            Debug.logInfo("Cms: Swapped render graph for page " + CmsPage.getLogIdRepr(pageId, null) + " (active version: "
+                    + (oldGraph != null ? oldGraph.getActiveVersionId() : null) + " -> " + graph.getActiveVersionId() + ")", module);
+        }
+        return graph;
+    }
+
+    /**
+     * Builds the render graphs of all the published pages (having an active version) in parallel and
+     * swaps them in. Pages whose graph cannot be built are logged and skipped.
+     * @return the number of graphs loaded
+     */
+    public static int loadAll(Delegator delegator) throws GenericEntityException {
+        List<GenericValue> activeStates = EntityQuery.use(delegator).from("CmsPageVersionState")
+                .where("versionStateId", "CMS_VER_ACTIVE").select("pageId").queryList();
+        Set<String> pageIds = new LinkedHashSet<>();
+        for (GenericValue activeState : activeStates) {
+            pageIds.add(activeState.getString("pageId"));
+        }
+        List<Callable<CmsPageRenderGraph>> loaders = new ArrayList<>(pageIds.size());
+        for (String pageId : pageIds) {
+            loaders.add(() -> swap(delegator, pageId));
+        }
+        long startTime = System.currentTimeMillis();
+        int loaded = 0;
+        for (Future<CmsPageRenderGraph> future : ExecutionPool.GLOBAL_FORK_JOIN.invokeAll(loaders)) {
+            try {
+                future.get();
+                loaded++;
+            } catch (ExecutionException e) {
+                Debug.logError(e.getCause(), "Cms: Could not load page render graph", module);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        Debug.logInfo("Cms: Loaded " + loaded + " of " + pageIds.size() + " page render graphs for delegator "
+                + delegator.getDelegatorName() + " in " + (System.currentTimeMillis() - startTime) + " ms", module);
+        return loaded;
+    }
+
+    /**
+     * Removes the render graph of the page; the next render builds a new one.
+     */
+    public static void remove(Delegator delegator, String pageId) {
+        graphs.remove(makeKey(delegator, pageId));
+    }
+
+    /**
+     * Removes all the render graphs.
+     */
+    public static void clear() {
+        graphs.clear();
+    }
+
+    /**
+     * Builds the missing graph of the page, or waits for the build already started by another thread, and caches it
+     * (as a missing-page graph if the page does not exist).
+     */
+    private static CmsPageRenderGraph buildShared(Delegator delegator, String pageId, String key) {
+        CompletableFuture<CmsPageRenderGraph> newBuild = new CompletableFuture<>();
+        CompletableFuture<CmsPageRenderGraph> pendingBuild = pendingBuilds.putIfAbsent(key, newBuild);
+        if (pendingBuild != null) {
+            try {
+                return pendingBuild.join();
+            } catch (CompletionException e) {
+                throw (e.getCause() instanceof RuntimeException) ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        try {
+            CmsPageRenderGraph graph = graphs.get(key); // built by a build that completed in the meantime
+            if (graph == null) {
+                graph = graphs.putIfAbsentAndGet(key, build(delegator, pageId));
+            }
+            newBuild.complete(graph);
+            return graph;
+        } catch (RuntimeException e) {
+            newBuild.completeExceptionally(e);
+            throw e;
+        } finally {
+            pendingBuilds.remove(key, newBuild);
+        }
+    }
+
+    private static CmsPageRenderGraph build(Delegator delegator, String pageId) {
+        long loadedTime = System.currentTimeMillis();
+        CmsPage page = CmsPage.getWorker().findById(delegator, pageId, false);
+        String activeVersionId = null;
+        if (page != null) {
+            activeVersionId = page.getActiveVersionId(false);
+            graphPreloadWorker.preload(page);
+        }
+        if (CmsUtil.verboseOn()) {
+            Debug.logInfo("Cms: Built render graph for page " + CmsPage.getLogIdRepr(pageId, null) + " (active version: "
+                    + activeVersionId + ") in " + (System.currentTimeMillis() - loadedTime) + " ms", module);
+        }
+        return new CmsPageRenderGraph(pageId, activeVersionId, page, loadedTime);
+    }
+
+    private static String makeKey(Delegator delegator, String pageId) {
+        return delegator.getDelegatorName() + "::" + pageId;
+    }
+
+    private boolean isRefreshDue() {
+        return REFRESH_INTERVAL > 0 && (System.currentTimeMillis() - loadedTime) > REFRESH_INTERVAL;
+    }
+
+    public String getPageId() {
+        return pageId;
+    }
+
+    /**
+     * Returns the active (published) version the graph was built from, or null if the page had none.
+     */
+    public String getActiveVersionId() {
+        return activeVersionId;
+    }
+
+    /**
+     * Returns the preloaded, immutable page, or null if the page did not exist when the graph was built.
+     */
+    public CmsPage getPage() {
+        return page;
+    }
+
+    /**
+     * Returns true if this is a missing-page graph, i.e. the page did not exist when the graph was built.
+     */
+    public boolean isMissing() {
+        return page == null;
+    }
+
+    public long getLoadedTime() {
+        return loadedTime;
+    }
+
+    @Override
+    public String toString() {
+        return "CmsPageRenderGraph" + UtilMisc.toMap("pageId", pageId, "activeVersionId", activeVersionId, "loadedTime", loadedTime);
+    }
+}
@@ -6,6 +6,7 @@ import java.util.Map.Entry;
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.transaction.Synchronization;
 
 import com.ilscipio.scipio.cms.webapp.CmsWebappUtil;
 import org.apache.http.client.methods.HttpGet;
@@ -14,6 +15,8 @@ import org.ofbiz.base.util.*;
 import org.ofbiz.entity.Delegator;
 import org.ofbiz.entity.GenericDelegator;
 import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.transaction.GenericTransactionException;
+import org.ofbiz.entity.transaction.TransactionUtil;
 import org.ofbiz.service.DispatchContext;
 import org.ofbiz.service.LocalDispatcher;
 import org.ofbiz.service.ServiceUtil;
@@ -503,6 +506,77 @@ public abstract class CmsPageServices {
         return result;
     }
 
+    /**
+     * Rebuilds the render graph of a page and swaps it in place of the current one (SCIPIO).
+     * Run after a page version is published or the page unpublished.
+     */
+    public static Map<String, Object> swapPageRenderGraph(DispatchContext dctx, Map<String, ?> context) {
+        Delegator delegator = dctx.getDelegator();
+        String pageId = (String) context.get("pageId");
+        if (!CmsPageRenderGraph.isEnabled()) {
+            return ServiceUtil.returnSuccess();
+        }
+        try {
+            CmsPageRenderGraph.swap(delegator, pageId);
+        } catch (Exception e) {
+            // the stale graph must not outlive the publish; the next render will build the page again
+            CmsPageRenderGraph.remove(delegator, pageId);
+            FormattedError err = errorFmt.format(e, "Error building page render graph (pageId: " + pageId + ")", context);
+            Debug.logError(err.getEx(), err.getLogMsg(), module);
+            return err.returnFailure();
+        }
+        return ServiceUtil.returnSuccess();
+    }
+
+    /**
+     * Removes the render graph of a page, in particular the missing-page graph cached before the page was created (SCIPIO).
+     * Run by the CmsPage entity ECA, before the change is committed, so the graph is removed again when the current
+     * transaction completes.
+     */
+    public static Map<String, Object> removePageRenderGraph(DispatchContext dctx, Map<String, ?> context) {
+        final Delegator delegator = dctx.getDelegator();
+        final String pageId = (String) context.get("pageId");
+        if (!CmsPageRenderGraph.isEnabled()) {
+            return ServiceUtil.returnSuccess();
+        }
+        CmsPageRenderGraph.remove(delegator, pageId);
+        try {
+            if (TransactionUtil.isTransactionInPlace()) {
+                TransactionUtil.registerSynchronization(new Synchronization() {
+                    @Override
+                    public void beforeCompletion() {
+                    }
+                    @Override
+                    public void afterCompletion(int status) {
+                        CmsPageRenderGraph.remove(delegator, pageId);
+                    }
+                });
+            }
+        } catch (GenericTransactionException e) {
+            Debug.logWarning(e, "Cms: Unable to register page render graph removal with the current transaction", module);
+        }
+        return ServiceUtil.returnSuccess();
+    }
+
+    /**
+     * Loads the render graphs of all published pages in parallel (SCIPIO). Run at startup.
+     */
+    public static Map<String, Object> loadPageRenderGraphs(DispatchContext dctx, Map<String, ?> context) {
+        Delegator delegator = dctx.getDelegator();
+        if (!CmsPageRenderGraph.isEnabled()) {
+            return ServiceUtil.returnSuccess("Page render graphs are disabled");
+        }
+        Map<String, Object> result = ServiceUtil.returnSuccess();
+        try {
+            result.put("loadedCount", CmsPageRenderGraph.loadAll(delegator));
+        } catch (Exception e) {
+            FormattedError err = errorFmt.format(e, "Error loading page render graphs", context);
+            Debug.logError(err.getEx(), err.getLogMsg(), module);
+            return err.returnFailure();
+        }
+        return result;
+    }
+
     /**
      * Prewarms the cache of a static list of urls
      */
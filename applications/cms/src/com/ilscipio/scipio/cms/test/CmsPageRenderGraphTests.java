@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.ilscipio.scipio.cms.test;
+
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.transaction.TransactionUtil;
+import org.ofbiz.service.testtools.OFBizTestCase;
+
+import com.ilscipio.scipio.cms.content.CmsPageRenderGraph;
+
+/**
+ * CmsPageRenderGraphTests (SCIPIO): tests the page render graph cache (CmsPageRenderGraph): graphs of existing pages
+ * and of missing pages are built once and reused, and the missing-page graph is dropped when the page is created.
+ */
+public class CmsPageRenderGraphTests extends OFBizTestCase {
+
+    private static final String TEST_PAGE_ID = "CMSRGTEST_PAGE";
+
+    public CmsPageRenderGraphTests(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        removeTestPage();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        removeTestPage();
+    }
+
+    public void testPageGraphCached() throws Exception {
+        if (!CmsPageRenderGraph.isEnabled()) {
+            return;
+        }
+        delegator.create(makeTestPage());
+        CmsPageRenderGraph graph = CmsPageRenderGraph.getGraph(delegator, TEST_PAGE_ID);
+        assertFalse(graph.isMissing());
+        assertEquals(TEST_PAGE_ID, graph.getPage().getId());
+        assertNull(graph.getActiveVersionId());
+        assertSame(graph, CmsPageRenderGraph.getGraph(delegator, TEST_PAGE_ID));
+    }
+
+    public void testMissingPageCached() throws Exception {
+        if (!CmsPageRenderGraph.isEnabled()) {
+            return;
+        }
+        CmsPageRenderGraph graph = CmsPageRenderGraph.getGraph(delegator, TEST_PAGE_ID);
+        assertTrue(graph.isMissing());
+        assertNull(CmsPageRenderGraph.getPage(delegator, TEST_PAGE_ID));
+        assertSame(graph, CmsPageRenderGraph.getGraph(delegator, TEST_PAGE_ID));
+    }
+
+    public void testPageCreateInvalidatesMissingPage() throws Exception {
+        if (!CmsPageRenderGraph.isEnabled()) {
+            return;
+        }
+        assertTrue(CmsPageRenderGraph.getGraph(delegator, TEST_PAGE_ID).isMissing());
+        boolean beganTransaction = TransactionUtil.begin();
+        try {
+            delegator.create(makeTestPage());
+            TransactionUtil.commit(beganTransaction);
+        } catch (Exception e) {
+            TransactionUtil.rollback(beganTransaction, "Error creating the render graph test page", e);
+            throw e;
+        }
+        CmsPageRenderGraph graph = CmsPageRenderGraph.getGraph(delegator, TEST_PAGE_ID);
+        assertFalse(graph.isMissing());
+        assertEquals(TEST_PAGE_ID, graph.getPage().getId());
+    }
+
+    private GenericValue makeTestPage() {
+        return delegator.makeValue("CmsPage", "pageId", TEST_PAGE_ID, "webSiteId", "CmsRenderGraphTest", "pageName", "Render graph test page");
+    }
+
+    private void removeTestPage() throws Exception {
+        GenericValue page = delegator.findOne("CmsPage", false, "pageId", TEST_PAGE_ID);
+        if (page != null) {
+            delegator.removeValue(page);
+        }
+        CmsPageRenderGraph.remove(delegator, TEST_PAGE_ID);
+    }
+}
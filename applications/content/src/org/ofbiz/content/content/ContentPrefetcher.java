@@ -0,0 +1,376 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.content.content;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.GeneralException;
+import org.ofbiz.base.util.UtilCodec;
+import org.ofbiz.base.util.UtilValidate;
+import org.ofbiz.base.util.cache.UtilCache;
+import org.ofbiz.content.data.DataResourceWorker;
+import org.ofbiz.entity.Delegator;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.condition.EntityCondition;
+import org.ofbiz.entity.condition.EntityOperator;
+import org.ofbiz.entity.model.ModelUtil;
+import org.ofbiz.entity.util.EntityQuery;
+import org.ofbiz.service.LocalDispatcher;
+
+/**
+ * SCIPIO: Bulk-loaded Content, DataResource and ElectronicText records for rendering many contents at once,
+ * as done by the content wrapper <code>prefetch</code> methods (ProductContentWrapper, CategoryContentWrapper,
+ * PartyContentWrapper) for listings.
+ * <p>
+ * {@link #load(Collection)} reads the records of all the given contentIds with one IN query per entity, including the
+ * ALTERNATE_LOCALE associations used to select the content for the locale. {@link #renderContentAsText} then renders
+ * the common simple contents - short or electronic text data resource without template, decorator or service - from
+ * the loaded records, and delegates all the others to {@link ContentWorker#renderContentAsText}; the output is the same.
+ * <p>
+ * {@link #prefetchContentAsText} is the shared loop of the wrappers: it checks their rendered cache, reads the
+ * association records (e.g. ProductContent) of the misses through a {@link WrapperAdapter}, loads and renders them.
+ * <p>
+ * Not thread-safe; meant to be used for one batch.
+ */
+public class ContentPrefetcher {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    private final LocalDispatcher dispatcher;
+    private final Delegator delegator;
+    private final Locale locale;
+    private final String mimeTypeId;
+    private final boolean cache;
+
+    /** The content to render by requested contentId (may be an alternate locale view), or null if not found. */
+    private final Map<String, GenericValue> renderContents = new HashMap<>();
+    private final Map<String, GenericValue> dataResources = new HashMap<>();
+    private final Map<String, GenericValue> electronicTexts = new HashMap<>();
+
+    /**
+     * Constructor.
+     * @param cache whether to use the entity cache for the record lookups (the wrappers render with it off)
+     */
+    public ContentPrefetcher(LocalDispatcher dispatcher, Delegator delegator, Locale locale, String mimeTypeId, boolean cache) {
+        this.dispatcher = dispatcher;
+        this.delegator = delegator;
+        this.locale = locale;
+        this.mimeTypeId = UtilValidate.isNotEmpty(mimeTypeId) ? mimeTypeId : "text/html";
+        this.cache = cache;
+    }
+
+    public ContentPrefetcher(LocalDispatcher dispatcher, Delegator delegator, Locale locale, String mimeTypeId) {
+        this(dispatcher, delegator, locale, mimeTypeId, false);
+    }
+
+    /**
+     * Loads the records needed to render the given contents, in one query per entity.
+     */
+    public ContentPrefetcher load(Collection<String> contentIds) throws GeneralException, IOException {
+        Set<String> newContentIds = new LinkedHashSet<>();
+        for (String contentId : contentIds) {
+            if (UtilValidate.isNotEmpty(contentId) && !renderContents.containsKey(contentId)) {
+                newContentIds.add(contentId);
+            }
+        }
+        if (newContentIds.isEmpty()) {
+            return this;
+        }
+        List<GenericValue> contents = EntityQuery.use(delegator).from("Content")
+                .where(EntityCondition.makeCondition("contentId", EntityOperator.IN, newContentIds)).cache(cache).queryList();
+        List<GenericValue> localeContents = new ArrayList<>();
+        for (GenericValue content : contents) {
+            if ("WEB_SITE_PUB_PT".equals(content.get("contentTypeId")) && content.get("dataResourceId") == null) {
+                // Publish points are rare in wrapper contents; resolved the usual way
+                renderContents.put(content.getString("contentId"), ContentWorker.findContentForRendering(delegator, content, locale, null, null, null, cache));
+            } else if (locale != null && !locale.toString().equalsIgnoreCase(UtilValidate.isNotEmpty(content.getString("localeString")) ? content.getString("localeString") : "")) {
+                localeContents.add(content);
+            } else {
+                renderContents.put(content.getString("contentId"), content);
+            }
+        }
+        if (!localeContents.isEmpty()) {
+            selectLocaleContents(localeContents);
+        }
+        for (String contentId : newContentIds) {
+            renderContents.putIfAbsent(contentId, null);
+        }
+
+        Set<String> dataResourceIds = new LinkedHashSet<>();
+        for (String contentId : newContentIds) {
+            GenericValue renderContent = renderContents.get(contentId);
+            if (renderContent != null && isSimpleContent(renderContent) && !dataResources.containsKey(renderContent.getString("dataResourceId"))) {
+                dataResourceIds.add(renderContent.getString("dataResourceId"));
+            }
+        }
+        if (dataResourceIds.isEmpty()) {
+            return this;
+        }
+        List<GenericValue> dataResourceList = EntityQuery.use(delegator).from("DataResource")
+                .where(EntityCondition.makeCondition("dataResourceId", EntityOperator.IN, dataResourceIds)).cache(cache).queryList();
+        List<String> electronicTextIds = new ArrayList<>();
+        for (GenericValue dataResource : dataResourceList) {
+            dataResources.put(dataResource.getString("dataResourceId"), dataResource);
+            if ("ELECTRONIC_TEXT".equals(dataResource.getString("dataResourceTypeId"))) {
+                electronicTextIds.add(dataResource.getString("dataResourceId"));
+            }
+        }
+        if (!electronicTextIds.isEmpty()) {
+            List<GenericValue> electronicTextList = EntityQuery.use(delegator).from("ElectronicText")
+                    .where(EntityCondition.makeCondition("dataResourceId", EntityOperator.IN, electronicTextIds)).cache(cache).queryList();
+            for (GenericValue electronicText : electronicTextList) {
+                electronicTexts.put(electronicText.getString("dataResourceId"), electronicText);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Selects the alternate locale content of each of the given contents, with one query for all of their current
+     * ALTERNATE_LOCALE associations, as {@link ContentWorker#findAlternateLocaleContent} (without fallback locale).
+     */
+    private void selectLocaleContents(List<GenericValue> contents) throws GeneralException {
+        List<String> contentIds = new ArrayList<>(contents.size());
+        for (GenericValue content : contents) {
+            contentIds.add(content.getString("contentId"));
+        }
+        List<GenericValue> alternateViewList = EntityQuery.use(delegator).from("ContentAssocDataResourceViewTo")
+                .where(EntityCondition.makeCondition("contentIdStart", EntityOperator.IN, contentIds),
+                        EntityCondition.makeCondition("caContentAssocTypeId", "ALTERNATE_LOCALE"))
+                .orderBy("-caFromDate").filterByDate("caFromDate", "caThruDate").cache(cache).queryList();
+        Map<String, List<GenericValue>> alternateViews = new HashMap<>();
+        for (GenericValue alternateView : alternateViewList) {
+            alternateViews.computeIfAbsent(alternateView.getString("contentIdStart"), k -> new ArrayList<>()).add(alternateView);
+        }
+        for (GenericValue content : contents) {
+            List<GenericValue> contentAlternateViews = alternateViews.get(content.getString("contentId"));
+            GenericValue renderContent = (contentAlternateViews != null) ? ContentWorker.selectAlternateLocaleContent(content, contentAlternateViews, locale) : null;
+            renderContents.put(content.getString("contentId"), (renderContent != null) ? renderContent : content);
+        }
+    }
+
+    /**
+     * Renders the given content, as {@link ContentWorker#renderContentAsText(LocalDispatcher, Delegator, String, Appendable, Map, Locale, String, String, String, boolean)},
+     * using the loaded records if the content was passed to {@link #load(Collection)}.
+     */
+    public void renderContentAsText(String contentId, Appendable out, Map<String, Object> templateContext) throws GeneralException, IOException {
+        if (!renderContents.containsKey(contentId)) {
+            ContentWorker.renderContentAsText(dispatcher, delegator, contentId, out, templateContext, locale, mimeTypeId, null, null, cache);
+            return;
+        }
+        GenericValue content = renderContents.get(contentId);
+        if (content == null) {
+            throw new GeneralException("No content found for content ID [" + contentId + "]");
+        }
+        if (templateContext == null) {
+            templateContext = new HashMap<>();
+        }
+        GenericValue dataResource = isSimpleContent(content) ? dataResources.get(content.getString("dataResourceId")) : null;
+        if (dataResource == null || !isSimpleDataResource(dataResource) || !mimeTypeId.startsWith("text/")
+                || templateContext.get("decoratedContent") != null) {
+            ContentWorker.renderContentAsText(dispatcher, delegator, content, out, templateContext, locale, mimeTypeId, cache, null);
+            return;
+        }
+
+        // Same as ContentWorker.renderContentAsText and DataResourceWorker.renderDataResourceAsText for these
+        templateContext.put("thisContent", new ContentMapFacade(dispatcher, content, templateContext, locale, mimeTypeId, cache));
+        templateContext.put("contentId", content.getString("contentId"));
+        String text;
+        if ("ELECTRONIC_TEXT".equals(dataResource.getString("dataResourceTypeId"))) {
+            GenericValue electronicText = electronicTexts.get(dataResource.getString("dataResourceId"));
+            if (electronicText == null) {
+                return;
+            }
+            text = electronicText.getString("textData");
+        } else {
+            text = dataResource.getString("objectInfo");
+        }
+        DataResourceWorker.writeText(dataResource, text, templateContext, mimeTypeId, (locale != null) ? locale : Locale.getDefault(), out);
+    }
+
+    /**
+     * Renders the given content types of all the given entity values as the content wrapper described by the adapter
+     * would, one by one, and returns the texts by entity id and content type.
+     * <p>
+     * If useCache, the texts are first read from, and the rendered ones stored in, the wrapper's rendered cache. The
+     * association records of the remaining texts are read by {@link WrapperAdapter#findContentAssocs}, and their
+     * contents loaded with {@link #load(Collection)}. If that fails, each text is rendered individually through
+     * {@link WrapperAdapter#getContentAsText}.
+     */
+    public Map<String, Map<String, String>> prefetchContentAsText(WrapperAdapter adapter, Collection<GenericValue> values, Collection<String> contentTypeIds,
+            UtilCache<String, String> wrapperCache, boolean useCache, UtilCodec.SimpleEncoder encoder) {
+        Map<String, Map<String, String>> valueTexts = new LinkedHashMap<>();
+        if (UtilValidate.isEmpty(values) || UtilValidate.isEmpty(contentTypeIds)) {
+            return valueTexts;
+        }
+        Map<String, GenericValue> missValues = new LinkedHashMap<>();
+        for (GenericValue value : values) {
+            String id = adapter.getId(value);
+            Map<String, String> texts = valueTexts.computeIfAbsent(id, k -> new LinkedHashMap<>());
+            for (String contentTypeId : contentTypeIds) {
+                String cachedValue = useCache ? wrapperCache.get(adapter.makeCacheKey(id, contentTypeId)) : null;
+                if (cachedValue != null) {
+                    texts.put(contentTypeId, cachedValue);
+                } else {
+                    missValues.put(id, value);
+                }
+            }
+        }
+        if (missValues.isEmpty()) {
+            return valueTexts;
+        }
+
+        Map<String, GenericValue> contentAssocs;
+        try {
+            contentAssocs = adapter.findContentAssocs(missValues, contentTypeIds);
+            List<String> contentIds = new ArrayList<>(contentAssocs.size());
+            for (GenericValue contentAssoc : contentAssocs.values()) {
+                contentIds.add(contentAssoc.getString("contentId"));
+            }
+            load(contentIds);
+        } catch (GeneralException | IOException e) {
+            Debug.logError(e, "Error prefetching " + adapter.getEntityName() + " content, rendering individually", module);
+            for (GenericValue value : missValues.values()) {
+                Map<String, String> texts = valueTexts.get(adapter.getId(value));
+                for (String contentTypeId : contentTypeIds) {
+                    if (!texts.containsKey(contentTypeId)) {
+                        texts.put(contentTypeId, adapter.getContentAsText(value, contentTypeId, useCache));
+                    }
+                }
+            }
+            return valueTexts;
+        }
+
+        for (GenericValue value : missValues.values()) {
+            String id = adapter.getId(value);
+            Map<String, String> texts = valueTexts.get(id);
+            for (String contentTypeId : contentTypeIds) {
+                if (texts.containsKey(contentTypeId)) {
+                    continue;
+                }
+                GenericValue contentAssoc = contentAssocs.get(makeAssocKey(id, contentTypeId));
+                String outString;
+                try {
+                    Writer outWriter = new StringWriter();
+                    if (contentAssoc != null) {
+                        Map<String, Object> inContext = new HashMap<>();
+                        adapter.putRenderContext(inContext, value, contentAssoc);
+                        renderContentAsText(contentAssoc.getString("contentId"), outWriter, inContext);
+                    } else {
+                        adapter.writeFieldValue(value, contentTypeId, outWriter);
+                    }
+                    outString = outWriter.toString();
+                    if (UtilValidate.isEmpty(outString)) {
+                        outString = getFieldText(value, contentTypeId);
+                    }
+                    outString = encoder.sanitize(outString);
+                    if (useCache) {
+                        wrapperCache.put(adapter.makeCacheKey(id, contentTypeId), outString);
+                    }
+                } catch (GeneralException | IOException e) {
+                    Debug.logError(e, "Error rendering " + adapter.getEntityName() + " content, inserting empty String", module);
+                    outString = encoder.sanitize(getFieldText(value, contentTypeId));
+                }
+                texts.put(contentTypeId, outString);
+            }
+        }
+        return valueTexts;
+    }
+
+    /**
+     * Returns the key of the association record of an entity value and content type in the map returned by
+     * {@link WrapperAdapter#findContentAssocs}.
+     */
+    public static String makeAssocKey(String id, String contentTypeId) {
+        return id + "::" + contentTypeId;
+    }
+
+    /**
+     * Returns the entity field corresponding to the content type, or empty string, as the wrappers fall back on.
+     */
+    private static String getFieldText(GenericValue value, String contentTypeId) {
+        String candidateFieldName = ModelUtil.dbNameToVarName(contentTypeId);
+        String candidateOut = value.getModelEntity().isField(candidateFieldName) ? value.getString(candidateFieldName) : "";
+        return (candidateOut != null) ? candidateOut : "";
+    }
+
+    /**
+     * Returns true if the content renders its data resource directly (no service, decorator or template).
+     */
+    private static boolean isSimpleContent(GenericValue content) {
+        return UtilValidate.isEmpty(content.getString("serviceName")) && UtilValidate.isEmpty(content.getString("customMethodId"))
+                && UtilValidate.isEmpty(content.getString("decoratorContentId")) && UtilValidate.isEmpty(content.getString("templateDataResourceId"))
+                && UtilValidate.isNotEmpty(content.getString("dataResourceId"));
+    }
+
+    /**
+     * Returns true if the data resource is untemplated text stored in the database.
+     */
+    private static boolean isSimpleDataResource(GenericValue dataResource) {
+        String dataTemplateTypeId = dataResource.getString("dataTemplateTypeId");
+        if (UtilValidate.isNotEmpty(dataTemplateTypeId) && !"NONE".equals(dataTemplateTypeId)) {
+            return false;
+        }
+        String dataResourceTypeId = dataResource.getString("dataResourceTypeId");
+        return UtilValidate.isEmpty(dataResourceTypeId) || "SHORT_TEXT".equals(dataResourceTypeId) || "LINK".equals(dataResourceTypeId)
+                || "ELECTRONIC_TEXT".equals(dataResourceTypeId);
+    }
+
+    /**
+     * The entity-specific parts of a content wrapper, for {@link #prefetchContentAsText}.
+     */
+    public interface WrapperAdapter {
+
+        /** Returns the entity name, for logging (e.g. "Product"). */
+        String getEntityName();
+
+        /** Returns the id of the entity value (e.g. productId). */
+        String getId(GenericValue value);
+
+        /** Returns the key of the text in the wrapper's rendered cache, as the wrapper's single-text method. */
+        String makeCacheKey(String id, String contentTypeId);
+
+        /**
+         * Returns the current association record (e.g. ProductContent) to render for each of the given values (by id)
+         * and content types, by {@link ContentPrefetcher#makeAssocKey}; values without one are rendered from their fields.
+         */
+        Map<String, GenericValue> findContentAssocs(Map<String, GenericValue> values, Collection<String> contentTypeIds) throws GeneralException;
+
+        /** Puts the records the content is rendered with into the template context (e.g. product and productContent). */
+        void putRenderContext(Map<String, Object> context, GenericValue value, GenericValue contentAssoc);
+
+        /** Writes the entity field value of the content type, as the wrapper does when there is no association record. */
+        void writeFieldValue(GenericValue value, String contentTypeId, Writer out) throws GeneralException, IOException;
+
+        /** Renders a single text through the wrapper's single-text method. */
+        String getContentAsText(GenericValue value, String contentTypeId, boolean useCache);
+    }
+}
@@ -23,6 +23,7 @@ import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -139,7 +140,15 @@ public class ContentWorker implements org.ofbiz.widget.content.ContentWorkerInte
         if (content == null) {
             throw new GeneralException("No content found for content ID [" + contentId + "]");
         }
+        return findContentForRendering(delegator, content, locale, partyId, roleTypeId, useFallbackLocale, deepCache);
+    }
 
+    /**
+     * Finds best content for rendering for the given locale, from an already-looked-up Content value.
+     * <p>
+     * SCIPIO: Added for bulk rendering (see {@link ContentPrefetcher}); see the contentId overload for the parameters.
+     */
+    public static GenericValue findContentForRendering(Delegator delegator, GenericValue content, Locale locale, String partyId, String roleTypeId, Boolean useFallbackLocale, Boolean deepCache) throws GeneralException, IOException {
         // SCIPIO: TODO: REVIEW: changing this to value of cache has too large implications at current time;
         // stock behavior was to use deepCache=true always; this could have led to bad calling code in turn...
         //if (deepCache == null) deepCache = cache;
@@ -161,7 +170,7 @@ public class ContentWorker implements org.ofbiz.widget.content.ContentWorkerInte
             }
 
             if (relContent == null) {
-                throw new GeneralException("No related content found for publish point [" + contentId + "]");
+                throw new GeneralException("No related content found for publish point [" + content.getString("contentId") + "]");
             }
         }
 
@@ -467,9 +476,6 @@ public class ContentWorker implements org.ofbiz.widget.content.ContentWorkerInte
             return view;
         }
 
-        String localeStr = locale.toString();
-        boolean isTwoLetterLocale = localeStr.length() == 2;
-
         List<GenericValue> alternateViews = null;
         try {
             alternateViews = view.getRelated("ContentAssocDataResourceViewTo", UtilMisc.toMap("caContentAssocTypeId", "ALTERNATE_LOCALE"), UtilMisc.toList("-caFromDate"), cache);
@@ -479,6 +485,39 @@ public class ContentWorker implements org.ofbiz.widget.content.ContentWorkerInte
         }
 
         alternateViews = EntityUtil.filterByDate(alternateViews, UtilDateTime.nowTimestamp(), "caFromDate", "caThruDate", cache);
+        contentAssocDataResourceViewFrom = selectAlternateLocaleContent(view, alternateViews, locale);
+
+        if (contentAssocDataResourceViewFrom == null) {
+            // SCIPIO: NOTE: 2017-11-24: The fallback locale support was part of patch OFBIZ-9445 / r1800854 / https://svn.apache.org/repos/asf/ofbiz/branches/release16.11
+            // TODO: REVIEW: Unlike ofbiz 16, I am leaving fallback locale fallback usage DISABLED BY DEFAULT,
+            // because nothing else in ContentWorker ever uses the property fallback locale and possible impacts.
+            if (Boolean.TRUE.equals(useFallbackLocale)) {
+                // no content matching the given locale found.
+                Locale fallbackLocale = UtilProperties.getFallbackLocale();
+                contentAssocDataResourceViewFrom = locale.equals(fallbackLocale) ? view
+                        // only search for a content with the fallbackLocale if it is different to the given locale
+                        : findAlternateLocaleContent(delegator, view, fallbackLocale, useFallbackLocale, cache);
+            } else {
+                contentAssocDataResourceViewFrom = view;
+            }
+        }
+
+        return contentAssocDataResourceViewFrom;
+    }
+
+    /**
+     * Selects the content matching the locale among the given view and its current ALTERNATE_LOCALE views (as
+     * ContentAssocDataResourceViewTo, newest first), or returns null if none matches.
+     * <p>
+     * SCIPIO: Factored out of {@link #findAlternateLocaleContent(Delegator, GenericValue, Locale, Boolean, boolean)} so
+     * the alternate views can be read in bulk (see {@link ContentPrefetcher}).
+     */
+    public static GenericValue selectAlternateLocaleContent(GenericValue view, List<GenericValue> alternateViews, Locale locale) {
+        GenericValue contentAssocDataResourceViewFrom = null;
+        String localeStr = locale.toString();
+        boolean isTwoLetterLocale = localeStr.length() == 2;
+
+        alternateViews = (alternateViews != null) ? new ArrayList<>(alternateViews) : new ArrayList<>();
         // also check the given view for a matching locale
         // SCIPIO: NOTE: 2017-11-24: This .add was part of patch OFBIZ-9445 / r1800854 / https://svn.apache.org/repos/asf/ofbiz/branches/release16.11
         // and it fixes the original concern I had with this method - not checking the source view first's localeString - so this part is good.
@@ -521,22 +560,6 @@ public class ContentWorker implements org.ofbiz.widget.content.ContentWorkerInte
                 }
             }
         }
-
-        if (contentAssocDataResourceViewFrom == null) {
-            // SCIPIO: NOTE: 2017-11-24: The fallback locale support was part of patch OFBIZ-9445 / r1800854 / https://svn.apache.org/repos/asf/ofbiz/branches/release16.11
-            // TODO: REVIEW: Unlike ofbiz 16, I am leaving fallback locale fallback usage DISABLED BY DEFAULT,
-            // because nothing else in ContentWorker ever uses the property fallback locale and possible impacts.
-            if (Boolean.TRUE.equals(useFallbackLocale)) {
-                // no content matching the given locale found.
-                Locale fallbackLocale = UtilProperties.getFallbackLocale();
-                contentAssocDataResourceViewFrom = locale.equals(fallbackLocale) ? view
-                        // only search for a content with the fallbackLocale if it is different to the given locale
-                        : findAlternateLocaleContent(delegator, view, fallbackLocale, useFallbackLocale, cache);
-            } else {
-                contentAssocDataResourceViewFrom = view;
-            }
-        }
-
         return contentAssocDataResourceViewFrom;
     }
 
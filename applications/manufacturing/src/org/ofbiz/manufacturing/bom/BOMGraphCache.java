@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+
+package org.ofbiz.manufacturing.bom;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilValidate;
+import org.ofbiz.base.util.cache.UtilCache;
+import org.ofbiz.entity.Delegator;
+import org.ofbiz.entity.GenericEntityException;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.util.EntityQuery;
+import org.ofbiz.entity.util.EntityUtil;
+
+/**
+ * Shared, immutable cache of the bill of materials graph (SCIPIO).
+ * <p>
+ * Holds the ProductAssoc rows linking each product to its components (downward) and to the
+ * products it is a component of (upward), per product and bill of materials type. The rows are
+ * read once regardless of their validity dates and made immutable, so a single entry is shared by
+ * {@link BOMTree}/{@link BOMNode} explosions, implosions and low-level code computations for any
+ * effective date; the date filter is applied in memory on each lookup.
+ * <p>
+ * Entries are removed by the <code>clearBOMGraphCache</code> service, which is triggered by the
+ * ProductAssoc entity ECAs of this component, both when the row changes and when its transaction completes. Hit rates and memory use are visible with the other
+ * UtilCaches in the webtools cache maintenance page under <code>manufacturing.bom.components</code>
+ * and <code>manufacturing.bom.parents</code>.
+ */
+public final class BOMGraphCache {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    /** Key format: productId::productAssocTypeId::delegatorName */
+    private static final UtilCache<String, List<GenericValue>> componentCache = UtilCache.createUtilCache("manufacturing.bom.components", true);
+    /** Key format: productIdTo::productAssocTypeId::delegatorName */
+    private static final UtilCache<String, List<GenericValue>> parentCache = UtilCache.createUtilCache("manufacturing.bom.parents", true);
+
+    private BOMGraphCache() {
+    }
+
+    /**
+     * Returns the ProductAssoc rows of type bomTypeId having productId as parent (the product's components),
+     * valid at inDate and ordered by sequenceNum and productIdTo.
+     * <p>
+     * The returned list is a new list, but its values are immutable and shared.
+     */
+    public static List<GenericValue> getComponents(Delegator delegator, String productId, String bomTypeId, Date inDate) throws GenericEntityException {
+        return EntityUtil.filterByDate(getAllComponents(delegator, productId, bomTypeId), (inDate != null) ? inDate : new Date());
+    }
+
+    /**
+     * Returns the ProductAssoc rows of type bomTypeId having productId as component (the product's parents),
+     * valid at inDate and ordered by sequenceNum and productId.
+     * <p>
+     * The returned list is a new list, but its values are immutable and shared.
+     */
+    public static List<GenericValue> getParents(Delegator delegator, String productId, String bomTypeId, Date inDate) throws GenericEntityException {
+        return EntityUtil.filterByDate(getAllParents(delegator, productId, bomTypeId), (inDate != null) ? inDate : new Date());
+    }
+
+    /**
+     * Returns true if the product has at least one component of type bomTypeId valid at inDate.
+     */
+    public static boolean hasComponents(Delegator delegator, String productId, String bomTypeId, Date inDate) throws GenericEntityException {
+        return UtilValidate.isNotEmpty(getComponents(delegator, productId, bomTypeId, inDate));
+    }
+
+    /**
+     * Returns the low level code of the product, i.e. the maximum depth in which the product can be found
+     * in any bill of materials of type bomTypeId, walking the cached upward graph.
+     * <p>
+     * Depths of the ancestors visited are memoized for the duration of the call, so shared sub-assemblies
+     * are only walked once.
+     */
+    public static int getLowLevelCode(Delegator delegator, String productId, String bomTypeId, Date inDate) throws GenericEntityException {
+        return getLowLevelCode(delegator, productId, bomTypeId, (inDate != null) ? inDate : new Date(), new HashMap<String, Integer>());
+    }
+
+    private static int getLowLevelCode(Delegator delegator, String productId, String bomTypeId, Date inDate, Map<String, Integer> depthByProductId) throws GenericEntityException {
+        Integer cachedDepth = depthByProductId.get(productId);
+        if (cachedDepth != null) {
+            return cachedDepth;
+        }
+        int maxDepth = 0;
+        for (GenericValue parentAssoc : getParents(delegator, productId, bomTypeId, inDate)) {
+            int depth = getLowLevelCode(delegator, parentAssoc.getString("productId"), bomTypeId, inDate, depthByProductId) + 1;
+            if (depth > maxDepth) {
+                maxDepth = depth;
+            }
+        }
+        depthByProductId.put(productId, maxDepth);
+        return maxDepth;
+    }
+
+    private static List<GenericValue> getAllComponents(Delegator delegator, String productId, String bomTypeId) throws GenericEntityException {
+        String cacheKey = makeKey(delegator, productId, bomTypeId);
+        List<GenericValue> rows = componentCache.get(cacheKey);
+        if (rows == null) {
+            rows = makeImmutable(EntityQuery.use(delegator).from("ProductAssoc")
+                    .where("productId", productId, "productAssocTypeId", bomTypeId)
+                    .orderBy("sequenceNum", "productIdTo").queryList());
+            rows = componentCache.putIfAbsentAndGet(cacheKey, rows);
+        }
+        return rows;
+    }
+
+    private static List<GenericValue> getAllParents(Delegator delegator, String productId, String bomTypeId) throws GenericEntityException {
+        String cacheKey = makeKey(delegator, productId, bomTypeId);
+        List<GenericValue> rows = parentCache.get(cacheKey);
+        if (rows == null) {
+            rows = makeImmutable(EntityQuery.use(delegator).from("ProductAssoc")
+                    .where("productIdTo", productId, "productAssocTypeId", bomTypeId)
+                    .orderBy("sequenceNum", "productId").queryList());
+            rows = parentCache.putIfAbsentAndGet(cacheKey, rows);
+        }
+        return rows;
+    }
+
+    /**
+     * Removes the cached graph entries affected by a change to a ProductAssoc row.
+     * If any of the fields is missing (e.g. removal by condition), all the entries of the delegator are removed.
+     */
+    public static void clear(Delegator delegator, String productId, String productIdTo, String productAssocTypeId) {
+        if (UtilValidate.isEmpty(productId) || UtilValidate.isEmpty(productIdTo) || UtilValidate.isEmpty(productAssocTypeId)) {
+            String keySuffix = "::" + delegator.getDelegatorName();
+            componentCache.removeByFilter((key, value) -> key.endsWith(keySuffix));
+            parentCache.removeByFilter((key, value) -> key.endsWith(keySuffix));
+            if (Debug.verboseOn()) {
+                Debug.logVerbose("Cleared BOM graph cache for delegator " + delegator.getDelegatorName(), module);
+            }
+            return;
+        }
+        componentCache.remove(makeKey(delegator, productId, productAssocTypeId));
+        parentCache.remove(makeKey(delegator, productIdTo, productAssocTypeId));
+    }
+
+    /**
+     * Removes all the cached graph entries.
+     */
+    public static void clearAll() {
+        componentCache.clear();
+        parentCache.clear();
+    }
+
+    private static String makeKey(Delegator delegator, String productId, String bomTypeId) {
+        return productId + "::" + bomTypeId + "::" + delegator.getDelegatorName();
+    }
+
+    private static List<GenericValue> makeImmutable(List<GenericValue> rows) {
+        List<GenericValue> immutableRows = new ArrayList<>(rows.size());
+        for (GenericValue row : rows) {
+            row.setImmutable();
+            immutableRows.add(row);
+        }
+        return Collections.unmodifiableList(immutableRows);
+    }
+}
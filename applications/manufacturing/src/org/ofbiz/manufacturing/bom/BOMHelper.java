@@ -64,24 +64,8 @@ public final class BOMHelper {
      * 4.the maxDepth value is returned
      */
     public static int getMaxDepth(String productId, String bomType, Date inDate, Delegator delegator) throws GenericEntityException {
-        // If the date is null, set it to today.
-        if (inDate == null) inDate = new Date();
-        int maxDepth = 0;
-        List<GenericValue> productNodesList = EntityQuery.use(delegator).from("ProductAssoc")
-                .where("productIdTo", productId,
-                        "productAssocTypeId", bomType)
-                .cache().filterByDate(inDate).queryList();
-        int depth = 0;
-        for (GenericValue oneNode : productNodesList) {
-            depth = 0;
-            depth = getMaxDepth(oneNode.getString("productId"), bomType, inDate, delegator);
-            depth++;
-            if (depth > maxDepth) {
-                maxDepth = depth;
-            }
-        }
-
-        return maxDepth;
+        // SCIPIO: Computed on the shared BOM graph cache
+        return BOMGraphCache.getLowLevelCode(delegator, productId, bomType, inDate);
     }
 
     /** Returns the ProductAssoc generic value for a duplicate productIdKey
@@ -111,10 +95,7 @@ public final class BOMHelper {
             productIdKeys = tree.getAllProductsId();
             productIdKeys.add(productIdKey);
         }
-        List<GenericValue> productNodesList = EntityQuery.use(delegator).from("ProductAssoc")
-                .where("productIdTo", productId,
-                        "productAssocTypeId", bomType)
-                .cache().filterByDate(inDate).queryList();
+        List<GenericValue> productNodesList = BOMGraphCache.getParents(delegator, productId, bomType, inDate); // SCIPIO: shared BOM graph cache
         GenericValue duplicatedNode = null;
         for (GenericValue oneNode : productNodesList) {
             for (int i = 0; i < productIdKeys.size(); i++) {
@@ -96,19 +96,12 @@ public class BOMNode {
         // If the date is null, set it to today.
         if (inDate == null) inDate = new Date();
         bomTypeId = partBomTypeId;
-        List<GenericValue> rows = EntityQuery.use(delegator).from("ProductAssoc")
-                .where("productId", product.get("productId"),
-                        "productAssocTypeId", partBomTypeId)
-                .orderBy("sequenceNum", "productIdTo")
-                .filterByDate(inDate).queryList();
+        // SCIPIO: Components are read from the shared BOM graph cache
+        List<GenericValue> rows = BOMGraphCache.getComponents(delegator, product.getString("productId"), partBomTypeId, inDate);
         if ((UtilValidate.isEmpty(rows)) && substitutedNode != null) {
             // If no child is found and this is a substituted node
             // we try to search for substituted node's children.
-            rows = EntityQuery.use(delegator).from("ProductAssoc")
-                    .where("productId", substitutedNode.getProduct().get("productId"),
-                            "productAssocTypeId", partBomTypeId)
-                    .orderBy("sequenceNum")
-                    .filterByDate(inDate).queryList();
+            rows = BOMGraphCache.getComponents(delegator, substitutedNode.getProduct().getString("productId"), partBomTypeId, inDate);
         }
         children = new LinkedList<GenericValue>();
         children.addAll(rows);
@@ -327,19 +320,12 @@ public class BOMNode {
         if (inDate == null) inDate = new Date();
 
         bomTypeId = partBomTypeId;
-        List<GenericValue> rows = EntityQuery.use(delegator).from("ProductAssoc")
-                .where("productIdTo", product.get("productId"),
-                        "productAssocTypeId", partBomTypeId)
-                .orderBy("sequenceNum")
-                .filterByDate(inDate).queryList();
+        // SCIPIO: Parents are read from the shared BOM graph cache
+        List<GenericValue> rows = BOMGraphCache.getParents(delegator, product.getString("productId"), partBomTypeId, inDate);
         if ((UtilValidate.isEmpty(rows)) && substitutedNode != null) {
             // If no parent is found and this is a substituted node
             // we try to search for substituted node's parents.
-            rows = EntityQuery.use(delegator).from("ProductAssoc")
-                    .where("productIdTo", substitutedNode.getProduct().get("productId"),
-                            "productAssocTypeId", partBomTypeId)
-                    .orderBy("sequenceNum")
-                    .filterByDate(inDate).queryList();
+            rows = BOMGraphCache.getParents(delegator, substitutedNode.getProduct().getString("productId"), partBomTypeId, inDate);
         }
         children = new LinkedList<GenericValue>();
         children.addAll(rows);
@@ -30,6 +30,8 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
+import javax.transaction.Synchronization;
+
 import org.ofbiz.base.util.Debug;
 import org.ofbiz.base.util.UtilGenerics;
 import org.ofbiz.base.util.UtilMisc;
@@ -38,6 +40,8 @@ import org.ofbiz.base.util.UtilValidate;
 import org.ofbiz.entity.Delegator;
 import org.ofbiz.entity.GenericEntityException;
 import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.transaction.GenericTransactionException;
+import org.ofbiz.entity.transaction.TransactionUtil;
 import org.ofbiz.entity.util.EntityQuery;
 import org.ofbiz.order.order.OrderReadHelper;
 import org.ofbiz.service.DispatchContext;
@@ -112,6 +116,38 @@ public class BOMServices {
         return result;
     }
 
+    /** Removes the entries affected by a ProductAssoc change from the shared BOM graph cache (SCIPIO).
+     * Triggered by the ProductAssoc entity ECAs, which run before the change is committed: the entries are removed
+     * right away and again when the current transaction completes, so that a graph read by another thread in the
+     * meantime (or a rolled back change read in this transaction) does not stay in the cache.
+     * @param dctx the dispatch context
+     * @param context the context
+     * @return returns the result of the service execution
+     */
+    public static Map<String, Object> clearBOMGraphCache(DispatchContext dctx, Map<String, ? extends Object> context) {
+        final Delegator delegator = dctx.getDelegator();
+        final String productId = (String) context.get("productId");
+        final String productIdTo = (String) context.get("productIdTo");
+        final String productAssocTypeId = (String) context.get("productAssocTypeId");
+        BOMGraphCache.clear(delegator, productId, productIdTo, productAssocTypeId);
+        try {
+            if (TransactionUtil.isTransactionInPlace()) {
+                TransactionUtil.registerSynchronization(new Synchronization() {
+                    @Override
+                    public void beforeCompletion() {
+                    }
+                    @Override
+                    public void afterCompletion(int status) {
+                        BOMGraphCache.clear(delegator, productId, productIdTo, productAssocTypeId);
+                    }
+                });
+            }
+        } catch (GenericTransactionException e) {
+            Debug.logWarning(e, "Unable to register BOM graph cache clear with the current transaction", module);
+        }
+        return ServiceUtil.returnSuccess();
+    }
+
     /** Updates the product's low level code (llc)
      * Given a product id, computes and updates the product's low level code (field billOfMaterialLevel in Product entity).
      * It also updates the llc of all the product's descendants.
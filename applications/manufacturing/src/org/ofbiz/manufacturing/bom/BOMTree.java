@@ -171,9 +171,7 @@ public class BOMTree {
     }
 
     private boolean hasBom(GenericValue product, Date inDate) throws GenericEntityException {
-        List<GenericValue> children = product.getRelated("MainProductAssoc", UtilMisc.toMap("productAssocTypeId", bomTypeId), null, false);
-        children = EntityUtil.filterByDate(children, inDate);
-        return UtilValidate.isNotEmpty(children);
+        return BOMGraphCache.hasComponents(delegator, product.getString("productId"), bomTypeId, inDate); // SCIPIO: shared BOM graph cache
     }
 
     /** It tells if the current (in-memory) tree representing
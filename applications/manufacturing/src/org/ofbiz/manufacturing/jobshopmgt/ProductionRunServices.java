@@ -49,6 +49,7 @@ import org.ofbiz.entity.condition.EntityOperator;
 import org.ofbiz.entity.util.EntityQuery;
 import org.ofbiz.entity.util.EntityTypeUtil;
 import org.ofbiz.entity.util.EntityUtil;
+import org.ofbiz.manufacturing.bom.BOMGraphCache;
 import org.ofbiz.manufacturing.bom.BOMNode;
 import org.ofbiz.manufacturing.bom.BOMTree;
 import org.ofbiz.manufacturing.techdata.TechDataServices;
@@ -2645,10 +2646,7 @@ public class ProductionRunServices {
                 // check if a bom exists
                 List<GenericValue> bomList = null;
                 try {
-                    bomList = EntityQuery.use(delegator).from("ProductAssoc")
-                            .where("productId", componentProductId,
-                                    "productAssocTypeId", "MANUF_COMPONENT")
-                            .filterByDate().queryList();
+                    bomList = BOMGraphCache.getComponents(delegator, componentProductId, "MANUF_COMPONENT", null); // SCIPIO: shared BOM graph cache
                 } catch (GenericEntityException e) {
                     return ServiceUtil.returnError(UtilProperties.getMessage(resource, "ManufacturingProductionRunTryToGetBomListError", locale));
                 }
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.manufacturing.test;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+
+import org.ofbiz.base.util.UtilDateTime;
+import org.ofbiz.base.util.UtilMisc;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.transaction.TransactionUtil;
+import org.ofbiz.manufacturing.bom.BOMGraphCache;
+import org.ofbiz.service.testtools.OFBizTestCase;
+
+/**
+ * BOMGraphCacheTests (SCIPIO): tests that the shared BOM graph cache (BOMGraphCache) follows the ProductAssoc
+ * changes once their transaction completes, whether it commits or rolls back.
+ */
+public class BOMGraphCacheTests extends OFBizTestCase {
+
+    private static final String PARENT_ID = "BOMCTEST_PARENT";
+    private static final String COMPONENT_ID = "BOMCTEST_COMP";
+    private static final String BOM_TYPE_ID = "MANUF_COMPONENT";
+
+    protected Timestamp fromDate = null;
+
+    public BOMGraphCacheTests(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        delegator.createOrStore(delegator.makeValue("Product", "productId", PARENT_ID, "productTypeId", "FINISHED_GOOD", "internalName", "BOM cache test parent"));
+        delegator.createOrStore(delegator.makeValue("Product", "productId", COMPONENT_ID, "productTypeId", "RAW_MATERIAL", "internalName", "BOM cache test component"));
+        fromDate = UtilDateTime.adjustTimestamp(UtilDateTime.nowTimestamp(), Calendar.DATE, -1);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        GenericValue assoc = findAssoc();
+        if (assoc != null) {
+            delegator.removeValue(assoc);
+        }
+    }
+
+    public void testCreateVisibleAfterCommit() throws Exception {
+        assertEquals(Collections.<String>emptyList(), getComponentIds());
+        boolean beganTransaction = TransactionUtil.begin();
+        try {
+            delegator.create(makeAssoc());
+            assertEquals(UtilMisc.toList(COMPONENT_ID), getComponentIds());
+            TransactionUtil.commit(beganTransaction);
+        } catch (Exception e) {
+            TransactionUtil.rollback(beganTransaction, "Error creating the BOM cache test association", e);
+            throw e;
+        }
+        assertEquals(UtilMisc.toList(COMPONENT_ID), getComponentIds());
+        assertEquals(1, BOMGraphCache.getParents(delegator, COMPONENT_ID, BOM_TYPE_ID, null).size());
+    }
+
+    public void testRemoveVisibleAfterCommit() throws Exception {
+        delegator.create(makeAssoc());
+        assertEquals(UtilMisc.toList(COMPONENT_ID), getComponentIds());
+        boolean beganTransaction = TransactionUtil.begin();
+        try {
+            delegator.removeValue(findAssoc());
+            assertEquals(Collections.<String>emptyList(), getComponentIds());
+            TransactionUtil.commit(beganTransaction);
+        } catch (Exception e) {
+            TransactionUtil.rollback(beganTransaction, "Error removing the BOM cache test association", e);
+            throw e;
+        }
+        assertEquals(Collections.<String>emptyList(), getComponentIds());
+        assertEquals(0, BOMGraphCache.getParents(delegator, COMPONENT_ID, BOM_TYPE_ID, null).size());
+    }
+
+    public void testRollbackNotCached() throws Exception {
+        boolean beganTransaction = TransactionUtil.begin();
+        try {
+            delegator.create(makeAssoc());
+            // Read (and cache) the uncommitted row, as a caller in the same transaction would
+            assertEquals(UtilMisc.toList(COMPONENT_ID), getComponentIds());
+        } finally {
+            TransactionUtil.rollback(beganTransaction, "Rolling back the BOM cache test association", null);
+        }
+        assertNull(findAssoc());
+        assertEquals(Collections.<String>emptyList(), getComponentIds());
+    }
+
+    private GenericValue makeAssoc() {
+        return delegator.makeValue("ProductAssoc", "productId", PARENT_ID, "productIdTo", COMPONENT_ID,
+                "productAssocTypeId", BOM_TYPE_ID, "fromDate", fromDate, "quantity", BigDecimal.ONE);
+    }
+
+    private GenericValue findAssoc() throws Exception {
+        return delegator.findOne("ProductAssoc", false, "productId", PARENT_ID, "productIdTo", COMPONENT_ID,
+                "productAssocTypeId", BOM_TYPE_ID, "fromDate", fromDate);
+    }
+
+    private List<String> getComponentIds() throws Exception {
+        List<String> componentIds = new ArrayList<>();
+        for (GenericValue assoc : BOMGraphCache.getComponents(delegator, PARENT_ID, BOM_TYPE_ID, null)) {
+            componentIds.add(assoc.getString("productIdTo"));
+        }
+        return componentIds;
+    }
+}
@@ -28,7 +28,9 @@ import org.ofbiz.entity.condition.*;
 import org.ofbiz.entity.util.*;
 import org.ofbiz.service.*;
 import org.ofbiz.product.catalog.*;
+import org.ofbiz.content.content.CommonContentWrapper;
 import org.ofbiz.product.category.CategoryContentWrapper;
+import org.ofbiz.product.product.ProductContentWrapper;
 import org.ofbiz.product.store.ProductStoreWorker;
 
 productCategoryId = request.getAttribute("productCategoryId");
@@ -80,6 +82,19 @@ context.lowIndex = catResult.lowIndex;
 context.highIndex = catResult.highIndex;
 context.listSize = catResult.listSize;
 
+// SCIPIO: Render the names, descriptions and small images of the page's products in a few queries, so the product
+// summaries' ProductContentWrapper.get calls ("raw" and "url" encoders) are wrapper cache hits
+if (productCategoryMembers) {
+    pageProducts = from("Product").where(EntityCondition.makeCondition("productId", EntityOperator.IN,
+            productCategoryMembers.collect { it.productId })).cache(true).queryList();
+    contentLocale = UtilHttp.getLocale(request);
+    contentMimeTypeId = CommonContentWrapper.getDefaultMimeTypeId(delegator);
+    ProductContentWrapper.prefetchProductContentAsText(pageProducts, ["PRODUCT_NAME", "DESCRIPTION"], contentLocale, contentMimeTypeId,
+            delegator, dispatcher, true, "raw");
+    ProductContentWrapper.prefetchProductContentAsText(pageProducts, ["SMALL_IMAGE_URL"], contentLocale, contentMimeTypeId,
+            delegator, dispatcher, true, "url");
+}
+
 // set this as a last viewed
 // DEJ20070220: WHY is this done this way? why not use the existing CategoryWorker stuff?
 LAST_VIEWED_TO_KEEP = 10; // modify this to change the number of last viewed to keep
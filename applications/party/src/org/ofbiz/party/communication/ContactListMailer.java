@@ -0,0 +1,511 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.party.communication;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.ofbiz.base.concurrent.ExecutionPool;
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilDateTime;
+import org.ofbiz.base.util.UtilMisc;
+import org.ofbiz.base.util.UtilProperties;
+import org.ofbiz.base.util.UtilValidate;
+import org.ofbiz.entity.Delegator;
+import org.ofbiz.entity.GenericEntityException;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.condition.EntityCondition;
+import org.ofbiz.entity.condition.EntityOperator;
+import org.ofbiz.entity.transaction.TransactionUtil;
+import org.ofbiz.entity.util.EntityListIterator;
+import org.ofbiz.entity.util.EntityQuery;
+import org.ofbiz.entity.util.EntityUtil;
+import org.ofbiz.entity.util.EntityUtilProperties;
+import org.ofbiz.service.DispatchContext;
+import org.ofbiz.service.GenericServiceException;
+import org.ofbiz.service.LocalDispatcher;
+import org.ofbiz.service.ServiceUtil;
+
+/**
+ * Bulk sender of the sendEmailToContactList service (SCIPIO).
+ * <p>
+ * The contact list members are read with a list iterator and handled in batches of <code>mail.bulk.batchSize</code>:
+ * the ContactListCommStatus records of a batch are read with one query and the missing ones created together as
+ * COM_IN_PROGRESS (committed before sending, so an aborted mailing resumes where it stopped), then the emails are sent
+ * by <code>mail.bulk.concurrency</code> threads, at most <code>mail.bulk.rateLimit</code> per second, through sendMail or
+ * sendMailFromScreen, which reuse the pooled SMTP connections. The send results are recorded in batches too, each
+ * in its own transaction.
+ * <p>
+ * What is the same for all the recipients (communication event, sender, subject, web site and email template setting)
+ * is looked up once. A failed send is logged and the mailing goes on; address errors mark the member as invalid.
+ */
+class ContactListMailer {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+    private static final String resource = CommunicationEventServices.resource;
+
+    private final Delegator delegator;
+    private final LocalDispatcher dispatcher;
+    private final GenericValue userLogin;
+    private final String contactListId;
+    private final String communicationEventId;
+    private final int concurrency;
+    private final int batchSize;
+    private final long sendIntervalNanos;
+    private long nextSendTime = 0;
+
+    private final Map<String, Object> sendMailParams = new HashMap<>();
+    private final List<Object> errorMessages = new LinkedList<>();
+    private final Set<String> sentContactMechIds = new HashSet<>();
+    private final String errorCallingUpdateContactListPartyService;
+    private final String errorCallingSendMailService;
+    private final String errorInSendEmailToContactListService;
+    private final String skippingInvalidEmailAddress;
+
+    private GenericValue communicationEvent;
+    private GenericValue contactList;
+    private GenericValue productStoreEmailSetting;
+    private String webSiteId;
+
+    ContactListMailer(DispatchContext dctx, Map<String, ? extends Object> context) {
+        this.delegator = dctx.getDelegator();
+        this.dispatcher = dctx.getDispatcher();
+        this.userLogin = (GenericValue) context.get("userLogin");
+        this.contactListId = (String) context.get("contactListId");
+        this.communicationEventId = (String) context.get("communicationEventId");
+
+        Integer concurrency = (Integer) context.get("concurrency");
+        if (concurrency == null) {
+            concurrency = EntityUtilProperties.getPropertyAsInteger("general", "mail.bulk.concurrency", 4, delegator);
+        }
+        this.concurrency = Math.max(1, concurrency);
+        this.batchSize = Math.max(1, EntityUtilProperties.getPropertyAsInteger("general", "mail.bulk.batchSize", 100, delegator));
+        Double rateLimit = (Double) context.get("rateLimit");
+        if (rateLimit == null) {
+            rateLimit = EntityUtilProperties.getPropertyAsDouble("general", "mail.bulk.rateLimit", 0.0, delegator);
+        }
+        this.sendIntervalNanos = (rateLimit > 0) ? (long) (TimeUnit.SECONDS.toNanos(1) / rateLimit) : 0;
+
+        // Optional named mail server; its settings and credentials are read from general.properties by sendMail
+        if (UtilValidate.isNotEmpty((String) context.get("smtpServer"))) {
+            sendMailParams.put("smtpServer", context.get("smtpServer"));
+        }
+
+        Locale locale = (Locale) context.get("locale");
+        this.errorCallingUpdateContactListPartyService = UtilProperties.getMessage(resource, "commeventservices.errorCallingUpdateContactListPartyService", locale);
+        this.errorCallingSendMailService = UtilProperties.getMessage(resource, "commeventservices.errorCallingSendMailService", locale);
+        this.errorInSendEmailToContactListService = UtilProperties.getMessage(resource, "commeventservices.errorInSendEmailToContactListService", locale);
+        this.skippingInvalidEmailAddress = UtilProperties.getMessage(resource, "commeventservices.skippingInvalidEmailAddress", locale);
+    }
+
+    Map<String, Object> run() {
+        // Any exceptions thrown in this block will cause the service to return error
+        ExecutorService executor = null;
+        try {
+            communicationEvent = EntityQuery.use(delegator).from("CommunicationEvent").where("communicationEventId", communicationEventId).queryOne();
+            contactList = EntityQuery.use(delegator).from("ContactList").where("contactListId", contactListId).queryOne();
+
+            sendMailParams.put("sendFrom", communicationEvent.getRelatedOne("FromContactMech", false).getString("infoString"));
+            sendMailParams.put("subject", communicationEvent.getString("subject"));
+            sendMailParams.put("contentType", communicationEvent.getString("contentMimeTypeId"));
+            sendMailParams.put("userLogin", userLogin);
+
+            // The email template of the store of the verify web site, if any
+            GenericValue webSite = EntityQuery.use(delegator).from("WebSite").where("webSiteId", contactList.getString("verifyEmailWebSiteId")).queryOne();
+            if (webSite != null) {
+                GenericValue productStore = webSite.getRelatedOne("ProductStore", false);
+                if (productStore != null) {
+                    productStoreEmailSetting = EntityUtil.getFirst(productStore.getRelated("ProductStoreEmailSetting",
+                            UtilMisc.toMap("emailType", "CONT_EMAIL_TEMPLATE"), null, false));
+                    webSiteId = webSite.getString("webSiteId");
+                }
+            }
+
+            // Find a list of distinct email addresses from active, ACCEPTED parties in the contact list
+            //      using a list iterator (because there can be a large number)
+            List<EntityCondition> conditionList = UtilMisc.toList(
+                        EntityCondition.makeCondition("contactListId", EntityOperator.EQUALS, contactList.get("contactListId")),
+                        EntityCondition.makeCondition("statusId", EntityOperator.EQUALS, "CLPT_ACCEPTED"),
+                        EntityCondition.makeCondition("preferredContactMechId", EntityOperator.NOT_EQUAL, null),
+                        EntityUtil.getFilterByDateExpr(), EntityUtil.getFilterByDateExpr("contactFromDate", "contactThruDate"));
+
+            EntityQuery eq = EntityQuery.use(delegator).select("partyId", "preferredContactMechId", "fromDate", "infoString")
+                    .from("ContactListPartyAndContactMech")
+                    .where(EntityCondition.makeCondition(conditionList, EntityOperator.AND))
+                    .cursorScrollInsensitive()
+                    .distinct();
+
+            executor = ExecutionPool.getScheduledExecutor(null, "Scipio-contactListMailer", concurrency, 5, false);
+            CompletionService<SendResult> completionService = new ExecutorCompletionService<>(executor);
+            List<SendResult> results = new ArrayList<>(batchSize);
+            int inFlight = 0;
+
+            try (EntityListIterator eli = eq.queryIterator()) {
+                List<Recipient> recipients = new ArrayList<>(batchSize);
+                boolean more = true;
+                while (more) {
+                    GenericValue contactListPartyAndContactMech = eli.next();
+                    if (contactListPartyAndContactMech != null) {
+                        Recipient recipient = makeRecipient(contactListPartyAndContactMech, conditionList);
+                        if (recipient != null) {
+                            recipients.add(recipient);
+                        }
+                        if (recipients.size() < batchSize) {
+                            continue;
+                        }
+                    } else {
+                        more = false;
+                    }
+                    for (Recipient recipient : prepareRecipients(recipients)) {
+                        // Bound the pending sends, recording the results of the finished ones meanwhile
+                        while (inFlight >= concurrency * 2) {
+                            results.add(getResult(completionService.take()));
+                            inFlight--;
+                        }
+                        completionService.submit(() -> send(recipient));
+                        inFlight++;
+                        for (Future<SendResult> done; (done = completionService.poll()) != null; inFlight--) {
+                            results.add(getResult(done));
+                        }
+                        if (results.size() >= batchSize) {
+                            storeResults(results);
+                            results.clear();
+                        }
+                    }
+                    recipients.clear();
+                }
+            }
+            for (; inFlight > 0; inFlight--) {
+                results.add(getResult(completionService.take()));
+            }
+            storeResults(results);
+        } catch (GenericEntityException fatalGEE) {
+            return ServiceUtil.returnError(fatalGEE.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ServiceUtil.returnError(e.toString());
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+
+        return errorMessages.size() == 0 ? ServiceUtil.returnSuccess() : ServiceUtil.returnError(errorMessages);
+    }
+
+    /**
+     * Validates the email address of the contact list member and finds its most recent party, or returns null to skip it.
+     */
+    private Recipient makeRecipient(GenericValue contactListPartyAndContactMech, List<EntityCondition> conditionList) throws GenericEntityException {
+        if (Debug.verboseOn()) {
+            Debug.logVerbose("Contact info: " + contactListPartyAndContactMech, module);
+        }
+        String emailAddress = contactListPartyAndContactMech.getString("infoString");
+        if (UtilValidate.isEmpty(emailAddress)) {
+            return null;
+        }
+        emailAddress = emailAddress.trim();
+        if (!UtilValidate.isEmail(emailAddress)) {
+            // If validation fails, just log and skip the email address
+            Debug.logError(skippingInvalidEmailAddress + ": " + emailAddress, module);
+            errorMessages.add(skippingInvalidEmailAddress + ": " + emailAddress);
+            return null;
+        }
+
+        // Because we're retrieving infoString only above (so as not to pollute the distinctness), we
+        //      need to retrieve the partyId it's related to. Since this could be multiple parties, get
+        //      only the most recent valid one via ContactListPartyAndContactMech.
+        List<EntityCondition> clpConditionList = UtilMisc.makeListWritable(conditionList);
+        clpConditionList.add(EntityCondition.makeCondition("infoString", EntityOperator.EQUALS, emailAddress));
+        GenericValue lastContactListPartyACM = EntityQuery.use(delegator).from("ContactListPartyAndContactMech")
+                .where(EntityCondition.makeCondition(clpConditionList, EntityOperator.AND))
+                .orderBy("-fromDate")
+                .cache(true)
+                .queryFirst();
+        if (lastContactListPartyACM == null) {
+            return null;
+        }
+        return new Recipient(contactListPartyAndContactMech, lastContactListPartyACM, emailAddress);
+    }
+
+    /**
+     * Reads the ContactListCommStatus and ContactListPartyStatus records of the recipients with one query each, creates
+     * the missing ContactListCommStatus records and returns the recipients that still have to be sent to.
+     */
+    private List<Recipient> prepareRecipients(List<Recipient> recipients) throws GenericEntityException {
+        if (recipients.isEmpty()) {
+            return recipients;
+        }
+        Set<String> contactMechIds = new HashSet<>();
+        Set<String> partyIds = new HashSet<>();
+        for (Recipient recipient : recipients) {
+            contactMechIds.add(recipient.getContactMechId());
+            partyIds.add(recipient.member.getString("partyId"));
+        }
+        return TransactionUtil.doTransaction(() -> {
+            Map<String, GenericValue> commStatusRecords = new HashMap<>();
+            for (GenericValue commStatusRecord : EntityQuery.use(delegator).from("ContactListCommStatus")
+                    .where(EntityCondition.makeCondition("contactListId", contactListId),
+                            EntityCondition.makeCondition("communicationEventId", communicationEventId),
+                            EntityCondition.makeCondition("contactMechId", EntityOperator.IN, contactMechIds))
+                    .queryList()) {
+                commStatusRecords.put(commStatusRecord.getString("contactMechId"), commStatusRecord);
+            }
+            Map<String, GenericValue> partyStatusRecords = new HashMap<>();
+            for (GenericValue partyStatusRecord : EntityQuery.use(delegator).from("ContactListPartyStatus")
+                    .where(EntityCondition.makeCondition("contactListId", contactListId),
+                            EntityCondition.makeCondition("statusId", "CLPT_ACCEPTED"),
+                            EntityCondition.makeCondition("partyId", EntityOperator.IN, partyIds))
+                    .queryList()) {
+                partyStatusRecords.putIfAbsent(partyStatusRecord.getString("partyId") + "::" + partyStatusRecord.getTimestamp("fromDate"), partyStatusRecord);
+            }
+
+            List<Recipient> sendRecipients = new ArrayList<>(recipients.size());
+            List<GenericValue> newCommStatusRecords = new ArrayList<>();
+            for (Recipient recipient : recipients) {
+                String contactMechId = recipient.getContactMechId();
+                GenericValue commStatusRecord = commStatusRecords.get(contactMechId);
+                if (commStatusRecord == null) {
+                    // No attempt has been made previously to send to this address, so create a record to reflect
+                    //  the beginning of the current attempt
+                    commStatusRecord = delegator.makeValue("ContactListCommStatus", UtilMisc.toMap("contactListId", contactListId,
+                            "communicationEventId", communicationEventId, "contactMechId", contactMechId,
+                            "statusId", "COM_IN_PROGRESS", "partyId", recipient.getPartyId()));
+                    newCommStatusRecords.add(commStatusRecord);
+                    commStatusRecords.put(contactMechId, commStatusRecord);
+                } else if ("COM_COMPLETE".equals(commStatusRecord.getString("statusId"))) {
+                    // There was a successful earlier attempt, so skip this address
+                    continue;
+                }
+                if (!sentContactMechIds.add(contactMechId)) {
+                    // Same address for another member row already sent in this run
+                    continue;
+                }
+                recipient.commStatusRecord = commStatusRecord;
+                recipient.contactListPartyStatus = partyStatusRecords.get(recipient.member.getString("partyId") + "::" + recipient.member.getTimestamp("fromDate"));
+                sendRecipients.add(recipient);
+            }
+            delegator.storeAll(newCommStatusRecords);
+            return sendRecipients;
+        }, "Error preparing contact list [" + contactListId + "] recipients", 0, true);
+    }
+
+    /**
+     * Sends the email to the recipient; runs in the executor threads.
+     */
+    private SendResult send(Recipient recipient) throws InterruptedException {
+        waitForRateLimit();
+        Debug.logInfo("Sending email to contact list [" + contactListId + "] party [" + recipient.getPartyId() + "] : " + recipient.emailAddress, module);
+        Map<String, Object> params = new HashMap<>(sendMailParams);
+        params.put("sendTo", recipient.emailAddress);
+        params.put("partyId", recipient.getPartyId());
+        Map<String, Object> result = null;
+        try {
+            if (recipient.contactListPartyStatus != null && productStoreEmailSetting != null) {
+                // prepare body parameters
+                Map<String, Object> bodyParameters = new HashMap<>();
+                bodyParameters.put("contactListId", contactListId);
+                bodyParameters.put("partyId", recipient.member.getString("partyId"));
+                bodyParameters.put("preferredContactMechId", recipient.member.getString("preferredContactMechId"));
+                bodyParameters.put("emailAddress", recipient.emailAddress);
+                bodyParameters.put("fromDate", recipient.member.getTimestamp("fromDate"));
+                bodyParameters.put("optInVerifyCode", recipient.contactListPartyStatus.getString("optInVerifyCode"));
+                bodyParameters.put("content", communicationEvent.getString("content"));
+
+                // send e-mail using screen template
+                params.put("bodyScreenUri", productStoreEmailSetting.getString("bodyScreenLocation"));
+                params.put("sendAs", productStoreEmailSetting.getString("sendAs"));
+                params.put("bodyParameters", bodyParameters);
+                params.put("webSiteId", webSiteId);
+                result = dispatcher.runSync("sendMailFromScreen", params, 360, true);
+            }
+            // If the e-mail does not be sent then send normal e-mail
+            if (UtilValidate.isEmpty(result)) {
+                params.put("body", communicationEvent.getString("content"));
+                result = dispatcher.runSync("sendMail", params, 360, true);
+            }
+        } catch (GenericServiceException e) {
+            Debug.logError(e, errorInSendEmailToContactListService, module);
+            result = ServiceUtil.returnError(errorInSendEmailToContactListService + ": " + e.getMessage());
+        }
+        return new SendResult(recipient, result);
+    }
+
+    private void waitForRateLimit() throws InterruptedException {
+        if (sendIntervalNanos <= 0) {
+            return;
+        }
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (nextSendTime > now) {
+                TimeUnit.NANOSECONDS.sleep(nextSendTime - now);
+                now = nextSendTime;
+            }
+            nextSendTime = now + sendIntervalNanos;
+        }
+    }
+
+    private SendResult getResult(Future<SendResult> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            // Not expected; send catches the service errors
+            Debug.logError(e.getCause(), errorInSendEmailToContactListService, module);
+            errorMessages.add(errorInSendEmailToContactListService + ": " + e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * Records the results of the finished sends in one transaction: COM_COMPLETE and the message ID for the sent
+     * emails, with their communication events linked to the list and parent event, and COM_BOUNCED for address errors.
+     */
+    private void storeResults(List<SendResult> results) {
+        if (results.isEmpty()) {
+            return;
+        }
+        List<SendResult> sentResults = new ArrayList<>(results.size());
+        List<GenericValue> toStore = new ArrayList<>(results.size() * 2);
+        for (SendResult result : results) {
+            if (result == null) {
+                continue;
+            }
+            if (ServiceUtil.isError(result.serviceResult)) {
+                String errorMessage = ServiceUtil.getErrorMessage(result.serviceResult);
+                if (errorMessage.startsWith("[ADDRERR]")) {
+                    // address error; mark the communication event as BOUNCED and deactivate from the contact list
+                    result.recipient.commStatusRecord.set("statusId", "COM_BOUNCED");
+                    toStore.add(result.recipient.commStatusRecord);
+                    try {
+                        GenericValue contactListParty = result.recipient.member.getRelatedOne("ContactListParty", false);
+                        if (contactListParty != null) {
+                            contactListParty.set("statusId", "CLPT_INVALID");
+                            toStore.add(contactListParty);
+                        }
+                    } catch (GenericEntityException e) {
+                        Debug.logError(e, module);
+                        errorMessages.add(e.getMessage());
+                    }
+                    continue;
+                }
+                // If the send attempt fails, just log and skip the email address
+                Debug.logError(errorCallingSendMailService + ": " + errorMessage, module);
+                errorMessages.add(errorCallingSendMailService + ": " + errorMessage);
+                continue;
+            }
+            if ("Y".equals(contactList.get("singleUse"))) {
+                // Expire the ContactListParty if the list is single use and sendEmail finishes successfully
+                GenericValue lastContactListPartyACM = result.recipient.lastContactListPartyACM;
+                try {
+                    Map<String, Object> expireResult = dispatcher.runSync("updateContactListParty", UtilMisc.toMap("contactListId", lastContactListPartyACM.get("contactListId"),
+                            "partyId", result.recipient.getPartyId(), "fromDate", lastContactListPartyACM.get("fromDate"),
+                            "thruDate", UtilDateTime.nowTimestamp(), "userLogin", userLogin));
+                    if (ServiceUtil.isError(expireResult)) {
+                        // If the expiry fails, just log and skip the email address
+                        Debug.logError(errorCallingUpdateContactListPartyService + ": " + ServiceUtil.getErrorMessage(expireResult), module);
+                        errorMessages.add(errorCallingUpdateContactListPartyService + ": " + ServiceUtil.getErrorMessage(expireResult));
+                        continue;
+                    }
+                } catch (GenericServiceException e) {
+                    Debug.logError(e, errorInSendEmailToContactListService, module);
+                    errorMessages.add(errorInSendEmailToContactListService + ": " + e.getMessage());
+                    continue;
+                }
+            }
+            sentResults.add(result);
+        }
+        try {
+            TransactionUtil.doTransaction(() -> {
+                // attach the parent communication event to the new events created when sending the mails
+                Set<String> commEventIds = new HashSet<>();
+                for (SendResult result : sentResults) {
+                    String thisCommEventId = (String) result.serviceResult.get("communicationEventId");
+                    if (thisCommEventId != null) {
+                        commEventIds.add(thisCommEventId);
+                    }
+                }
+                if (!commEventIds.isEmpty()) {
+                    for (GenericValue thisCommEvent : EntityQuery.use(delegator).from("CommunicationEvent")
+                            .where(EntityCondition.makeCondition("communicationEventId", EntityOperator.IN, commEventIds)).queryList()) {
+                        thisCommEvent.set("contactListId", contactListId);
+                        thisCommEvent.set("parentCommEventId", communicationEventId);
+                        toStore.add(thisCommEvent);
+                    }
+                }
+                // All is successful, so update the ContactListCommStatus records
+                for (SendResult result : sentResults) {
+                    GenericValue commStatusRecord = result.recipient.commStatusRecord;
+                    commStatusRecord.set("messageId", result.serviceResult.get("messageId"));
+                    commStatusRecord.set("statusId", "COM_COMPLETE");
+                    toStore.add(commStatusRecord);
+                }
+                delegator.storeAll(toStore);
+                return null;
+            }, errorInSendEmailToContactListService, 0, true);
+        } catch (GenericEntityException e) {
+            // Don't return a service error just because of failure for some addresses - just log the error and continue
+            Debug.logError(e, errorInSendEmailToContactListService, module);
+            errorMessages.add(errorInSendEmailToContactListService + ": " + e.getMessage());
+        }
+    }
+
+    private static class Recipient {
+        private final GenericValue member;
+        private final GenericValue lastContactListPartyACM;
+        private final String emailAddress;
+        private GenericValue commStatusRecord;
+        private GenericValue contactListPartyStatus;
+
+        Recipient(GenericValue member, GenericValue lastContactListPartyACM, String emailAddress) {
+            this.member = member;
+            this.lastContactListPartyACM = lastContactListPartyACM;
+            this.emailAddress = emailAddress;
+        }
+
+        String getPartyId() {
+            return lastContactListPartyACM.getString("partyId");
+        }
+
+        String getContactMechId() {
+            return lastContactListPartyACM.getString("preferredContactMechId");
+        }
+    }
+
+    private static class SendResult {
+        private final Recipient recipient;
+        private final Map<String, Object> serviceResult;
+
+        SendResult(Recipient recipient, Map<String, Object> serviceResult) {
+            this.recipient = recipient;
+            this.serviceResult = serviceResult;
+        }
+    }
+}
@@ -22,7 +22,9 @@ package org.ofbiz.party.content;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
@@ -39,9 +41,12 @@ import org.ofbiz.base.util.UtilValidate;
 import org.ofbiz.base.util.cache.UtilCache;
 import org.ofbiz.content.content.CommonContentWrapper;
 import org.ofbiz.content.content.ContentLangUtil;
+import org.ofbiz.content.content.ContentPrefetcher;
 import org.ofbiz.content.content.ContentWorker;
 import org.ofbiz.entity.Delegator;
 import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.condition.EntityCondition;
+import org.ofbiz.entity.condition.EntityOperator;
 import org.ofbiz.entity.model.ModelEntity;
 import org.ofbiz.entity.model.ModelUtil;
 import org.ofbiz.entity.util.EntityQuery;
@@ -151,8 +156,7 @@ public class PartyContentWrapper extends CommonContentWrapper {
                 cacheKey = contentId + CACHE_KEY_SEPARATOR + locale + CACHE_KEY_SEPARATOR + mimeTypeId +
                         CACHE_KEY_SEPARATOR + party.get("partyId") + CACHE_KEY_SEPARATOR + encoder.getLang(); // SCIPIO: added encoder
             } else {
-                cacheKey = partyContentTypeId + CACHE_KEY_SEPARATOR + locale + CACHE_KEY_SEPARATOR + mimeTypeId +
-                        CACHE_KEY_SEPARATOR + party.get("partyId") + CACHE_KEY_SEPARATOR + encoder.getLang(); // SCIPIO: added encoder
+                cacheKey = makeCacheKey(party.getString("partyId"), partyContentTypeId, locale, mimeTypeId, encoder);
             }
         }
 
@@ -225,6 +229,14 @@ public class PartyContentWrapper extends CommonContentWrapper {
             return;
         }
 
+        writePartyFieldValue(partyId, party, partyContentTypeId, delegator, outWriter, cache);
+    }
+
+    /**
+     * Writes the person or group field value corresponding to the content type, as done when there is no PartyContent
+     * (SCIPIO: factored out of getPartyContentAsText).
+     */
+    private static void writePartyFieldValue(String partyId, GenericValue party, String partyContentTypeId, Delegator delegator, Writer outWriter, boolean cache) throws GeneralException, IOException {
         if (partyContentTypeId != null) {
             String candidateFieldName = ModelUtil.dbNameToVarName(partyContentTypeId);
 
@@ -260,6 +272,67 @@ public class PartyContentWrapper extends CommonContentWrapper {
         }
     }
 
+    /**
+     * SCIPIO: Renders the given content types of all the given parties into the wrapper cache (<code>party.content.rendered</code>)
+     * and returns the texts by partyId and partyContentTypeId, as {@link #getPartyContentAsText} would.
+     * The PartyContent, Content, DataResource and ElectronicText records of the uncached texts are read with
+     * a few IN queries (see {@link ContentPrefetcher}); see ProductContentWrapper#prefetchProductContentAsText.
+     */
+    public static Map<String, Map<String, String>> prefetchPartyContentAsText(Collection<GenericValue> parties, Collection<String> partyContentTypeIds,
+            Locale locale, String mimeTypeId, Delegator delegator, LocalDispatcher dispatcher, boolean useCache, String encoderType) {
+        if (UtilValidate.isEmpty(parties)) {
+            return new LinkedHashMap<>();
+        }
+        Delegator partyDelegator = (delegator != null) ? delegator : parties.iterator().next().getDelegator();
+        UtilCodec.SimpleEncoder encoder = ContentLangUtil.getContentWrapperSanitizer(encoderType);
+        ContentPrefetcher.WrapperAdapter adapter = new ContentPrefetcher.WrapperAdapter() {
+            @Override
+            public String getEntityName() {
+                return "Party";
+            }
+            @Override
+            public String getId(GenericValue party) {
+                return party.getString("partyId");
+            }
+            @Override
+            public String makeCacheKey(String partyId, String partyContentTypeId) {
+                return PartyContentWrapper.makeCacheKey(partyId, partyContentTypeId, locale, mimeTypeId, encoder);
+            }
+            @Override
+            public Map<String, GenericValue> findContentAssocs(Map<String, GenericValue> parties, Collection<String> partyContentTypeIds) throws GeneralException {
+                List<GenericValue> partyContentList = EntityQuery.use(partyDelegator).from("PartyContent")
+                        .where(EntityCondition.makeCondition("partyId", EntityOperator.IN, parties.keySet()),
+                                EntityCondition.makeCondition("partyContentTypeId", EntityOperator.IN, partyContentTypeIds))
+                        .orderBy("-fromDate").filterByDate().queryList();
+                Map<String, GenericValue> partyContents = new HashMap<>();
+                for (GenericValue partyContent : partyContentList) {
+                    partyContents.putIfAbsent(ContentPrefetcher.makeAssocKey(partyContent.getString("partyId"), partyContent.getString("partyContentTypeId")), partyContent);
+                }
+                return partyContents;
+            }
+            @Override
+            public void putRenderContext(Map<String, Object> context, GenericValue party, GenericValue partyContent) {
+                context.put("party", party);
+                context.put("partyContent", partyContent);
+            }
+            @Override
+            public void writeFieldValue(GenericValue party, String partyContentTypeId, Writer out) throws GeneralException, IOException {
+                writePartyFieldValue(party.getString("partyId"), party, partyContentTypeId, partyDelegator, out, false);
+            }
+            @Override
+            public String getContentAsText(GenericValue party, String partyContentTypeId, boolean useCache) {
+                return getPartyContentAsText(party, partyContentTypeId, locale, mimeTypeId, partyDelegator, dispatcher, useCache, encoderType);
+            }
+        };
+        return new ContentPrefetcher(dispatcher, partyDelegator, locale, mimeTypeId)
+                .prefetchContentAsText(adapter, parties, partyContentTypeIds, partyContentCache, useCache, encoder);
+    }
+
+    private static String makeCacheKey(String partyId, String partyContentTypeId, Locale locale, String mimeTypeId, UtilCodec.SimpleEncoder encoder) {
+        return partyContentTypeId + CACHE_KEY_SEPARATOR + locale + CACHE_KEY_SEPARATOR + mimeTypeId +
+                CACHE_KEY_SEPARATOR + partyId + CACHE_KEY_SEPARATOR + encoder.getLang(); // SCIPIO: added encoder
+    }
+
     public static List<String> getPartyContentTextList(GenericValue party, String partyContentTypeId, Locale locale, String mimeTypeId, Delegator delegator, LocalDispatcher dispatcher) throws GeneralException, IOException { // SCIPIO: added cache flag
         // SCIPIO: delegating
         return getPartyContentTextList(party, partyContentTypeId, locale, mimeTypeId, delegator, dispatcher, true);
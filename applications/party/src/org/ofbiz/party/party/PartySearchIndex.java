@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.party.party;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.ofbiz.base.util.UtilMisc;
+import org.ofbiz.base.util.UtilValidate;
+import org.ofbiz.entity.Delegator;
+import org.ofbiz.entity.GenericEntityException;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.condition.EntityCondition;
+import org.ofbiz.entity.condition.EntityConditionSubSelect;
+import org.ofbiz.entity.condition.EntityOperator;
+import org.ofbiz.entity.util.EntityQuery;
+import org.ofbiz.entity.util.EntityUtil;
+import org.ofbiz.entity.util.EntityUtilProperties;
+
+/**
+ * Search index of the findParty service (SCIPIO).
+ * <p>
+ * The text fields findParty filters on (names, user logins, contact infos, postal addresses, phone numbers) are split
+ * into uppercase tokens stored in PartySearchKeyword, which the indexPartySearchKeywords service keeps up to date from
+ * entity ECAs. The role types of the party are stored as is and matched exactly. With the index, each word of a search field is matched as a token prefix (<code>KEYWORD LIKE 'WORD%'</code>
+ * on the keyword index) instead of the <code>UPPER(field) LIKE '%word%'</code> scan of the joined tables, which cannot
+ * use any index. Enabled by <code>partysearch.properties#index.enable</code>; the index must be built once with
+ * rebuildPartySearchIndex before enabling it.
+ */
+public final class PartySearchIndex {
+
+    public static final String FIRST_NAME = "FIRST_NAME";
+    public static final String LAST_NAME = "LAST_NAME";
+    public static final String GROUP_NAME = "GROUP_NAME";
+    public static final String USER_LOGIN = "USER_LOGIN";
+    public static final String INFO_STRING = "INFO_STRING";
+    public static final String ADDRESS1 = "ADDRESS1";
+    public static final String CITY = "CITY";
+    public static final String POSTAL_CODE = "POSTAL_CODE";
+    public static final String PHONE = "PHONE";
+    public static final String ROLE_TYPE = "ROLE_TYPE";
+
+    /** Size of the keyword field (short-varchar). */
+    private static final int MAX_KEYWORD_LENGTH = 60;
+
+    private PartySearchIndex() {
+    }
+
+    public static boolean isEnabled(Delegator delegator) {
+        return EntityUtilProperties.propertyValueEqualsIgnoreCase("partysearch", "index.enable", "true", delegator);
+    }
+
+    /**
+     * Returns the maximum number of results counted by findParty when searching with the index; 0 for exact counts.
+     */
+    public static int getMaxCount(Delegator delegator) {
+        return EntityUtilProperties.getPropertyAsInteger("partysearch", "index.search.maxCount", 1000, delegator);
+    }
+
+    /**
+     * Returns the keywords of a field value: the uppercase words, plus the whole value for user logins and contact
+     * infos (email addresses) so that they can be searched from the start, only the digits for phone numbers and the
+     * unchanged id for role types.
+     */
+    public static Set<String> makeKeywords(String searchFieldId, String value) {
+        Set<String> keywords = new LinkedHashSet<>();
+        if (UtilValidate.isEmpty(value)) {
+            return keywords;
+        }
+        if (PHONE.equals(searchFieldId)) {
+            addKeyword(keywords, value.replaceAll("[^0-9]", ""));
+            return keywords;
+        } else if (ROLE_TYPE.equals(searchFieldId)) {
+            addKeyword(keywords, value);
+            return keywords;
+        }
+        String upperValue = value.trim().toUpperCase(Locale.ROOT);
+        if (USER_LOGIN.equals(searchFieldId) || INFO_STRING.equals(searchFieldId)) {
+            addKeyword(keywords, upperValue);
+        }
+        for (String word : upperValue.split("[^\\p{L}\\p{N}]+")) {
+            addKeyword(keywords, word);
+        }
+        return keywords;
+    }
+
+    private static void addKeyword(Set<String> keywords, String keyword) {
+        if (keyword.isEmpty()) {
+            return;
+        }
+        keywords.add((keyword.length() > MAX_KEYWORD_LENGTH) ? keyword.substring(0, MAX_KEYWORD_LENGTH) : keyword);
+    }
+
+    /**
+     * Returns the condition on the partyId field matching the parties that have, for each word of the search text,
+     * a keyword of the field starting with it; or null if the text has no words (the caller then filters without the index).
+     * For role types, the condition matches the parties that have the role.
+     */
+    public static EntityCondition makePartyIdCondition(Delegator delegator, String searchFieldId, String searchText) {
+        if (ROLE_TYPE.equals(searchFieldId)) {
+            if (UtilValidate.isEmpty(searchText)) {
+                return null;
+            }
+            EntityCondition roleCond = EntityCondition.makeCondition(EntityCondition.makeCondition("searchFieldId", ROLE_TYPE),
+                    EntityCondition.makeCondition("keyword", searchText));
+            return EntityCondition.makeCondition("partyId", EntityOperator.EQUALS,
+                    new EntityConditionSubSelect("PartySearchKeyword", "partyId", roleCond, false, delegator));
+        }
+        List<String> words = new ArrayList<>();
+        if (PHONE.equals(searchFieldId)) {
+            words.addAll(makeKeywords(searchFieldId, searchText));
+        } else if (UtilValidate.isNotEmpty(searchText)) {
+            for (String word : searchText.trim().toUpperCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+                if (!word.isEmpty()) {
+                    words.add((word.length() > MAX_KEYWORD_LENGTH) ? word.substring(0, MAX_KEYWORD_LENGTH) : word);
+                }
+            }
+        }
+        if (words.isEmpty()) {
+            return null;
+        }
+        List<EntityCondition> conds = new ArrayList<>(words.size());
+        for (String word : words) {
+            EntityCondition keywordCond = EntityCondition.makeCondition(
+                    EntityCondition.makeCondition("searchFieldId", searchFieldId),
+                    EntityCondition.makeCondition("keyword", EntityOperator.LIKE, word + "%"));
+            conds.add(EntityCondition.makeCondition("partyId", EntityOperator.EQUALS,
+                    new EntityConditionSubSelect("PartySearchKeyword", "partyId", keywordCond, false, delegator)));
+        }
+        return (conds.size() == 1) ? conds.get(0) : EntityCondition.makeCondition(conds, EntityOperator.AND);
+    }
+
+    /**
+     * Replaces the keywords of the party by the ones of its current data.
+     */
+    public static void indexParty(Delegator delegator, String partyId) throws GenericEntityException {
+        Map<String, Set<String>> keywords = new LinkedHashMap<>();
+        GenericValue person = EntityQuery.use(delegator).from("Person").where("partyId", partyId).queryOne();
+        if (person != null) {
+            addKeywords(keywords, FIRST_NAME, person.getString("firstName"));
+            addKeywords(keywords, LAST_NAME, person.getString("lastName"));
+        }
+        GenericValue partyGroup = EntityQuery.use(delegator).from("PartyGroup").where("partyId", partyId).queryOne();
+        if (partyGroup != null) {
+            addKeywords(keywords, GROUP_NAME, partyGroup.getString("groupName"));
+        }
+        for (GenericValue partyRole : EntityQuery.use(delegator).select("roleTypeId").from("PartyRole").where("partyId", partyId).queryList()) {
+            addKeywords(keywords, ROLE_TYPE, partyRole.getString("roleTypeId"));
+        }
+        for (GenericValue userLogin : EntityQuery.use(delegator).select("userLoginId").from("UserLogin").where("partyId", partyId).queryList()) {
+            addKeywords(keywords, USER_LOGIN, userLogin.getString("userLoginId"));
+        }
+        // Like findParty, all the contact mechs of the party, not only the current ones
+        List<String> contactMechIds = EntityUtil.getFieldListFromEntityList(EntityQuery.use(delegator).select("contactMechId")
+                .from("PartyContactMech").where("partyId", partyId).queryList(), "contactMechId", true);
+        if (!contactMechIds.isEmpty()) {
+            EntityCondition contactMechCond = EntityCondition.makeCondition("contactMechId", EntityOperator.IN, contactMechIds);
+            for (GenericValue contactMech : EntityQuery.use(delegator).from("ContactMech").where(contactMechCond).queryList()) {
+                addKeywords(keywords, INFO_STRING, contactMech.getString("infoString"));
+            }
+            for (GenericValue postalAddress : EntityQuery.use(delegator).from("PostalAddress").where(contactMechCond).queryList()) {
+                addKeywords(keywords, ADDRESS1, postalAddress.getString("address1"));
+                addKeywords(keywords, CITY, postalAddress.getString("city"));
+                addKeywords(keywords, POSTAL_CODE, postalAddress.getString("postalCode"));
+            }
+            for (GenericValue telecomNumber : EntityQuery.use(delegator).from("TelecomNumber").where(contactMechCond).queryList()) {
+                addKeywords(keywords, PHONE, telecomNumber.getString("contactNumber"));
+            }
+        }
+
+        delegator.removeByAnd("PartySearchKeyword", UtilMisc.toMap("partyId", partyId));
+        for (Map.Entry<String, Set<String>> entry : keywords.entrySet()) {
+            for (String keyword : entry.getValue()) {
+                delegator.create("PartySearchKeyword", "partyId", partyId, "searchFieldId", entry.getKey(), "keyword", keyword);
+            }
+        }
+    }
+
+    /**
+     * Returns the ids of the parties indexed with the user login, or with another one of the same uppercase value.
+     */
+    public static Set<String> getUserLoginPartyIds(Delegator delegator, String userLoginId) throws GenericEntityException {
+        Set<String> partyIds = new LinkedHashSet<>();
+        Set<String> keywords = makeKeywords(USER_LOGIN, userLoginId);
+        if (keywords.isEmpty()) {
+            return partyIds;
+        }
+        // The first keyword of a user login is the whole value
+        for (GenericValue keyword : EntityQuery.use(delegator).select("partyId").from("PartySearchKeyword")
+                .where("searchFieldId", USER_LOGIN, "keyword", keywords.iterator().next()).queryList()) {
+            partyIds.add(keyword.getString("partyId"));
+        }
+        return partyIds;
+    }
+
+    /**
+     * Removes the keywords of the party, when it is removed.
+     */
+    public static void removeParty(Delegator delegator, String partyId) throws GenericEntityException {
+        delegator.removeByAnd("PartySearchKeyword", UtilMisc.toMap("partyId", partyId));
+    }
+
+    private static void addKeywords(Map<String, Set<String>> keywords, String searchFieldId, String value) {
+        Set<String> valueKeywords = makeKeywords(searchFieldId, value);
+        if (!valueKeywords.isEmpty()) {
+            keywords.computeIfAbsent(searchFieldId, k -> new LinkedHashSet<>()).addAll(valueKeywords);
+        }
+    }
+}
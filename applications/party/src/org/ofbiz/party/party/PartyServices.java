@@ -32,6 +32,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 import de.bripkens.gravatar.DefaultImage;
 import de.bripkens.gravatar.Gravatar;
@@ -56,6 +57,7 @@ import org.ofbiz.entity.condition.EntityFunction;
 import org.ofbiz.entity.condition.EntityOperator;
 import org.ofbiz.entity.model.DynamicViewEntity;
 import org.ofbiz.entity.model.ModelKeyMap;
+import org.ofbiz.entity.transaction.TransactionUtil;
 import org.ofbiz.entity.util.EntityListIterator;
 import org.ofbiz.entity.util.EntityQuery;
 import org.ofbiz.entity.util.EntityTypeUtil;
@@ -1164,6 +1166,13 @@ public class PartyServices {
         int lowIndex = 0;
         int highIndex = 0;
 
+        // SCIPIO: keyset pagination and search index (see PartySearchIndex)
+        String afterPartyId = (String) context.get("afterPartyId");
+        String nextAfterPartyId = null;
+        boolean partyListSizeApproximate = false;
+        String useSearchIndexParam = (String) context.get("useSearchIndex");
+        boolean useSearchIndex = UtilValidate.isNotEmpty(useSearchIndexParam) ? "Y".equals(useSearchIndexParam) : PartySearchIndex.isEnabled(delegator);
+
         if ("Y".equals(lookupFlag)) {
             String showAll = (context.get("showAll") != null ? (String) context.get("showAll") : "N");
             paramList = paramList + "&lookupFlag=" + lookupFlag + "&showAll=" + showAll + "&extInfo=" + extInfo;
@@ -1264,7 +1273,7 @@ public class PartyServices {
                     dynamicView.addViewLink("PT", "UL", Boolean.FALSE, ModelKeyMap.makeKeyMapList("partyId"));
 
                     // add the expr
-                    andExprs.add(EntityCondition.makeCondition(EntityFunction.UPPER_FIELD("userLoginId"), EntityOperator.LIKE, EntityFunction.UPPER("%"+userLoginId+"%")));
+                    addLikeCondition(andExprs, delegator, useSearchIndex, PartySearchIndex.USER_LOGIN, "userLoginId", userLoginId);
 
                     fieldsToSelect.add("userLoginId");
                 }
@@ -1283,7 +1292,7 @@ public class PartyServices {
                     dynamicView.addViewLink("PT", "PG", Boolean.FALSE, ModelKeyMap.makeKeyMapList("partyId"));
 
                     // add the expr
-                    andExprs.add(EntityCondition.makeCondition(EntityFunction.UPPER_FIELD("groupName"), EntityOperator.LIKE, EntityFunction.UPPER("%"+groupName+"%")));
+                    addLikeCondition(andExprs, delegator, useSearchIndex, PartySearchIndex.GROUP_NAME, "groupName", groupName);
 
                     fieldsToSelect.add("groupName");
                 }
@@ -1308,13 +1317,13 @@ public class PartyServices {
                 // filter on firstName
                 if (UtilValidate.isNotEmpty(firstName)) {
                     paramList = paramList + "&firstName=" + firstName;
-                    andExprs.add(EntityCondition.makeCondition(EntityFunction.UPPER_FIELD("firstName"), EntityOperator.LIKE, EntityFunction.UPPER("%"+firstName+"%")));
+                    addLikeCondition(andExprs, delegator, useSearchIndex, PartySearchIndex.FIRST_NAME, "firstName", firstName);
                 }
 
                 // filter on lastName
                 if (UtilValidate.isNotEmpty(lastName)) {
                     paramList = paramList + "&lastName=" + lastName;
-                    andExprs.add(EntityCondition.makeCondition(EntityFunction.UPPER_FIELD("lastName"), EntityOperator.LIKE, EntityFunction.UPPER("%"+lastName+"%")));
+                    addLikeCondition(andExprs, delegator, useSearchIndex, PartySearchIndex.LAST_NAME, "lastName", lastName);
                 }
 
                 // ----
@@ -1322,7 +1331,12 @@ public class PartyServices {
                 // ----
 
                 // filter on role member
-                if (roleTypeId != null && !"ANY".equals(roleTypeId)) {
+                if (roleTypeId != null && !"ANY".equals(roleTypeId) && useSearchIndex) {
+                    paramList = paramList + "&roleTypeId=" + roleTypeId;
+
+                    // SCIPIO: with the search index, the party roles are matched on the index instead of joining PartyRole
+                    andExprs.add(PartySearchIndex.makePartyIdCondition(delegator, PartySearchIndex.ROLE_TYPE, roleTypeId));
+                } else if (roleTypeId != null && !"ANY".equals(roleTypeId)) {
                     paramList = paramList + "&roleTypeId=" + roleTypeId;
 
                     // add role to view
@@ -1396,7 +1410,7 @@ public class PartyServices {
                     String address1 = (String) context.get("address1");
                     if (UtilValidate.isNotEmpty(address1)) {
                         paramList = paramList + "&address1=" + address1;
-                        andExprs.add(EntityCondition.makeCondition(EntityFunction.UPPER_FIELD("address1"), EntityOperator.LIKE, EntityFunction.UPPER("%" + address1 + "%")));
+                        addLikeCondition(andExprs, delegator, useSearchIndex, PartySearchIndex.ADDRESS1, "address1", address1);
                     }
 
                     // filter on address2
@@ -1410,7 +1424,7 @@ public class PartyServices {
                     String city = (String) context.get("city");
                     if (UtilValidate.isNotEmpty(city)) {
                         paramList = paramList + "&city=" + city;
-                        andExprs.add(EntityCondition.makeCondition(EntityFunction.UPPER_FIELD("city"), EntityOperator.LIKE, EntityFunction.UPPER("%" + city + "%")));
+                        addLikeCondition(andExprs, delegator, useSearchIndex, PartySearchIndex.CITY, "city", city);
                     }
 
                     // filter on state geo
@@ -1423,7 +1437,7 @@ public class PartyServices {
                     String postalCode = (String) context.get("postalCode");
                     if (UtilValidate.isNotEmpty(postalCode)) {
                         paramList = paramList + "&postalCode=" + postalCode;
-                        andExprs.add(EntityCondition.makeCondition(EntityFunction.UPPER_FIELD("postalCode"), EntityOperator.LIKE, EntityFunction.UPPER("%" + postalCode + "%")));
+                        addLikeCondition(andExprs, delegator, useSearchIndex, PartySearchIndex.POSTAL_CODE, "postalCode", postalCode);
                     }
 
                     fieldsToSelect.add("postalCode");
@@ -1447,7 +1461,7 @@ public class PartyServices {
                     String infoString = (String) context.get("infoString");
                     if (UtilValidate.isNotEmpty(infoString)) {
                         paramList = paramList + "&infoString=" + infoString;
-                        andExprs.add(EntityCondition.makeCondition(EntityFunction.UPPER_FIELD("infoString"), EntityOperator.LIKE, EntityFunction.UPPER("%"+infoString+"%")));
+                        addLikeCondition(andExprs, delegator, useSearchIndex, PartySearchIndex.INFO_STRING, "infoString", infoString);
                         fieldsToSelect.add("infoString");
                     }
 
@@ -1485,7 +1499,9 @@ public class PartyServices {
                     String contactNumber = (String) context.get("contactNumber");
                     if (UtilValidate.isNotEmpty(contactNumber)) {
                         paramList = paramList + "&contactNumber=" + contactNumber;
-                        andExprs.add(EntityCondition.makeCondition(EntityFunction.UPPER_FIELD("contactNumber"), EntityOperator.EQUALS, EntityFunction.UPPER(contactNumber)));
+                        EntityCondition contactNumberCond = useSearchIndex ? PartySearchIndex.makePartyIdCondition(delegator, PartySearchIndex.PHONE, contactNumber) : null;
+                        andExprs.add(contactNumberCond != null ? contactNumberCond
+                                : EntityCondition.makeCondition(EntityFunction.UPPER_FIELD("contactNumber"), EntityOperator.EQUALS, EntityFunction.UPPER(contactNumber)));
                     }
 
                     fieldsToSelect.add("contactNumber");
@@ -1512,25 +1528,54 @@ public class PartyServices {
                 lowIndex = viewIndex * viewSize + 1;
                 highIndex = (viewIndex + 1) * viewSize;
 
+                // SCIPIO: With afterPartyId (keyset pagination), the page is read from the first party after it in partyId order,
+                // so the database does not have to skip the rows of the previous pages. It replaces the default name order,
+                // but not a sortField of the caller: the page is then read by offset as without afterPartyId.
+                EntityCondition queryCond = mainCond;
+                int firstRow = lowIndex;
+                if (UtilValidate.isNotEmpty(afterPartyId) && UtilValidate.isNotEmpty(sortField) && !"partyId".equals(sortField)) {
+                    Debug.logWarning("findParty: afterPartyId [" + afterPartyId + "] ignored because the results are sorted by ["
+                            + sortField + "]; using viewIndex [" + viewIndex + "]", module);
+                } else if (UtilValidate.isNotEmpty(afterPartyId)) {
+                    EntityCondition afterCond = EntityCondition.makeCondition("partyId", EntityOperator.GREATER_THAN, afterPartyId);
+                    queryCond = (mainCond != null) ? EntityCondition.makeCondition(mainCond, EntityOperator.AND, afterCond) : afterCond;
+                    orderBy = UtilMisc.toList("partyId");
+                    firstRow = 1;
+                } else if (useSearchIndex && orderBy.isEmpty()) {
+                    orderBy.add("partyId");
+                }
+                // SCIPIO: With the search index, the results are only counted up to index.search.maxCount (approximate count)
+                Integer maxRows = null;
+                int maxCount = useSearchIndex ? PartySearchIndex.getMaxCount(delegator) : 0;
+                if (maxCount > 0) {
+                    maxRows = Math.max(maxCount, firstRow + viewSize);
+                }
+
                 // set distinct on so we only get one row per order
                 // using list iterator
                 EntityQuery eq = EntityQuery.use(delegator).select(UtilMisc.toSet(fieldsToSelect))
                         .from(dynamicView)
-                        .where(mainCond)
+                        .where(queryCond)
                         .orderBy(orderBy)
                         .cursorScrollInsensitive()
-                        .fetchSize(highIndex)
+                        .fetchSize(firstRow + viewSize - 1)
+                        .maxRows(maxRows)
                         .distinct();
                 try (EntityListIterator pli = eq.queryIterator()) {
 
                     // get the partial list for this page
-                    partyList = pli.getPartialList(lowIndex, viewSize);
+                    partyList = pli.getPartialList(firstRow, viewSize);
 
                     // attempt to get the full size
-                    partyListSize = pli.getResultsSizeAfterPartialList();
+                    int resultsSize = pli.getResultsSizeAfterPartialList();
+                    partyListSize = (lowIndex - firstRow) + resultsSize;
+                    partyListSizeApproximate = (maxRows != null && resultsSize >= maxRows);
                     if (highIndex > partyListSize) {
                         highIndex = partyListSize;
                     }
+                    if (orderBy.size() == 1 && "partyId".equals(orderBy.get(0)) && partyList.size() == viewSize && partyListSize > highIndex) {
+                        nextAfterPartyId = partyList.get(partyList.size() - 1).getString("partyId");
+                    }
 
                 } catch (GenericEntityException e) {
                     String errMsg = "Failure in party find operation, rolling back transaction: " + e.toString();
@@ -1552,10 +1597,136 @@ public class PartyServices {
         result.put("paramList", paramList);
         result.put("highIndex", highIndex);
         result.put("lowIndex", lowIndex);
+        result.put("partyListSizeApproximate", partyListSizeApproximate);
+        result.put("nextAfterPartyId", nextAfterPartyId);
 
         return result;
     }
 
+    /**
+     * Adds the case-insensitive "contains" condition of a findParty text field, or with the search index, the condition
+     * matching its words as keyword prefixes (SCIPIO).
+     */
+    private static void addLikeCondition(List<EntityCondition> andExprs, Delegator delegator, boolean useSearchIndex, String searchFieldId,
+            String fieldName, String value) {
+        EntityCondition indexCond = useSearchIndex ? PartySearchIndex.makePartyIdCondition(delegator, searchFieldId, value) : null;
+        if (indexCond != null) {
+            andExprs.add(indexCond);
+        } else {
+            andExprs.add(EntityCondition.makeCondition(EntityFunction.UPPER_FIELD(fieldName), EntityOperator.LIKE, EntityFunction.UPPER("%" + value + "%")));
+        }
+    }
+
+    /**
+     * Updates the search index of the given party, or of the parties of the given contact mech (SCIPIO).
+     * Does nothing unless the index is enabled (partysearch.properties#index.enable).
+     */
+    public static Map<String, Object> indexPartySearchKeywords(DispatchContext dctx, Map<String, ? extends Object> context) {
+        Delegator delegator = dctx.getDelegator();
+        if (!PartySearchIndex.isEnabled(delegator) && !Boolean.TRUE.equals(context.get("force"))) {
+            return ServiceUtil.returnSuccess();
+        }
+        String partyId = (String) context.get("partyId");
+        String contactMechId = (String) context.get("contactMechId");
+        try {
+            Collection<String> partyIds;
+            if (UtilValidate.isNotEmpty(partyId)) {
+                partyIds = UtilMisc.toList(partyId);
+            } else if (UtilValidate.isNotEmpty(contactMechId)) {
+                partyIds = EntityUtil.getFieldListFromEntityList(EntityQuery.use(delegator).select("partyId").from("PartyContactMech")
+                        .where("contactMechId", contactMechId).queryList(), "partyId", true);
+            } else {
+                return ServiceUtil.returnSuccess();
+            }
+            for (String indexPartyId : partyIds) {
+                PartySearchIndex.indexParty(delegator, indexPartyId);
+            }
+        } catch (GenericEntityException e) {
+            Debug.logError(e, "Could not index party [" + partyId + "] contact mech [" + contactMechId + "] for search", module);
+            return ServiceUtil.returnError(e.getMessage());
+        }
+        return ServiceUtil.returnSuccess();
+    }
+
+    /**
+     * Updates the search index of the party of a stored user login, only if the user login is not indexed for that party
+     * yet or is indexed for other parties, that is, if its partyId changed (SCIPIO).
+     * <p>
+     * The user logins are stored at each login (failed login counts, logout flags...), which must not reindex the party.
+     */
+    public static Map<String, Object> indexPartySearchUserLogin(DispatchContext dctx, Map<String, ? extends Object> context) {
+        Delegator delegator = dctx.getDelegator();
+        if (!PartySearchIndex.isEnabled(delegator)) {
+            return ServiceUtil.returnSuccess();
+        }
+        String userLoginId = (String) context.get("userLoginId");
+        String partyId = (String) context.get("partyId");
+        try {
+            Set<String> partyIds = PartySearchIndex.getUserLoginPartyIds(delegator, userLoginId);
+            if (UtilValidate.isNotEmpty(partyId) && partyIds.size() == 1 && partyIds.contains(partyId)) {
+                return ServiceUtil.returnSuccess();
+            }
+            if (UtilValidate.isNotEmpty(partyId)) {
+                partyIds.add(partyId);
+            }
+            for (String indexPartyId : partyIds) {
+                PartySearchIndex.indexParty(delegator, indexPartyId);
+            }
+        } catch (GenericEntityException e) {
+            Debug.logError(e, "Could not index user login [" + userLoginId + "] of party [" + partyId + "] for search", module);
+            return ServiceUtil.returnError(e.getMessage());
+        }
+        return ServiceUtil.returnSuccess();
+    }
+
+    /**
+     * Removes the search index keywords of a removed party, whether the index is enabled or not (SCIPIO).
+     */
+    public static Map<String, Object> removePartySearchKeywords(DispatchContext dctx, Map<String, ? extends Object> context) {
+        Delegator delegator = dctx.getDelegator();
+        String partyId = (String) context.get("partyId");
+        try {
+            PartySearchIndex.removeParty(delegator, partyId);
+        } catch (GenericEntityException e) {
+            Debug.logError(e, "Could not remove search keywords of party [" + partyId + "]", module);
+            return ServiceUtil.returnError(e.getMessage());
+        }
+        return ServiceUtil.returnSuccess();
+    }
+
+    /**
+     * Builds the search index of all the parties, in batches of 500 parties per transaction (SCIPIO).
+     */
+    public static Map<String, Object> rebuildPartySearchIndex(DispatchContext dctx, Map<String, ? extends Object> context) {
+        Delegator delegator = dctx.getDelegator();
+        int partyCount = 0;
+        List<String> batch = new ArrayList<>(500);
+        try (EntityListIterator eli = EntityQuery.use(delegator).select("partyId").from("Party").orderBy("partyId").queryIterator()) {
+            GenericValue party;
+            do {
+                party = eli.next();
+                if (party != null) {
+                    batch.add(party.getString("partyId"));
+                }
+                if (batch.size() >= 500 || (party == null && !batch.isEmpty())) {
+                    TransactionUtil.doNewTransaction(() -> {
+                        for (String partyId : batch) {
+                            PartySearchIndex.indexParty(delegator, partyId);
+                        }
+                        return null;
+                    }, "Error indexing parties for search", 0, true);
+                    partyCount += batch.size();
+                    batch.clear();
+                }
+            } while (party != null);
+        } catch (GenericEntityException e) {
+            Debug.logError(e, "Could not rebuild party search index", module);
+            return ServiceUtil.returnError(e.getMessage());
+        }
+        Debug.logInfo("Indexed " + partyCount + " parties for search", module);
+        return ServiceUtil.returnSuccess("Indexed " + partyCount + " parties");
+    }
+
     public static Map<String, Object> performFindParty(DispatchContext dctx, Map<String, ? extends Object> context) {
         Map<String, Object> result = ServiceUtil.returnSuccess();
         Delegator delegator = dctx.getDelegator();
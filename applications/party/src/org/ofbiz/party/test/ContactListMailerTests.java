@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.party.test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ofbiz.common.email.SmtpTransportPool;
+import org.ofbiz.common.test.SmtpStandIn;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.util.EntityQuery;
+import org.ofbiz.service.ServiceUtil;
+import org.ofbiz.service.testtools.OFBizTestCase;
+
+/**
+ * ContactListMailerTests (SCIPIO): sends the sendEmailToContactList mailings of testdef/data/ContactListMailerTestData.xml
+ * through an in-process SMTP server ({@link SmtpStandIn}), configured as the named mail server "clmtest" with
+ * SystemProperty records, and checks the received messages, the reuse of the pooled connections, the send status
+ * records and the resume of a partly sent mailing.
+ */
+public class ContactListMailerTests extends OFBizTestCase {
+
+    private static final String SMTP_SERVER = "clmtest";
+    private static final int MEMBER_COUNT = 4;
+
+    protected GenericValue userLogin = null;
+    protected SmtpStandIn smtpServer = null;
+
+    public ContactListMailerTests(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        userLogin = EntityQuery.use(delegator).from("UserLogin").where("userLoginId", "system").queryOne();
+        smtpServer = new SmtpStandIn();
+        setGeneralProperty("mail.notifications.enabled", "Y");
+        setGeneralProperty("mail.smtp.server." + SMTP_SERVER + ".relay.host", smtpServer.getHost());
+        setGeneralProperty("mail.smtp.server." + SMTP_SERVER + ".port", String.valueOf(smtpServer.getPort()));
+        setGeneralProperty("mail.smtp.server." + SMTP_SERVER + ".starttls.enable", "false");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        delegator.removeByAnd("SystemProperty", "systemResourceId", "general", "systemPropertyId", "mail.notifications.enabled");
+        for (String setting : new String[] { "relay.host", "port", "starttls.enable" }) {
+            delegator.removeByAnd("SystemProperty", "systemResourceId", "general", "systemPropertyId", "mail.smtp.server." + SMTP_SERVER + "." + setting);
+        }
+        SmtpTransportPool.clear();
+        smtpServer.close();
+    }
+
+    public void testSendToContactList() throws Exception {
+        Map<String, Object> result = sendToContactList("CLMTEST_SEND", SMTP_SERVER, 2);
+        assertTrue(ServiceUtil.getErrorMessage(result), ServiceUtil.isSuccess(result));
+
+        List<SmtpStandIn.ReceivedMessage> messages = smtpServer.getMessages();
+        assertEquals(MEMBER_COUNT, messages.size());
+        for (SmtpStandIn.ReceivedMessage message : messages) {
+            assertEquals("mailing@example.com", message.getFrom());
+            assertTrue(message.getData().contains("Subject: Contact list mailer test send"));
+        }
+        // Two sending threads: the connections are reused instead of opened per message
+        assertTrue("Connections: " + smtpServer.getConnectionCount(), smtpServer.getConnectionCount() <= 2);
+        assertEquals(MEMBER_COUNT, getCommStatusCount("CLMTEST_SEND", "COM_COMPLETE"));
+    }
+
+    public void testResumeSkipsSentMembers() throws Exception {
+        // A previous run already sent to the first member
+        delegator.create("ContactListCommStatus", "contactListId", "CLMTEST", "communicationEventId", "CLMTEST_RESUME",
+                "contactMechId", "CLMTEST_CM1", "partyId", "CLMTEST_P1", "statusId", "COM_COMPLETE");
+
+        Map<String, Object> result = sendToContactList("CLMTEST_RESUME", SMTP_SERVER, 1);
+        assertTrue(ServiceUtil.getErrorMessage(result), ServiceUtil.isSuccess(result));
+        assertEquals(MEMBER_COUNT - 1, smtpServer.getMessages().size());
+        assertEquals(1, smtpServer.getConnectionCount());
+        assertEquals(MEMBER_COUNT, getCommStatusCount("CLMTEST_RESUME", "COM_COMPLETE"));
+    }
+
+    public void testUnknownSmtpServer() throws Exception {
+        Map<String, Object> result = sendToContactList("CLMTEST_BADSERVER", "nosuchserver", 2);
+        assertTrue(ServiceUtil.isError(result));
+        assertEquals(0, smtpServer.getMessages().size());
+        // Left in progress, so a later run sends them
+        assertEquals(MEMBER_COUNT, getCommStatusCount("CLMTEST_BADSERVER", "COM_IN_PROGRESS"));
+    }
+
+    private Map<String, Object> sendToContactList(String communicationEventId, String smtpServerName, int concurrency) throws Exception {
+        Map<String, Object> ctx = new HashMap<>();
+        ctx.put("contactListId", "CLMTEST");
+        ctx.put("communicationEventId", communicationEventId);
+        ctx.put("smtpServer", smtpServerName);
+        ctx.put("concurrency", concurrency);
+        ctx.put("userLogin", userLogin);
+        return dispatcher.runSync("sendEmailToContactList", ctx);
+    }
+
+    private long getCommStatusCount(String communicationEventId, String statusId) throws Exception {
+        return EntityQuery.use(delegator).from("ContactListCommStatus")
+                .where("contactListId", "CLMTEST", "communicationEventId", communicationEventId, "statusId", statusId).queryCount();
+    }
+
+    private void setGeneralProperty(String name, String value) throws Exception {
+        GenericValue property = delegator.makeValue("SystemProperty", "systemResourceId", "general", "systemPropertyId", name,
+                "systemPropertyValue", value);
+        delegator.createOrStore(property);
+    }
+}
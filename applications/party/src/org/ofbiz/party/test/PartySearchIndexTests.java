@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.party.test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ofbiz.base.util.UtilMisc;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.util.EntityQuery;
+import org.ofbiz.entity.util.EntityUtil;
+import org.ofbiz.party.party.PartySearchIndex;
+import org.ofbiz.service.ServiceUtil;
+import org.ofbiz.service.testtools.OFBizTestCase;
+
+/**
+ * PartySearchIndexTests (SCIPIO): tests the findParty search index (PartySearchKeyword) on the parties of
+ * testdef/data/PartySearchIndexTestData.xml: keyword and role matching, the entity ECAs (user login stores, party
+ * removal) and the keyset pagination.
+ */
+public class PartySearchIndexTests extends OFBizTestCase {
+
+    private static final String[] TEST_PARTY_IDS = { "PSITEST_P1", "PSITEST_P2", "PSITEST_P3" };
+
+    protected GenericValue userLogin = null;
+
+    public PartySearchIndexTests(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        userLogin = EntityQuery.use(delegator).from("UserLogin").where("userLoginId", "system").queryOne();
+        delegator.createOrStore(delegator.makeValue("SystemProperty", "systemResourceId", "partysearch",
+                "systemPropertyId", "index.enable", "systemPropertyValue", "true"));
+        for (String partyId : TEST_PARTY_IDS) {
+            Map<String, Object> result = dispatcher.runSync("indexPartySearchKeywords", UtilMisc.toMap("partyId", partyId, "force", Boolean.TRUE));
+            assertTrue(ServiceUtil.getErrorMessage(result), ServiceUtil.isSuccess(result));
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        delegator.removeByAnd("SystemProperty", "systemResourceId", "partysearch", "systemPropertyId", "index.enable");
+    }
+
+    public void testMakeKeywords() throws Exception {
+        assertEquals(UtilMisc.toSet("ZYXWANDER", "SMITH"), PartySearchIndex.makeKeywords(PartySearchIndex.LAST_NAME, "Zyxwander-Smith"));
+        assertEquals(UtilMisc.toSet("JOHN.DOE@EXAMPLE.COM", "JOHN", "DOE", "EXAMPLE", "COM"),
+                PartySearchIndex.makeKeywords(PartySearchIndex.INFO_STRING, "john.doe@example.com"));
+        assertEquals(UtilMisc.toSet("15551234"), PartySearchIndex.makeKeywords(PartySearchIndex.PHONE, "(555) 12-34"));
+        assertEquals(UtilMisc.toSet("BILL_TO_CUSTOMER"), PartySearchIndex.makeKeywords(PartySearchIndex.ROLE_TYPE, "BILL_TO_CUSTOMER"));
+    }
+
+    public void testFindByKeywords() throws Exception {
+        assertEquals(UtilMisc.toList("PSITEST_P1", "PSITEST_P2", "PSITEST_P3"), findPartyIds(UtilMisc.toMap("lastName", "zyxw")));
+        assertEquals(UtilMisc.toList("PSITEST_P2"), findPartyIds(UtilMisc.toMap("lastName", "zyxwander smi")));
+        assertEquals(UtilMisc.toList("PSITEST_P1"), findPartyIds(UtilMisc.toMap("firstName", "maria", "lastName", "zyxwander")));
+    }
+
+    public void testFindByRole() throws Exception {
+        assertEquals(UtilMisc.toList("PSITEST_P1", "PSITEST_P2"), findPartyIds(UtilMisc.toMap("lastName", "zyxwander", "roleTypeId", "CUSTOMER")));
+
+        // The PartyRole entity ECAs update the index
+        delegator.create("PartyRole", "partyId", "PSITEST_P3", "roleTypeId", "CUSTOMER");
+        assertEquals(UtilMisc.toList("PSITEST_P1", "PSITEST_P2", "PSITEST_P3"), findPartyIds(UtilMisc.toMap("lastName", "zyxwander", "roleTypeId", "CUSTOMER")));
+        delegator.removeValue(EntityQuery.use(delegator).from("PartyRole").where("partyId", "PSITEST_P3", "roleTypeId", "CUSTOMER").queryOne());
+        assertEquals(UtilMisc.toList("PSITEST_P1", "PSITEST_P2"), findPartyIds(UtilMisc.toMap("lastName", "zyxwander", "roleTypeId", "CUSTOMER")));
+    }
+
+    public void testUserLoginStoreReindexesOnPartyChangeOnly() throws Exception {
+        GenericValue testLogin = delegator.makeValue("UserLogin", "userLoginId", "psitest.login", "partyId", "PSITEST_P1");
+        delegator.create(testLogin);
+        try {
+            assertEquals(UtilMisc.toSet("PSITEST_P1"), PartySearchIndex.getUserLoginPartyIds(delegator, "psitest.login"));
+
+            // A store that does not change the partyId (as done at each login) does not rebuild the keywords of the party:
+            // the keyword added here, which a rebuild would remove, is still there after it
+            delegator.create("PartySearchKeyword", "partyId", "PSITEST_P1", "searchFieldId", PartySearchIndex.FIRST_NAME, "keyword", "NOTREBUILT");
+            testLogin.set("successiveFailedLogins", 1L);
+            delegator.store(testLogin);
+            assertNotNull(EntityQuery.use(delegator).from("PartySearchKeyword")
+                    .where("partyId", "PSITEST_P1", "searchFieldId", PartySearchIndex.FIRST_NAME, "keyword", "NOTREBUILT").queryOne());
+
+            // Changing the partyId moves the user login keywords to the new party
+            testLogin.set("partyId", "PSITEST_P2");
+            delegator.store(testLogin);
+            assertEquals(UtilMisc.toSet("PSITEST_P2"), PartySearchIndex.getUserLoginPartyIds(delegator, "psitest.login"));
+            assertEquals(UtilMisc.toList("PSITEST_P2"), findPartyIds(UtilMisc.toMap("userLoginId", "psitest.login")));
+        } finally {
+            delegator.removeValue(testLogin);
+            PartySearchIndex.indexParty(delegator, "PSITEST_P1");
+        }
+        assertTrue(PartySearchIndex.getUserLoginPartyIds(delegator, "psitest.login").isEmpty());
+    }
+
+    public void testRemoveParty() throws Exception {
+        delegator.create("Party", "partyId", "PSITEST_REMOVE", "partyTypeId", "PERSON", "statusId", "PARTY_ENABLED");
+        delegator.create("Person", "partyId", "PSITEST_REMOVE", "firstName", "Removed", "lastName", "Zyxwander");
+        assertTrue(EntityQuery.use(delegator).from("PartySearchKeyword").where("partyId", "PSITEST_REMOVE").queryCount() > 0);
+
+        // No foreign key blocks the removal, and the Party entity ECA removes the keywords
+        delegator.removeValue(EntityQuery.use(delegator).from("Person").where("partyId", "PSITEST_REMOVE").queryOne());
+        delegator.removeValue(EntityQuery.use(delegator).from("Party").where("partyId", "PSITEST_REMOVE").queryOne());
+        assertEquals(0, EntityQuery.use(delegator).from("PartySearchKeyword").where("partyId", "PSITEST_REMOVE").queryCount());
+    }
+
+    public void testKeysetPagination() throws Exception {
+        // Without name filters, the results of the index are in partyId order
+        Map<String, Object> result = findParty(UtilMisc.toMap("roleTypeId", "PSITEST_ROLE", "VIEW_SIZE", "2"));
+        assertEquals(UtilMisc.toList("PSITEST_P1", "PSITEST_P2"), getPartyIds(result));
+        assertEquals("PSITEST_P2", result.get("nextAfterPartyId"));
+
+        result = findParty(UtilMisc.toMap("roleTypeId", "PSITEST_ROLE", "VIEW_SIZE", "2", "afterPartyId", "PSITEST_P2"));
+        assertEquals(UtilMisc.toList("PSITEST_P3"), getPartyIds(result));
+        assertNull(result.get("nextAfterPartyId"));
+    }
+
+    public void testKeysetKeepsSortField() throws Exception {
+        // afterPartyId is ignored when the caller sorts on another field: the first page in the requested order is returned
+        Map<String, Object> result = findParty(UtilMisc.toMap("roleTypeId", "PSITEST_ROLE", "VIEW_SIZE", "2",
+                "afterPartyId", "PSITEST_P2", "sortField", "-partyId"));
+        assertEquals(UtilMisc.toList("PSITEST_P3", "PSITEST_P2"), getPartyIds(result));
+        assertNull(result.get("nextAfterPartyId"));
+    }
+
+    /**
+     * Returns the ids of the found parties in partyId order, for the searches by name (sorted by name by findParty).
+     */
+    private List<String> findPartyIds(Map<String, Object> params) throws Exception {
+        List<String> partyIds = new ArrayList<>(getPartyIds(findParty(params)));
+        partyIds.sort(null);
+        return partyIds;
+    }
+
+    private Map<String, Object> findParty(Map<String, Object> params) throws Exception {
+        Map<String, Object> ctx = new HashMap<>(params);
+        ctx.put("lookupFlag", "Y");
+        ctx.put("useSearchIndex", "Y");
+        ctx.put("userLogin", userLogin);
+        Map<String, Object> result = dispatcher.runSync("findParty", ctx);
+        assertTrue(ServiceUtil.getErrorMessage(result), ServiceUtil.isSuccess(result));
+        return result;
+    }
+
+    private static List<String> getPartyIds(Map<String, Object> result) {
+        @SuppressWarnings("unchecked")
+        List<GenericValue> partyList = (List<GenericValue>) result.get("partyList");
+        return EntityUtil.getFieldListFromEntityList(partyList, "partyId", false);
+    }
+}
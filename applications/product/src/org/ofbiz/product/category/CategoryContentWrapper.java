@@ -27,9 +27,12 @@ import org.ofbiz.base.util.UtilValidate;
 import org.ofbiz.base.util.cache.UtilCache;
 import org.ofbiz.content.content.CommonContentWrapper;
 import org.ofbiz.content.content.ContentLangUtil;
+import org.ofbiz.content.content.ContentPrefetcher;
 import org.ofbiz.content.content.ContentWorker;
 import org.ofbiz.entity.Delegator;
 import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.condition.EntityCondition;
+import org.ofbiz.entity.condition.EntityOperator;
 import org.ofbiz.entity.model.ModelEntity;
 import org.ofbiz.entity.model.ModelUtil;
 import org.ofbiz.entity.util.EntityQuery;
@@ -39,7 +42,10 @@ import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
@@ -113,7 +119,7 @@ public class CategoryContentWrapper extends CommonContentWrapper {
         String candidateFieldName = ModelUtil.dbNameToVarName(prodCatContentTypeId);
 
         UtilCodec.SimpleEncoder encoder = ContentLangUtil.getContentWrapperSanitizer(encoderType);
-        String cacheKey = (useCache) ? prodCatContentTypeId + SEPARATOR + locale + SEPARATOR + mimeTypeId + SEPARATOR + productCategory.get("productCategoryId") + SEPARATOR + encoder.getLang() + SEPARATOR + delegator : null;
+        String cacheKey = (useCache) ? makeCacheKey(productCategory.getString("productCategoryId"), prodCatContentTypeId, locale, mimeTypeId, encoder, delegator) : null;
         try {
             if (useCache) {
                 String cachedValue = categoryContentCache.get(cacheKey);
@@ -174,6 +180,14 @@ public class CategoryContentWrapper extends CommonContentWrapper {
             return;
         }
 
+        writeCategoryFieldValue(productCategoryId, productCategory, prodCatContentTypeId, delegator, outWriter, cache);
+    }
+
+    /**
+     * Writes the ProductCategory field value corresponding to the content type, as done when there is no
+     * ProductCategoryContent (SCIPIO: factored out of getProductCategoryContentAsText).
+     */
+    private static void writeCategoryFieldValue(String productCategoryId, GenericValue productCategory, String prodCatContentTypeId, Delegator delegator, Writer outWriter, boolean cache) throws GeneralException, IOException {
         String candidateFieldName = ModelUtil.dbNameToVarName(prodCatContentTypeId);
         ModelEntity categoryModel = delegator.getModelEntity("ProductCategory");
         if (categoryModel.isField(candidateFieldName)) {
@@ -190,6 +204,67 @@ public class CategoryContentWrapper extends CommonContentWrapper {
         }
     }
 
+    /**
+     * SCIPIO: Renders the given content types of all the given categories into the wrapper cache (<code>category.content</code>)
+     * and returns the texts by productCategoryId and prodCatContentTypeId, as {@link #getProductCategoryContentAsText} would.
+     * The ProductCategoryContent, Content, DataResource and ElectronicText records of the uncached texts are read with
+     * a few IN queries (see {@link ContentPrefetcher}); see ProductContentWrapper#prefetchProductContentAsText.
+     * Added 2.x.x.
+     */
+    public static Map<String, Map<String, String>> prefetchProductCategoryContentAsText(Collection<GenericValue> productCategories, Collection<String> prodCatContentTypeIds,
+            Locale locale, String mimeTypeId, Delegator delegator, LocalDispatcher dispatcher, boolean useCache, String encoderType) {
+        if (UtilValidate.isEmpty(productCategories)) {
+            return new LinkedHashMap<>();
+        }
+        Delegator categoryDelegator = (delegator != null) ? delegator : productCategories.iterator().next().getDelegator();
+        UtilCodec.SimpleEncoder encoder = ContentLangUtil.getContentWrapperSanitizer(encoderType);
+        ContentPrefetcher.WrapperAdapter adapter = new ContentPrefetcher.WrapperAdapter() {
+            @Override
+            public String getEntityName() {
+                return "ProductCategory";
+            }
+            @Override
+            public String getId(GenericValue productCategory) {
+                return productCategory.getString("productCategoryId");
+            }
+            @Override
+            public String makeCacheKey(String productCategoryId, String prodCatContentTypeId) {
+                return CategoryContentWrapper.makeCacheKey(productCategoryId, prodCatContentTypeId, locale, mimeTypeId, encoder, categoryDelegator);
+            }
+            @Override
+            public Map<String, GenericValue> findContentAssocs(Map<String, GenericValue> productCategories, Collection<String> prodCatContentTypeIds) throws GeneralException {
+                List<GenericValue> categoryContentList = EntityQuery.use(categoryDelegator).from("ProductCategoryContent")
+                        .where(EntityCondition.makeCondition("productCategoryId", EntityOperator.IN, productCategories.keySet()),
+                                EntityCondition.makeCondition("prodCatContentTypeId", EntityOperator.IN, prodCatContentTypeIds))
+                        .orderBy("-fromDate").filterByDate().queryList();
+                Map<String, GenericValue> categoryContents = new HashMap<>();
+                for (GenericValue categoryContent : categoryContentList) {
+                    categoryContents.putIfAbsent(ContentPrefetcher.makeAssocKey(categoryContent.getString("productCategoryId"), categoryContent.getString("prodCatContentTypeId")), categoryContent);
+                }
+                return categoryContents;
+            }
+            @Override
+            public void putRenderContext(Map<String, Object> context, GenericValue productCategory, GenericValue categoryContent) {
+                context.put("productCategory", productCategory);
+                context.put("categoryContent", categoryContent);
+            }
+            @Override
+            public void writeFieldValue(GenericValue productCategory, String prodCatContentTypeId, Writer out) throws GeneralException, IOException {
+                writeCategoryFieldValue(productCategory.getString("productCategoryId"), productCategory, prodCatContentTypeId, categoryDelegator, out, false);
+            }
+            @Override
+            public String getContentAsText(GenericValue productCategory, String prodCatContentTypeId, boolean useCache) {
+                return getProductCategoryContentAsText(productCategory, prodCatContentTypeId, locale, mimeTypeId, categoryDelegator, dispatcher, useCache, encoderType);
+            }
+        };
+        return new ContentPrefetcher(dispatcher, categoryDelegator, locale, mimeTypeId)
+                .prefetchContentAsText(adapter, productCategories, prodCatContentTypeIds, categoryContentCache, useCache, encoder);
+    }
+
+    private static String makeCacheKey(String productCategoryId, String prodCatContentTypeId, Locale locale, String mimeTypeId, UtilCodec.SimpleEncoder encoder, Delegator delegator) {
+        return prodCatContentTypeId + SEPARATOR + locale + SEPARATOR + mimeTypeId + SEPARATOR + productCategoryId + SEPARATOR + encoder.getLang() + SEPARATOR + delegator;
+    }
+
     /**
      * SCIPIO: Gets the entity field value corresponding to the given prodCategoryContentTypeId.
      * DO NOT USE FROM TEMPLATES - NOT CACHED - intended for code that must replicate ProductContentWrapper behavior.
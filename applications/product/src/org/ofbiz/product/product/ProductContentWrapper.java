@@ -21,7 +21,10 @@ package org.ofbiz.product.product;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -38,9 +41,12 @@ import org.ofbiz.base.util.UtilValidate;
 import org.ofbiz.base.util.cache.UtilCache;
 import org.ofbiz.content.content.CommonContentWrapper;
 import org.ofbiz.content.content.ContentLangUtil;
+import org.ofbiz.content.content.ContentPrefetcher;
 import org.ofbiz.content.content.ContentWorker;
 import org.ofbiz.entity.Delegator;
 import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.condition.EntityCondition;
+import org.ofbiz.entity.condition.EntityOperator;
 import org.ofbiz.entity.model.ModelEntity;
 import org.ofbiz.entity.model.ModelUtil;
 import org.ofbiz.entity.util.EntityQuery;
@@ -133,7 +139,7 @@ public class ProductContentWrapper extends CommonContentWrapper {
         /* caching: there is one cache created, "product.content"  Each product's content is cached with a key of
          * contentTypeId::locale::mimeType::productId, or whatever the SEPARATOR is defined above to be.
          */
-        String cacheKey = (useCache) ? product.get("productId") + SEPARATOR + productContentTypeId + SEPARATOR + locale + SEPARATOR + mimeTypeId + SEPARATOR + encoder.getLang() + SEPARATOR + delegator.getDelegatorName() : "";
+        String cacheKey = (useCache) ? makeCacheKey(product.getString("productId"), productContentTypeId, locale, mimeTypeId, encoder, delegator) : "";
         try {
             if (useCache) {
                 String cachedValue = productContentCache.get(cacheKey);
@@ -199,6 +205,14 @@ public class ProductContentWrapper extends CommonContentWrapper {
             return;
         }
 
+        writeProductFieldValue(productId, product, productContentTypeId, delegator, outWriter, cache);
+    }
+
+    /**
+     * Writes the Product field value corresponding to the content type, or of the virtual product for variants, as
+     * done when there is no ProductContent (SCIPIO: factored out of getProductContentAsText).
+     */
+    private static void writeProductFieldValue(String productId, GenericValue product, String productContentTypeId, Delegator delegator, Writer outWriter, boolean cache) throws GeneralException, IOException {
         String candidateFieldName = ModelUtil.dbNameToVarName(productContentTypeId);
         ModelEntity productModel = delegator.getModelEntity("Product");
         if (product == null) {
@@ -228,6 +242,106 @@ public class ProductContentWrapper extends CommonContentWrapper {
         }
     }
 
+    /**
+     * Renders the given content types of all the given products into the wrapper cache (<code>product.content.rendered</code>)
+     * and returns the texts by productId and productContentTypeId, as {@link #getProductContentAsText} would.
+     * <p>
+     * The ProductContent (including of the virtual products, for variants), Content, DataResource and ElectronicText
+     * records of the uncached texts are read with a few IN queries (see {@link ContentPrefetcher}) instead of several
+     * lookups per product and content type. Meant for listings: call it for the page of products before rendering it,
+     * and the ProductContentWrapper calls for those products are then cache hits. If useCache is false, the wrapper
+     * cache is neither read nor filled.
+     * <p>SCIPIO: 2.x.x: Added.</p>
+     */
+    public static Map<String, Map<String, String>> prefetchProductContentAsText(Collection<GenericValue> products, Collection<String> productContentTypeIds,
+            Locale locale, String mimeTypeId, Delegator delegator, LocalDispatcher dispatcher, boolean useCache, String encoderType) {
+        if (UtilValidate.isEmpty(products)) {
+            return new LinkedHashMap<>();
+        }
+        Delegator productDelegator = (delegator != null) ? delegator : products.iterator().next().getDelegator();
+        UtilCodec.SimpleEncoder encoder = ContentLangUtil.getContentWrapperSanitizer(encoderType);
+        ContentPrefetcher.WrapperAdapter adapter = new ContentPrefetcher.WrapperAdapter() {
+            @Override
+            public String getEntityName() {
+                return "Product";
+            }
+            @Override
+            public String getId(GenericValue product) {
+                return product.getString("productId");
+            }
+            @Override
+            public String makeCacheKey(String productId, String productContentTypeId) {
+                return ProductContentWrapper.makeCacheKey(productId, productContentTypeId, locale, mimeTypeId, encoder, productDelegator);
+            }
+            @Override
+            public Map<String, GenericValue> findContentAssocs(Map<String, GenericValue> products, Collection<String> productContentTypeIds) throws GeneralException {
+                Map<String, GenericValue> productContents = getFirstProductContents(productDelegator, products.keySet(), productContentTypeIds);
+                // Variants without their own ProductContent use the virtual product's
+                Map<String, String> parentProductIds = new HashMap<>();
+                for (GenericValue product : products.values()) {
+                    if ("Y".equals(product.getString("isVariant"))) {
+                        String productId = product.getString("productId");
+                        for (String productContentTypeId : productContentTypeIds) {
+                            if (!productContents.containsKey(ContentPrefetcher.makeAssocKey(productId, productContentTypeId))) {
+                                String parentProductId = ProductWorker.getParentProductId(productId, productDelegator, true);
+                                if (parentProductId != null) {
+                                    parentProductIds.put(productId, parentProductId);
+                                }
+                                break;
+                            }
+                        }
+                    }
+                }
+                if (!parentProductIds.isEmpty()) {
+                    Map<String, GenericValue> parentProductContents = getFirstProductContents(productDelegator, new HashSet<>(parentProductIds.values()), productContentTypeIds);
+                    for (Map.Entry<String, String> entry : parentProductIds.entrySet()) {
+                        for (String productContentTypeId : productContentTypeIds) {
+                            GenericValue parentProductContent = parentProductContents.get(ContentPrefetcher.makeAssocKey(entry.getValue(), productContentTypeId));
+                            if (parentProductContent != null) {
+                                productContents.putIfAbsent(ContentPrefetcher.makeAssocKey(entry.getKey(), productContentTypeId), parentProductContent);
+                            }
+                        }
+                    }
+                }
+                return productContents;
+            }
+            @Override
+            public void putRenderContext(Map<String, Object> context, GenericValue product, GenericValue productContent) {
+                context.put("product", product);
+                context.put("productContent", productContent);
+            }
+            @Override
+            public void writeFieldValue(GenericValue product, String productContentTypeId, Writer out) throws GeneralException, IOException {
+                writeProductFieldValue(product.getString("productId"), product, productContentTypeId, productDelegator, out, false);
+            }
+            @Override
+            public String getContentAsText(GenericValue product, String productContentTypeId, boolean useCache) {
+                return getProductContentAsText(product, productContentTypeId, locale, mimeTypeId, null, null, productDelegator, dispatcher, useCache, encoderType);
+            }
+        };
+        return new ContentPrefetcher(dispatcher, productDelegator, locale, mimeTypeId)
+                .prefetchContentAsText(adapter, products, productContentTypeIds, productContentCache, useCache, encoder);
+    }
+
+    /**
+     * Returns the current first (latest fromDate) ProductContent of each product and type, by productId::productContentTypeId.
+     */
+    private static Map<String, GenericValue> getFirstProductContents(Delegator delegator, Collection<String> productIds, Collection<String> productContentTypeIds) throws GeneralException {
+        List<GenericValue> productContentList = EntityQuery.use(delegator).from("ProductContent")
+                .where(EntityCondition.makeCondition("productId", EntityOperator.IN, productIds),
+                        EntityCondition.makeCondition("productContentTypeId", EntityOperator.IN, productContentTypeIds))
+                .orderBy("-fromDate").filterByDate().queryList();
+        Map<String, GenericValue> productContents = new HashMap<>();
+        for (GenericValue productContent : productContentList) {
+            productContents.putIfAbsent(ContentPrefetcher.makeAssocKey(productContent.getString("productId"), productContent.getString("productContentTypeId")), productContent);
+        }
+        return productContents;
+    }
+
+    private static String makeCacheKey(String productId, String productContentTypeId, Locale locale, String mimeTypeId, UtilCodec.SimpleEncoder encoder, Delegator delegator) {
+        return productId + SEPARATOR + productContentTypeId + SEPARATOR + locale + SEPARATOR + mimeTypeId + SEPARATOR + encoder.getLang() + SEPARATOR + delegator.getDelegatorName();
+    }
+
     /**
      * Gets the entity field value corresponding to the given productContentTypeId.
      * DO NOT USE FROM TEMPLATES - NOT CACHED - intended for code that must replicate ProductContentWrapper behavior.
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.product.test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.condition.EntityCondition;
+import org.ofbiz.entity.condition.EntityOperator;
+import org.ofbiz.entity.util.EntityQuery;
+import org.ofbiz.product.category.CategoryContentWrapper;
+import org.ofbiz.product.product.ProductContentWrapper;
+import org.ofbiz.service.testtools.OFBizTestCase;
+
+/**
+ * ContentWrapperPrefetchTests (SCIPIO): checks that the content wrapper prefetch methods return the same texts as
+ * the single-text methods: electronic and short text contents, alternate locale contents, the virtual product's
+ * content for variants and the entity field fallback (see testdef/data/ContentWrapperPrefetchTestsData.xml).
+ */
+public class ContentWrapperPrefetchTests extends OFBizTestCase {
+
+    private static final List<String> PRODUCT_CONTENT_TYPE_IDS = Arrays.asList("PRODUCT_NAME", "DESCRIPTION");
+    private static final String MIME_TYPE_ID = "text/html";
+
+    public ContentWrapperPrefetchTests(String name) {
+        super(name);
+    }
+
+    public void testProductPrefetchMatchesSingle() throws Exception {
+        List<GenericValue> products = getProducts();
+        for (Locale locale : Arrays.asList(Locale.ENGLISH, Locale.GERMAN)) {
+            Map<String, Map<String, String>> texts = ProductContentWrapper.prefetchProductContentAsText(products, PRODUCT_CONTENT_TYPE_IDS,
+                    locale, MIME_TYPE_ID, delegator, dispatcher, false, "raw");
+            assertEquals(products.size(), texts.size());
+            for (GenericValue product : products) {
+                for (String productContentTypeId : PRODUCT_CONTENT_TYPE_IDS) {
+                    String expected = ProductContentWrapper.getProductContentAsText(product, productContentTypeId, locale, MIME_TYPE_ID,
+                            null, null, delegator, dispatcher, false, "raw");
+                    assertEquals(product.getString("productId") + " " + productContentTypeId + " " + locale, expected,
+                            texts.get(product.getString("productId")).get(productContentTypeId));
+                }
+            }
+        }
+    }
+
+    public void testProductPrefetchTexts() throws Exception {
+        List<GenericValue> products = getProducts();
+        Map<String, Map<String, String>> enTexts = ProductContentWrapper.prefetchProductContentAsText(products, PRODUCT_CONTENT_TYPE_IDS,
+                Locale.ENGLISH, MIME_TYPE_ID, delegator, dispatcher, false, "raw");
+        assertEquals("Prefetch test product one", enTexts.get("PCWTEST_1").get("PRODUCT_NAME"));
+        assertEquals("Field description one", enTexts.get("PCWTEST_1").get("DESCRIPTION"));
+        assertEquals("Field name two", enTexts.get("PCWTEST_2").get("PRODUCT_NAME"));
+        assertEquals("Prefetch test virtual description", enTexts.get("PCWTEST_V1").get("DESCRIPTION"));
+
+        Map<String, Map<String, String>> deTexts = ProductContentWrapper.prefetchProductContentAsText(products, PRODUCT_CONTENT_TYPE_IDS,
+                Locale.GERMAN, MIME_TYPE_ID, delegator, dispatcher, false, "raw");
+        assertEquals("Prefetch Testprodukt eins", deTexts.get("PCWTEST_1").get("PRODUCT_NAME"));
+    }
+
+    public void testProductPrefetchFillsWrapperCache() throws Exception {
+        List<GenericValue> products = getProducts();
+        Map<String, Map<String, String>> texts = ProductContentWrapper.prefetchProductContentAsText(products, PRODUCT_CONTENT_TYPE_IDS,
+                Locale.GERMAN, MIME_TYPE_ID, delegator, dispatcher, true, "html");
+        // Served from the wrapper cache by the prefetch, then by the single-text method
+        assertEquals(texts, ProductContentWrapper.prefetchProductContentAsText(products, PRODUCT_CONTENT_TYPE_IDS,
+                Locale.GERMAN, MIME_TYPE_ID, delegator, dispatcher, true, "html"));
+        for (GenericValue product : products) {
+            assertEquals(texts.get(product.getString("productId")).get("PRODUCT_NAME"), ProductContentWrapper.getProductContentAsText(product,
+                    "PRODUCT_NAME", Locale.GERMAN, MIME_TYPE_ID, null, null, delegator, dispatcher, true, "html"));
+        }
+    }
+
+    public void testCategoryPrefetchMatchesSingle() throws Exception {
+        List<GenericValue> productCategories = EntityQuery.use(delegator).from("ProductCategory").where("productCategoryId", "PCWTEST_CAT").queryList();
+        List<String> prodCatContentTypeIds = Arrays.asList("CATEGORY_NAME", "DESCRIPTION");
+        Map<String, Map<String, String>> texts = CategoryContentWrapper.prefetchProductCategoryContentAsText(productCategories, prodCatContentTypeIds,
+                Locale.GERMAN, MIME_TYPE_ID, delegator, dispatcher, false, "raw");
+        assertEquals("Field category name", texts.get("PCWTEST_CAT").get("CATEGORY_NAME"));
+        assertEquals("Prefetch Testprodukt eins", texts.get("PCWTEST_CAT").get("DESCRIPTION"));
+        for (String prodCatContentTypeId : prodCatContentTypeIds) {
+            assertEquals(CategoryContentWrapper.getProductCategoryContentAsText(productCategories.get(0), prodCatContentTypeId, Locale.GERMAN,
+                    MIME_TYPE_ID, delegator, dispatcher, false, "raw"), texts.get("PCWTEST_CAT").get(prodCatContentTypeId));
+        }
+    }
+
+    private List<GenericValue> getProducts() throws Exception {
+        return EntityQuery.use(delegator).from("Product")
+                .where(EntityCondition.makeCondition("productId", EntityOperator.IN, Arrays.asList("PCWTEST_1", "PCWTEST_2", "PCWTEST_V1")))
+                .orderBy("productId").queryList();
+    }
+}
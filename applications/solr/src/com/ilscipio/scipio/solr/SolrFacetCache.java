@@ -0,0 +1,180 @@
+package com.ilscipio.scipio.solr;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrRequest.METHOD;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.params.CommonParams;
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilProperties;
+import org.ofbiz.base.util.cache.UtilCache;
+
+/**
+ * SCIPIO: Result cache for the facet and category count queries (no documents) of the category services
+ * (solrAvailableCategories, solrAvailableCategoriesExtended, solrSideDeepCategory).
+ * <p>
+ * Results are keyed by the Solr core URL and the normalized query parameters (query, filter queries in sorted order,
+ * facet options), which include the catalog, store and default filters of the query. Concurrent identical queries
+ * are coalesced: only the first runs against Solr and the others wait for its response. The cache is cleared
+ * whenever the index is committed by the indexing services ({@link #commit(SolrClient)}), and entries expire after
+ * <code>solr.query.facetCache.expireTime</code> to bound staleness from commits done outside this server.
+ * <p>
+ * NOTE: The cached {@link QueryResponse} instances are shared and must not be modified by callers.
+ */
+public final class SolrFacetCache {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    private static final boolean ENABLED = UtilProperties.getPropertyAsBoolean(SolrUtil.solrConfigName, "solr.query.facetCache.enable", true);
+
+    private static final UtilCache<String, QueryResponse> resultCache = UtilCache.createUtilCache("solr.query.facetResults",
+            UtilProperties.getPropertyAsInteger(SolrUtil.solrConfigName, "solr.query.facetCache.maxSize", 10000),
+            UtilProperties.getPropertyAsLong(SolrUtil.solrConfigName, "solr.query.facetCache.expireTime", 600000L));
+
+    private static final Map<String, CompletableFuture<QueryResponse>> inFlightQueries = new ConcurrentHashMap<>();
+
+    /** Incremented on every clear, so that queries started before an index commit are neither stored nor joined. */
+    private static final AtomicLong generation = new AtomicLong();
+    private static final AtomicLong solrQueryCount = new AtomicLong();
+    private static final AtomicLong coalescedCount = new AtomicLong();
+
+    private SolrFacetCache() {
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Runs the given query through the cache; the query must not return documents that vary per user.
+     */
+    public static QueryResponse query(HttpSolrClient client, SolrQuery solrQuery, METHOD method) throws SolrServerException, IOException {
+        if (!ENABLED) {
+            return client.query(solrQuery, method);
+        }
+        String key = makeKey(client, solrQuery);
+        QueryResponse response = resultCache.get(key);
+        if (response != null) {
+            return response;
+        }
+        long queryGeneration = generation.get();
+        String inFlightKey = queryGeneration + ":" + key;
+        CompletableFuture<QueryResponse> future = new CompletableFuture<>();
+        CompletableFuture<QueryResponse> inFlightFuture = inFlightQueries.putIfAbsent(inFlightKey, future);
+        if (inFlightFuture != null) {
+            coalescedCount.incrementAndGet();
+            return getResponse(inFlightFuture);
+        }
+        try {
+            solrQueryCount.incrementAndGet();
+            response = client.query(solrQuery, method);
+            if (queryGeneration == generation.get()) {
+                resultCache.put(key, response);
+            }
+            future.complete(response);
+            return response;
+        } catch (SolrServerException | IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightQueries.remove(inFlightKey, future);
+        }
+    }
+
+    private static QueryResponse getResponse(CompletableFuture<QueryResponse> future) throws SolrServerException, IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SolrServerException("Interrupted while waiting for identical Solr query", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SolrServerException) {
+                throw (SolrServerException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SolrServerException(cause);
+        }
+    }
+
+    /**
+     * Makes the cache key: core URL followed by the query parameters sorted by name; the values of
+     * repeatable parameters that are order-independent (filter queries, facet fields) are sorted too.
+     */
+    static String makeKey(HttpSolrClient client, SolrQuery solrQuery) {
+        List<String> names = new ArrayList<>(solrQuery.getParameterNames());
+        Collections.sort(names);
+        StringBuilder sb = new StringBuilder(256);
+        sb.append(client.getBaseURL()).append('?');
+        for (String name : names) {
+            String[] values = solrQuery.getParams(name);
+            if (values == null) {
+                continue;
+            }
+            if (values.length > 1 && (CommonParams.FQ.equals(name) || "facet.field".equals(name))) {
+                values = values.clone();
+                Arrays.sort(values);
+            }
+            for (String value : values) {
+                sb.append(name).append('=').append(value).append('\u0000');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Commits the index through the given client and removes all the cached results.
+     */
+    public static void commit(SolrClient client) throws SolrServerException, IOException {
+        client.commit();
+        clear();
+    }
+
+    /**
+     * Removes all the cached results; called after index commits.
+     */
+    public static void clear() {
+        generation.incrementAndGet();
+        resultCache.clear();
+        if (Debug.verboseOn()) {
+            Debug.logVerbose("Solr: Cleared facet result cache", module);
+        }
+    }
+
+    /**
+     * Returns the cache statistics: hits, misses, solrQueries (round-trips made), coalesced (queries that waited
+     * for an identical in-flight query) and saved (round-trips avoided by hits and coalescing).
+     */
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hits = resultCache.getHitCount();
+        long coalesced = coalescedCount.get();
+        stats.put("enabled", ENABLED);
+        stats.put("size", resultCache.size());
+        stats.put("hits", hits);
+        stats.put("misses", resultCache.getMissCountTotal());
+        stats.put("solrQueries", solrQueryCount.get());
+        stats.put("coalesced", coalesced);
+        stats.put("saved", hits + coalesced);
+        long total = hits + coalesced + solrQueryCount.get();
+        stats.put("hitRate", (total > 0) ? ((double) (hits + coalesced)) / total : 0.0);
+        return stats;
+    }
+}
@@ -229,7 +229,7 @@ public abstract class SolrProductSearch {
                     client = SolrUtil.getUpdateHttpSolrClient(docBuilder.getCore());
                 }
                 client.add(docs);
-                client.commit();
+                SolrFacetCache.commit(client); // SCIPIO: commit and clear the facet result cache
             }
             String statusStr = "Added " + progressMsg + " documents to solr index";
             if (SolrUtil.verboseOn()) {
@@ -303,7 +303,7 @@ public abstract class SolrProductSearch {
                         (query.length() > maxLogIdsSize ? query.substring(0, maxLogIdsSize) : query), module);
             }
             client.deleteByQuery("id:(" + query + ")");
-            client.commit();
+            SolrFacetCache.commit(client); // SCIPIO: commit and clear the facet result cache
             Map<String, Object> result = ServiceUtil.returnSuccess();
             result.put("numRemoved", docsToRemove.size());
             result.put("numFailures", 0);
@@ -343,7 +343,7 @@ public abstract class SolrProductSearch {
 
             // push Documents to server
             client.add(docs);
-            client.commit();
+            SolrFacetCache.commit(client); // SCIPIO: commit and clear the facet result cache
 
             final String statusStr = "Product '" + productId + "' indexed";
             if (SolrUtil.verboseOn()) Debug.logInfo("Solr: " + statusStr, module);
@@ -1196,7 +1196,8 @@ public abstract class SolrProductSearch {
             solrQuery.addFacetField("cat");
             solrQuery.setFacetLimit(-1);
             if (Debug.verboseOn()) Debug.logVerbose("solr: solrQuery: " + solrQuery, module);
-            QueryResponse returnMap = client.query(solrQuery, METHOD.POST);
+            // SCIPIO: Facet-only queries (category counts) are cached and coalesced; queries returning products are not
+            QueryResponse returnMap = displayProducts ? client.query(solrQuery, METHOD.POST) : SolrFacetCache.query(client, solrQuery, METHOD.POST);
             result = ServiceUtil.returnSuccess();
             result.put("rows", returnMap);
             result.put("numFound", returnMap.getResults().getNumFound());
@@ -1308,6 +1309,23 @@ public abstract class SolrProductSearch {
         return result;
     }
 
+    /**
+     * SCIPIO: Returns the statistics of the facet/category count result cache ({@link SolrFacetCache}).
+     */
+    public static Map<String, Object> getSolrFacetCacheStats(DispatchContext dctx, Map<String, Object> context) {
+        Map<String, Object> result = ServiceUtil.returnSuccess();
+        result.put("stats", SolrFacetCache.getStats());
+        return result;
+    }
+
+    /**
+     * SCIPIO: Clears the facet/category count result cache ({@link SolrFacetCache}).
+     */
+    public static Map<String, Object> clearSolrFacetCache(DispatchContext dctx, Map<String, Object> context) {
+        SolrFacetCache.clear();
+        return ServiceUtil.returnSuccess();
+    }
+
     /**
      * Rebuilds the solr index.
      */
@@ -1413,7 +1431,7 @@ public abstract class SolrProductSearch {
                 Debug.logInfo("Solr: rebuildSolrIndex: Clearing solr index (deleteMode: delete-all-first)", module);
                 // this removes everything from the index
                 client.deleteByQuery("*:*");
-                client.commit();
+                SolrFacetCache.commit(client); // SCIPIO: commit and clear the facet result cache
             } else if ("no-delete".equals(context.get("deleteMode"))) {
                 Debug.logInfo("Solr: rebuildSolrIndex: Not clearing solr index (deleteMode: no-delete) - deleted products will remain in index", module);
             }
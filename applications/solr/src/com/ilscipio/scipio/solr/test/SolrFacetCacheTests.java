@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package com.ilscipio.scipio.solr.test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrRequest.METHOD;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.util.NamedList;
+import org.ofbiz.base.test.GenericTestCaseBase;
+
+import com.ilscipio.scipio.solr.SolrFacetCache;
+
+/**
+ * SolrFacetCacheTests (SCIPIO): tests the facet result cache ({@link SolrFacetCache}) against a client that answers
+ * without a Solr server: identical queries are answered from the cache, and an index commit clears it.
+ */
+public class SolrFacetCacheTests extends GenericTestCaseBase {
+
+    public SolrFacetCacheTests(String name) {
+        super(name);
+    }
+
+    public void testCachedUntilCommit() throws Exception {
+        if (!SolrFacetCache.isEnabled()) {
+            return;
+        }
+        try (TestSolrClient client = new TestSolrClient()) {
+            SolrFacetCache.clear();
+            QueryResponse response = SolrFacetCache.query(client, makeQuery("cat:A", "store:1"), METHOD.POST);
+            assertEquals(1, client.queryCount.get());
+            assertSame("identical query answered from the cache", response,
+                    SolrFacetCache.query(client, makeQuery("store:1", "cat:A"), METHOD.POST));
+            assertEquals(1, client.queryCount.get());
+
+            SolrFacetCache.commit(client);
+            assertEquals(1, client.commitCount.get());
+            QueryResponse newResponse = SolrFacetCache.query(client, makeQuery("cat:A", "store:1"), METHOD.POST);
+            assertEquals("query after the commit goes to Solr", 2, client.queryCount.get());
+            assertNotSame(response, newResponse);
+        }
+    }
+
+    public void testDifferentQueriesNotShared() throws Exception {
+        if (!SolrFacetCache.isEnabled()) {
+            return;
+        }
+        try (TestSolrClient client = new TestSolrClient()) {
+            SolrFacetCache.clear();
+            SolrFacetCache.query(client, makeQuery("cat:A"), METHOD.POST);
+            SolrFacetCache.query(client, makeQuery("cat:B"), METHOD.POST);
+            assertEquals(2, client.queryCount.get());
+        }
+    }
+
+    private static SolrQuery makeQuery(String... filterQueries) {
+        SolrQuery solrQuery = new SolrQuery("*:*");
+        solrQuery.setRows(0);
+        solrQuery.setFacet(true);
+        solrQuery.addFacetField("cat");
+        solrQuery.addFilterQuery(filterQueries);
+        return solrQuery;
+    }
+
+    /**
+     * Answers queries and updates with empty responses, counting them.
+     */
+    @SuppressWarnings("serial")
+    private static class TestSolrClient extends HttpSolrClient {
+        final AtomicInteger queryCount = new AtomicInteger();
+        final AtomicInteger commitCount = new AtomicInteger();
+
+        TestSolrClient() {
+            super(new HttpSolrClient.Builder("http://localhost:8983/solr/solrtest"));
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public NamedList<Object> request(SolrRequest request, String collection) throws SolrServerException, IOException {
+            if (request instanceof UpdateRequest) {
+                commitCount.incrementAndGet();
+            } else {
+                queryCount.incrementAndGet();
+            }
+            return new NamedList<>();
+        }
+    }
+}
@@ -861,10 +861,10 @@ public class WorkEffortServices {
                         if (UtilValidate.isNotEmpty(workEffort.getTimestamp("actualStartDate")) || UtilValidate.isNotEmpty(workEffort.getTimestamp("actualCompletionDate"))) {
                             continue;
                         }
-                        TemporalExpression tempExpr = TemporalExpressionWorker.getTemporalExpression(delegator, workEffort.getString("tempExprId"));
                         DateRange weRange = new DateRange(workEffort.getTimestamp("estimatedStartDate"), workEffort.getTimestamp("estimatedCompletionDate"));
 
-                        Set<Date> occurrences = tempExpr.getRange(range, cal);
+                        // SCIPIO: Cached expansion (the same expressions are expanded for the same ranges on each calendar render)
+                        Set<Date> occurrences = TemporalExpressionWorker.getRange(delegator, workEffort.getString("tempExprId"), range, cal);
                         for (Date occurrence : occurrences) {
                             for (DateRange periodRange : periodRanges) {
                                 if (periodRange.includesDate(occurrence)) {
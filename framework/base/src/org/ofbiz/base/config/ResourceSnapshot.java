@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.base.config;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilProperties;
+
+/**
+ * Serialized snapshots of model definitions read from XML resources (SCIPIO).
+ * <p>
+ * A snapshot is the fully built model (e.g. the entity or service definitions) written with Java serialization to
+ * <code>cache.properties#modelSnapshot.dir</code>, in a file named after the SHA-256 hash of the contents of all the
+ * source resources it was built from. When none of the sources changed, the next startup computes the same hash and reads
+ * the snapshot instead of parsing and building the model again; any change to a source, or to the classes of the
+ * model (serialVersionUID mismatch), makes the snapshot unusable and the model is built from the XML as before.
+ * Only the latest snapshot of each model is kept.
+ * <p>
+ * Snapshots are read through the <code>cache.properties#modelSnapshot.serialFilter</code> {@link ObjectInputFilter}, so
+ * a snapshot file containing classes other than the model ones is rejected instead of deserialized.
+ */
+public final class ResourceSnapshot {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    private static final boolean ENABLED = UtilProperties.getPropertyAsBoolean("cache", "modelSnapshot.enable", true);
+    private static final String SNAPSHOT_DIR = UtilProperties.getPropertyValue("cache", "modelSnapshot.dir", "runtime/model-snapshots");
+    private static final String FILE_EXT = ".ser";
+    private static final ObjectInputFilter SERIAL_FILTER = ObjectInputFilter.Config.createFilter(UtilProperties.getPropertyValue("cache",
+            "modelSnapshot.serialFilter", "maxdepth=100;org.ofbiz.**;com.ilscipio.**;java.lang.**;java.util.**;java.math.*;java.sql.*;java.net.URL;java.net.URI;!*"));
+
+    private ResourceSnapshot() {
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    public static File getSnapshotDir() {
+        File snapshotDir = new File(SNAPSHOT_DIR);
+        if (!snapshotDir.isAbsolute() && System.getProperty("ofbiz.home") != null) {
+            snapshotDir = new File(System.getProperty("ofbiz.home"), SNAPSHOT_DIR);
+        }
+        return snapshotDir;
+    }
+
+    /**
+     * Returns the SHA-256 hash of the locations and contents of the given resources, in order, and of the given
+     * additional keys (e.g. the hash of another model the snapshot depends on).
+     */
+    public static String hashResources(Collection<? extends ResourceHandler> resourceHandlers, String... extraKeys) throws GenericConfigException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new GenericConfigException(e);
+        }
+        byte[] buffer = new byte[8192];
+        for (ResourceHandler resourceHandler : resourceHandlers) {
+            digest.update(resourceHandler.getFullLocation().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            try (InputStream in = resourceHandler.getStream()) {
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, read);
+                }
+            } catch (IOException e) {
+                throw new GenericConfigException("Could not read " + resourceHandler, e);
+            }
+            digest.update((byte) 0);
+        }
+        for (String extraKey : extraKeys) {
+            digest.update(String.valueOf(extraKey).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        StringBuilder sb = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns a key identifying the build of the code of the given classes, to be passed to {@link #hashResources} so that
+     * snapshots are not used across builds of the code that builds them.
+     * <p>
+     * The key covers the whole location each class is loaded from, not only the class file: the jar (modification time
+     * and size), or for a classes directory all the class files of the package of the class and its subpackages, so that
+     * rebuilding any model class (including ones only referenced by the model) invalidates the snapshot.
+     */
+    public static String getCodeVersion(Class<?>... classes) {
+        Set<String> versions = new LinkedHashSet<>();
+        for (Class<?> cls : classes) {
+            URL url = cls.getResource(cls.getName().substring(cls.getName().lastIndexOf('.') + 1) + ".class");
+            if (url != null) {
+                versions.add(getCodeLocationVersion(url));
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String version : versions) {
+            sb.append(version).append(';');
+        }
+        return sb.toString();
+    }
+
+    private static String getCodeLocationVersion(URL classUrl) {
+        try {
+            if ("jar".equals(classUrl.getProtocol())) {
+                URL jarUrl = ((JarURLConnection) classUrl.openConnection()).getJarFileURL();
+                if ("file".equals(jarUrl.getProtocol())) {
+                    File jarFile = new File(jarUrl.toURI());
+                    return jarUrl + "@" + jarFile.lastModified() + ":" + jarFile.length();
+                }
+            } else if ("file".equals(classUrl.getProtocol())) {
+                Path packageDir = new File(classUrl.toURI()).toPath().getParent();
+                long lastModified = 0;
+                long count = 0;
+                try (Stream<Path> files = Files.find(packageDir, Integer.MAX_VALUE,
+                        (path, attrs) -> attrs.isRegularFile() && path.getFileName().toString().endsWith(".class"))) {
+                    for (Path file : (Iterable<Path>) files::iterator) {
+                        lastModified = Math.max(lastModified, Files.readAttributes(file, BasicFileAttributes.class).lastModifiedTime().toMillis());
+                        count++;
+                    }
+                }
+                return packageDir.toUri() + "@" + lastModified + ":" + count;
+            }
+            // other locations: the class file alone
+            URLConnection connection = classUrl.openConnection();
+            connection.setUseCaches(false);
+            long lastModified = connection.getLastModified();
+            connection.getInputStream().close();
+            return classUrl + "@" + lastModified;
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            return classUrl + "@?";
+        }
+    }
+
+    /**
+     * Returns the snapshot of the given model built from sources having the given hash, or null if there is none or it
+     * cannot be read with the current classes.
+     */
+    public static <T> T read(String modelName, String sourceHash, Class<T> type) {
+        File file = getSnapshotFile(modelName, sourceHash);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (ObjectInputStream in = new SnapshotObjectInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            return type.cast(in.readObject());
+        } catch (InvalidClassException e) {
+            Debug.logInfo("Model snapshot " + file + " was written by different model classes or contains classes rejected by"
+                    + " modelSnapshot.serialFilter; ignoring it (" + e.getMessage() + ")", module);
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            Debug.logWarning("Could not read model snapshot " + file + "; ignoring it: " + e.toString(), module);
+        }
+        return null;
+    }
+
+    /**
+     * Writes the snapshot of the given model for the given source hash and removes the previous snapshots of the model.
+     * Failures are logged only, as the snapshot is an optimization.
+     * @return true if written
+     */
+    public static boolean write(String modelName, String sourceHash, Serializable model) {
+        File snapshotDir = getSnapshotDir();
+        File file = getSnapshotFile(modelName, sourceHash);
+        File tempFile = null;
+        try {
+            Files.createDirectories(snapshotDir.toPath());
+            tempFile = File.createTempFile(file.getName(), ".tmp", snapshotDir);
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile.toPath()), 65536))) {
+                out.writeObject(model);
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            tempFile = null;
+        } catch (IOException | RuntimeException e) {
+            Debug.logWarning("Could not write model snapshot " + file + ": " + e.toString(), module);
+            return false;
+        } finally {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+        String prefix = getFilePrefix(modelName);
+        File[] oldFiles = snapshotDir.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(FILE_EXT)
+                && name.length() == file.getName().length() && !name.equals(file.getName()));
+        if (oldFiles != null) {
+            for (File oldFile : oldFiles) {
+                oldFile.delete();
+            }
+        }
+        return true;
+    }
+
+    private static File getSnapshotFile(String modelName, String sourceHash) {
+        return new File(getSnapshotDir(), getFilePrefix(modelName) + sourceHash + FILE_EXT);
+    }
+
+    private static String getFilePrefix(String modelName) {
+        return modelName.replaceAll("[^A-Za-z0-9_.-]", "_") + "-";
+    }
+
+    /**
+     * Resolves the model classes with the context class loader, which sees the classes of all the components, and
+     * only the classes accepted by the snapshot serial filter.
+     */
+    private static class SnapshotObjectInputStream extends ObjectInputStream {
+        SnapshotObjectInputStream(InputStream in) throws IOException {
+            super(in);
+            setObjectInputFilter(SERIAL_FILTER);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            if (loader != null) {
+                try {
+                    return Class.forName(desc.getName(), false, loader);
+                } catch (ClassNotFoundException e) {
+                    // fall back to the default resolution below
+                }
+            }
+            return super.resolveClass(desc);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.base.config.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ofbiz.base.config.GenericConfigException;
+import org.ofbiz.base.config.ResourceHandler;
+import org.ofbiz.base.config.ResourceSnapshot;
+import org.ofbiz.base.test.GenericTestCaseBase;
+import org.ofbiz.base.util.UtilMisc;
+import org.w3c.dom.Document;
+
+/**
+ * ResourceSnapshotTests (SCIPIO): tests the model snapshots ({@link ResourceSnapshot}): a snapshot is read back equal to
+ * what was written, changed sources or code give another hash and drop the old snapshot, and a snapshot containing a
+ * class rejected by the serial filter is ignored.
+ */
+public class ResourceSnapshotTests extends GenericTestCaseBase {
+
+    private static final String MODEL_NAME = "ResourceSnapshotTests";
+
+    public ResourceSnapshotTests(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        File[] files = ResourceSnapshot.getSnapshotDir().listFiles((dir, name) -> name.startsWith(MODEL_NAME + "-"));
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        super.tearDown();
+    }
+
+    public void testRoundTrip() throws Exception {
+        String hash = ResourceSnapshot.hashResources(UtilMisc.toList(new TestResourceHandler("a.xml", "<a/>")));
+        Map<String, Object> model = new HashMap<>();
+        model.put("name", "test");
+        model.put("values", new ArrayList<>(UtilMisc.toList("x", "y")));
+        model.put("value", new TestModelValue("z"));
+        assertTrue("written", ResourceSnapshot.write(MODEL_NAME, hash, (Serializable) model));
+        assertEquals(model, ResourceSnapshot.read(MODEL_NAME, hash, HashMap.class));
+        assertNull("wrong type", ResourceSnapshot.read(MODEL_NAME, hash, List.class));
+    }
+
+    public void testInvalidation() throws Exception {
+        String hash = ResourceSnapshot.hashResources(UtilMisc.toList(new TestResourceHandler("a.xml", "<a/>")), "code1");
+        assertEquals("same sources, same hash", hash,
+                ResourceSnapshot.hashResources(UtilMisc.toList(new TestResourceHandler("a.xml", "<a/>")), "code1"));
+        String changedHash = ResourceSnapshot.hashResources(UtilMisc.toList(new TestResourceHandler("a.xml", "<b/>")), "code1");
+        String movedHash = ResourceSnapshot.hashResources(UtilMisc.toList(new TestResourceHandler("b.xml", "<a/>")), "code1");
+        String codeHash = ResourceSnapshot.hashResources(UtilMisc.toList(new TestResourceHandler("a.xml", "<a/>")), "code2");
+        assertFalse(hash.equals(changedHash));
+        assertFalse(hash.equals(movedHash));
+        assertFalse(hash.equals(codeHash));
+
+        assertTrue(ResourceSnapshot.write(MODEL_NAME, hash, "old"));
+        assertNull("no snapshot for the changed sources", ResourceSnapshot.read(MODEL_NAME, changedHash, String.class));
+        assertTrue(ResourceSnapshot.write(MODEL_NAME, changedHash, "new"));
+        assertEquals("new", ResourceSnapshot.read(MODEL_NAME, changedHash, String.class));
+        assertNull("old snapshot removed", ResourceSnapshot.read(MODEL_NAME, hash, String.class));
+    }
+
+    public void testRejectedClassIgnored() throws Exception {
+        String hash = ResourceSnapshot.hashResources(UtilMisc.toList(new TestResourceHandler("a.xml", "<a/>")));
+        assertTrue(ResourceSnapshot.write(MODEL_NAME, hash, new File("rejected")));
+        assertNull("java.io.File not allowed by modelSnapshot.serialFilter", ResourceSnapshot.read(MODEL_NAME, hash, File.class));
+    }
+
+    public void testCodeVersion() throws Exception {
+        assertEquals(ResourceSnapshot.getCodeVersion(ResourceSnapshot.class), ResourceSnapshot.getCodeVersion(ResourceSnapshot.class));
+        assertEquals("one key per code location", ResourceSnapshot.getCodeVersion(ResourceSnapshot.class),
+                ResourceSnapshot.getCodeVersion(ResourceSnapshot.class, GenericConfigException.class));
+
+        // A classes directory: changing any class file of the package changes the version, not only the given class
+        Path classesDir = Files.createTempDirectory("ResourceSnapshotTests");
+        try {
+            String classFileName = TestModelValue.class.getName().substring(TestModelValue.class.getName().lastIndexOf('.') + 1) + ".class";
+            Path packageDir = Files.createDirectories(classesDir.resolve(TestModelValue.class.getPackage().getName().replace('.', '/')));
+            try (InputStream in = TestModelValue.class.getResourceAsStream(classFileName)) {
+                Files.copy(in, packageDir.resolve(classFileName), StandardCopyOption.REPLACE_EXISTING);
+            }
+            packageDir.resolve(classFileName).toFile().setLastModified(System.currentTimeMillis() - 60000);
+            try (URLClassLoader loader = new URLClassLoader(new URL[] { classesDir.toUri().toURL() }, null)) {
+                Class<?> loadedClass = Class.forName(TestModelValue.class.getName(), false, loader);
+                String version = ResourceSnapshot.getCodeVersion(loadedClass);
+                assertEquals(version, ResourceSnapshot.getCodeVersion(loadedClass));
+                Files.write(packageDir.resolve("Other.class"), new byte[] { 0 });
+                assertFalse("other class of the package added", version.equals(ResourceSnapshot.getCodeVersion(loadedClass)));
+            }
+        } finally {
+            try (java.util.stream.Stream<Path> paths = Files.walk(classesDir)) {
+                paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    public static class TestModelValue implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final String value;
+
+        public TestModelValue(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return (obj instanceof TestModelValue) && value.equals(((TestModelValue) obj).value);
+        }
+
+        @Override
+        public int hashCode() {
+            return value.hashCode();
+        }
+    }
+
+    private static class TestResourceHandler implements ResourceHandler {
+        private static final long serialVersionUID = 1L;
+        private final String location;
+        private final String content;
+
+        TestResourceHandler(String location, String content) {
+            this.location = location;
+            this.content = content;
+        }
+
+        public String getLoaderName() {
+            return "test";
+        }
+
+        public String getLocation() {
+            return location;
+        }
+
+        public Document getDocument() throws GenericConfigException {
+            throw new UnsupportedOperationException();
+        }
+
+        public InputStream getStream() throws GenericConfigException {
+            return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public URL getURL() throws GenericConfigException {
+            return null;
+        }
+
+        public boolean isFileResource() throws GenericConfigException {
+            return false;
+        }
+
+        public String getFullLocation() throws GenericConfigException {
+            return location;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.base.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * SCIPIO: Lock-free histogram of latencies in microseconds with log-linear buckets: one bucket per microsecond below
+ * {@link #SUB_BUCKETS}, then {@link #SUB_BUCKETS} buckets per power of two (bucket width of 25%), giving percentiles
+ * within that precision. Latencies of 2^37 microseconds (38 hours) and more are counted in the last bucket.
+ */
+public final class LatencyHistogram {
+
+    /** Number of sub-buckets per power of two (bucket width of 25%). */
+    private static final int SUB_BUCKET_BITS = 2;
+    public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    public static final int BUCKETS = 36 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void record(long micros) {
+        counts.incrementAndGet(getBucket(micros));
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the latency below which the given fraction (0 to 1) of the recorded latencies are, in microseconds,
+     * rounded up to the upper bound of its bucket; 0 if nothing was recorded.
+     */
+    public long getPercentileMicros(double fraction) {
+        long[] bucketCounts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            bucketCounts[i] = counts.get(i);
+            count += bucketCounts[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(fraction * count));
+        long cumulated = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulated += bucketCounts[i];
+            if (cumulated >= target) {
+                return getBucketUpperBound(i);
+            }
+        }
+        return getBucketUpperBound(BUCKETS - 1);
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    /**
+     * Returns the bucket of the latency: linear below SUB_BUCKETS, then SUB_BUCKETS buckets per power of two.
+     */
+    public static int getBucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) Math.max(0, micros);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return Math.min(BUCKETS - 1, (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket);
+    }
+
+    /**
+     * Returns the upper bound (exclusive) of the latencies of the bucket, in microseconds.
+     */
+    public static long getBucketUpperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket + 1;
+        }
+        int shift = (bucket / SUB_BUCKETS) - 1;
+        return ((long) (SUB_BUCKETS + (bucket % SUB_BUCKETS) + 1)) << shift;
+    }
+}
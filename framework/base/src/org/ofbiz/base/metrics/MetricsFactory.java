@@ -28,6 +28,7 @@
  */
 package org.ofbiz.base.metrics;
 
+import java.io.Serializable;
 import java.util.Collection;
 import java.util.TreeSet;
 
@@ -197,7 +198,8 @@ public final class MetricsFactory {
         return new TreeSet<>(METRICS_CACHE.values());
     }
 
-    private static final class MetricsImpl implements Metrics, Comparable<Metrics> {
+    @SuppressWarnings("serial")
+    private static final class MetricsImpl implements Metrics, Comparable<Metrics>, Serializable { // SCIPIO: added Serializable
         private int count = 0;
         private long lastTime = System.currentTimeMillis();
         private double serviceRate = 0.0;
@@ -291,9 +293,45 @@ public final class MetricsFactory {
         public String toString() {
             return name;
         }
+
+        /**
+         * Serializes the definition only: deserialized instances resolve to the shared instance of the same name (SCIPIO).
+         */
+        private Object writeReplace() {
+            return new MetricsDefinition(name, estimationSize, estimationTime, smoothing, threshold);
+        }
+    }
+
+    /**
+     * Serialized form of {@link MetricsImpl}, used when service models are written to a model snapshot (SCIPIO).
+     */
+    @SuppressWarnings("serial")
+    private static final class MetricsDefinition implements Serializable {
+        private final String name;
+        private final int estimationSize;
+        private final long estimationTime;
+        private final double smoothing;
+        private final double threshold;
+
+        private MetricsDefinition(String name, int estimationSize, long estimationTime, double smoothing, double threshold) {
+            this.name = name;
+            this.estimationSize = estimationSize;
+            this.estimationTime = estimationTime;
+            this.smoothing = smoothing;
+            this.threshold = threshold;
+        }
+
+        private Object readResolve() {
+            return getInstance(name, estimationSize, estimationTime, smoothing, threshold);
+        }
     }
 
-    private static final class NullMetrics implements Metrics {
+    @SuppressWarnings("serial")
+    private static final class NullMetrics implements Metrics, Serializable { // SCIPIO: added Serializable
+
+        private Object readResolve() {
+            return NULL_METRICS;
+        }
 
         @Override
         public String getName() {
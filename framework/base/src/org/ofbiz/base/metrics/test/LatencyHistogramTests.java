@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.base.metrics.test;
+
+import org.ofbiz.base.metrics.LatencyHistogram;
+import org.ofbiz.base.test.GenericTestCaseBase;
+
+/**
+ * LatencyHistogramTests (SCIPIO): bucket bounds and percentiles of {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTests extends GenericTestCaseBase {
+
+    public LatencyHistogramTests(String name) {
+        super(name);
+    }
+
+    public void testLinearBuckets() {
+        assertEquals("negative", 0, LatencyHistogram.getBucket(-5));
+        for (int micros = 0; micros < LatencyHistogram.SUB_BUCKETS; micros++) {
+            assertEquals("bucket of " + micros, micros, LatencyHistogram.getBucket(micros));
+            assertEquals("upper bound of " + micros, micros + 1, LatencyHistogram.getBucketUpperBound(micros));
+        }
+    }
+
+    public void testLogLinearBuckets() {
+        // 4 sub-buckets per power of two: [4,5) [5,6) [6,7) [7,8), then [8,10) [10,12) [12,14) [14,16), ...
+        assertEquals("bucket of 4", 4, LatencyHistogram.getBucket(4));
+        assertEquals("bucket of 7", 7, LatencyHistogram.getBucket(7));
+        assertEquals("bucket of 8", 8, LatencyHistogram.getBucket(8));
+        assertEquals("bucket of 9", 8, LatencyHistogram.getBucket(9));
+        assertEquals("bucket of 10", 9, LatencyHistogram.getBucket(10));
+        assertEquals("bucket of 15", 11, LatencyHistogram.getBucket(15));
+        assertEquals("bucket of 16", 12, LatencyHistogram.getBucket(16));
+        assertEquals("upper bound of 8", 10, LatencyHistogram.getBucketUpperBound(8));
+        assertEquals("upper bound of 11", 16, LatencyHistogram.getBucketUpperBound(11));
+
+        // every latency is below the upper bound of its bucket and at least the upper bound of the previous one,
+        // and the buckets are at most 25% wide
+        long previousBucket = 0;
+        for (long micros = 1; micros < (1L << 20); micros += 1 + micros / 7) {
+            int bucket = LatencyHistogram.getBucket(micros);
+            assertTrue("bucket order at " + micros, bucket >= previousBucket);
+            assertTrue("upper bound at " + micros, micros < LatencyHistogram.getBucketUpperBound(bucket));
+            long lowerBound = (bucket > 0) ? LatencyHistogram.getBucketUpperBound(bucket - 1) : 0;
+            assertTrue("lower bound at " + micros, micros >= lowerBound);
+            assertTrue("width at " + micros, LatencyHistogram.getBucketUpperBound(bucket) - lowerBound <= Math.max(1, lowerBound / 4));
+            previousBucket = bucket;
+        }
+    }
+
+    public void testLastBucket() {
+        int lastBucket = LatencyHistogram.BUCKETS - 1;
+        assertEquals("upper bound of the last bucket", 1L << 37, LatencyHistogram.getBucketUpperBound(lastBucket));
+        assertEquals("bucket of 2^37 - 1", lastBucket, LatencyHistogram.getBucket((1L << 37) - 1));
+        assertEquals("bucket of 2^37", lastBucket, LatencyHistogram.getBucket(1L << 37));
+        assertEquals("bucket of Long.MAX_VALUE", lastBucket, LatencyHistogram.getBucket(Long.MAX_VALUE));
+    }
+
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals("empty", 0, histogram.getPercentileMicros(0.5));
+        // 90 latencies of 100us, 9 of 1000us and 1 of 10000us
+        for (int i = 0; i < 90; i++) {
+            histogram.record(100);
+        }
+        for (int i = 0; i < 9; i++) {
+            histogram.record(1000);
+        }
+        histogram.record(10000);
+        assertEquals("count", 100, histogram.getCount());
+        assertEquals("p0", LatencyHistogram.getBucketUpperBound(LatencyHistogram.getBucket(100)), histogram.getPercentileMicros(0));
+        assertEquals("p50", LatencyHistogram.getBucketUpperBound(LatencyHistogram.getBucket(100)), histogram.getPercentileMicros(0.5));
+        assertEquals("p90", LatencyHistogram.getBucketUpperBound(LatencyHistogram.getBucket(100)), histogram.getPercentileMicros(0.9));
+        assertEquals("p95", LatencyHistogram.getBucketUpperBound(LatencyHistogram.getBucket(1000)), histogram.getPercentileMicros(0.95));
+        assertEquals("p99", LatencyHistogram.getBucketUpperBound(LatencyHistogram.getBucket(1000)), histogram.getPercentileMicros(0.99));
+        assertEquals("p100", LatencyHistogram.getBucketUpperBound(LatencyHistogram.getBucket(10000)), histogram.getPercentileMicros(1));
+        assertTrue("p50 within 25%", histogram.getPercentileMicros(0.5) <= 125);
+
+        histogram.reset();
+        assertEquals("count after reset", 0, histogram.getCount());
+        assertEquals("p50 after reset", 0, histogram.getPercentileMicros(0.5));
+    }
+}
@@ -0,0 +1,312 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.base.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.tools.GroovyClass;
+import org.ofbiz.base.component.ComponentConfig;
+import org.ofbiz.base.concurrent.ExecutionPool;
+
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovySystem;
+
+/**
+ * Persistent, on-disk cache of compiled Groovy script classes (SCIPIO).
+ * <p>
+ * Used by {@link GroovyUtil#getScriptClassFromLocation(String)} in front of the Groovy compiler: the bytecode of each
+ * script is stored under <code>groovy.properties#classCache.dir</code> in an entry keyed by the SHA-256 hash of the
+ * script location, source, Groovy version and script base class. A script whose entry exists is defined from the stored
+ * bytecode without invoking the compiler or locking the shared <code>GroovyClassLoader</code>; a script that is new or
+ * whose source changed gets a new key, so it is compiled at runtime as before and its entry written for the next start.
+ * Stale entries are never read again and can be removed by deleting the directory.
+ * <p>
+ * {@link GroovyUtil#precompileScripts()} compiles the scripts of all the components in parallel ahead of time; it is run
+ * at startup by the <code>compileGroovyScripts</code> service, so only the scripts changed since the previous run are compiled.
+ */
+public final class GroovyClassCache {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    private static final boolean ENABLED = UtilProperties.getPropertyAsBoolean("groovy", "classCache.enable", true);
+    private static final String CACHE_DIR = UtilProperties.getPropertyValue("groovy", "classCache.dir", "runtime/groovy-classes");
+    /** Entry index file: main class name on the first line, then all the class names of the script. */
+    private static final String INDEX_FILE = "classes.idx";
+    private static final String CLASS_FILE_EXT = ".class";
+
+    private GroovyClassCache() {
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    public static File getCacheDir() {
+        File cacheDir = new File(CACHE_DIR);
+        if (!cacheDir.isAbsolute() && System.getProperty("ofbiz.home") != null) {
+            cacheDir = new File(System.getProperty("ofbiz.home"), CACHE_DIR);
+        }
+        return cacheDir;
+    }
+
+    /**
+     * Returns the main class of the given script, defined from its cache entry if there is one, otherwise compiled
+     * with the given configuration and class loader (used for class resolution only) and stored.
+     */
+    public static Class<?> getScriptClass(String text, String location, CompilerConfiguration compilerConfig,
+            GroovyClassLoader groovyClassLoader) throws IOException {
+        File entryDir = new File(getCacheDir(), makeKey(text, location, compilerConfig));
+        Map<String, byte[]> classBytes = new HashMap<>();
+        String mainClassName = readEntry(entryDir, classBytes);
+        if (mainClassName == null) {
+            mainClassName = compile(text, location, compilerConfig, groovyClassLoader, classBytes);
+            writeEntry(entryDir, mainClassName, classBytes);
+        } else if (Debug.verboseOn()) {
+            Debug.logVerbose("Loaded compiled Groovy script [" + location + "] from " + entryDir, module);
+        }
+        try {
+            return new CachedScriptClassLoader(groovyClassLoader.getParent(), classBytes).loadClass(mainClassName);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Compiled Groovy script [" + location + "] does not contain its main class " + mainClassName, e);
+        }
+    }
+
+    /**
+     * Returns true if the cache has an entry for the given script source, location and configuration.
+     */
+    public static boolean isCached(String text, String location, CompilerConfiguration compilerConfig) {
+        return new File(new File(getCacheDir(), makeKey(text, location, compilerConfig)), INDEX_FILE).isFile();
+    }
+
+    /**
+     * Removes the cache entry of the given script source, location and configuration, if any.
+     */
+    public static void remove(String text, String location, CompilerConfiguration compilerConfig) {
+        File entryDir = new File(getCacheDir(), makeKey(text, location, compilerConfig));
+        if (entryDir.isDirectory()) {
+            deleteQuietly(entryDir);
+        }
+    }
+
+    /**
+     * Compiles the Groovy scripts of all the components in parallel and stores those not already in the cache.
+     * Files under the <code>src</code> and <code>build</code> directories of the components, compiled by the build, are skipped.
+     * @return the number of scripts compiled
+     */
+    public static int compileAll(CompilerConfiguration compilerConfig, GroovyClassLoader groovyClassLoader) {
+        List<Callable<Boolean>> compilers = new ArrayList<>();
+        for (ComponentConfig component : ComponentConfig.getAllComponents()) {
+            Path rootPath = new File(component.getRootLocation()).toPath();
+            if (!Files.isDirectory(rootPath)) {
+                continue;
+            }
+            try (Stream<Path> paths = Files.walk(rootPath)) {
+                paths.filter(path -> path.toString().endsWith(".groovy") && Files.isRegularFile(path)).forEach(path -> {
+                    Path relativePath = rootPath.relativize(path);
+                    String firstDir = relativePath.getName(0).toString();
+                    if ("src".equals(firstDir) || "build".equals(firstDir)) {
+                        return;
+                    }
+                    String location = "component://" + component.getComponentName() + "/" + relativePath.toString().replace(File.separatorChar, '/');
+                    compilers.add(() -> compileToCache(path, location, compilerConfig, groovyClassLoader));
+                });
+            } catch (IOException e) {
+                Debug.logWarning(e, "Could not list Groovy scripts of component " + component.getComponentName(), module);
+            }
+        }
+        long startTime = System.currentTimeMillis();
+        int compiled = 0;
+        int failed = 0;
+        for (Future<Boolean> future : ExecutionPool.GLOBAL_FORK_JOIN.invokeAll(compilers)) {
+            try {
+                if (future.get()) {
+                    compiled++;
+                }
+            } catch (ExecutionException e) {
+                failed++;
+                if (Debug.verboseOn()) {
+                    Debug.logVerbose(e.getCause(), "Could not precompile Groovy script", module);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        Debug.logInfo("Precompiled " + compiled + " of " + compilers.size() + " Groovy scripts (" + failed + " failed, "
+                + (compilers.size() - compiled - failed) + " already cached) into " + getCacheDir() + " in "
+                + (System.currentTimeMillis() - startTime) + " ms", module);
+        return compiled;
+    }
+
+    private static boolean compileToCache(Path path, String location, CompilerConfiguration compilerConfig, GroovyClassLoader groovyClassLoader) throws IOException {
+        String text = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        if (isCached(text, location, compilerConfig)) {
+            return false;
+        }
+        Map<String, byte[]> classBytes = new HashMap<>();
+        String mainClassName = compile(text, location, compilerConfig, groovyClassLoader, classBytes);
+        writeEntry(new File(getCacheDir(), makeKey(text, location, compilerConfig)), mainClassName, classBytes);
+        return true;
+    }
+
+    private static String compile(String text, String location, CompilerConfiguration compilerConfig, GroovyClassLoader groovyClassLoader,
+            Map<String, byte[]> classBytes) {
+        CompilationUnit unit = new CompilationUnit(compilerConfig, null, groovyClassLoader);
+        unit.addSource(location, text);
+        unit.compile(Phases.CLASS_GENERATION);
+        for (GroovyClass groovyClass : unit.getClasses()) {
+            classBytes.put(groovyClass.getName(), groovyClass.getBytes());
+        }
+        // Same main class as GroovyClassLoader.parseClass: the first class of the module (the script class, if any)
+        return unit.getAST().getModules().get(0).getClasses().get(0).getName();
+    }
+
+    private static String readEntry(File entryDir, Map<String, byte[]> classBytes) {
+        File indexFile = new File(entryDir, INDEX_FILE);
+        if (!indexFile.isFile()) {
+            return null;
+        }
+        try {
+            List<String> classNames = Files.readAllLines(indexFile.toPath(), StandardCharsets.UTF_8);
+            if (classNames.size() < 2) {
+                return null;
+            }
+            for (String className : classNames.subList(1, classNames.size())) {
+                classBytes.put(className, Files.readAllBytes(new File(entryDir, className + CLASS_FILE_EXT).toPath()));
+            }
+            return classNames.get(0);
+        } catch (IOException e) {
+            Debug.logWarning("Could not read compiled Groovy script entry " + entryDir + "; recompiling: " + e.toString(), module);
+            classBytes.clear();
+            return null;
+        }
+    }
+
+    /**
+     * Writes the entry to a temporary directory renamed into place, so concurrent readers never see a partial entry.
+     */
+    private static void writeEntry(File entryDir, String mainClassName, Map<String, byte[]> classBytes) {
+        File tempDir = new File(entryDir.getParentFile(), entryDir.getName() + ".tmp" + Thread.currentThread().getId() + "-" + System.nanoTime());
+        try {
+            Files.createDirectories(tempDir.toPath());
+            List<String> classNames = new ArrayList<>(classBytes.size() + 1);
+            classNames.add(mainClassName);
+            for (Map.Entry<String, byte[]> entry : classBytes.entrySet()) {
+                Files.write(new File(tempDir, entry.getKey() + CLASS_FILE_EXT).toPath(), entry.getValue());
+                classNames.add(entry.getKey());
+            }
+            Files.write(new File(tempDir, INDEX_FILE).toPath(), classNames, StandardCharsets.UTF_8);
+            Files.move(tempDir.toPath(), entryDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Most likely written concurrently by another thread; otherwise the script is simply compiled again next time
+            if (!new File(entryDir, INDEX_FILE).isFile()) {
+                Debug.logWarning("Could not store compiled Groovy script entry " + entryDir + ": " + e.toString(), module);
+            }
+            deleteQuietly(tempDir);
+        }
+    }
+
+    private static void deleteQuietly(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private static String makeKey(String text, String location, CompilerConfiguration compilerConfig) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(GroovySystem.getVersion().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(compilerConfig.getScriptBaseClass()).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(location.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder(64);
+            for (byte b : digest.digest()) {
+                key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Defines the classes of one compiled script from their bytecode; classes not part of the script are delegated
+     * to the parent, the same parent as the Groovy class loader the script would otherwise be parsed by.
+     */
+    private static final class CachedScriptClassLoader extends ClassLoader {
+        private final Map<String, byte[]> classBytes;
+
+        CachedScriptClassLoader(ClassLoader parent, Map<String, byte[]> classBytes) {
+            super(parent);
+            this.classBytes = classBytes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classBytes.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            // The script classes first: their names are not qualified and must not be looked up by the parent
+            if (classBytes.containsKey(name)) {
+                synchronized (getClassLoadingLock(name)) {
+                    Class<?> c = findLoadedClass(name);
+                    if (c == null) {
+                        c = findClass(name);
+                    }
+                    if (resolve) {
+                        resolveClass(c);
+                    }
+                    return c;
+                }
+            }
+            return super.loadClass(name, resolve);
+        }
+    }
+}
@@ -366,7 +366,12 @@ public class GroovyUtil {
                 if (scriptUrl == null) {
                     throw new GeneralException("Script not found at location [" + location + "]");
                 }
-                if (GroovyLoader.classLoader != null) {
+                if (GroovyLoader.classLoader != null && GroovyClassCache.isEnabled()) {
+                    // SCIPIO: Defined from the persistent compiled class cache, compiled only if missing there
+                    try (InputStream in = scriptUrl.openStream()) {
+                        scriptClass = GroovyClassCache.getScriptClass(UtilIO.readString(in), location, GroovyLoader.compilerConfig, GroovyLoader.classLoader);
+                    }
+                } else if (GroovyLoader.classLoader != null) {
                     scriptClass = parseClass(scriptUrl.openStream(), location, GroovyLoader.classLoader);
                 } else {
                     scriptClass = parseClass(scriptUrl.openStream(), location);
@@ -389,6 +394,20 @@ public class GroovyUtil {
         }
     }
 
+    /**
+     * SCIPIO: Compiles the Groovy scripts of all the components ahead of time into the persistent compiled class cache
+     * ({@link GroovyClassCache}), in parallel, so they are loaded without compiling by {@link #getScriptClassFromLocation(String)}.
+     * Does nothing if the cache is disabled (<code>groovy.properties#classCache.enable</code>) or no script base class is configured.
+     * @return the number of scripts compiled (those changed since the previous run)
+     */
+    public static int precompileScripts() {
+        if (!baseScriptInitialized) { initBaseScript(); }
+        if (GroovyLoader.classLoader == null || !GroovyClassCache.isEnabled()) {
+            return 0;
+        }
+        return GroovyClassCache.compileAll(GroovyLoader.compilerConfig, GroovyLoader.classLoader);
+    }
+
     /**
      * @throws IOException
      * @deprecated SCIPIO: 2017-01-30: ambiguous; method specifying an explicit ClassLoader should be used instead, to ensure library loading consistency.
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.base.util.test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.ofbiz.base.test.GenericTestCaseBase;
+import org.ofbiz.base.util.GroovyClassCache;
+import org.ofbiz.base.util.GroovyUtil;
+import org.ofbiz.base.util.cache.UtilCache;
+
+import groovy.lang.Binding;
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.Script;
+
+/**
+ * GroovyClassCacheTests (SCIPIO): tests the persistent compiled Groovy script cache ({@link GroovyClassCache}) and its use by
+ * {@link GroovyUtil#getScriptClassFromLocation(String)}: a cached script is defined again from its entry, and a changed
+ * script is compiled into a new entry.
+ */
+public class GroovyClassCacheTests extends GenericTestCaseBase {
+
+    private static final String TEST_LOCATION = "component://base/testdef/GroovyClassCacheTests.groovy";
+
+    public GroovyClassCacheTests(String name) {
+        super(name);
+    }
+
+    public void testCacheHit() throws Exception {
+        if (!GroovyClassCache.isEnabled()) {
+            return;
+        }
+        CompilerConfiguration compilerConfig = new CompilerConfiguration();
+        String text = "return 'hit'";
+        GroovyClassCache.remove(text, TEST_LOCATION, compilerConfig);
+        try (GroovyClassLoader groovyClassLoader = new GroovyClassLoader(getClass().getClassLoader(), compilerConfig)) {
+            assertFalse("not cached before the first load", GroovyClassCache.isCached(text, TEST_LOCATION, compilerConfig));
+            Class<?> compiledClass = GroovyClassCache.getScriptClass(text, TEST_LOCATION, compilerConfig, groovyClassLoader);
+            assertTrue("cached by the first load", GroovyClassCache.isCached(text, TEST_LOCATION, compilerConfig));
+            Class<?> cachedClass = GroovyClassCache.getScriptClass(text, TEST_LOCATION, compilerConfig, groovyClassLoader);
+            assertEquals(compiledClass.getName(), cachedClass.getName());
+            assertEquals("hit", runScript(compiledClass));
+            assertEquals("hit", runScript(cachedClass));
+        } finally {
+            GroovyClassCache.remove(text, TEST_LOCATION, compilerConfig);
+        }
+    }
+
+    public void testChangedScriptRecompiled() throws Exception {
+        if (!GroovyClassCache.isEnabled()) {
+            return;
+        }
+        CompilerConfiguration compilerConfig = new CompilerConfiguration();
+        String oldText = "return 'old'";
+        String newText = "return 'new'";
+        try (GroovyClassLoader groovyClassLoader = new GroovyClassLoader(getClass().getClassLoader(), compilerConfig)) {
+            assertEquals("old", runScript(GroovyClassCache.getScriptClass(oldText, TEST_LOCATION, compilerConfig, groovyClassLoader)));
+            assertFalse(GroovyClassCache.isCached(newText, TEST_LOCATION, compilerConfig));
+            assertEquals("new", runScript(GroovyClassCache.getScriptClass(newText, TEST_LOCATION, compilerConfig, groovyClassLoader)));
+            assertTrue(GroovyClassCache.isCached(newText, TEST_LOCATION, compilerConfig));
+            assertTrue("the old entry is kept", GroovyClassCache.isCached(oldText, TEST_LOCATION, compilerConfig));
+        } finally {
+            GroovyClassCache.remove(oldText, TEST_LOCATION, compilerConfig);
+            GroovyClassCache.remove(newText, TEST_LOCATION, compilerConfig);
+        }
+    }
+
+    public void testScriptReloadFromLocation() throws Exception {
+        // Same location on every run, so the compiled class cache entries of the two versions are reused
+        File scriptFile = new File(System.getProperty("java.io.tmpdir"), "GroovyClassCacheTests.groovy");
+        try {
+            String location = scriptFile.toURI().toURL().toString();
+            Files.write(scriptFile.toPath(), "return 'v1'".getBytes(StandardCharsets.UTF_8));
+            Class<?> scriptClass = GroovyUtil.getScriptClassFromLocation(location);
+            assertEquals("v1", runScript(scriptClass));
+            assertSame("parsed script cache hit", scriptClass, GroovyUtil.getScriptClassFromLocation(location));
+
+            Files.write(scriptFile.toPath(), "return 'v2'".getBytes(StandardCharsets.UTF_8));
+            UtilCache.clearCache("script.GroovyLocationParsedCache");
+            Class<?> changedScriptClass = GroovyUtil.getScriptClassFromLocation(location);
+            assertNotSame(scriptClass, changedScriptClass);
+            assertEquals("v2", runScript(changedScriptClass));
+
+            // Unchanged script after a cache clear: defined again (from the compiled class cache, if enabled)
+            UtilCache.clearCache("script.GroovyLocationParsedCache");
+            assertEquals("v2", runScript(GroovyUtil.getScriptClassFromLocation(location)));
+        } finally {
+            UtilCache.clearCache("script.GroovyLocationParsedCache");
+            scriptFile.delete();
+        }
+    }
+
+    private static Object runScript(Class<?> scriptClass) throws Exception {
+        Script script = (Script) scriptClass.getDeclaredConstructor().newInstance();
+        script.setBinding(new Binding());
+        return script.run();
+    }
+}
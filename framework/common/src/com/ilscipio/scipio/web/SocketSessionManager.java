@@ -1,5 +1,6 @@
 package com.ilscipio.scipio.web;
 
+import org.ofbiz.base.concurrent.ExecutionPool;
 import org.ofbiz.base.util.Debug;
 import org.ofbiz.base.util.UtilHttp;
 import org.ofbiz.base.util.UtilProperties;
@@ -9,11 +10,17 @@ import org.ofbiz.security.Security;
 import org.ofbiz.webapp.WebAppUtil;
 
 import javax.servlet.http.HttpSession;
+import javax.websocket.CloseReason;
 import javax.websocket.EndpointConfig;
 import javax.websocket.Session;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * SocketSessionManager.
@@ -29,12 +36,30 @@ import java.util.concurrent.ConcurrentHashMap;
  * TODO: REVIEW: There could be issues with Session identity (hashCode/equals) depending on the implementation, and it *might*
  *  be possible that have to use Session.getId as String keys instead of Session. But may be moot...
  * <p>SCIPIO: 2.1.0: Converted static class to reusable/overridable instance.</p>
+ * <p>SCIPIO: Asynchronous broadcasting: when <code>webSocket.broadcast.async</code> is enabled (default), the broadcast methods
+ * that use the default {@link MessageSender} only append the message to a bounded outbound queue per session and return;
+ * each queue is drained by the shared broadcast executor after <code>webSocket.broadcast.coalesceWindow</code> milliseconds,
+ * so a slow client no longer stalls the caller or the other clients, and a burst of messages is sent in one drain.
+ * The messages of a drain can be coalesced (<code>webSocket.broadcast.coalesce</code>, off by default): <code>latest</code>
+ * only sends the last message of each key (see {@link #getCoalesceKey}), <code>batch</code> sends them as a single JSON
+ * array frame (see {@link #coalesceMessages}). When a queue is full the message is dropped for that session; a session that stays
+ * behind (full queue) for longer than <code>webSocket.broadcast.slowConsumerTimeout</code> is disconnected.
+ * Queue depth, drop and disconnect counts are available from {@link #getBroadcastMetrics()}. Overloads taking an explicit
+ * MessageSender still send synchronously on the caller's thread.</p>
  */
 public class SocketSessionManager {
     private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
     private static final boolean DEBUG = UtilProperties.getPropertyAsBoolean("catalina", "webSocket.debug", false);
     /** For clients previously not registered to any specific channel; this distinguishes them. */
     public static final String DEFAULT_CHANNEL = "default";
+    private static final boolean BROADCAST_ASYNC = UtilProperties.getPropertyAsBoolean("catalina", "webSocket.broadcast.async", true);
+    private static final int BROADCAST_QUEUE_SIZE = UtilProperties.getPropertyAsInteger("catalina", "webSocket.broadcast.queueSize", 1000);
+    private static final long BROADCAST_COALESCE_WINDOW = UtilProperties.getPropertyAsLong("catalina", "webSocket.broadcast.coalesceWindow", 50L); // milliseconds
+    private static final String BROADCAST_COALESCE = UtilProperties.getPropertyValue("catalina", "webSocket.broadcast.coalesce", "none");
+    private static final long BROADCAST_SLOW_CONSUMER_TIMEOUT = UtilProperties.getPropertyAsLong("catalina", "webSocket.broadcast.slowConsumerTimeout", 30000L); // milliseconds
+    private static final long BROADCAST_SEND_TIMEOUT = UtilProperties.getPropertyAsLong("catalina", "webSocket.broadcast.sendTimeout", 10000L); // milliseconds
+    /** Tomcat-specific session user property limiting the time a blocking send may take. */
+    private static final String BLOCKING_SEND_TIMEOUT_PROPERTY = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
     private static final SocketSessionManager DEFAULT = new SocketSessionManager();
 
     /**
@@ -46,6 +71,14 @@ public class SocketSessionManager {
 
     protected final ThreadLocal allowLogging = new ThreadLocal<>();
 
+    /** Outbound message queues of the sessions, for asynchronous broadcasts. */
+    private final Map<Session, OutboundQueue> outboundQueues = new ConcurrentHashMap<>();
+    private final AtomicLong enqueuedCount = new AtomicLong();
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong slowConsumerCloseCount = new AtomicLong();
+
     /** Returns the default SocketSessionManager, typically for backend use. */
     public static SocketSessionManager getDefault() {
         return DEFAULT;
@@ -117,6 +150,7 @@ public class SocketSessionManager {
             }
             entry.getValue().removeSession(session);
         }
+        outboundQueues.remove(session);
     }
 
     /**
@@ -128,6 +162,9 @@ public class SocketSessionManager {
                 entry.getValue().removeSession(session);
             }
         }
+        for(Session session : sessions) {
+            outboundQueues.remove(session);
+        }
     }
 
 //    public static void removeChannel(String channel) {
@@ -223,8 +260,13 @@ public class SocketSessionManager {
 
     /**
      * Broadcasts to all sessions.
+     * <p>SCIPIO: Asynchronous if {@link #isAsyncBroadcast()}.</p>
      * */
     public void broadcastToAll(String message) {
+        if (isAsyncBroadcast()) {
+            enqueueBroadcast(message, getAllSessions(), "all channels");
+            return;
+        }
         broadcastToAll(message, getMessageSender());
     }
 
@@ -271,9 +313,21 @@ public class SocketSessionManager {
 
     /**
      * Broadcasts to a single client.
-     * @return true only if message appears to have been sent
+     * <p>SCIPIO: Asynchronous if {@link #isAsyncBroadcast()}: the message is then only queued for the client session
+     * and sent later by the broadcast executor, so a send failure is not reported here.</p>
+     * @return true if the message appears to have been sent or, if asynchronous, was queued for the client session
      */
     public boolean broadcastToClient(String message, String clientId) {
+        if (isAsyncBroadcast()) {
+            for (ChannelInfo channelInfo : channelMap.values()) {
+                for (Session session : channelInfo.getClientMap().keySet()) {
+                    if (clientId.equals(session.getId())) {
+                        return enqueueBroadcast(message, Collections.singleton(session), "client '" + clientId + "'") > 0;
+                    }
+                }
+            }
+            return false;
+        }
         return broadcastToClient(message, clientId, getMessageSender());
     }
 
@@ -331,6 +385,13 @@ public class SocketSessionManager {
      * NOTE: Logging must be disable-able is for ScipioSocketAppender otherwise this creates endless logging loops.
      */
     public void broadcastToChannel(String message, String channel) {
+        if (isAsyncBroadcast()) {
+            ChannelInfo channelInfo = channelMap.get(channel);
+            if (channelInfo != null) {
+                enqueueBroadcast(message, channelInfo.getClientMap().keySet(), "channel '" + channel + "'");
+            }
+            return;
+        }
         broadcastToChannel(message, channel, getMessageSender());
     }
 
@@ -381,6 +442,266 @@ public class SocketSessionManager {
         }
     }
 
+    /**
+     * Returns true if the broadcast methods using the default MessageSender queue messages for asynchronous,
+     * coalesced sending (<code>webSocket.broadcast.async</code>).
+     */
+    public boolean isAsyncBroadcast() {
+        return BROADCAST_ASYNC;
+    }
+
+    /**
+     * Appends the message to the outbound queues of the given sessions and schedules their draining.
+     * @return the number of sessions the message was queued for
+     */
+    protected int enqueueBroadcast(String message, Collection<Session> sessions, String targetDesc) {
+        boolean log = isLog();
+        Set<Session> invalidSessions = null;
+        int totalCount = 0;
+        int queuedCount = 0;
+        for (Session session : sessions) {
+            totalCount++;
+            if (!session.isOpen()) {
+                if (invalidSessions == null) {
+                    invalidSessions = new HashSet<>();
+                }
+                invalidSessions.add(session);
+                continue;
+            }
+            OutboundQueue queue = outboundQueues.computeIfAbsent(session, OutboundQueue::new);
+            if (queue.offer(message, log)) {
+                queuedCount++;
+            } else if (queue.isSlowConsumer()) {
+                if (invalidSessions == null) {
+                    invalidSessions = new HashSet<>();
+                }
+                invalidSessions.add(session);
+                closeSlowConsumer(session, log);
+            }
+        }
+        if (invalidSessions != null) {
+            removeSessions(invalidSessions);
+        }
+        if (isDebug()) {
+            Debug.logInfo("Websocket: queued message for " + queuedCount + "/" + totalCount + " sessions in " + targetDesc, module);
+        }
+        return queuedCount;
+    }
+
+    /**
+     * Returns the coalescing mode of the messages queued for a session during the coalescing window
+     * (<code>webSocket.broadcast.coalesce</code>): <code>none</code> (default), <code>latest</code> or <code>batch</code>.
+     */
+    protected String getCoalesceMode() {
+        return BROADCAST_COALESCE;
+    }
+
+    /**
+     * Returns the key under which the <code>latest</code> coalescing mode only keeps the last queued message, or null
+     * if the message must always be sent.
+     * <p>The default implementation uses the message itself, so only repeated identical messages are dropped; managers
+     * whose messages are state updates (e.g. JSON with an entity id) should override this to return that id.</p>
+     */
+    protected String getCoalesceKey(Session session, String message) {
+        return message;
+    }
+
+    /**
+     * Combines the messages queued for a session during the coalescing window into the messages actually sent,
+     * according to {@link #getCoalesceMode()}:
+     * <ul>
+     * <li><code>none</code>: the messages are sent unchanged, since repeated messages may be meaningful to the client
+     * (e.g. increments or appends).</li>
+     * <li><code>latest</code>: only the last message of each {@link #getCoalesceKey} is sent, at the position of that last message.</li>
+     * <li><code>batch</code>: the messages, which must be JSON values, are sent as one JSON array frame.</li>
+     * </ul>
+     */
+    protected List<String> coalesceMessages(Session session, List<String> messages) {
+        if (messages.size() < 2) {
+            return messages;
+        }
+        String mode = getCoalesceMode();
+        if ("latest".equals(mode)) {
+            Map<String, Integer> lastIndexByKey = new HashMap<>();
+            for (int i = 0; i < messages.size(); i++) {
+                String key = getCoalesceKey(session, messages.get(i));
+                if (key != null) {
+                    lastIndexByKey.put(key, i);
+                }
+            }
+            List<String> sendMessages = new ArrayList<>(lastIndexByKey.size());
+            for (int i = 0; i < messages.size(); i++) {
+                String key = getCoalesceKey(session, messages.get(i));
+                if (key == null || lastIndexByKey.get(key) == i) {
+                    sendMessages.add(messages.get(i));
+                }
+            }
+            return sendMessages;
+        } else if ("batch".equals(mode)) {
+            StringBuilder sb = new StringBuilder("[");
+            for (String message : messages) {
+                if (sb.length() > 1) {
+                    sb.append(',');
+                }
+                sb.append(message);
+            }
+            return Collections.singletonList(sb.append(']').toString());
+        }
+        return messages;
+    }
+
+    protected void closeSlowConsumer(Session session, boolean log) {
+        slowConsumerCloseCount.incrementAndGet();
+        outboundQueues.remove(session);
+        if (log) {
+            Debug.logWarning("Websocket: Closing slow client session '" + session.getId() + "' that stayed behind for more than "
+                    + BROADCAST_SLOW_CONSUMER_TIMEOUT + "ms", module);
+        }
+        try {
+            session.close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "Slow consumer"));
+        } catch (IOException e) {
+            if (log) {
+                Debug.logError("Could not close websocket session: " + e, module);
+            }
+        }
+    }
+
+    /**
+     * Returns the asynchronous broadcast metrics: current total and maximum queue depth, number of queues,
+     * and the enqueued, sent, coalesced, dropped and slow consumer disconnection counts.
+     */
+    public Map<String, Object> getBroadcastMetrics() {
+        int queueDepth = 0;
+        int maxQueueDepth = 0;
+        for (OutboundQueue queue : outboundQueues.values()) {
+            int depth = queue.size();
+            queueDepth += depth;
+            if (depth > maxQueueDepth) {
+                maxQueueDepth = depth;
+            }
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("queueCount", outboundQueues.size());
+        metrics.put("queueDepth", queueDepth);
+        metrics.put("maxQueueDepth", maxQueueDepth);
+        metrics.put("enqueuedCount", enqueuedCount.get());
+        metrics.put("sentCount", sentCount.get());
+        metrics.put("coalescedCount", coalescedCount.get());
+        metrics.put("droppedCount", droppedCount.get());
+        metrics.put("slowConsumerCloseCount", slowConsumerCloseCount.get());
+        return metrics;
+    }
+
+    private static class BroadcastExecutorHolder {
+        private static final ThreadGroup BROADCAST_THREAD_GROUP = new ThreadGroup("SocketSessionManager");
+        private static final ScheduledExecutorService executor = ExecutionPool.getScheduledExecutor(BROADCAST_THREAD_GROUP, "websocket-broadcast",
+                UtilProperties.getPropertyAsInteger("catalina", "webSocket.broadcast.threads", Runtime.getRuntime().availableProcessors()), 60, false);
+    }
+
+    private static class OutboundMessage {
+        private final String text;
+        private final boolean log;
+
+        private OutboundMessage(String text, boolean log) {
+            this.text = text;
+            this.log = log;
+        }
+    }
+
+    /**
+     * Bounded outbound message queue of a session, drained by the broadcast executor one drain at a time.
+     */
+    protected class OutboundQueue implements Runnable {
+        private final Session session;
+        private final ArrayBlockingQueue<OutboundMessage> messages = new ArrayBlockingQueue<>(BROADCAST_QUEUE_SIZE);
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+        /** Time at which the queue was first found full since it was last emptied, or 0. */
+        private volatile long behindSince = 0;
+
+        protected OutboundQueue(Session session) {
+            this.session = session;
+            if (BROADCAST_SEND_TIMEOUT > 0) {
+                session.getUserProperties().putIfAbsent(BLOCKING_SEND_TIMEOUT_PROPERTY, BROADCAST_SEND_TIMEOUT);
+            }
+        }
+
+        public int size() {
+            return messages.size();
+        }
+
+        /**
+         * Queues the message and schedules a drain; returns false if the queue is full and the message was dropped.
+         */
+        protected boolean offer(String message, boolean log) {
+            if (!messages.offer(new OutboundMessage(message, log))) {
+                droppedCount.incrementAndGet();
+                if (behindSince == 0) {
+                    behindSince = System.currentTimeMillis();
+                }
+                return false;
+            }
+            enqueuedCount.incrementAndGet();
+            schedule();
+            return true;
+        }
+
+        protected boolean isSlowConsumer() {
+            long behindSince = this.behindSince;
+            return behindSince != 0 && (System.currentTimeMillis() - behindSince) > BROADCAST_SLOW_CONSUMER_TIMEOUT;
+        }
+
+        protected void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                BroadcastExecutorHolder.executor.schedule(this, BROADCAST_COALESCE_WINDOW, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        @Override
+        public void run() {
+            List<OutboundMessage> drained = new ArrayList<>(messages.size());
+            messages.drainTo(drained);
+            boolean log = true;
+            List<String> texts = new ArrayList<>(drained.size());
+            for (OutboundMessage message : drained) {
+                texts.add(message.text);
+                log = log && message.log;
+            }
+            List<String> sendTexts = coalesceMessages(session, texts);
+            coalescedCount.addAndGet(texts.size() - sendTexts.size());
+            try {
+                for (String text : sendTexts) {
+                    if (!session.isOpen()) {
+                        removeSession(session);
+                        return;
+                    }
+                    getMessageSender().send(text, session);
+                    sentCount.incrementAndGet();
+                }
+                if (messages.isEmpty()) {
+                    behindSince = 0;
+                }
+            } catch (Exception e) {
+                if (log) {
+                    Debug.logWarning("Websocket: Could not send to client session '" + session.getId() + "'; closing: " + e, module);
+                }
+                removeSession(session);
+                try {
+                    session.close();
+                } catch (IOException ioe) {
+                    if (log) {
+                        Debug.logError("Could not close websocket session: " + ioe, module);
+                    }
+                }
+                return;
+            } finally {
+                scheduled.set(false);
+            }
+            if (!messages.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
     protected boolean checkClientAuthorization(SocketPermissionVerifier permVerifier, Session session, EndpointConfig config, String errorSuffix) {
         if (config == null) {
             if (isLog()) {
@@ -48,6 +48,7 @@ import javax.mail.internet.MimeMessage;
 import org.ofbiz.base.metrics.Metrics;
 import org.ofbiz.base.metrics.MetricsFactory;
 import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.GroovyUtil;
 import org.ofbiz.base.util.UtilCodec;
 import org.ofbiz.base.util.UtilDateTime;
 import org.ofbiz.base.util.UtilIO;
@@ -63,6 +64,7 @@ import org.ofbiz.entity.model.ModelEntity;
 import org.ofbiz.entity.transaction.TransactionUtil;
 import org.ofbiz.entity.util.EntityFindOptions;
 import org.ofbiz.entity.util.EntityQuery;
+import org.ofbiz.security.UserLoginPermissionSet;
 import org.ofbiz.service.DispatchContext;
 import org.ofbiz.service.GenericServiceException;
 import org.ofbiz.service.LocalDispatcher;
@@ -235,6 +237,23 @@ public class CommonServices {
         return ServiceUtil.returnSuccess();
     }
 
+    /**
+     * Removes the precomputed permission set of the given UserLogin, or all of them if none given (SCIPIO).
+     */
+    public static Map<String, Object> clearUserLoginPermissionSets(DispatchContext dctx, Map<String, ?> context) {
+        UserLoginPermissionSet.clear(dctx.getDelegator(), (String) context.get("userLoginId"));
+        return ServiceUtil.returnSuccess();
+    }
+
+    /**
+     * Compiles the Groovy scripts of all the components into the persistent compiled class cache (SCIPIO).
+     */
+    public static Map<String, Object> compileGroovyScripts(DispatchContext dctx, Map<String, ?> context) {
+        Map<String, Object> result = ServiceUtil.returnSuccess();
+        result.put("compiledCount", GroovyUtil.precompileScripts());
+        return result;
+    }
+
     public static Map<String, Object> forceGc(DispatchContext dctx, Map<String, ?> context) {
         System.gc();
         return ServiceUtil.returnSuccess();
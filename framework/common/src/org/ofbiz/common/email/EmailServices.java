@@ -46,7 +46,6 @@ import javax.mail.Message;
 import javax.mail.MessagingException;
 import javax.mail.SendFailedException;
 import javax.mail.Session;
-import javax.mail.Transport;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeBodyPart;
 import javax.mail.internet.MimeMessage;
@@ -166,6 +165,22 @@ public class EmailServices {
         String sendVia = (String) context.get("sendVia");
         String authUser = (String) context.get("authUser");
         String authPass = (String) context.get("authPass");
+        // SCIPIO: Named mail server of general.properties, which also provides the credentials (see getSmtpProperty)
+        String smtpServer = (String) context.get("smtpServer");
+        if (UtilValidate.isNotEmpty(smtpServer)) {
+            if (UtilValidate.isEmpty(getSmtpProperty(smtpServer, "relay.host", null, delegator))) {
+                return ServiceUtil.returnError("Mail server [" + smtpServer + "] is not configured (general.properties mail.smtp.server."
+                        + smtpServer + ".relay.host)");
+            }
+            sendVia = null;
+            port = null;
+            authUser = null;
+            authPass = null;
+        } else {
+            smtpServer = null;
+        }
+        // SCIPIO: Connections authenticated with a password passed by the caller are not pooled
+        boolean callerAuthPass = UtilValidate.isNotEmpty(authPass);
         String messageId = (String) context.get("messageId");
         String contentType = (String) context.get("contentType");
         Boolean sendPartial = (Boolean) context.get("sendPartial");
@@ -181,34 +196,34 @@ public class EmailServices {
         if (sendType == null || sendType.equals("mail.smtp.host")) {
             sendType = "mail.smtp.host";
             if (UtilValidate.isEmpty(sendVia)) {
-                sendVia = EntityUtilProperties.getPropertyValue("general", "mail.smtp.relay.host", "localhost", delegator);
+                sendVia = getSmtpProperty(smtpServer, "relay.host", "localhost", delegator);
             }
             if (UtilValidate.isEmpty(authUser)) {
-                authUser = EntityUtilProperties.getPropertyValue("general", "mail.smtp.auth.user", delegator);
+                authUser = getSmtpProperty(smtpServer, "auth.user", null, delegator);
             }
             if (UtilValidate.isEmpty(authPass)) {
-                authPass = EntityUtilProperties.getPropertyValue("general", "mail.smtp.auth.password", delegator);
+                authPass = getSmtpProperty(smtpServer, "auth.password", null, delegator);
             }
             if (UtilValidate.isNotEmpty(authUser)) {
                 useSmtpAuth = true;
             }
             if (UtilValidate.isEmpty(port)) {
-                port = EntityUtilProperties.getPropertyValue("general", "mail.smtp.port", delegator);
+                port = getSmtpProperty(smtpServer, "port", null, delegator);
             }
             if (UtilValidate.isEmpty(socketFactoryPort)) {
-                socketFactoryPort = EntityUtilProperties.getPropertyValue("general", "mail.smtp.socketFactory.port", delegator);
+                socketFactoryPort = getSmtpProperty(smtpServer, "socketFactory.port", null, delegator);
             }
             if (UtilValidate.isEmpty(socketFactoryClass)) {
-                socketFactoryClass = EntityUtilProperties.getPropertyValue("general", "mail.smtp.socketFactory.class", delegator);
+                socketFactoryClass = getSmtpProperty(smtpServer, "socketFactory.class", null, delegator);
             }
             if (UtilValidate.isEmpty(socketFactoryFallback)) {
-                socketFactoryFallback = EntityUtilProperties.getPropertyValue("general", "mail.smtp.socketFactory.fallback", "false", delegator);
+                socketFactoryFallback = getSmtpProperty(smtpServer, "socketFactory.fallback", "false", delegator);
             }
             if (sendPartial == null) {
-                sendPartial = EntityUtilProperties.propertyValueEqualsIgnoreCase("general", "mail.smtp.sendpartial", "true", delegator) ? true : false;
+                sendPartial = "true".equalsIgnoreCase(getSmtpProperty(smtpServer, "sendpartial", null, delegator));
             }
             if (isStartTLSEnabled == null) {
-                isStartTLSEnabled = EntityUtilProperties.propertyValueEqualsIgnoreCase("general", "mail.smtp.starttls.enable", "true", delegator);
+                isStartTLSEnabled = "true".equalsIgnoreCase(getSmtpProperty(smtpServer, "starttls.enable", null, delegator));
             }
         } else if (sendVia == null) {
             return ServiceUtil.returnError(UtilProperties.getMessage(resource, "CommonEmailSendMissingParameterSendVia", locale));
@@ -358,18 +373,18 @@ public class EmailServices {
             return results;
         }
 
-        Transport trans = null;
+        // SCIPIO: Connections are pooled and reused for the next message with the same settings (see SmtpTransportPool);
+        // the password is not part of the key, so only connections authenticated from the configuration are pooled
+        String poolKey = (useSmtpAuth && callerAuthPass) ? null : SmtpTransportPool.makeKey(sendType, smtpServer, sendVia, port,
+                socketFactoryClass, socketFactoryPort, socketFactoryFallback, useSmtpAuth ? authUser : null, sendPartial, isStartTLSEnabled);
+        SmtpTransportPool.Connection trans = null;
         try {
-            trans = session.getTransport("smtp");
-            if (!useSmtpAuth) {
-                trans.connect();
-            } else {
-                trans.connect(sendVia, authUser, authPass);
-            }
+            trans = SmtpTransportPool.getConnection(session, poolKey, sendVia, useSmtpAuth ? authUser : null, authPass);
             trans.sendMessage(mail, mail.getAllRecipients());
             results.put("messageWrapper", new MimeMessageWrapper(session, mail));
             results.put("messageId", mail.getMessageID());
-            trans.close();
+            trans.release();
+            trans = null;
         } catch (SendFailedException e) {
             // message code prefix may be used by calling services to determine the cause of the failure
             Debug.logError(e, "[ADDRERR] Address error when sending message to [" + sendTo + "] from [" + sendFrom + "] cc [" + sendCc + "] bcc [" + sendBcc + "] subject [" + subject + "]", module);
@@ -389,7 +404,6 @@ public class EmailServices {
                 results.put("messageWrapper", new MimeMessageWrapper(session, mail));
                 try {
                     results.put("messageId", mail.getMessageID());
-                    trans.close();
                 } catch (MessagingException e1) {
                     Debug.logError(e1, module);
                 }
@@ -402,10 +416,29 @@ public class EmailServices {
             Debug.logError(e, "[CON] Connection error when sending message to [" + sendTo + "] from [" + sendFrom + "] cc [" + sendCc + "] bcc [" + sendBcc + "] subject [" + subject + "] context " + context, module);
             //Debug.logError("Email message that could not be sent to [" + sendTo + "] had context: " + context, module);
             return ServiceUtil.returnError(UtilProperties.getMessage(resource, "CommonEmailSendConnectionError", UtilMisc.toMap("sendTo", sendTo, "sendFrom", sendFrom, "sendCc", sendCc, "sendBcc", sendBcc, "subject", subject), locale));
+        } finally {
+            if (trans != null) { // SCIPIO: failed connections are not reused
+                trans.close();
+            }
         }
         return results;
     }
 
+    /**
+     * SCIPIO: Returns the SMTP setting of the named mail server (general.properties <code>mail.smtp.server.[name].[setting]</code>),
+     * or the default one (<code>mail.smtp.[setting]</code>) if smtpServer is null or the named server does not set it.
+     * The credentials (<code>auth.*</code>) of a named server never fall back on the default ones.
+     */
+    private static String getSmtpProperty(String smtpServer, String setting, String defaultValue, Delegator delegator) {
+        if (smtpServer != null) {
+            String value = EntityUtilProperties.getPropertyValue("general", "mail.smtp.server." + smtpServer + "." + setting, delegator);
+            if (UtilValidate.isNotEmpty(value) || setting.startsWith("auth.")) {
+                return UtilValidate.isNotEmpty(value) ? value : defaultValue;
+            }
+        }
+        return EntityUtilProperties.getPropertyValue("general", "mail.smtp." + setting, defaultValue, delegator);
+    }
+
     /**
      * JavaMail Service that gets body content from a URL
      *@param ctx The DispatchContext that this service is operating in
@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.common.email;
+
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilProperties;
+
+/**
+ * Pool of connected SMTP transports for {@link EmailServices#sendMail} (SCIPIO).
+ * <p>
+ * Opening an SMTP connection costs a TCP connect, the greeting, EHLO and usually STARTTLS and AUTH, which for bulk
+ * mailings takes longer than sending the message itself. Connections are kept open after a successful send and reused
+ * for the next message to the same server with the same settings (the key passed by the caller). An idle connection
+ * is checked (NOOP) before reuse and dropped once older than <code>mail.smtp.pool.idleTimeout</code>; at most
+ * <code>mail.smtp.pool.maxIdle</code> idle connections are kept per key, and a connection is closed after
+ * <code>mail.smtp.pool.maxMessagesPerConnection</code> messages, since servers limit the messages per session.
+ * Connections that failed are always closed, never reused.
+ * <p>
+ * The key never includes a password: sendMail only pools connections whose credentials come from the configuration
+ * (general.properties, default or named mail server) and passes a null key, for an unpooled connection, when the
+ * caller supplied the password.
+ */
+public final class SmtpTransportPool {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    private static final boolean ENABLED = UtilProperties.getPropertyAsBoolean("general", "mail.smtp.pool.enable", true);
+    private static final int MAX_IDLE = UtilProperties.getPropertyAsInteger("general", "mail.smtp.pool.maxIdle", 8);
+    private static final long IDLE_TIMEOUT = UtilProperties.getPropertyAsLong("general", "mail.smtp.pool.idleTimeout", 30000L);
+    private static final int MAX_MESSAGES = UtilProperties.getPropertyAsInteger("general", "mail.smtp.pool.maxMessagesPerConnection", 100);
+
+    private static final Map<String, Deque<Connection>> idleConnections = new ConcurrentHashMap<>();
+
+    private SmtpTransportPool() {
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Makes a pool key from the settings the connection was opened with (host, port, user, TLS and socket factory options).
+     */
+    public static String makeKey(Object... settings) {
+        StringBuilder sb = new StringBuilder();
+        for (Object setting : settings) {
+            sb.append(setting).append('\u0000');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns an idle connection for the given key, or a new connection of the session.
+     * @param key the pool key, or null for a connection that is closed on release instead of pooled
+     * @param user the user for SMTP authentication, or null to connect without authentication
+     */
+    public static Connection getConnection(Session session, String key, String host, String user, String password) throws MessagingException {
+        if (ENABLED && key != null) {
+            Deque<Connection> idle = idleConnections.get(key);
+            if (idle != null) {
+                Connection connection;
+                while ((connection = idle.pollFirst()) != null) {
+                    if ((System.currentTimeMillis() - connection.lastUsed) < IDLE_TIMEOUT && connection.transport.isConnected()) {
+                        return connection;
+                    }
+                    connection.close();
+                }
+            }
+        }
+        Transport transport = session.getTransport("smtp");
+        if (user == null) {
+            transport.connect();
+        } else {
+            transport.connect(host, user, password);
+        }
+        return new Connection(key, transport);
+    }
+
+    /**
+     * Closes all the idle connections.
+     */
+    public static void clear() {
+        for (Deque<Connection> idle : idleConnections.values()) {
+            Connection connection;
+            while ((connection = idle.pollFirst()) != null) {
+                connection.close();
+            }
+        }
+    }
+
+    public static final class Connection {
+        private final String key;
+        private final Transport transport;
+        private int messageCount = 0;
+        private long lastUsed;
+
+        private Connection(String key, Transport transport) {
+            this.key = key;
+            this.transport = transport;
+        }
+
+        public void sendMessage(Message message, Address[] addresses) throws MessagingException {
+            messageCount++;
+            transport.sendMessage(message, addresses);
+        }
+
+        /**
+         * Returns the connection to the pool after a successful send, or closes it if it may not be reused.
+         */
+        public void release() {
+            if (!ENABLED || key == null || messageCount >= MAX_MESSAGES) {
+                close();
+                return;
+            }
+            Deque<Connection> idle = idleConnections.computeIfAbsent(key, k -> new ConcurrentLinkedDeque<>());
+            if (idle.size() >= MAX_IDLE) {
+                close();
+                return;
+            }
+            lastUsed = System.currentTimeMillis();
+            idle.offerFirst(this);
+        }
+
+        /**
+         * Closes the connection; used after errors.
+         */
+        public void close() {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                if (Debug.verboseOn()) {
+                    Debug.logVerbose("Could not close SMTP connection: " + e.toString(), module);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.common.test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ofbiz.base.util.Debug;
+
+/**
+ * In-process SMTP server stand-in for mail tests (SCIPIO).
+ * <p>
+ * Listens on a free loopback port and speaks just enough SMTP for JavaMail without TLS or AUTH (EHLO/HELO, MAIL,
+ * RCPT, DATA, RSET, NOOP, QUIT). Accepted messages are recorded with their envelope, and the number of connections is
+ * counted, so tests can check connection reuse.
+ */
+public class SmtpStandIn implements AutoCloseable {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    private final ServerSocket serverSocket;
+    private final Thread acceptThread;
+    private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+    private final List<ReceivedMessage> messages = new CopyOnWriteArrayList<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private volatile boolean closed = false;
+
+    public SmtpStandIn() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        acceptThread = new Thread(this::acceptLoop, "SmtpStandIn-" + serverSocket.getLocalPort());
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    public String getHost() {
+        return serverSocket.getInetAddress().getHostAddress();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public List<ReceivedMessage> getMessages() {
+        return new ArrayList<>(messages);
+    }
+
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                connectionCount.incrementAndGet();
+                sockets.add(socket);
+                Thread thread = new Thread(() -> handle(socket), acceptThread.getName() + "-" + connectionCount.get());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (!closed) {
+                    Debug.logError(e, "SMTP stand-in accept failed", module);
+                }
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+             OutputStream out = s.getOutputStream()) {
+            reply(out, "220 localhost SMTP stand-in");
+            String from = null;
+            List<String> recipients = new ArrayList<>();
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.toUpperCase();
+                if (command.startsWith("EHLO") || command.startsWith("HELO")) {
+                    reply(out, "250 localhost");
+                } else if (command.startsWith("MAIL FROM:")) {
+                    from = getAddress(line);
+                    recipients.clear();
+                    reply(out, "250 OK");
+                } else if (command.startsWith("RCPT TO:")) {
+                    recipients.add(getAddress(line));
+                    reply(out, "250 OK");
+                } else if (command.equals("DATA")) {
+                    if (recipients.isEmpty()) {
+                        reply(out, "503 No valid recipients");
+                        continue;
+                    }
+                    reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                    StringBuilder data = new StringBuilder();
+                    while ((line = in.readLine()) != null && !line.equals(".")) {
+                        data.append(line.startsWith("..") ? line.substring(1) : line).append("\r\n");
+                    }
+                    messages.add(new ReceivedMessage(from, new ArrayList<>(recipients), data.toString()));
+                    recipients.clear();
+                    reply(out, "250 OK queued");
+                } else if (command.equals("RSET")) {
+                    from = null;
+                    recipients.clear();
+                    reply(out, "250 OK");
+                } else if (command.equals("NOOP")) {
+                    reply(out, "250 OK");
+                } else if (command.equals("QUIT")) {
+                    reply(out, "221 Bye");
+                    break;
+                } else {
+                    reply(out, "502 Command not implemented");
+                }
+            }
+        } catch (SocketException e) {
+            // Closed by the client or by close()
+        } catch (IOException e) {
+            Debug.logError(e, "SMTP stand-in connection failed", module);
+        } finally {
+            sockets.remove(socket);
+        }
+    }
+
+    private static String getAddress(String line) {
+        String address = line.substring(line.indexOf(':') + 1).trim();
+        int start = address.indexOf('<');
+        int end = address.indexOf('>');
+        return (start >= 0 && end > start) ? address.substring(start + 1, end) : address;
+    }
+
+    private static void reply(OutputStream out, String reply) throws IOException {
+        out.write((reply + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+    }
+
+    public static class ReceivedMessage {
+        private final String from;
+        private final List<String> recipients;
+        private final String data;
+
+        ReceivedMessage(String from, List<String> recipients, String data) {
+            this.from = from;
+            this.recipients = Collections.unmodifiableList(recipients);
+            this.data = data;
+        }
+
+        public String getFrom() {
+            return from;
+        }
+
+        public List<String> getRecipients() {
+            return recipients;
+        }
+
+        /**
+         * Returns the message headers and body as sent (dot-stuffing removed).
+         */
+        public String getData() {
+            return data;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.common.test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.websocket.Session;
+
+import org.ofbiz.base.util.UtilMisc;
+import org.ofbiz.service.testtools.OFBizTestCase;
+
+import com.ilscipio.scipio.web.SocketSessionManager;
+
+/**
+ * SocketSessionManagerTests (SCIPIO): tests the coalescing of the messages queued for a websocket session
+ * by the asynchronous broadcasts of SocketSessionManager.
+ */
+public class SocketSessionManagerTests extends OFBizTestCase {
+
+    public SocketSessionManagerTests(String name) {
+        super(name);
+    }
+
+    public void testCoalesceNone() throws Exception {
+        TestSocketSessionManager manager = new TestSocketSessionManager("none");
+        List<String> messages = UtilMisc.toList("a:1", "a:1", "b:1");
+        assertEquals(messages, manager.coalesce(messages));
+    }
+
+    public void testCoalesceLatest() throws Exception {
+        TestSocketSessionManager manager = new TestSocketSessionManager("latest");
+        assertEquals(UtilMisc.toList("a:2", "c:1", "b:2"), manager.coalesce(UtilMisc.toList("a:1", "b:1", "a:2", "c:1", "b:2")));
+        assertEquals(UtilMisc.toList("x", "y"), manager.coalesce(UtilMisc.toList("x", "x", "y")));
+    }
+
+    public void testCoalesceBatch() throws Exception {
+        TestSocketSessionManager manager = new TestSocketSessionManager("batch");
+        assertEquals(UtilMisc.toList("[{\"a\":1},{\"b\":2},3]"), manager.coalesce(UtilMisc.toList("{\"a\":1}", "{\"b\":2}", "3")));
+        assertEquals(UtilMisc.toList("{\"a\":1}"), manager.coalesce(UtilMisc.toList("{\"a\":1}")));
+    }
+
+    public void testQueuedMessagesMerged() throws Exception {
+        TestSocketSessionManager manager = new TestSocketSessionManager("batch");
+        Session session = makeSession("SSMTEST_1");
+        for (int i = 1; i <= 3; i++) {
+            assertEquals(1, manager.enqueue(Integer.toString(i), session));
+        }
+        long deadline = System.currentTimeMillis() + 10000;
+        while (manager.sent.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(UtilMisc.toList("[1,2,3]"), new ArrayList<>(manager.sent));
+        Map<String, Object> metrics = manager.getBroadcastMetrics();
+        assertEquals(3L, metrics.get("enqueuedCount"));
+        assertEquals(1L, metrics.get("sentCount"));
+        assertEquals(2L, metrics.get("coalescedCount"));
+    }
+
+    private static Session makeSession(String id) {
+        Map<String, Object> userProperties = new ConcurrentHashMap<>();
+        return (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[] { Session.class }, (proxy, method, args) -> {
+            switch (method.getName()) {
+            case "getId":
+                return id;
+            case "isOpen":
+                return true;
+            case "getUserProperties":
+                return userProperties;
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "Session[" + id + "]";
+            default:
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private static class TestSocketSessionManager extends SocketSessionManager {
+        private final String coalesceMode;
+        private final List<String> sent = new CopyOnWriteArrayList<>();
+
+        private TestSocketSessionManager(String coalesceMode) {
+            this.coalesceMode = coalesceMode;
+        }
+
+        @Override
+        protected String getCoalesceMode() {
+            return coalesceMode;
+        }
+
+        @Override
+        protected String getCoalesceKey(Session session, String message) {
+            int sepIndex = message.indexOf(':');
+            return (sepIndex >= 0) ? message.substring(0, sepIndex) : message;
+        }
+
+        @Override
+        protected MessageSender getMessageSender() {
+            return (message, session) -> sent.add(message);
+        }
+
+        private List<String> coalesce(List<String> messages) {
+            return coalesceMessages(null, messages);
+        }
+
+        private int enqueue(String message, Session session) {
+            return enqueueBroadcast(message, Collections.singleton(session), "test session");
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.common.test;
+
+import java.sql.Timestamp;
+import java.util.Calendar;
+
+import org.ofbiz.base.util.UtilDateTime;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.transaction.TransactionUtil;
+import org.ofbiz.entity.util.EntityQuery;
+import org.ofbiz.security.UserLoginPermissionSet;
+import org.ofbiz.service.testtools.OFBizTestCase;
+
+/**
+ * UserLoginPermissionSetTests (SCIPIO): tests the precomputed permission sets of UserLoginPermissionSet: permission
+ * and entity permission checks, expiry at the end of a group membership, and the clear by the entity ECAs once the
+ * changing transaction completes.
+ */
+public class UserLoginPermissionSetTests extends OFBizTestCase {
+
+    private static final String TEST_USER_LOGIN_ID = "ULPSTEST_USER";
+    private static final String TEST_GROUP_ID = "ULPSTEST_GROUP";
+    private static final String TEST_EXPIRING_GROUP_ID = "ULPSTEST_EXPGROUP";
+
+    public UserLoginPermissionSetTests(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        delegator.createOrStore(delegator.makeValue("UserLogin", "userLoginId", TEST_USER_LOGIN_ID));
+        for (String groupId : new String[] { TEST_GROUP_ID, TEST_EXPIRING_GROUP_ID }) {
+            delegator.createOrStore(delegator.makeValue("SecurityGroup", "groupId", groupId, "description", "Permission set test group"));
+        }
+        createGroupPermission(TEST_GROUP_ID, "ULPSTEST_VIEW");
+        createGroupPermission(TEST_GROUP_ID, "ULPSTESTADM_ADMIN");
+        createGroupPermission(TEST_EXPIRING_GROUP_ID, "ULPSTESTEXP_VIEW");
+        delegator.create(delegator.makeValue("UserLoginSecurityGroup", "userLoginId", TEST_USER_LOGIN_ID, "groupId", TEST_GROUP_ID,
+                "fromDate", UtilDateTime.adjustTimestamp(UtilDateTime.nowTimestamp(), Calendar.DATE, -1)));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (GenericValue membership : EntityQuery.use(delegator).from("UserLoginSecurityGroup").where("userLoginId", TEST_USER_LOGIN_ID).queryList()) {
+            delegator.removeValue(membership);
+        }
+        for (String groupId : new String[] { TEST_GROUP_ID, TEST_EXPIRING_GROUP_ID }) {
+            for (GenericValue groupPermission : EntityQuery.use(delegator).from("SecurityGroupPermission").where("groupId", groupId).queryList()) {
+                delegator.removeValue(groupPermission);
+            }
+        }
+    }
+
+    public void testPermissionChecks() throws Exception {
+        UserLoginPermissionSet permissionSet = UserLoginPermissionSet.get(delegator, TEST_USER_LOGIN_ID);
+        assertTrue(permissionSet.getGroupIds().contains(TEST_GROUP_ID));
+        assertTrue(permissionSet.hasPermission("ULPSTEST_VIEW"));
+        assertFalse(permissionSet.hasPermission("ULPSTEST_UPDATE"));
+        assertFalse("hasPermission does not expand _ADMIN", permissionSet.hasPermission("ULPSTESTADM_VIEW"));
+        assertTrue(permissionSet.hasEntityPermission("ULPSTEST", "_VIEW"));
+        assertFalse(permissionSet.hasEntityPermission("ULPSTEST", "_UPDATE"));
+        assertTrue(permissionSet.hasEntityPermission("ULPSTESTADM", "_DELETE"));
+        assertTrue(permissionSet.hasEntityPermission("ULPSTESTADM", "_APPROVE"));
+        assertSame(permissionSet, UserLoginPermissionSet.get(delegator, TEST_USER_LOGIN_ID));
+    }
+
+    public void testExpiry() throws Exception {
+        Timestamp thruDate = new Timestamp(System.currentTimeMillis() + 1000);
+        delegator.create(delegator.makeValue("UserLoginSecurityGroup", "userLoginId", TEST_USER_LOGIN_ID, "groupId", TEST_EXPIRING_GROUP_ID,
+                "fromDate", UtilDateTime.adjustTimestamp(UtilDateTime.nowTimestamp(), Calendar.DATE, -1), "thruDate", thruDate));
+        assertTrue(UserLoginPermissionSet.get(delegator, TEST_USER_LOGIN_ID).hasPermission("ULPSTESTEXP_VIEW"));
+        long waitTime = thruDate.getTime() - System.currentTimeMillis() + 50;
+        if (waitTime > 0) {
+            Thread.sleep(waitTime);
+        }
+        UserLoginPermissionSet permissionSet = UserLoginPermissionSet.get(delegator, TEST_USER_LOGIN_ID);
+        assertFalse(permissionSet.hasPermission("ULPSTESTEXP_VIEW"));
+        assertTrue(permissionSet.hasPermission("ULPSTEST_VIEW"));
+    }
+
+    public void testClearAfterCommit() throws Exception {
+        assertFalse(UserLoginPermissionSet.get(delegator, TEST_USER_LOGIN_ID).hasPermission("ULPSTEST_UPDATE"));
+        boolean beganTransaction = TransactionUtil.begin();
+        try {
+            createGroupPermission(TEST_GROUP_ID, "ULPSTEST_UPDATE");
+            TransactionUtil.commit(beganTransaction);
+        } catch (Exception e) {
+            TransactionUtil.rollback(beganTransaction, "Error adding the permission set test permission", e);
+            throw e;
+        }
+        assertTrue(UserLoginPermissionSet.get(delegator, TEST_USER_LOGIN_ID).hasEntityPermission("ULPSTEST", "_UPDATE"));
+    }
+
+    public void testClearAfterRollback() throws Exception {
+        boolean beganTransaction = TransactionUtil.begin();
+        try {
+            createGroupPermission(TEST_GROUP_ID, "ULPSTEST_UPDATE");
+            // Build (and cache) the set with the uncommitted permission, as a check in the same transaction would
+            assertTrue(UserLoginPermissionSet.get(delegator, TEST_USER_LOGIN_ID).hasPermission("ULPSTEST_UPDATE"));
+        } finally {
+            TransactionUtil.rollback(beganTransaction, "Rolling back the permission set test permission", null);
+        }
+        assertFalse(UserLoginPermissionSet.get(delegator, TEST_USER_LOGIN_ID).hasPermission("ULPSTEST_UPDATE"));
+    }
+
+    private void createGroupPermission(String groupId, String permissionId) throws Exception {
+        delegator.create(delegator.makeValue("SecurityGroupPermission", "groupId", groupId, "permissionId", permissionId));
+    }
+}
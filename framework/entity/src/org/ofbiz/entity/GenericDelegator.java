@@ -516,6 +516,9 @@ public class GenericDelegator implements Delegator {
                 // don't complain about this too much, just log the error if there is one
                 Debug.logInfo(e, "Error getting TenantDataSource info for tenantId=" + this.delegatorTenantId + ", entityGroupName=" + entityGroupName, module);
             }
+        } else {
+            // SCIPIO: read replicas of the group (tenant datasources have none)
+            helperInfo.setReadHelperBaseNames(this.delegatorInfo.getGroupReadDataSources(entityGroupName));
         }
         return helperInfo;
     }
@@ -796,6 +799,7 @@ public class GenericDelegator implements Delegator {
                 createEntityAuditLogAll(value, false, false);
             }
 
+            flushCoalescedWrites(value.getEntityName());
             try {
                 value = helper.create(value);
 
@@ -886,6 +890,7 @@ public class GenericDelegator implements Delegator {
                 createEntityAuditLogAll(value, false, false);
             }
 
+            flushCoalescedWrites(value.getEntityName());
             value = helper.create(value);
 
             if (testMode) {
@@ -943,6 +948,22 @@ public class GenericDelegator implements Delegator {
         }
     }
 
+    /**
+     * SCIPIO: Writes the pending coalesced stores in the current transaction that another write on the entity could
+     * conflict with: those of the entity and of the entities related to it by a foreign key (see {@link WriteCoalescer}).
+     */
+    private void flushCoalescedWrites(String entityName) throws GenericEntityException {
+        WriteCoalescer.flushForWrite(this, entityName);
+    }
+
+    /**
+     * SCIPIO: Writes the pending coalesced stores in the current transaction that a query on the entity with the
+     * conditions could read (see {@link WriteCoalescer}).
+     */
+    private void flushCoalescedWrites(ModelEntity modelEntity, EntityCondition whereCondition, EntityCondition havingCondition) throws GenericEntityException {
+        WriteCoalescer.flushForQuery(this, modelEntity, whereCondition, havingCondition);
+    }
+
     protected void saveEntitySyncRemoveInfo(GenericEntity dummyPK) throws GenericEntityException {
         // don't store remove info on entities where it is disabled
         if (dummyPK.getModelEntity().getNoAutoStamp() || this.testRollbackInProgress) {
@@ -995,6 +1016,7 @@ public class GenericDelegator implements Delegator {
             if (testMode) {
                 removedEntity = this.findOne(primaryKey.getEntityName(), primaryKey, false);
             }
+            flushCoalescedWrites(primaryKey.getEntityName());
             int num = helper.removeByPrimaryKey(primaryKey);
 
             // doCacheClear
@@ -1051,6 +1073,7 @@ public class GenericDelegator implements Delegator {
                 removedValue = this.findOne(value.getEntityName(), value.getPrimaryKey(), false);
             }
 
+            flushCoalescedWrites(value.getEntityName());
             int num = helper.removeByPrimaryKey(value.getPrimaryKey());
             // Need to call removedFromDatasource() here because the helper calls removedFromDatasource() on the PK instead of the GenericEntity.
             value.removedFromDatasource();
@@ -1117,6 +1140,7 @@ public class GenericDelegator implements Delegator {
                 removedEntities = this.findList(entityName, condition, null, null, null, false);
             }
 
+            flushCoalescedWrites(entityName);
             int rowsAffected = helper.removeByCondition(this, modelEntity, condition);
             if (rowsAffected > 0) {
                 this.clearCacheLine(entityName);
@@ -1199,6 +1223,7 @@ public class GenericDelegator implements Delegator {
                 updatedEntities = this.findList(entityName, condition, null, null, null, false);
             }
 
+            flushCoalescedWrites(entityName);
             int rowsAffected =  helper.storeByCondition(this, modelEntity, fieldsToSet, condition);
             if (rowsAffected > 0) {
                 this.clearCacheLine(entityName);
@@ -1247,7 +1272,21 @@ public class GenericDelegator implements Delegator {
                 updatedEntity = this.findOne(value.getEntityName(), value.getPrimaryKey(), false);
             }
 
-            int retVal = helper.store(value);
+            // SCIPIO: Defer the update to the end of the transaction when coalescing writes
+            WriteCoalescer coalescer = null;
+            if (WriteCoalescer.isEnabled() && !beganTransaction && !testMode && WriteCoalescer.isCoalescable(value)) {
+                coalescer = WriteCoalescer.getForStore(this);
+            }
+            if (coalescer == null) {
+                flushCoalescedWrites(value.getEntityName());
+            }
+            int retVal;
+            if (coalescer != null) {
+                coalescer.add(value);
+                retVal = 1;
+            } else {
+                retVal = helper.store(value);
+            }
 
             // doCacheClear
             ecaRunner.evalRules(EntityEcaHandler.EV_CACHE_CLEAR, EntityEcaHandler.OP_STORE, value, false);
@@ -1311,6 +1350,7 @@ public class GenericDelegator implements Delegator {
                     throw new GenericModelException("[GenericDelegator.storeAll] One of the passed primary keys is not a valid primary key: " + primaryKey);
                 }
                 GenericValue existing = null;
+                flushCoalescedWrites(primaryKey.getModelEntity(), null, null);
                 try {
                     existing = helper.findByPrimaryKey(primaryKey);
                 } catch (GenericEntityNotFoundException e) {
@@ -1443,6 +1483,7 @@ public class GenericDelegator implements Delegator {
             GenericValue value = null;
 
             ecaRunner.evalRules(EntityEcaHandler.EV_RUN, EntityEcaHandler.OP_FIND, primaryKey, false);
+            flushCoalescedWrites(primaryKey.getModelEntity(), null, null);
             try {
                 value = helper.findByPrimaryKey(primaryKey);
             } catch (GenericEntityNotFoundException e) {
@@ -1493,6 +1534,7 @@ public class GenericDelegator implements Delegator {
             }
 
             ecaRunner.evalRules(EntityEcaHandler.EV_RUN, EntityEcaHandler.OP_FIND, primaryKey, false);
+            flushCoalescedWrites(primaryKey.getModelEntity(), null, null);
             try {
                 value = helper.findByPrimaryKeyPartial(primaryKey, keys);
             } catch (GenericEntityNotFoundException e) {
@@ -1558,6 +1600,7 @@ public class GenericDelegator implements Delegator {
 
         ecaRunner.evalRules(EntityEcaHandler.EV_RUN, EntityEcaHandler.OP_FIND, dummyValue, false);
         GenericHelper helper = getEntityHelper(modelEntity.getEntityName());
+        flushCoalescedWrites(modelEntity, whereEntityCondition, havingEntityCondition);
         EntityListIterator eli = helper.findListIteratorByCondition(this, modelEntity, whereEntityCondition, havingEntityCondition, fieldsToSelect, orderBy, findOptions);
         eli.setDelegator(this);
 
@@ -1643,6 +1686,7 @@ public class GenericDelegator implements Delegator {
         }
 
         GenericHelper helper = getEntityHelper(dynamicViewEntity.getOneRealEntityName());
+        flushCoalescedWrites(modelViewEntity, whereEntityCondition, havingEntityCondition);
         EntityListIterator eli = helper.findListIteratorByCondition(this, modelViewEntity, whereEntityCondition,
                 havingEntityCondition, fieldsToSelect, orderBy, findOptions);
         eli.setDelegator(this);
@@ -1677,6 +1721,7 @@ public class GenericDelegator implements Delegator {
 
             ecaRunner.evalRules(EntityEcaHandler.EV_RUN, EntityEcaHandler.OP_FIND, dummyValue, false);
             GenericHelper helper = getEntityHelper(modelEntity.getEntityName());
+            flushCoalescedWrites(modelEntity, whereEntityCondition, havingEntityCondition);
             long count = helper.findCountByCondition(this, modelEntity, whereEntityCondition, havingEntityCondition, findOptions);
 
             ecaRunner.evalRules(EntityEcaHandler.EV_RETURN, EntityEcaHandler.OP_FIND, dummyValue, false);
@@ -1710,6 +1755,8 @@ public class GenericDelegator implements Delegator {
             ModelEntity modelEntityTwo = getModelEntity(modelRelationTwo.getRelEntityName());
 
             GenericHelper helper = getEntityHelper(modelEntity);
+            flushCoalescedWrites(modelEntityOne, null, null);
+            flushCoalescedWrites(modelEntityTwo, null, null);
             List<GenericValue> result = helper.findByMultiRelation(value, modelRelationOne, modelEntityOne, modelRelationTwo, modelEntityTwo, orderBy);
             TransactionUtil.commit(beganTransaction);
             return result;
@@ -19,6 +19,7 @@
 package org.ofbiz.entity;
 
 import java.io.IOException;
+import java.io.ObjectStreamException;
 import java.io.PrintWriter;
 import java.io.Serializable;
 import java.math.BigDecimal;
@@ -38,6 +39,7 @@ import org.ofbiz.base.util.Observable;
 import org.ofbiz.base.util.Observer;
 import org.ofbiz.base.util.collections.LocalizedMap;
 import org.ofbiz.entity.condition.EntityCondition;
+import org.ofbiz.entity.condition.EntityConditionPredicate;
 import org.ofbiz.entity.condition.EntityFieldMap;
 import org.ofbiz.entity.jdbc.SqlJdbcUtil;
 import org.ofbiz.entity.model.ModelEntity;
@@ -331,6 +333,41 @@ public class GenericEntity implements ScipioMap<String, Object>, LocalizedMap<Ob
         }
     }
 
+    /** SCIPIO: Initializes a value read by {@link GenericEntityCodec}; the maps are used as is. */
+    void initDecoded(String delegatorName, ModelEntity modelEntity, Map<String, Object> fields, Map<String, Object> originalDbValues,
+            boolean mutable, boolean isFromEntitySync) {
+        this.delegatorName = delegatorName;
+        this.modelEntity = modelEntity;
+        this.entityName = modelEntity.getEntityName();
+        this.fields = fields;
+        this.originalDbValues = (originalDbValues != null) ? Collections.unmodifiableMap(originalDbValues) : null;
+        this.isFromEntitySync = isFromEntitySync;
+        this.mutable = mutable;
+    }
+
+    /** SCIPIO: Returns the delegator name without resolving the default one, for {@link GenericEntityCodec}. */
+    String getRawDelegatorName() {
+        return delegatorName;
+    }
+
+    /** SCIPIO: Returns the fields map itself, for {@link GenericEntityCodec}. */
+    Map<String, Object> getRawFields() {
+        return fields;
+    }
+
+    /** SCIPIO: Returns the original database values map itself, for {@link GenericEntityCodec}. */
+    Map<String, Object> getRawOriginalDbValues() {
+        return originalDbValues;
+    }
+
+    /**
+     * SCIPIO: Serializes GenericEntity, GenericValue and GenericPK instances with the compact {@link GenericEntityCodec}
+     * when <code>entity.properties#binarySerialization.enable</code> is true (default false).
+     */
+    protected Object writeReplace() throws ObjectStreamException {
+        return GenericEntityCodec.getSerialForm(this);
+    }
+
     public void reset() {
         assertIsMutable();
         // from GenericEntity
@@ -2198,7 +2235,7 @@ public class GenericEntity implements ScipioMap<String, Object>, LocalizedMap<Ob
     }
 
     public boolean matches(EntityCondition condition) {
-        return condition.entityMatches(this);
+        return EntityConditionPredicate.entityMatches(condition, this); // SCIPIO: compiled condition
     }
 
     public void addObserver(Observer observer) {
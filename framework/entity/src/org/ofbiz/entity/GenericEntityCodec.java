@@ -0,0 +1,474 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.entity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectStreamException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilObject;
+import org.ofbiz.base.util.UtilProperties;
+import org.ofbiz.entity.model.ModelEntity;
+import org.ofbiz.entity.model.ModelField;
+
+/**
+ * SCIPIO: Compact binary codec for {@link GenericEntity}, {@link GenericValue} and {@link GenericPK}.
+ * <p>
+ * A value is written as its delegator and entity names, a signature of the field list of the model entity, then
+ * for each field set the index of the field in the model entity and the value, with a one byte type tag for the
+ * field types (strings, numbers, dates and times, booleans, byte arrays); other values (e.g. blobs) are written
+ * with Java serialization. The original database values are written the same way.
+ * <p>
+ * Callers can use {@link #encode(GenericEntity)} and {@link #decode(byte[])} directly. With
+ * <code>entity.properties#binarySerialization.enable=true</code> (off by default), Java serialization of these classes
+ * also goes through this codec (see {@link GenericEntity#writeReplace()}), so that the values in sessions, serialized
+ * caches and <code>UtilObject.getBytes</code> payloads are several times smaller than with the default serialization,
+ * which writes the field names and the full class descriptors of every value. Reading requires the same entity
+ * definitions as the writer (checked through the signature) and the delegator to be available, which is why it is
+ * not the default: nodes of a cluster replicating sessions may run different versions during an upgrade.
+ */
+public final class GenericEntityCodec {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    static final boolean ENABLED = UtilProperties.getPropertyAsBoolean("entity", "binarySerialization.enable", false);
+
+    private static final int VERSION = 1;
+
+    private static final byte KIND_ENTITY = 0;
+    private static final byte KIND_VALUE = 1;
+    private static final byte KIND_PK = 2;
+
+    private static final int FLAG_MUTABLE = 1;
+    private static final int FLAG_FROM_ENTITY_SYNC = 2;
+    private static final int FLAG_ORIGINAL_DB_VALUES = 4;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_NULL_FIELD = 1;
+    private static final byte TYPE_STRING = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_INTEGER = 4;
+    private static final byte TYPE_BIG_DECIMAL = 5;
+    private static final byte TYPE_DOUBLE = 6;
+    private static final byte TYPE_FLOAT = 7;
+    private static final byte TYPE_BOOLEAN = 8;
+    private static final byte TYPE_TIMESTAMP = 9;
+    private static final byte TYPE_SQL_DATE = 10;
+    private static final byte TYPE_SQL_TIME = 11;
+    private static final byte TYPE_DATE = 12;
+    private static final byte TYPE_BYTES = 13;
+    /** Java serialization in the enclosing object stream. */
+    private static final byte TYPE_OBJECT = 14;
+    /** Java serialization in a nested byte array, when not in an object stream. */
+    private static final byte TYPE_OBJECT_BYTES = 15;
+
+    private GenericEntityCodec() {
+    }
+
+    /**
+     * Returns true if the value can be encoded: its class is exactly GenericEntity, GenericValue or GenericPK and
+     * all its fields are fields of its model entity.
+     */
+    public static boolean isSupported(GenericEntity entity) {
+        if (getKind(entity) < 0) {
+            return false;
+        }
+        ModelEntity modelEntity = entity.getModelEntity();
+        return countModelFields(modelEntity, entity.getRawFields()) == entity.getRawFields().size()
+                && (entity.getRawOriginalDbValues() == null
+                        || countModelFields(modelEntity, entity.getRawOriginalDbValues()) == entity.getRawOriginalDbValues().size());
+    }
+
+    public static byte[] encode(GenericEntity entity) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            write(out, entity);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static GenericEntity decode(byte[] bytes) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Writes the value; it must be supported (see {@link #isSupported(GenericEntity)}).
+     */
+    public static void write(DataOutput out, GenericEntity entity) throws IOException {
+        byte kind = getKind(entity);
+        if (kind < 0) {
+            throw new IllegalArgumentException("Cannot encode instance of " + entity.getClass().getName());
+        }
+        ModelEntity modelEntity = entity.getModelEntity();
+        List<ModelField> modelFields = modelEntity.getFieldsUnmodifiable();
+        Map<String, Object> originalDbValues = entity.getRawOriginalDbValues();
+        out.writeByte(VERSION);
+        out.writeByte(kind);
+        writeString(out, entity.getRawDelegatorName());
+        writeString(out, modelEntity.getEntityName());
+        out.writeInt(getSignature(modelFields));
+        out.writeByte((entity.isMutable() ? FLAG_MUTABLE : 0) | (entity.getIsFromEntitySync() ? FLAG_FROM_ENTITY_SYNC : 0)
+                | (originalDbValues != null ? FLAG_ORIGINAL_DB_VALUES : 0));
+        writeFields(out, modelEntity, modelFields, entity.getRawFields());
+        if (originalDbValues != null) {
+            writeFields(out, modelEntity, modelFields, originalDbValues);
+        }
+    }
+
+    public static GenericEntity read(DataInput in) throws IOException {
+        return read(in, null);
+    }
+
+    /**
+     * Reads a value; if a delegator is given, the value is made for it instead of the delegator it was written from
+     * (for transfers between instances, like entity sync).
+     */
+    public static GenericEntity read(DataInput in, Delegator targetDelegator) throws IOException {
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new InvalidObjectException("Unsupported GenericEntity encoding version " + version);
+        }
+        byte kind = in.readByte();
+        String delegatorName = readString(in);
+        String entityName = readString(in);
+        if (targetDelegator != null) {
+            delegatorName = targetDelegator.getDelegatorName();
+        }
+        Delegator delegator = (targetDelegator != null) ? targetDelegator : DelegatorFactory.getDelegator((delegatorName != null) ? delegatorName : "default");
+        if (delegator == null) {
+            throw new InvalidObjectException("Could not find delegator [" + delegatorName + "] of encoded entity [" + entityName + "]");
+        }
+        ModelEntity modelEntity = delegator.getModelEntity(entityName);
+        if (modelEntity == null) {
+            throw new InvalidObjectException("Could not find encoded entity [" + entityName + "] in delegator [" + delegator.getDelegatorName() + "]");
+        }
+        List<ModelField> modelFields = modelEntity.getFieldsUnmodifiable();
+        if (in.readInt() != getSignature(modelFields)) {
+            throw new InvalidObjectException("Definition of entity [" + entityName + "] differs from the one of the encoded value");
+        }
+        int flags = in.readByte();
+        Map<String, Object> fields = readFields(in, modelFields);
+        Map<String, Object> originalDbValues = ((flags & FLAG_ORIGINAL_DB_VALUES) != 0) ? readFields(in, modelFields) : null;
+
+        GenericEntity entity;
+        switch (kind) {
+        case KIND_VALUE:
+            entity = new GenericValue();
+            break;
+        case KIND_PK:
+            entity = new GenericPK();
+            break;
+        case KIND_ENTITY:
+            entity = new GenericEntity();
+            break;
+        default:
+            throw new InvalidObjectException("Unknown encoded GenericEntity kind " + kind);
+        }
+        entity.initDecoded(delegatorName, modelEntity, fields, originalDbValues, (flags & FLAG_MUTABLE) != 0,
+                (flags & FLAG_FROM_ENTITY_SYNC) != 0);
+        return entity;
+    }
+
+    private static byte getKind(GenericEntity entity) {
+        Class<?> cls = entity.getClass();
+        if (cls == GenericValue.class) {
+            return KIND_VALUE;
+        } else if (cls == GenericPK.class) {
+            return KIND_PK;
+        } else if (cls == GenericEntity.class) {
+            return KIND_ENTITY;
+        }
+        return -1;
+    }
+
+    private static int countModelFields(ModelEntity modelEntity, Map<String, Object> fields) {
+        int count = 0;
+        for (ModelField modelField : modelEntity.getFieldsUnmodifiable()) {
+            if (fields.containsKey(modelField.getName())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int getSignature(List<ModelField> modelFields) {
+        int signature = 1;
+        for (ModelField modelField : modelFields) {
+            signature = 31 * signature + modelField.getName().hashCode();
+        }
+        return signature;
+    }
+
+    private static void writeFields(DataOutput out, ModelEntity modelEntity, List<ModelField> modelFields, Map<String, Object> fields) throws IOException {
+        writeVarInt(out, fields.size());
+        int count = 0;
+        for (int i = 0; i < modelFields.size(); i++) {
+            String name = modelFields.get(i).getName();
+            if (fields.containsKey(name)) {
+                writeVarInt(out, i);
+                writeValue(out, fields.get(name));
+                count++;
+            }
+        }
+        if (count != fields.size()) {
+            throw new IOException("Value of entity [" + modelEntity.getEntityName() + "] has fields that are not in the entity definition");
+        }
+    }
+
+    private static Map<String, Object> readFields(DataInput in, List<ModelField> modelFields) throws IOException {
+        int size = readVarInt(in);
+        Map<String, Object> fields = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            int index = readVarInt(in);
+            if (index < 0 || index >= modelFields.size()) {
+                throw new InvalidObjectException("Invalid encoded field index " + index);
+            }
+            fields.put(modelFields.get(index).getName(), readValue(in));
+        }
+        return fields;
+    }
+
+    private static void writeValue(DataOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+            return;
+        }
+        // Exact classes only, subclasses keep their type through Java serialization
+        Class<?> cls = value.getClass();
+        if (cls == String.class) {
+            out.writeByte(TYPE_STRING);
+            writeString(out, (String) value);
+        } else if (cls == Timestamp.class) {
+            out.writeByte(TYPE_TIMESTAMP);
+            out.writeLong(((Timestamp) value).getTime());
+            out.writeInt(((Timestamp) value).getNanos());
+        } else if (cls == Long.class) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long) value);
+        } else if (cls == BigDecimal.class) {
+            out.writeByte(TYPE_BIG_DECIMAL);
+            byte[] unscaled = ((BigDecimal) value).unscaledValue().toByteArray();
+            writeVarInt(out, ((BigDecimal) value).scale());
+            writeVarInt(out, unscaled.length);
+            out.write(unscaled);
+        } else if (cls == Integer.class) {
+            out.writeByte(TYPE_INTEGER);
+            out.writeInt((Integer) value);
+        } else if (cls == Double.class) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (cls == Float.class) {
+            out.writeByte(TYPE_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (cls == Boolean.class) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (cls == java.sql.Date.class) {
+            out.writeByte(TYPE_SQL_DATE);
+            out.writeLong(((java.sql.Date) value).getTime());
+        } else if (cls == java.sql.Time.class) {
+            out.writeByte(TYPE_SQL_TIME);
+            out.writeLong(((java.sql.Time) value).getTime());
+        } else if (cls == java.util.Date.class) {
+            out.writeByte(TYPE_DATE);
+            out.writeLong(((java.util.Date) value).getTime());
+        } else if (cls == byte[].class) {
+            out.writeByte(TYPE_BYTES);
+            writeVarInt(out, ((byte[]) value).length);
+            out.write((byte[]) value);
+        } else if (value == GenericEntity.NULL_FIELD) {
+            out.writeByte(TYPE_NULL_FIELD);
+        } else if (out instanceof ObjectOutput) {
+            out.writeByte(TYPE_OBJECT);
+            ((ObjectOutput) out).writeObject(value);
+        } else {
+            out.writeByte(TYPE_OBJECT_BYTES);
+            byte[] bytes = UtilObject.getBytesOrEx(value);
+            writeVarInt(out, bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static Object readValue(DataInput in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+        case TYPE_NULL:
+            return null;
+        case TYPE_NULL_FIELD:
+            return GenericEntity.NULL_FIELD;
+        case TYPE_STRING:
+            return readString(in);
+        case TYPE_LONG:
+            return in.readLong();
+        case TYPE_INTEGER:
+            return in.readInt();
+        case TYPE_BIG_DECIMAL:
+            int scale = readVarInt(in);
+            return new BigDecimal(new BigInteger(readBytes(in)), scale);
+        case TYPE_DOUBLE:
+            return in.readDouble();
+        case TYPE_FLOAT:
+            return in.readFloat();
+        case TYPE_BOOLEAN:
+            return in.readBoolean();
+        case TYPE_TIMESTAMP:
+            Timestamp timestamp = new Timestamp(in.readLong());
+            timestamp.setNanos(in.readInt());
+            return timestamp;
+        case TYPE_SQL_DATE:
+            return new java.sql.Date(in.readLong());
+        case TYPE_SQL_TIME:
+            return new java.sql.Time(in.readLong());
+        case TYPE_DATE:
+            return new java.util.Date(in.readLong());
+        case TYPE_BYTES:
+            return readBytes(in);
+        case TYPE_OBJECT:
+            if (!(in instanceof ObjectInput)) {
+                throw new InvalidObjectException("Encoded value requires an object stream");
+            }
+            try {
+                return ((ObjectInput) in).readObject();
+            } catch (ClassNotFoundException e) {
+                throw new InvalidObjectException(e.toString());
+            }
+        case TYPE_OBJECT_BYTES:
+            try {
+                return UtilObject.getObjectException(readBytes(in));
+            } catch (ClassNotFoundException e) {
+                throw new InvalidObjectException(e.toString());
+            }
+        default:
+            throw new InvalidObjectException("Unknown encoded value type " + type);
+        }
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = readVarInt(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(DataInput in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new InvalidObjectException("Invalid encoded length");
+    }
+
+    /**
+     * Returns the object to serialize in place of the value: its serial form if supported, otherwise the value itself.
+     */
+    static Object getSerialForm(GenericEntity entity) {
+        if (!ENABLED) {
+            return entity;
+        }
+        try {
+            if (isSupported(entity)) {
+                return new SerialForm(entity);
+            }
+        } catch (RuntimeException e) {
+            // e.g. model entity not found; the default serialization does not need it
+            Debug.logWarning("Could not use the binary serialization for entity [" + entity.getEntityName() + "], using default: " + e.toString(), module);
+        }
+        return entity;
+    }
+
+    /**
+     * Serial form of GenericEntity, GenericValue and GenericPK instances, encoded with the codec.
+     */
+    static final class SerialForm implements Externalizable {
+        private static final long serialVersionUID = 1L;
+
+        private GenericEntity entity;
+
+        public SerialForm() {
+        }
+
+        SerialForm(GenericEntity entity) {
+            this.entity = entity;
+        }
+
+        @Override
+        public void writeExternal(ObjectOutput out) throws IOException {
+            write(out, entity);
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) throws IOException {
+            entity = read(in);
+        }
+
+        private Object readResolve() throws ObjectStreamException {
+            return entity;
+        }
+    }
+}
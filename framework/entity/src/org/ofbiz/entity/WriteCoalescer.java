@@ -0,0 +1,430 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.entity;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import javax.transaction.RollbackException;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.SystemException;
+import javax.transaction.Transaction;
+import javax.transaction.TransactionManager;
+
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.StringUtil;
+import org.ofbiz.base.util.UtilProperties;
+import org.ofbiz.base.util.UtilValidate;
+import org.ofbiz.entity.condition.EntityCondition;
+import org.ofbiz.entity.model.ModelEntity;
+import org.ofbiz.entity.model.ModelRelation;
+import org.ofbiz.entity.model.ModelViewEntity;
+import org.ofbiz.entity.transaction.GenericTransactionException;
+import org.ofbiz.entity.transaction.TransactionFactoryLoader;
+
+/**
+ * SCIPIO: Transaction-scoped coalescing of the updates done by {@link GenericDelegator#store(GenericValue)}
+ * (<code>entity.properties#writeCoalescing.enable</code>, off by default).
+ * <p>
+ * Within a transaction, the UPDATE of a stored value is deferred: a copy of the value is kept as pending, and storing
+ * the same primary key again merges the fields into the pending value instead of running another UPDATE, which gives
+ * the same row as running the updates in order. The pending values are written, in JDBC batches of the updates of the
+ * same entity and fields ({@link org.ofbiz.entity.datasource.GenericHelper#storeBatch(List)}):
+ * <ul>
+ * <li>before the transaction commits,</li>
+ * <li>before the transaction is suspended, so that the rows are locked as before,</li>
+ * <li>before any delegator query on their entity, or on a view entity having it as member; all of them before a query
+ * whose condition has a sub-select or plain SQL ({@link EntityCondition#mayQueryOtherEntities()}),</li>
+ * <li>before any delegator write (create, remove, store not deferred) on their entity or on an entity related to it by a
+ * foreign key, either way, so that for example removing a row that a pending store stopped referencing does not fail
+ * on the foreign key,</li>
+ * <li>when more than <code>writeCoalescing.maxPending</code> values are pending.</li>
+ * </ul>
+ * The ECA rules and cache clears still run at each store; only the statement is deferred. Stores out of a transaction,
+ * of view entities, of entities with optimistic locking or audited fields, of values from entity sync and stores in
+ * test mode are written immediately; <code>writeCoalescing.entities</code> restricts coalescing to a list of entities.
+ * Only the delegator that made the first deferred store of a transaction defers its stores. Coalescing can be turned on
+ * or off at runtime with {@link #setEnabled(boolean)} (tests); the stores already deferred are still written.
+ * <p>
+ * Since the UPDATE is deferred, the error of a store (row not found, constraint) is raised by the flush, usually at
+ * commit, which then rolls back the transaction; the update stamps are set at flush time; and SQL run outside of the
+ * delegator (SQLProcessor, JDBC) in the transaction does not see the pending updates.
+ * The counters are exposed through JMX ({@link WriteCoalescerMBean}).
+ */
+public final class WriteCoalescer implements Synchronization {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    private static final boolean ENABLED = UtilProperties.getPropertyAsBoolean("entity", "writeCoalescing.enable", false);
+    private static final Set<String> ENTITIES = readEntities();
+    private static final int MAX_PENDING = UtilProperties.getPropertyAsInteger("entity", "writeCoalescing.maxPending", 1000);
+
+    /** Why pending values are written. */
+    enum Reason {
+        COMMIT, QUERY, WRITE, SUSPEND, MAX_PENDING
+    }
+
+    private static final Statistics STATISTICS = new Statistics();
+    private static final Map<Transaction, WriteCoalescer> coalescers = new ConcurrentHashMap<>();
+
+    static {
+        if (ENABLED && UtilProperties.getPropertyAsBoolean("entity", "writeCoalescing.jmx.enable", true)) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(STATISTICS, WriteCoalescerMBean.class),
+                        new ObjectName("org.ofbiz.entity:type=WriteCoalescing"));
+            } catch (Exception e) {
+                Debug.logWarning("Could not register write coalescing MBean: " + e.toString(), module);
+            }
+        }
+    }
+
+    private static volatile boolean enabled = ENABLED;
+
+    private final GenericDelegator delegator;
+    private final Transaction transaction;
+    /** Pending values by entity name and primary key, in store order. */
+    private final Map<String, Map<GenericPK, GenericValue>> pending = new LinkedHashMap<>();
+    private int pendingCount = 0;
+
+    private WriteCoalescer(GenericDelegator delegator, Transaction transaction) {
+        this.delegator = delegator;
+        this.transaction = transaction;
+    }
+
+    private static Set<String> readEntities() {
+        List<String> entityNames = StringUtil.split(UtilProperties.getPropertyValue("entity", "writeCoalescing.entities", ""), ", ");
+        return (entityNames != null) ? Collections.unmodifiableSet(new HashSet<>(entityNames)) : Collections.emptySet();
+    }
+
+    public static WriteCoalescerMBean getStatistics() {
+        return STATISTICS;
+    }
+
+    /**
+     * Returns true if the stores done in a transaction are deferred.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns the deferral of the stores on or off, overriding <code>writeCoalescing.enable</code> (tests).
+     */
+    public static void setEnabled(boolean enabled) {
+        WriteCoalescer.enabled = enabled;
+    }
+
+    /**
+     * Returns true if the UPDATE of the value may be deferred, from its model; the store must also be done in a
+     * transaction, by {@link #getForStore}.
+     */
+    static boolean isCoalescable(GenericValue value) {
+        ModelEntity modelEntity = value.getModelEntity();
+        return !(modelEntity instanceof ModelViewEntity) && !modelEntity.lock() && !modelEntity.getHasFieldWithAuditLog()
+                && !value.getIsFromEntitySync() && value.isMutable() && value.containsPrimaryKey(true)
+                && (ENTITIES.isEmpty() || ENTITIES.contains(modelEntity.getEntityName()));
+    }
+
+    /**
+     * Returns the coalescer of the current transaction for the stores of the delegator, creating it, or null if there
+     * is no active transaction or the transaction coalesces the stores of another delegator.
+     */
+    static WriteCoalescer getForStore(GenericDelegator delegator) throws GenericEntityException {
+        Transaction transaction = getActiveTransaction();
+        if (transaction == null) {
+            return null;
+        }
+        WriteCoalescer coalescer = coalescers.get(transaction);
+        if (coalescer == null) {
+            coalescer = new WriteCoalescer(delegator, transaction);
+            try {
+                transaction.registerSynchronization(coalescer);
+            } catch (RollbackException | SystemException | IllegalStateException e) {
+                Debug.logWarning("Could not register write coalescing in transaction, storing immediately: " + e.toString(), module);
+                return null;
+            }
+            coalescers.put(transaction, coalescer);
+        }
+        return (coalescer.delegator == delegator) ? coalescer : null;
+    }
+
+    /**
+     * Writes the pending values of the current transaction that the query on the entity could read: the values of the
+     * entity or of the members of the view entity, or all of them if a condition may query other entities.
+     */
+    static void flushForQuery(Delegator delegator, ModelEntity modelEntity, EntityCondition whereCondition, EntityCondition havingCondition) throws GenericEntityException {
+        WriteCoalescer coalescer = getCurrent();
+        if (coalescer == null) {
+            return;
+        }
+        if ((whereCondition != null && whereCondition.mayQueryOtherEntities()) || (havingCondition != null && havingCondition.mayQueryOtherEntities())) {
+            coalescer.write(null, Reason.QUERY);
+        } else {
+            Set<String> entityNames = new HashSet<>();
+            addEntityNames(delegator, modelEntity, entityNames);
+            coalescer.write(entityNames, Reason.QUERY);
+        }
+    }
+
+    /**
+     * Writes the pending values of the current transaction that a write on the entity could conflict with: the values
+     * of the entity and of the entities related to it by a foreign key, either way.
+     */
+    static void flushForWrite(Delegator delegator, String entityName) throws GenericEntityException {
+        WriteCoalescer coalescer = getCurrent();
+        if (coalescer != null) {
+            coalescer.write(coalescer.getFkRelatedPendingEntityNames(delegator, entityName), Reason.WRITE);
+        }
+    }
+
+    /**
+     * Writes the pending values of the entities in the current transaction.
+     */
+    static void flush(Collection<String> entityNames, Reason reason) throws GenericEntityException {
+        WriteCoalescer coalescer = getCurrent();
+        if (coalescer != null) {
+            coalescer.write(entityNames, reason);
+        }
+    }
+
+    /**
+     * Writes all the pending values of the current transaction, before it is suspended.
+     */
+    public static void flushForSuspend() throws GenericEntityException {
+        flush(null, Reason.SUSPEND);
+    }
+
+    private static void addEntityNames(Delegator delegator, ModelEntity modelEntity, Set<String> entityNames) {
+        if (!entityNames.add(modelEntity.getEntityName()) || !(modelEntity instanceof ModelViewEntity)) {
+            return;
+        }
+        for (ModelViewEntity.ModelMemberEntity memberEntity : ((ModelViewEntity) modelEntity).getAllModelMemberEntities()) {
+            ModelEntity memberModelEntity = delegator.getModelReader().getModelEntityNoCheck(memberEntity.getEntityName());
+            if (memberModelEntity != null) {
+                addEntityNames(delegator, memberModelEntity, entityNames);
+            }
+        }
+    }
+
+    /**
+     * Returns the entity and the entities having pending values that are related to it by a foreign key, either way.
+     */
+    private synchronized Set<String> getFkRelatedPendingEntityNames(Delegator delegator, String entityName) {
+        Set<String> entityNames = new HashSet<>();
+        entityNames.add(entityName);
+        ModelEntity modelEntity = null;
+        for (String pendingEntityName : pending.keySet()) {
+            if (entityNames.contains(pendingEntityName)) {
+                continue;
+            }
+            if (modelEntity == null) {
+                modelEntity = delegator.getModelReader().getModelEntityNoCheck(entityName);
+            }
+            ModelEntity pendingModelEntity = delegator.getModelReader().getModelEntityNoCheck(pendingEntityName);
+            if (hasFkRelation(pendingModelEntity, entityName) || hasFkRelation(modelEntity, pendingEntityName)) {
+                entityNames.add(pendingEntityName);
+            }
+        }
+        return entityNames;
+    }
+
+    private static boolean hasFkRelation(ModelEntity modelEntity, String relEntityName) {
+        if (modelEntity == null) {
+            return false;
+        }
+        for (ModelRelation relation : modelEntity.getRelationsList(true, false, false)) {
+            if (relEntityName.equals(relation.getRelEntityName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static WriteCoalescer getCurrent() throws GenericEntityException {
+        if (coalescers.isEmpty()) {
+            return null;
+        }
+        Transaction transaction = getActiveTransaction();
+        return (transaction != null) ? coalescers.get(transaction) : null;
+    }
+
+    private static Transaction getActiveTransaction() throws GenericTransactionException {
+        try {
+            TransactionManager tm = TransactionFactoryLoader.getInstance().getTransactionManager();
+            if (tm == null || tm.getStatus() != Status.STATUS_ACTIVE) {
+                return null;
+            }
+            return tm.getTransaction();
+        } catch (SystemException e) {
+            throw new GenericTransactionException("System error, could not get current transaction", e);
+        }
+    }
+
+    /**
+     * Adds the value to the pending values, merging it into the pending value of the same primary key if any.
+     */
+    synchronized void add(GenericValue value) throws GenericEntityException {
+        GenericPK primaryKey = value.getPrimaryKey();
+        Map<GenericPK, GenericValue> entityPending = pending.computeIfAbsent(value.getEntityName(), k -> new LinkedHashMap<>());
+        GenericValue pendingValue = entityPending.get(primaryKey);
+        if (pendingValue != null) {
+            pendingValue.setFields(value.getAllFields());
+            STATISTICS.statementsSaved.increment();
+        } else {
+            entityPending.put(primaryKey, GenericValue.create(value));
+            pendingCount++;
+            STATISTICS.storesDeferred.increment();
+        }
+        value.synchronizedWithDatasource();
+        if (pendingCount > MAX_PENDING) {
+            write(null, Reason.MAX_PENDING);
+        }
+    }
+
+    /**
+     * Writes the pending values of the entities, or all of them if null. On failure the transaction is marked for
+     * rollback, since the values are no longer pending.
+     */
+    private synchronized void write(Collection<String> entityNames, Reason reason) throws GenericEntityException {
+        if (pendingCount == 0) {
+            return;
+        }
+        List<List<GenericValue>> toWrite = new ArrayList<>();
+        for (String entityName : (entityNames != null) ? entityNames : new ArrayList<>(pending.keySet())) {
+            Map<GenericPK, GenericValue> entityPending = pending.remove(entityName);
+            if (UtilValidate.isNotEmpty(entityPending)) {
+                toWrite.add(new ArrayList<>(entityPending.values()));
+                pendingCount -= entityPending.size();
+            }
+        }
+        if (toWrite.isEmpty()) {
+            return;
+        }
+        STATISTICS.flushes[reason.ordinal()].increment();
+        try {
+            for (List<GenericValue> values : toWrite) {
+                delegator.getEntityHelper(values.get(0).getEntityName()).storeBatch(values);
+                STATISTICS.valuesWritten.add(values.size());
+            }
+        } catch (GenericEntityException | RuntimeException e) {
+            STATISTICS.failedFlushes.increment();
+            pending.clear();
+            pendingCount = 0;
+            try {
+                transaction.setRollbackOnly();
+            } catch (SystemException | IllegalStateException e2) {
+                Debug.logError(e2, "Could not set rollback only after failed write of the pending stores", module);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void beforeCompletion() {
+        try {
+            if (transaction.getStatus() == Status.STATUS_ACTIVE) {
+                write(null, Reason.COMMIT);
+            }
+        } catch (GenericEntityException | SystemException e) {
+            Debug.logError(e, "Could not write the pending stores of the transaction, rolling back", module);
+            throw new IllegalStateException("Could not write the pending stores of the transaction: " + e.toString(), e);
+        }
+    }
+
+    @Override
+    public void afterCompletion(int status) {
+        coalescers.remove(transaction);
+    }
+
+    private static final class Statistics implements WriteCoalescerMBean {
+        private final LongAdder storesDeferred = new LongAdder();
+        private final LongAdder statementsSaved = new LongAdder();
+        private final LongAdder valuesWritten = new LongAdder();
+        private final LongAdder failedFlushes = new LongAdder();
+        private final LongAdder[] flushes = new LongAdder[Reason.values().length];
+
+        private Statistics() {
+            for (int i = 0; i < flushes.length; i++) {
+                flushes[i] = new LongAdder();
+            }
+        }
+
+        @Override
+        public long getStoresDeferred() {
+            return storesDeferred.sum();
+        }
+
+        @Override
+        public long getStatementsSaved() {
+            return statementsSaved.sum();
+        }
+
+        @Override
+        public long getValuesWritten() {
+            return valuesWritten.sum();
+        }
+
+        @Override
+        public long getCommitFlushes() {
+            return flushes[Reason.COMMIT.ordinal()].sum();
+        }
+
+        @Override
+        public long getQueryFlushes() {
+            return flushes[Reason.QUERY.ordinal()].sum();
+        }
+
+        @Override
+        public long getWriteFlushes() {
+            return flushes[Reason.WRITE.ordinal()].sum();
+        }
+
+        @Override
+        public long getSuspendFlushes() {
+            return flushes[Reason.SUSPEND.ordinal()].sum();
+        }
+
+        @Override
+        public long getMaxPendingFlushes() {
+            return flushes[Reason.MAX_PENDING.ordinal()].sum();
+        }
+
+        @Override
+        public long getFailedFlushes() {
+            return failedFlushes.sum();
+        }
+
+        @Override
+        public int getActiveTransactions() {
+            return coalescers.size();
+        }
+    }
+}
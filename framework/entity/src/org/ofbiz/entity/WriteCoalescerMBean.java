@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.entity;
+
+/**
+ * SCIPIO: JMX view of the counters of {@link WriteCoalescer} (<code>org.ofbiz.entity:type=WriteCoalescing</code>).
+ */
+public interface WriteCoalescerMBean {
+
+    /** Number of stores whose UPDATE was deferred to the end of the transaction (first store of a primary key). */
+    long getStoresDeferred();
+
+    /** Number of stores merged into an already pending value of the same primary key, each one saving an UPDATE statement. */
+    long getStatementsSaved();
+
+    /** Number of values written by the flushes of the pending values. */
+    long getValuesWritten();
+
+    /** Number of flushes before the commit of a transaction. */
+    long getCommitFlushes();
+
+    /** Number of flushes before a query on an entity with pending values. */
+    long getQueryFlushes();
+
+    /** Number of flushes before another write on an entity with pending values. */
+    long getWriteFlushes();
+
+    /** Number of flushes before a transaction suspend. */
+    long getSuspendFlushes();
+
+    /** Number of flushes because the maximum number of pending values was exceeded. */
+    long getMaxPendingFlushes();
+
+    /** Number of flushes that failed; the transaction was rolled back. */
+    long getFailedFlushes();
+
+    /** Number of transactions with pending values. */
+    int getActiveTransactions();
+}
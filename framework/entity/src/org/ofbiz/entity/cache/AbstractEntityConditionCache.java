@@ -31,6 +31,7 @@ import org.ofbiz.entity.GenericEntity;
 import org.ofbiz.entity.GenericPK;
 import org.ofbiz.entity.GenericValue;
 import org.ofbiz.entity.condition.EntityCondition;
+import org.ofbiz.entity.condition.EntityConditionPredicate;
 import org.ofbiz.entity.model.ModelEntity;
 
 public abstract class AbstractEntityConditionCache<K, V> extends AbstractCache<EntityCondition, ConcurrentMap<K, V>> {
@@ -182,6 +183,7 @@ public abstract class AbstractEntityConditionCache<K, V> extends AbstractCache<E
         if (entityCache == null) {
             return;
         }
+        // SCIPIO: the cache keys are matched with their compiled form (EntityConditionPredicate), compiled once per key
         for (EntityCondition condition: entityCache.getCacheLineKeys()) {
             boolean shouldRemove = false;
             if (condition == null) {
@@ -190,20 +192,20 @@ public abstract class AbstractEntityConditionCache<K, V> extends AbstractCache<E
                 Iterator<T2> newValueIter = newValues.iterator();
                 while (newValueIter.hasNext() && !shouldRemove) {
                     T2 newValue = newValueIter.next();
-                    shouldRemove |= condition.mapMatches(getDelegator(), newValue);
+                    shouldRemove |= EntityConditionPredicate.mapMatches(condition, getDelegator(), newValue);
                 }
             } else {
                 boolean oldMatched = false;
                 Iterator<T1> oldValueIter = oldValues.iterator();
                 while (oldValueIter.hasNext() && !shouldRemove) {
                     T1 oldValue = oldValueIter.next();
-                    if (condition.mapMatches(getDelegator(), oldValue)) {
+                    if (EntityConditionPredicate.mapMatches(condition, getDelegator(), oldValue)) {
                         oldMatched = true;
                         if (newValues != null) {
                             Iterator<T2> newValueIter = newValues.iterator();
                             while (newValueIter.hasNext() && !shouldRemove) {
                                 T2 newValue = newValueIter.next();
-                                shouldRemove |= isNull(newValue) || condition.mapMatches(getDelegator(), newValue);
+                                shouldRemove |= isNull(newValue) || EntityConditionPredicate.mapMatches(condition, getDelegator(), newValue);
                             }
                         } else {
                             shouldRemove = true;
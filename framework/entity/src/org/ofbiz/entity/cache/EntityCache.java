@@ -25,6 +25,7 @@ import org.ofbiz.base.util.cache.UtilCache;
 import org.ofbiz.entity.GenericPK;
 import org.ofbiz.entity.GenericValue;
 import org.ofbiz.entity.condition.EntityCondition;
+import org.ofbiz.entity.condition.EntityConditionPredicate;
 import org.ofbiz.entity.model.ModelEntity;
 
 public class EntityCache extends AbstractCache<GenericPK, GenericValue> {
@@ -77,7 +78,7 @@ public class EntityCache extends AbstractCache<GenericPK, GenericValue> {
             if (entity == null) {
                 continue;
             }
-            if (condition.entityMatches(entity)) {
+            if (EntityConditionPredicate.entityMatches(condition, entity)) { // SCIPIO: compiled condition
                 entityCache.remove(pk);
             }
         }
@@ -49,6 +49,9 @@ import org.ofbiz.entity.util.EntityUtil;
 @SuppressWarnings("serial")
 public abstract class EntityCondition extends EntityConditionBase implements IsEmpty {
 
+    /** SCIPIO: Compiled form of this condition for the last model entity matched, see {@link EntityConditionPredicate}. */
+    transient volatile EntityConditionPredicate compiledPredicate;
+
     public static <L,R,LL,RR> EntityExpr makeCondition(L lhs, EntityComparisonOperator<LL,RR> operator, R rhs) {
         return new EntityExpr(lhs, operator, rhs);
     }
@@ -242,4 +245,12 @@ public abstract class EntityCondition extends EntityConditionBase implements IsE
     public void visit(EntityConditionVisitor visitor) {
         throw new IllegalArgumentException(getClass().getName() + ".visit not implemented");
     }
+
+    /**
+     * SCIPIO: Returns true if the condition may select from other entities than the one queried: sub-selects and
+     * plain SQL where strings. Used to know which pending (coalesced) writes must be flushed before a query.
+     */
+    public boolean mayQueryOtherEntities() {
+        return false;
+    }
 }
@@ -103,6 +103,11 @@ public abstract class EntityConditionFunction extends EntityCondition {
         return false;
     }
 
+    @Override
+    public boolean mayQueryOtherEntities() { // SCIPIO
+        return condition.mayQueryOtherEntities();
+    }
+
     @Override
     public String makeWhereString(ModelEntity modelEntity, List<EntityConditionParam> entityConditionParams, Datasource datasourceInfo) {
         StringBuilder sb = new StringBuilder();
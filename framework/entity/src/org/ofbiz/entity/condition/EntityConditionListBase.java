@@ -70,6 +70,16 @@ public abstract class EntityConditionListBase<T extends EntityCondition> extends
         return operator.isEmpty(conditionList);
     }
 
+    @Override
+    public boolean mayQueryOtherEntities() { // SCIPIO
+        for (T condition : conditionList) {
+            if (condition.mayQueryOtherEntities()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public String makeWhereString(ModelEntity modelEntity, List<EntityConditionParam> entityConditionParams, Datasource datasourceInfo) {
         StringBuilder sql = new StringBuilder();
@@ -0,0 +1,382 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.entity.condition;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.oro.text.regex.Pattern;
+import org.apache.oro.text.regex.Perl5Matcher;
+import org.ofbiz.base.util.UtilGenerics;
+import org.ofbiz.base.util.UtilProperties;
+import org.ofbiz.entity.Delegator;
+import org.ofbiz.entity.GenericEntity;
+import org.ofbiz.entity.model.ModelEntity;
+import org.ofbiz.entity.model.ModelField;
+
+/**
+ * SCIPIO: Compiled form of an {@link EntityCondition} for matching the values of one entity in memory, used by
+ * the {@link org.ofbiz.entity.util.EntityUtil} filters and the entity caches instead of {@link EntityCondition#mapMatches}.
+ * <p>
+ * The fields of the field/constant comparisons are resolved once against the model entity (no field check nor
+ * field name lookup per value), IN lists of simple values are turned into hash sets, LIKE patterns are translated
+ * once, and the members of AND/OR lists are reordered so that the equality tests, which cannot fail, come first.
+ * The other conditions (date filters, where strings, functions, sub-selects, field/field comparisons, BETWEEN, NOT)
+ * are matched with {@link EntityCondition#mapMatches} as before. The result is the same as the interpreted match,
+ * except that a member of a list that would throw (e.g. <code>compareTo</code> on a value of the wrong type) may not
+ * be reached when a member moved before it short-circuits the list.
+ * <p>
+ * The compiled predicate is kept on the condition for the last model entity it was compiled for, so conditions
+ * are assumed not to change once built (like the collections passed to IN). Disabled by
+ * <code>entity.properties#conditionCompiler.enable</code>.
+ */
+public final class EntityConditionPredicate {
+
+    private static final boolean ENABLED = UtilProperties.getPropertyAsBoolean("entity", "conditionCompiler.enable", true);
+
+    /** Minimum size of an IN list of simple values to be matched with a hash set. */
+    private static final int MIN_IN_SET_SIZE = 8;
+
+    private final ModelEntity modelEntity;
+    private final Node root;
+
+    private EntityConditionPredicate(ModelEntity modelEntity, Node root) {
+        this.modelEntity = modelEntity;
+        this.root = root;
+    }
+
+    public ModelEntity getModelEntity() {
+        return modelEntity;
+    }
+
+    public boolean matches(Delegator delegator, GenericEntity entity) {
+        return root.matches(delegator, entity);
+    }
+
+    /**
+     * Returns the compiled condition for the given model entity, compiling it if needed.
+     */
+    public static EntityConditionPredicate getPredicate(EntityCondition condition, ModelEntity modelEntity) {
+        EntityConditionPredicate predicate = condition.compiledPredicate;
+        if (predicate == null || predicate.modelEntity != modelEntity) {
+            predicate = new EntityConditionPredicate(modelEntity, compile(condition, modelEntity));
+            condition.compiledPredicate = predicate;
+        }
+        return predicate;
+    }
+
+    /**
+     * Same as {@link EntityCondition#entityMatches(GenericEntity)}, using the compiled condition.
+     */
+    public static boolean entityMatches(EntityCondition condition, GenericEntity entity) {
+        return mapMatches(condition, entity.getDelegator(), entity);
+    }
+
+    /**
+     * Same as {@link EntityCondition#mapMatches(Delegator, Map)}, using the compiled condition if the map is an entity value.
+     */
+    public static boolean mapMatches(EntityCondition condition, Delegator delegator, Map<String, ? extends Object> map) {
+        if (!ENABLED || !(map instanceof GenericEntity) || map instanceof GenericEntity.NULL) {
+            return condition.mapMatches(delegator, map);
+        }
+        GenericEntity entity = (GenericEntity) map;
+        ModelEntity modelEntity = entity.getModelEntity();
+        if (modelEntity == null) {
+            return condition.mapMatches(delegator, map);
+        }
+        return getPredicate(condition, modelEntity).matches(delegator, entity);
+    }
+
+    private static Node compile(EntityCondition condition, ModelEntity modelEntity) {
+        if (condition instanceof EntityConditionListBase<?>) {
+            EntityConditionListBase<?> list = (EntityConditionListBase<?>) condition;
+            List<Node> nodes = new ArrayList<>(list.getConditionListSize());
+            Iterator<? extends EntityCondition> it = list.getConditionIterator();
+            while (it.hasNext()) {
+                nodes.add(compile(it.next(), modelEntity));
+            }
+            return makeJoinNode(list.getOperator(), nodes);
+        } else if (condition instanceof EntityExpr) {
+            EntityExpr expr = (EntityExpr) condition;
+            EntityOperator<?, ?, ?> operator = expr.getOperator();
+            if (operator instanceof EntityJoinOperator) {
+                List<Node> nodes = new ArrayList<>(2);
+                nodes.add(compile((EntityCondition) expr.getLhs(), modelEntity));
+                nodes.add(compile((EntityCondition) expr.getRhs(), modelEntity));
+                return makeJoinNode((EntityJoinOperator) operator, nodes);
+            }
+            Node node = compileComparison(expr, modelEntity);
+            if (node != null) {
+                return node;
+            }
+        }
+        return new ConditionNode(condition);
+    }
+
+    private static Node makeJoinNode(EntityJoinOperator operator, List<Node> nodes) {
+        if (nodes.size() == 1) {
+            return nodes.get(0);
+        }
+        // Stable: the nodes of the same cost keep their order
+        nodes.sort((first, second) -> Integer.compare(first.getCost(), second.getCost()));
+        return new JoinNode(operator.getId() == EntityOperator.ID_OR, nodes.toArray(new Node[nodes.size()]));
+    }
+
+    /**
+     * Compiles a comparison of a field of the entity with a constant, or returns null if not supported.
+     */
+    private static Node compileComparison(EntityExpr expr, ModelEntity modelEntity) {
+        Object lhs = expr.getLhs();
+        Object rhs = expr.getRhs();
+        if (lhs == null || lhs.getClass() != EntityFieldValue.class || rhs instanceof EntityConditionValue) {
+            return null;
+        }
+        ModelField field = modelEntity.getField(((EntityFieldValue) lhs).getFieldName());
+        if (field == null) {
+            return null; // the interpreted match throws EntityFieldNotFoundException
+        }
+        if (rhs == EntityOperator.WILDCARD) {
+            return new ConstantNode(true);
+        }
+        EntityComparisonOperator<Object, Object> operator = UtilGenerics.cast(expr.getOperator());
+        switch (operator.getId()) {
+        case EntityOperator.ID_EQUALS:
+        case EntityOperator.ID_NOT_EQUAL:
+        case EntityOperator.ID_LESS_THAN:
+        case EntityOperator.ID_GREATER_THAN:
+        case EntityOperator.ID_LESS_THAN_EQUAL_TO:
+        case EntityOperator.ID_GREATER_THAN_EQUAL_TO:
+            return new ComparisonNode(field, operator, rhs);
+        case EntityOperator.ID_IN:
+        case EntityOperator.ID_NOT_IN:
+            Set<Object> set = makeInSet(rhs);
+            if (set != null) {
+                return new InSetNode(field, set, operator.getId() == EntityOperator.ID_NOT_IN);
+            }
+            return new ComparisonNode(field, operator, rhs);
+        case EntityOperator.ID_LIKE:
+        case EntityOperator.ID_NOT_LIKE:
+            if (rhs instanceof String) {
+                Pattern pattern = EntityComparisonOperator.makeOroPattern((String) rhs);
+                if (pattern != null) {
+                    return new LikeNode(field, pattern, operator.getId() == EntityOperator.ID_NOT_LIKE);
+                }
+            }
+            return new ComparisonNode(field, operator, rhs);
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Returns a hash set of the IN values, or null if the list is small or holds values whose equals and hashCode
+     * may not be consistent (for which <code>Collection.contains</code> is kept).
+     */
+    private static Set<Object> makeInSet(Object rhs) {
+        if (!(rhs instanceof Collection<?>) || ((Collection<?>) rhs).size() < MIN_IN_SET_SIZE) {
+            return null;
+        }
+        Collection<?> values = (Collection<?>) rhs;
+        for (Object value : values) {
+            if (value != null && !isSimpleValue(value)) {
+                return null;
+            }
+        }
+        return new HashSet<>(values);
+    }
+
+    private static boolean isSimpleValue(Object value) {
+        Class<?> cls = value.getClass();
+        return cls == String.class || cls == Long.class || cls == Integer.class || cls == Short.class || cls == Byte.class
+                || cls == BigDecimal.class || cls == BigInteger.class || cls == Boolean.class || cls == java.sql.Timestamp.class
+                || cls == java.sql.Date.class || cls == java.sql.Time.class;
+    }
+
+    private static abstract class Node {
+        abstract boolean matches(Delegator delegator, GenericEntity entity);
+
+        /** Relative cost, used to order the members of AND/OR lists. */
+        abstract int getCost();
+    }
+
+    private static final class ConstantNode extends Node {
+        private final boolean value;
+
+        ConstantNode(boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        boolean matches(Delegator delegator, GenericEntity entity) {
+            return value;
+        }
+
+        @Override
+        int getCost() {
+            return 0;
+        }
+    }
+
+    private static final class ComparisonNode extends Node {
+        private final ModelField field;
+        private final EntityComparisonOperator<Object, Object> operator;
+        private final Object rhs;
+        private final int cost;
+
+        ComparisonNode(ModelField field, EntityComparisonOperator<Object, Object> operator, Object rhs) {
+            this.field = field;
+            this.operator = operator;
+            this.rhs = rhs;
+            int id = operator.getId();
+            this.cost = (id == EntityOperator.ID_EQUALS || id == EntityOperator.ID_NOT_EQUAL) ? 0 : 1;
+        }
+
+        @Override
+        boolean matches(Delegator delegator, GenericEntity entity) {
+            Object value = entity.dangerousGetNoCheckButFast(field);
+            if (value == EntityOperator.WILDCARD) {
+                return true;
+            }
+            return operator.compare(value, rhs);
+        }
+
+        @Override
+        int getCost() {
+            return cost;
+        }
+    }
+
+    private static final class InSetNode extends Node {
+        private final ModelField field;
+        private final Set<Object> values;
+        private final boolean negate;
+
+        InSetNode(ModelField field, Set<Object> values, boolean negate) {
+            this.field = field;
+            this.values = values;
+            this.negate = negate;
+        }
+
+        @Override
+        boolean matches(Delegator delegator, GenericEntity entity) {
+            Object value = entity.dangerousGetNoCheckButFast(field);
+            if (value == EntityOperator.WILDCARD) {
+                return true;
+            }
+            // Like EntityComparisonOperator.compareIn: a null value is not in the list
+            return (value != null && values.contains(value)) != negate;
+        }
+
+        @Override
+        int getCost() {
+            return 0;
+        }
+    }
+
+    private static final class LikeNode extends Node {
+        private final ModelField field;
+        private final Pattern pattern;
+        private final boolean negate;
+
+        LikeNode(ModelField field, Pattern pattern, boolean negate) {
+            this.field = field;
+            this.pattern = pattern;
+            this.negate = negate;
+        }
+
+        @Override
+        boolean matches(Delegator delegator, GenericEntity entity) {
+            Object value = entity.dangerousGetNoCheckButFast(field);
+            if (value == EntityOperator.WILDCARD) {
+                return true;
+            }
+            // Like EntityComparisonOperator.compareLike
+            boolean like;
+            if (value == null) {
+                like = false;
+            } else if (value instanceof String) {
+                like = new Perl5Matcher().matches((String) value, pattern);
+            } else {
+                like = true;
+            }
+            return like != negate;
+        }
+
+        @Override
+        int getCost() {
+            return 2;
+        }
+    }
+
+    private static final class JoinNode extends Node {
+        private final boolean shortCircuitValue;
+        private final Node[] nodes;
+        private final int cost;
+
+        JoinNode(boolean shortCircuitValue, Node[] nodes) {
+            this.shortCircuitValue = shortCircuitValue;
+            this.nodes = nodes;
+            int cost = 0;
+            for (Node node : nodes) {
+                cost = Math.max(cost, node.getCost());
+            }
+            this.cost = cost + 1;
+        }
+
+        @Override
+        boolean matches(Delegator delegator, GenericEntity entity) {
+            for (Node node : nodes) {
+                if (node.matches(delegator, entity) == shortCircuitValue) {
+                    return shortCircuitValue;
+                }
+            }
+            return !shortCircuitValue;
+        }
+
+        @Override
+        int getCost() {
+            return cost;
+        }
+    }
+
+    private static final class ConditionNode extends Node {
+        private final EntityCondition condition;
+
+        ConditionNode(EntityCondition condition) {
+            this.condition = condition;
+        }
+
+        @Override
+        boolean matches(Delegator delegator, GenericEntity entity) {
+            return condition.mapMatches(delegator, entity);
+        }
+
+        @Override
+        int getCost() {
+            return 4;
+        }
+    }
+}
@@ -110,6 +110,18 @@ public final class EntityExpr extends EntityCondition {
         return operator.isEmpty(lhs, rhs);
     }
 
+    @Override
+    public boolean mayQueryOtherEntities() { // SCIPIO
+        return mayQueryOtherEntities(lhs) || mayQueryOtherEntities(rhs);
+    }
+
+    private static boolean mayQueryOtherEntities(Object operand) {
+        if (operand instanceof EntityConditionSubSelect) {
+            return true;
+        }
+        return (operand instanceof EntityCondition) && ((EntityCondition) operand).mayQueryOtherEntities();
+    }
+
     @Override
     public String makeWhereString(ModelEntity modelEntity, List<EntityConditionParam> entityConditionParams, Datasource datasourceInfo) {
 
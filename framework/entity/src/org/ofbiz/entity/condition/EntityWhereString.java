@@ -48,6 +48,11 @@ public final class EntityWhereString extends EntityCondition {
         this.sqlString = sqlString;
     }
 
+    @Override
+    public boolean mayQueryOtherEntities() { // SCIPIO: plain SQL
+        return true;
+    }
+
     @Override
     public boolean isEmpty() {
         return UtilValidate.isEmpty(sqlString);
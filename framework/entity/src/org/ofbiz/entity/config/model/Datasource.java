@@ -76,6 +76,8 @@ public final class Datasource {
     private final boolean dropFkUseForeignKeyKeyword;
     private final boolean useBinaryTypeForBlob;
     private final boolean useOrderByNulls;
+    private final boolean useForUpdate; // SCIPIO
+    private final boolean useSkipLocked; // SCIPIO
     private final String offsetStyle;
     private final String tableType; // type = xs:string
     private final String characterSet; // type = xs:string
@@ -162,6 +164,8 @@ public final class Datasource {
         this.dropFkUseForeignKeyKeyword = "true".equals(getAttr(name, element, "drop-fk-use-foreign-key-keyword"));
         this.useBinaryTypeForBlob = "true".equals(getAttr(name, element, "use-binary-type-for-blob"));
         this.useOrderByNulls = "true".equals(getAttr(name, element, "use-order-by-nulls"));
+        this.useForUpdate = !"false".equals(getAttr(name, element, "use-for-update")); // SCIPIO
+        this.useSkipLocked = "true".equals(getAttr(name, element, "use-skip-locked")); // SCIPIO
         String offsetStyle = getAttr(name, element, "offset-style");
         if (offsetStyle.isEmpty()) {
             offsetStyle = "none";
@@ -384,6 +388,16 @@ public final class Datasource {
         return this.useOrderByNulls;
     }
 
+    /** SCIPIO: Returns the value of the <code>use-for-update</code> attribute. */
+    public boolean getUseForUpdate() {
+        return this.useForUpdate;
+    }
+
+    /** SCIPIO: Returns the value of the <code>use-skip-locked</code> attribute. */
+    public boolean getUseSkipLocked() {
+        return this.useSkipLocked;
+    }
+
     /** Returns the value of the <code>offset-style</code> attribute. */
     public String getOffsetStyle() {
         return this.offsetStyle;
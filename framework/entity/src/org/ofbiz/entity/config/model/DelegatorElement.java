@@ -51,6 +51,7 @@ public final class DelegatorElement {
     private final String keyEncryptingKey; // type = xs:string
     private final List<GroupMap> groupMapList; // <group-map>
     private final Map<String, String> groupMapMap; // <group-map>
+    private final Map<String, List<String>> groupReadMapMap; // SCIPIO: <group-map read-datasource-names>
 
     DelegatorElement(Element element) throws GenericEntityConfException {
         String lineNumberText = EntityConfig.createConfigFileLineNumberText(element);
@@ -100,13 +101,18 @@ public final class DelegatorElement {
         } else {
             List<GroupMap> groupMapList = new ArrayList<GroupMap>(groupMapElementList.size());
             Map<String, String> groupMapMap = new HashMap<String, String>();
+            Map<String, List<String>> groupReadMapMap = new HashMap<>();
             for (Element groupMapElement : groupMapElementList) {
                 GroupMap groupMap = new GroupMap(groupMapElement);
                 groupMapList.add(groupMap);
                 groupMapMap.put(groupMap.getGroupName(), groupMap.getDatasourceName());
+                if (!groupMap.getReadDatasourceNames().isEmpty()) {
+                    groupReadMapMap.put(groupMap.getGroupName(), groupMap.getReadDatasourceNames());
+                }
             }
             this.groupMapList = Collections.unmodifiableList(groupMapList);
             this.groupMapMap = Collections.unmodifiableMap(groupMapMap);
+            this.groupReadMapMap = Collections.unmodifiableMap(groupReadMapMap);
         }
     }
 
@@ -180,4 +186,11 @@ public final class DelegatorElement {
     public String getGroupDataSource(String groupName) {
         return this.groupMapMap.get(groupName);
     }
+
+    /** Returns the specified <code>&lt;group-map&gt; read-datasource-names</code> attribute values,
+     * or an empty list if the group has no read replicas (SCIPIO). */
+    public List<String> getGroupReadDataSources(String groupName) {
+        List<String> readDatasourceNames = this.groupReadMapMap.get(groupName);
+        return (readDatasourceNames != null) ? readDatasourceNames : Collections.<String>emptyList();
+    }
 }
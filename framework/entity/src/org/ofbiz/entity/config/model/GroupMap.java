@@ -18,6 +18,10 @@
  *******************************************************************************/
 package org.ofbiz.entity.config.model;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import org.ofbiz.base.lang.ThreadSafe;
 import org.ofbiz.entity.GenericEntityConfException;
 import org.w3c.dom.Element;
@@ -32,6 +36,7 @@ public final class GroupMap {
 
     private final String groupName; // type = xs:string
     private final String datasourceName; // type = xs:string
+    private final List<String> readDatasourceNames; // SCIPIO: type = xs:string (comma-separated)
 
     GroupMap(Element element) throws GenericEntityConfException {
         String lineNumberText = EntityConfig.createConfigFileLineNumberText(element);
@@ -45,6 +50,19 @@ public final class GroupMap {
             throw new GenericEntityConfException("<group-map> element datasource-name attribute is empty" + lineNumberText);
         }
         this.datasourceName = datasourceName;
+        String readDatasourceNames = element.getAttribute("read-datasource-names");
+        if (readDatasourceNames.trim().isEmpty()) {
+            this.readDatasourceNames = Collections.emptyList();
+        } else {
+            List<String> readDatasourceNameList = new ArrayList<>();
+            for (String readDatasourceName : readDatasourceNames.split(",")) {
+                readDatasourceName = readDatasourceName.trim();
+                if (!readDatasourceName.isEmpty()) {
+                    readDatasourceNameList.add(readDatasourceName.intern());
+                }
+            }
+            this.readDatasourceNames = Collections.unmodifiableList(readDatasourceNameList);
+        }
     }
 
     /** Returns the value of the <code>group-name</code> attribute. */
@@ -56,4 +74,9 @@ public final class GroupMap {
     public String getDatasourceName() {
         return this.datasourceName;
     }
+
+    /** Returns the values of the <code>read-datasource-names</code> attribute, the read replicas of the datasource (SCIPIO). */
+    public List<String> getReadDatasourceNames() {
+        return this.readDatasourceNames;
+    }
 }
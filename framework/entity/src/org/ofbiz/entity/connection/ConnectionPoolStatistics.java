@@ -0,0 +1,467 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.entity.connection;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.ObjectName;
+
+import org.apache.commons.pool2.DestroyMode;
+import org.apache.commons.pool2.PooledObjectFactory;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.ofbiz.base.metrics.LatencyHistogram;
+import org.ofbiz.base.metrics.Metrics;
+import org.ofbiz.base.metrics.MetricsFactory;
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilProperties;
+
+/**
+ * SCIPIO: Statistics of the connection pool of one datasource, kept by {@link MonitoredObjectPool}.
+ * <p>
+ * Records the borrow count, the borrow attempts that timed out and a histogram of the time waited to borrow a
+ * connection ({@link LatencyHistogram}, as {@link org.ofbiz.entity.jdbc.SQLStatistics}), and tracks the
+ * borrowed connections with their holding thread and borrow time, to find the connection held the longest. The stack
+ * of the borrowing code is only recorded with <code>entity.properties#connectionPool.holderStack.enable</code>, since
+ * it costs a stack walk per borrow; otherwise the current stack of the holding thread is shown.
+ * The average wait is also recorded in the <code>entity.connectionPool.&lt;helper name&gt;</code> metric (webtools
+ * metrics page). The statistics are exposed through JMX ({@link ConnectionPoolStatisticsMBean}) and the webtools
+ * connection pool status page.
+ * <p>
+ * With <code>connectionPool.adaptive.enable</code>, {@link #adjustMaxTotal()} is run every
+ * <code>connectionPool.adaptive.interval</code> milliseconds: it raises the maximum number of connections of the pool
+ * when borrows timed out or the average wait of the interval reached <code>connectionPool.adaptive.growWaitTime</code>,
+ * up to <code>connectionPool.adaptive.maxSizeFactor</code> times the configured pool-maxsize, and lowers it back
+ * towards pool-maxsize when the waits are short and the connections over the lowered maximum were not used
+ * (see {@link AdaptiveSizing}).
+ */
+public final class ConnectionPoolStatistics implements ConnectionPoolStatisticsMBean {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    static final boolean ENABLED = UtilProperties.getPropertyAsBoolean("entity", "connectionPool.statistics.enable", true);
+    private static final boolean JMX_ENABLED = UtilProperties.getPropertyAsBoolean("entity", "connectionPool.jmx.enable", true);
+    private static final boolean HOLDER_STACK = UtilProperties.getPropertyAsBoolean("entity", "connectionPool.holderStack.enable", false);
+    private static final int STACK_DEPTH = UtilProperties.getPropertyAsInteger("entity", "connectionPool.holderStack.depth", 12);
+    static final boolean ADAPTIVE = ENABLED && UtilProperties.getPropertyAsBoolean("entity", "connectionPool.adaptive.enable", false);
+    static final long ADAPTIVE_INTERVAL = Math.max(1000L, UtilProperties.getPropertyAsLong("entity", "connectionPool.adaptive.interval", 10000L));
+    private static final long ADAPTIVE_GROW_WAIT_TIME = UtilProperties.getPropertyAsLong("entity", "connectionPool.adaptive.growWaitTime", 50L);
+    private static final double ADAPTIVE_MAX_SIZE_FACTOR = Math.max(1.0, UtilProperties.getPropertyNumber("entity", "connectionPool.adaptive.maxSizeFactor", 2.0));
+
+    private final String helperName;
+    private final GenericObjectPool<?> pool;
+    private final int configuredMaxTotal;
+    private final AdaptiveSizing adaptiveSizing;
+    private final Metrics metrics;
+
+    private final Map<Object, Holder> holders = new ConcurrentHashMap<>();
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private volatile long since = System.currentTimeMillis();
+
+    // Adaptive sizing interval counters
+    private final LongAdder intervalBorrowCount = new LongAdder();
+    private final LongAdder intervalTimeoutCount = new LongAdder();
+    private final LongAdder intervalWaitNanos = new LongAdder();
+    private final LongAccumulator intervalPeakActive = new LongAccumulator(Math::max, 0);
+
+    private ObjectName objectName;
+
+    ConnectionPoolStatistics(String helperName, GenericObjectPool<?> pool, int configuredMaxTotal) {
+        this.helperName = helperName;
+        this.pool = pool;
+        this.configuredMaxTotal = configuredMaxTotal;
+        this.adaptiveSizing = new AdaptiveSizing(configuredMaxTotal, ADAPTIVE_MAX_SIZE_FACTOR, ADAPTIVE_GROW_WAIT_TIME);
+        this.metrics = MetricsFactory.getInstance("entity.connectionPool." + helperName,
+                UtilProperties.getPropertyAsInteger("serverstats", "metrics.estimation.size", 100),
+                UtilProperties.getPropertyAsLong("serverstats", "metrics.estimation.time", 1000),
+                UtilProperties.getPropertyNumber("serverstats", "metrics.smoothing.factor", 0.7),
+                ADAPTIVE_GROW_WAIT_TIME);
+    }
+
+    void register() {
+        if (!JMX_ENABLED) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName("org.ofbiz.entity:type=ConnectionPool,name=" + ObjectName.quote(helperName));
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+                objectName = name;
+            }
+        } catch (Exception e) {
+            Debug.logWarning("Could not register connection pool statistics MBean for [" + helperName + "]: " + e.toString(), module);
+        }
+    }
+
+    void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (Exception e) {
+            Debug.logWarning("Could not unregister connection pool statistics MBean for [" + helperName + "]: " + e.toString(), module);
+        }
+        objectName = null;
+    }
+
+    private void recordWait(long waitNanos) {
+        borrowCount.increment();
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulate(waitNanos);
+        histogram.record(waitNanos / 1000);
+        metrics.recordServiceRate(1, waitNanos / 1000000);
+        if (ADAPTIVE) {
+            intervalBorrowCount.increment();
+            intervalWaitNanos.add(waitNanos);
+        }
+    }
+
+    void borrowed(Object connection, long waitNanos) {
+        recordWait(waitNanos);
+        Thread thread = Thread.currentThread();
+        holders.put(connection, new Holder(thread, HOLDER_STACK ? thread.getStackTrace() : null));
+        if (ADAPTIVE) {
+            intervalPeakActive.accumulate(holders.size());
+        }
+    }
+
+    void timedOut(long waitNanos) {
+        recordWait(waitNanos);
+        timeoutCount.increment();
+        if (ADAPTIVE) {
+            intervalTimeoutCount.increment();
+        }
+    }
+
+    void released(Object connection) {
+        holders.remove(connection);
+    }
+
+    /**
+     * Adjusts the maximum number of connections of the pool to the borrows since the last call (adaptive sizing).
+     */
+    void adjustMaxTotal() {
+        long borrows = intervalBorrowCount.sumThenReset();
+        long timeouts = intervalTimeoutCount.sumThenReset();
+        long waitNanos = intervalWaitNanos.sumThenReset();
+        long peakActive = intervalPeakActive.getThenReset();
+        double avgWaitMillis = (borrows > 0) ? (waitNanos / 1000000.0) / borrows : 0;
+        int maxTotal = pool.getMaxTotal();
+        int newMaxTotal = adaptiveSizing.getNewMaxTotal(maxTotal, timeouts, avgWaitMillis, peakActive);
+        if (newMaxTotal != maxTotal) {
+            pool.setMaxTotal(newMaxTotal);
+            Debug.logInfo(String.format("Connection pool [%s] max size changed from %d to %d (borrows=%d timeouts=%d avgWait=%.3fms peakActive=%d)",
+                    helperName, maxTotal, newMaxTotal, borrows, timeouts, avgWaitMillis, peakActive), module);
+        }
+    }
+
+    @Override
+    public String getHelperName() {
+        return helperName;
+    }
+
+    /**
+     * Returns the time of the last reset (or start).
+     */
+    public Timestamp getSince() {
+        return new Timestamp(since);
+    }
+
+    @Override
+    public int getNumActive() {
+        return pool.getNumActive();
+    }
+
+    @Override
+    public int getNumIdle() {
+        return pool.getNumIdle();
+    }
+
+    @Override
+    public int getNumWaiters() {
+        return pool.getNumWaiters();
+    }
+
+    @Override
+    public int getMaxTotal() {
+        return pool.getMaxTotal();
+    }
+
+    @Override
+    public int getConfiguredMaxTotal() {
+        return configuredMaxTotal;
+    }
+
+    @Override
+    public boolean isAdaptive() {
+        return ADAPTIVE;
+    }
+
+    @Override
+    public long getBorrowCount() {
+        return borrowCount.sum();
+    }
+
+    @Override
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    @Override
+    public double getAvgWaitMillis() {
+        long count = borrowCount.sum();
+        return (count > 0) ? (totalWaitNanos.sum() / 1000000.0) / count : 0;
+    }
+
+    @Override
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1000000.0;
+    }
+
+    /**
+     * Returns the wait below which the given fraction (0 to 1) of the borrows are, in milliseconds,
+     * rounded up to the histogram bucket.
+     */
+    public double getWaitPercentileMillis(double fraction) {
+        return Math.min(histogram.getPercentileMicros(fraction) / 1000.0, getMaxWaitMillis());
+    }
+
+    @Override
+    public double getWaitP50Millis() {
+        return getWaitPercentileMillis(0.5);
+    }
+
+    @Override
+    public double getWaitP95Millis() {
+        return getWaitPercentileMillis(0.95);
+    }
+
+    @Override
+    public double getWaitP99Millis() {
+        return getWaitPercentileMillis(0.99);
+    }
+
+    /**
+     * Returns the holders of the connections currently borrowed, longest held first.
+     */
+    public List<Holder> getHolderList() {
+        List<Holder> holderList = new ArrayList<>(holders.values());
+        holderList.sort(Comparator.comparingLong(Holder::getBorrowTimeMillis));
+        return holderList;
+    }
+
+    /**
+     * Returns the holder of the connection borrowed the longest ago, or null if none is borrowed.
+     */
+    public Holder getLongestHeld() {
+        Holder longest = null;
+        for (Holder holder : holders.values()) {
+            if (longest == null || holder.borrowTime < longest.borrowTime) {
+                longest = holder;
+            }
+        }
+        return longest;
+    }
+
+    @Override
+    public long getLongestHeldMillis() {
+        Holder longest = getLongestHeld();
+        return (longest != null) ? longest.getHeldMillis() : 0;
+    }
+
+    @Override
+    public String[] getHolders() {
+        List<Holder> holderList = getHolderList();
+        String[] lines = new String[holderList.size()];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = holderList.get(i).toString();
+        }
+        return lines;
+    }
+
+    @Override
+    public String[] getLongestHeldStack() {
+        Holder longest = getLongestHeld();
+        return (longest != null) ? longest.getStack().toArray(new String[0]) : new String[0];
+    }
+
+    @Override
+    public void reset() {
+        borrowCount.reset();
+        timeoutCount.reset();
+        totalWaitNanos.reset();
+        maxWaitNanos.reset();
+        histogram.reset();
+        since = System.currentTimeMillis();
+    }
+
+    /**
+     * Adaptive sizing rule of {@link ConnectionPoolStatistics#adjustMaxTotal()}: grows the maximum number of connections
+     * by a quarter of the configured maximum when borrows timed out or waited growWaitTime on average, up to
+     * maxSizeFactor times the configured maximum, and shrinks it by the same step, down to the configured maximum, when
+     * the average wait was under half of growWaitTime and the peak of borrowed connections fits in the lowered maximum.
+     */
+    public static final class AdaptiveSizing {
+        private final int configuredMaxTotal;
+        private final int adaptiveMaxTotal;
+        private final long growWaitTime;
+        private final int step;
+
+        public AdaptiveSizing(int configuredMaxTotal, double maxSizeFactor, long growWaitTime) {
+            this.configuredMaxTotal = configuredMaxTotal;
+            this.adaptiveMaxTotal = (int) Math.ceil(configuredMaxTotal * Math.max(1.0, maxSizeFactor));
+            this.growWaitTime = growWaitTime;
+            this.step = Math.max(1, configuredMaxTotal / 4);
+        }
+
+        /** Returns the highest maximum number of connections the pool may grow to. */
+        public int getAdaptiveMaxTotal() {
+            return adaptiveMaxTotal;
+        }
+
+        /**
+         * Returns the maximum number of connections for the next interval, from the current maximum and the timed
+         * out borrows, average wait and peak of borrowed connections of the last interval.
+         */
+        public int getNewMaxTotal(int maxTotal, long timeouts, double avgWaitMillis, long peakActive) {
+            if (timeouts > 0 || avgWaitMillis >= growWaitTime) {
+                return Math.max(maxTotal, Math.min(adaptiveMaxTotal, maxTotal + step));
+            } else if (maxTotal > configuredMaxTotal && avgWaitMillis < growWaitTime / 2.0 && peakActive <= maxTotal - step) {
+                return Math.max(configuredMaxTotal, maxTotal - step);
+            }
+            return maxTotal;
+        }
+    }
+
+    /**
+     * Borrowed connection: holding thread, borrow time and, if recorded, borrowing stack.
+     */
+    public static final class Holder {
+        private final long borrowTime = System.currentTimeMillis();
+        private final Thread thread;
+        private final StackTraceElement[] borrowStack;
+
+        private Holder(Thread thread, StackTraceElement[] borrowStack) {
+            this.thread = thread;
+            this.borrowStack = borrowStack;
+        }
+
+        public Timestamp getBorrowTime() {
+            return new Timestamp(borrowTime);
+        }
+
+        private long getBorrowTimeMillis() {
+            return borrowTime;
+        }
+
+        public long getHeldMillis() {
+            return System.currentTimeMillis() - borrowTime;
+        }
+
+        public String getThreadName() {
+            return thread.getName();
+        }
+
+        /** Returns true if {@link #getStack()} is the stack of the borrowing code, false if the current stack of the thread. */
+        public boolean isBorrowStack() {
+            return borrowStack != null;
+        }
+
+        /**
+         * Returns the innermost frames outside the entity engine and the pool of the borrowing stack if recorded,
+         * otherwise of the current stack of the holding thread (empty if it ended without closing the connection).
+         */
+        public List<String> getStack() {
+            StackTraceElement[] elements = (borrowStack != null) ? borrowStack : (thread.isAlive() ? thread.getStackTrace() : new StackTraceElement[0]);
+            List<String> stack = new ArrayList<>(STACK_DEPTH);
+            for (StackTraceElement element : elements) {
+                if (stack.size() >= STACK_DEPTH) {
+                    break;
+                }
+                String className = element.getClassName();
+                if (!className.startsWith("org.ofbiz.entity.") && !className.startsWith("java.") && !className.startsWith("org.apache.commons.")) {
+                    stack.add(element.toString());
+                }
+            }
+            return stack;
+        }
+
+        @Override
+        public String toString() {
+            return "held=" + getHeldMillis() + "ms thread=" + thread.getName() + (thread.isAlive() ? "" : " (ended)");
+        }
+    }
+
+    /**
+     * Object pool recording the borrows and returns of its objects in a {@link ConnectionPoolStatistics}.
+     */
+    static final class MonitoredObjectPool<T> extends GenericObjectPool<T> {
+        private final ConnectionPoolStatistics statistics;
+
+        MonitoredObjectPool(String helperName, PooledObjectFactory<T> factory, GenericObjectPoolConfig<T> config) {
+            super(factory, config);
+            this.statistics = new ConnectionPoolStatistics(helperName, this, config.getMaxTotal());
+        }
+
+        ConnectionPoolStatistics getStatistics() {
+            return statistics;
+        }
+
+        @Override
+        public T borrowObject(Duration borrowMaxWaitDuration) throws Exception {
+            long start = System.nanoTime();
+            T object;
+            try {
+                object = super.borrowObject(borrowMaxWaitDuration);
+            } catch (NoSuchElementException e) {
+                statistics.timedOut(System.nanoTime() - start);
+                throw e;
+            }
+            statistics.borrowed(object, System.nanoTime() - start);
+            return object;
+        }
+
+        @Override
+        public void returnObject(T object) {
+            statistics.released(object);
+            super.returnObject(object);
+        }
+
+        @Override
+        public void invalidateObject(T object, DestroyMode destroyMode) throws Exception {
+            statistics.released(object);
+            super.invalidateObject(object, destroyMode);
+        }
+    }
+}
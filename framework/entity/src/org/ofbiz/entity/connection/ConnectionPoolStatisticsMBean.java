@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.entity.connection;
+
+/**
+ * SCIPIO: JMX management interface of {@link ConnectionPoolStatistics}, registered as
+ * <code>org.ofbiz.entity:type=ConnectionPool,name=&lt;helper name&gt;</code>.
+ */
+public interface ConnectionPoolStatisticsMBean {
+
+    /** Returns the full name of the datasource helper of the pool. */
+    String getHelperName();
+
+    /** Returns the number of connections currently borrowed. */
+    int getNumActive();
+
+    /** Returns the number of idle connections in the pool. */
+    int getNumIdle();
+
+    /** Returns the number of threads currently waiting for a connection. */
+    int getNumWaiters();
+
+    /** Returns the current maximum number of connections, changed by the adaptive sizing. */
+    int getMaxTotal();
+
+    /** Returns the maximum number of connections of the datasource configuration (pool-maxsize). */
+    int getConfiguredMaxTotal();
+
+    /** Returns true if the maximum number of connections is adjusted to the borrow wait times. */
+    boolean isAdaptive();
+
+    /** Returns the number of connections borrowed since the last reset, including the timed out attempts. */
+    long getBorrowCount();
+
+    /** Returns the number of borrow attempts that timed out (pool exhausted) since the last reset. */
+    long getTimeoutCount();
+
+    /** Returns the average time waited to borrow a connection (milliseconds). */
+    double getAvgWaitMillis();
+
+    /** Returns the median time waited to borrow a connection (milliseconds, within 25%). */
+    double getWaitP50Millis();
+
+    /** Returns the 95th percentile of the time waited to borrow a connection (milliseconds, within 25%). */
+    double getWaitP95Millis();
+
+    /** Returns the 99th percentile of the time waited to borrow a connection (milliseconds, within 25%). */
+    double getWaitP99Millis();
+
+    /** Returns the longest time waited to borrow a connection (milliseconds). */
+    double getMaxWaitMillis();
+
+    /** Returns how long the connection borrowed the longest ago has been held (milliseconds; 0 if none). */
+    long getLongestHeldMillis();
+
+    /** Returns the connections currently borrowed, longest held first, one line per connection with the holding thread. */
+    String[] getHolders();
+
+    /** Returns the stack of the connection borrowed the longest ago: the borrowing stack if recorded, otherwise the current stack of the holding thread. */
+    String[] getLongestHeldStack();
+
+    /** Clears the borrow counts and wait times. */
+    void reset();
+}
@@ -25,6 +25,9 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import javax.transaction.TransactionManager;
 
@@ -36,6 +39,7 @@ import org.apache.commons.dbcp2.managed.PoolableManagedConnectionFactory;
 import org.apache.commons.dbcp2.managed.XAConnectionFactory;
 import org.apache.commons.pool2.impl.GenericObjectPool;
 import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.ofbiz.base.concurrent.ExecutionPool;
 import org.ofbiz.base.util.Debug;
 import org.ofbiz.entity.GenericEntityConfException;
 import org.ofbiz.entity.GenericEntityException;
@@ -58,6 +62,9 @@ public class DBCPConnectionFactory implements ConnectionFactory {
     // In case you don't want to be disturbed in the log (focusing on something else), it's still easy to comment out the line from DebugManagedDataSource
     protected static final ConcurrentHashMap<String, DebugManagedDataSource<? extends Connection>> dsCache =
             new ConcurrentHashMap<>();
+    // SCIPIO: adaptive pool sizing tasks, by cache key
+    private static final Map<String, ScheduledFuture<?>> sizerTasks = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService sizerExecutor;
 
     public Connection getConnection(GenericHelperInfo helperInfo, JdbcElement abstractJdbc) throws SQLException, GenericEntityException {
         String cacheKey = helperInfo.getHelperFullName();
@@ -146,24 +153,84 @@ public class DBCPConnectionFactory implements ConnectionFactory {
         poolConfig.setTestOnReturn(jdbcElement.getTestOnReturn());
         poolConfig.setTestWhileIdle(jdbcElement.getTestWhileIdle());
 
-        GenericObjectPool<PoolableConnection> pool = new GenericObjectPool<PoolableConnection>(factory, poolConfig);
+        // SCIPIO: pool recording borrow wait times and connection holders, unless disabled
+        GenericObjectPool<PoolableConnection> pool;
+        ConnectionPoolStatistics statistics = null;
+        if (ConnectionPoolStatistics.ENABLED) {
+            ConnectionPoolStatistics.MonitoredObjectPool<PoolableConnection> monitoredPool =
+                    new ConnectionPoolStatistics.MonitoredObjectPool<>(cacheKey, factory, poolConfig);
+            statistics = monitoredPool.getStatistics();
+            pool = monitoredPool;
+        } else {
+            pool = new GenericObjectPool<PoolableConnection>(factory, poolConfig);
+        }
         factory.setPool(pool);
 
-        mds = new DebugManagedDataSource<>(pool, xacf.getTransactionRegistry());
+        mds = new DebugManagedDataSource<>(pool, xacf.getTransactionRegistry(), statistics);
         mds.setAccessToUnderlyingConnectionAllowed(true);
 
         // cache the pool
-        dsCache.putIfAbsent(cacheKey, mds);
-        mds = dsCache.get(cacheKey);
+        DebugManagedDataSource<? extends Connection> cachedMds = dsCache.putIfAbsent(cacheKey, mds);
+        if (cachedMds == null) {
+            if (statistics != null) {
+                statistics.register();
+                if (ConnectionPoolStatistics.ADAPTIVE) {
+                    scheduleSizer(cacheKey, statistics);
+                }
+            }
+        } else {
+            // SCIPIO: another thread created the pool first
+            pool.close();
+            mds = cachedMds;
+        }
 
         return TransactionUtil.getCursorConnection(helperInfo, mds.getConnection());
     }
 
     public void closeAll() {
         // no methods on the pool to shutdown; so just clearing for GC
+        // SCIPIO: stop the adaptive sizing and remove the statistics MBeans
+        for (ScheduledFuture<?> sizerTask : sizerTasks.values()) {
+            sizerTask.cancel(false);
+        }
+        sizerTasks.clear();
+        for (DebugManagedDataSource<? extends Connection> mds : dsCache.values()) {
+            if (mds.getStatistics() != null) {
+                mds.getStatistics().unregister();
+            }
+        }
         dsCache.clear();
     }
 
+    /**
+     * SCIPIO: Schedules the adaptive sizing of a pool (<code>entity.properties#connectionPool.adaptive.enable</code>).
+     */
+    private static void scheduleSizer(String cacheKey, ConnectionPoolStatistics statistics) {
+        ScheduledExecutorService executor;
+        synchronized (DBCPConnectionFactory.class) {
+            if (sizerExecutor == null) {
+                sizerExecutor = ExecutionPool.getScheduledExecutor(null, "connection-pool-sizer", 1, 0, false);
+            }
+            executor = sizerExecutor;
+        }
+        long interval = ConnectionPoolStatistics.ADAPTIVE_INTERVAL;
+        sizerTasks.put(cacheKey, executor.scheduleWithFixedDelay(() -> {
+            try {
+                statistics.adjustMaxTotal();
+            } catch (RuntimeException e) {
+                Debug.logError(e, "Could not adjust the size of connection pool [" + cacheKey + "]", module);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * SCIPIO: Returns the statistics of the pool of the helper, or null if there is no such pool or it keeps none.
+     */
+    public static ConnectionPoolStatistics getStatistics(String helperName) {
+        DebugManagedDataSource<? extends Connection> mds = dsCache.get(helperName);
+        return (mds != null) ? mds.getStatistics() : null;
+    }
+
     public static Map<String, Object> getDataSourceInfo(String helperName) {
         Map<String, Object> dataSourceInfo = new HashMap<String, Object>();
         DebugManagedDataSource<? extends Connection> mds = dsCache.get(helperName);
@@ -34,8 +34,25 @@ public class DebugManagedDataSource<C extends Connection> extends ManagedDataSou
 
     private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
 
+    private final ConnectionPoolStatistics statistics; // SCIPIO
+
     public DebugManagedDataSource(ObjectPool<C> pool, TransactionRegistry transactionRegistry) {
+        this(pool, transactionRegistry, null);
+    }
+
+    /**
+     * SCIPIO: Creates the data source of a pool that keeps statistics.
+     */
+    public DebugManagedDataSource(ObjectPool<C> pool, TransactionRegistry transactionRegistry, ConnectionPoolStatistics statistics) {
         super(pool, transactionRegistry);
+        this.statistics = statistics;
+    }
+
+    /**
+     * SCIPIO: Returns the statistics of the pool, or null if not kept.
+     */
+    public ConnectionPoolStatistics getStatistics() {
+        return statistics;
     }
 
     @Override
@@ -63,6 +80,26 @@ public class DebugManagedDataSource<C extends Connection> extends ManagedDataSou
             dataSourceInfo.put("poolMaxWait", objectPool.getMaxWaitMillis());
             dataSourceInfo.put("poolMinEvictableIdleTimeMillis", objectPool.getMinEvictableIdleTimeMillis());
             dataSourceInfo.put("poolMinIdle", objectPool.getMinIdle());
+            dataSourceInfo.put("poolNumWaiters", objectPool.getNumWaiters());
+        }
+        if (statistics != null) { // SCIPIO: borrow statistics
+            dataSourceInfo.put("poolConfiguredMaxActive", statistics.getConfiguredMaxTotal());
+            dataSourceInfo.put("poolAdaptive", statistics.isAdaptive());
+            dataSourceInfo.put("poolBorrowCount", statistics.getBorrowCount());
+            dataSourceInfo.put("poolTimeoutCount", statistics.getTimeoutCount());
+            dataSourceInfo.put("poolWaitAvgMillis", statistics.getAvgWaitMillis());
+            dataSourceInfo.put("poolWaitP50Millis", statistics.getWaitP50Millis());
+            dataSourceInfo.put("poolWaitP95Millis", statistics.getWaitP95Millis());
+            dataSourceInfo.put("poolWaitP99Millis", statistics.getWaitP99Millis());
+            dataSourceInfo.put("poolWaitMaxMillis", statistics.getMaxWaitMillis());
+            dataSourceInfo.put("poolStatisticsSince", statistics.getSince());
+            ConnectionPoolStatistics.Holder longestHeld = statistics.getLongestHeld();
+            if (longestHeld != null) {
+                dataSourceInfo.put("poolLongestHeldMillis", longestHeld.getHeldMillis());
+                dataSourceInfo.put("poolLongestHeldThread", longestHeld.getThreadName());
+                dataSourceInfo.put("poolLongestHeldBorrowStack", longestHeld.isBorrowStack());
+                dataSourceInfo.put("poolLongestHeldStack", longestHeld.getStack());
+            }
         }
         return dataSourceInfo;
     }
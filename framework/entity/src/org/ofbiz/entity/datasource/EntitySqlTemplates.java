@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.entity.datasource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.ofbiz.base.util.UtilProperties;
+import org.ofbiz.entity.GenericEntity;
+import org.ofbiz.entity.model.ModelEntity;
+import org.ofbiz.entity.model.ModelField;
+
+/**
+ * SCIPIO: SQL statement templates of one entity for one datasource, used by {@link GenericDAO}.
+ * <p>
+ * Holds the SQL of the statements whose text only depends on the entity model and the set of fields
+ * (insert, update/select/delete by primary key, partial select), and the value-independent clauses of the
+ * condition queries (FROM clause with view joins, view WHERE clause, full select column list). The parameter
+ * binding plan of these statements is the field list itself, bound in order by {@link org.ofbiz.entity.jdbc.SqlJdbcUtil#setValues}
+ * and {@link org.ofbiz.entity.jdbc.SqlJdbcUtil#setPkValues}.
+ * <p>
+ * The primary key statements assume all primary key values are set (<code>COL=?</code>); callers build the SQL
+ * as before otherwise, since null values change the statement (<code>COL IS NULL</code>).
+ * Templates are discarded when the field list of the model entity is replaced.
+ * <p>
+ * Thread-safe; the lazily built strings may be built twice under contention, which is harmless.
+ */
+final class EntitySqlTemplates {
+
+    static final boolean ENABLED = UtilProperties.getPropertyAsBoolean("entity", "sqlTemplateCache.enable", true);
+
+    /** Maximum number of distinct field sets cached per entity and statement type (partial updates and selects). */
+    private static final int MAX_FIELD_SETS = UtilProperties.getPropertyAsInteger("entity", "sqlTemplateCache.maxFieldSets", 64);
+
+    private final ModelEntity modelEntity;
+    private final List<ModelField> fields;
+
+    private String insertAllSql;
+    private String selectByPkSql;
+    private String deleteByPkSql;
+    private String fromClause;
+    private String viewWhereClause;
+    private String selectableColumns;
+    private final Map<List<ModelField>, String> updateByPkSql = new ConcurrentHashMap<>();
+    private final Map<List<ModelField>, String> partialSelectSql = new ConcurrentHashMap<>();
+
+    EntitySqlTemplates(ModelEntity modelEntity) {
+        this.modelEntity = modelEntity;
+        this.fields = modelEntity.getFieldsUnmodifiable();
+    }
+
+    /**
+     * Returns true if the templates were made for this instance and version of the model entity.
+     */
+    boolean isFor(ModelEntity modelEntity) {
+        return this.modelEntity == modelEntity && this.fields == modelEntity.getFieldsUnmodifiable();
+    }
+
+    String getInsertAllSql() {
+        return insertAllSql;
+    }
+
+    void setInsertAllSql(String insertAllSql) {
+        this.insertAllSql = insertAllSql;
+    }
+
+    String getSelectByPkSql() {
+        return selectByPkSql;
+    }
+
+    void setSelectByPkSql(String selectByPkSql) {
+        this.selectByPkSql = selectByPkSql;
+    }
+
+    String getDeleteByPkSql() {
+        return deleteByPkSql;
+    }
+
+    void setDeleteByPkSql(String deleteByPkSql) {
+        this.deleteByPkSql = deleteByPkSql;
+    }
+
+    String getFromClause() {
+        return fromClause;
+    }
+
+    void setFromClause(String fromClause) {
+        this.fromClause = fromClause;
+    }
+
+    String getViewWhereClause() {
+        return viewWhereClause;
+    }
+
+    void setViewWhereClause(String viewWhereClause) {
+        this.viewWhereClause = viewWhereClause;
+    }
+
+    String getSelectableColumns() {
+        return selectableColumns;
+    }
+
+    void setSelectableColumns(String selectableColumns) {
+        this.selectableColumns = selectableColumns;
+    }
+
+    String getUpdateByPkSql(List<ModelField> fieldsToSave) {
+        return updateByPkSql.get(fieldsToSave);
+    }
+
+    void setUpdateByPkSql(List<ModelField> fieldsToSave, String sql) {
+        putFieldSet(updateByPkSql, fieldsToSave, sql);
+    }
+
+    String getPartialSelectSql(List<ModelField> selectFields) {
+        return partialSelectSql.get(selectFields);
+    }
+
+    void setPartialSelectSql(List<ModelField> selectFields, String sql) {
+        putFieldSet(partialSelectSql, selectFields, sql);
+    }
+
+    private static void putFieldSet(Map<List<ModelField>, String> map, List<ModelField> fieldList, String sql) {
+        if (map.size() < MAX_FIELD_SETS) {
+            // Copy: the callers' lists are mutable
+            map.putIfAbsent(new ArrayList<>(fieldList), sql);
+        }
+    }
+
+    /**
+     * Returns true if all the primary key values of the entity are set, so that the primary key templates apply.
+     */
+    static boolean hasAllPkValues(ModelEntity modelEntity, GenericEntity entity) {
+        for (ModelField pkField : modelEntity.getPkFieldsUnmodifiable()) {
+            Object value = entity.dangerousGetNoCheckButFast(pkField);
+            if (value == null || value == GenericEntity.NULL_FIELD) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -20,6 +20,7 @@ package org.ofbiz.entity.datasource;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -27,6 +28,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -75,6 +77,8 @@ public class GenericDAO {
     private final GenericHelperInfo helperInfo;
     private final ModelFieldTypeReader modelFieldTypeReader;
     private final Datasource datasource;
+    // SCIPIO: SQL statement templates by entity name
+    private final ConcurrentHashMap<String, EntitySqlTemplates> sqlTemplates = new ConcurrentHashMap<>();
 
     public static GenericDAO getGenericDAO(GenericHelperInfo helperInfo) {
         String cacheKey = helperInfo.getHelperFullName();
@@ -102,6 +106,56 @@ public class GenericDAO {
         fieldsToSave.add(modelEntity.getField(fieldName));
     }
 
+    /**
+     * SCIPIO: Returns the SQL templates of the entity, or null if not cached (disabled, or dynamic view entity,
+     * which is not the one of the model reader and is a new instance for every query).
+     */
+    private EntitySqlTemplates getSqlTemplates(ModelEntity modelEntity) {
+        if (!EntitySqlTemplates.ENABLED) {
+            return null;
+        }
+        EntitySqlTemplates templates = sqlTemplates.get(modelEntity.getEntityName());
+        if (templates != null && templates.isFor(modelEntity)) {
+            return templates;
+        }
+        if (modelEntity.getModelReader() == null || modelEntity.getModelReader().getModelEntityNoCheck(modelEntity.getEntityName()) != modelEntity) {
+            return null;
+        }
+        templates = new EntitySqlTemplates(modelEntity);
+        sqlTemplates.put(modelEntity.getEntityName(), templates);
+        return templates;
+    }
+
+    /**
+     * SCIPIO: Returns the FROM clause of the entity, with the joins for view entities.
+     */
+    private String getFromClause(ModelEntity modelEntity) throws GenericEntityException {
+        EntitySqlTemplates templates = getSqlTemplates(modelEntity);
+        String fromClause = (templates != null) ? templates.getFromClause() : null;
+        if (fromClause == null) {
+            fromClause = SqlJdbcUtil.makeFromClause(modelEntity, modelFieldTypeReader, datasource);
+            if (templates != null) {
+                templates.setFromClause(fromClause);
+            }
+        }
+        return fromClause;
+    }
+
+    /**
+     * SCIPIO: Returns the view WHERE clause of the entity (joins of the implicit join style), empty if none.
+     */
+    private String getViewWhereClause(ModelEntity modelEntity) throws GenericEntityException {
+        EntitySqlTemplates templates = getSqlTemplates(modelEntity);
+        String viewClause = (templates != null) ? templates.getViewWhereClause() : null;
+        if (viewClause == null) {
+            viewClause = SqlJdbcUtil.makeViewWhereClause(modelEntity, datasource.getJoinStyle());
+            if (templates != null) {
+                templates.setViewWhereClause(viewClause);
+            }
+        }
+        return viewClause;
+    }
+
     public int insert(GenericEntity entity) throws GenericEntityException {
         ModelEntity modelEntity = entity.getModelEntity();
 
@@ -154,12 +208,7 @@ public class GenericDAO {
             }
         }
 
-        StringBuilder sqlB = new StringBuilder("INSERT INTO ").append(modelEntity.getTableName(datasource)).append(" (");
-
-        modelEntity.colNameString(fieldsToSave, sqlB, "");
-        sqlB.append(") VALUES (");
-        modelEntity.fieldsStringList(fieldsToSave, sqlB, "?", ", ");
-        String sql = sqlB.append(")").toString();
+        String sql = getInsertSql(modelEntity, fieldsToSave); // SCIPIO: inserts of all fields use the cached statement
 
         try {
             sqlP.prepareStatement(sql);
@@ -173,6 +222,33 @@ public class GenericDAO {
         }
     }
 
+    /**
+     * SCIPIO: Returns the INSERT statement of the given fields, from the SQL templates of the entity for all the fields.
+     */
+    public String getInsertSql(ModelEntity modelEntity, List<ModelField> fieldsToSave) {
+        EntitySqlTemplates templates = (fieldsToSave == modelEntity.getFieldsUnmodifiable()) ? getSqlTemplates(modelEntity) : null;
+        String sql = (templates != null) ? templates.getInsertAllSql() : null;
+        if (sql == null) {
+            sql = makeInsertSql(modelEntity, fieldsToSave);
+            if (templates != null) {
+                templates.setInsertAllSql(sql);
+            }
+        }
+        return sql;
+    }
+
+    /**
+     * SCIPIO: Builds the INSERT statement of the given fields.
+     */
+    public String makeInsertSql(ModelEntity modelEntity, List<ModelField> fieldsToSave) {
+        StringBuilder sqlB = new StringBuilder("INSERT INTO ").append(modelEntity.getTableName(datasource)).append(" (");
+
+        modelEntity.colNameString(fieldsToSave, sqlB, "");
+        sqlB.append(") VALUES (");
+        modelEntity.fieldsStringList(fieldsToSave, sqlB, "?", ", ");
+        return sqlB.append(")").toString();
+    }
+
     public int updateAll(GenericEntity entity) throws GenericEntityException {
         ModelEntity modelEntity = entity.getModelEntity();
 
@@ -181,7 +257,10 @@ public class GenericDAO {
 
     public int update(GenericEntity entity) throws GenericEntityException {
         ModelEntity modelEntity = entity.getModelEntity();
+        return customUpdate(entity, modelEntity, getPartialFields(entity, modelEntity));
+    }
 
+    private static List<ModelField> getPartialFields(GenericEntity entity, ModelEntity modelEntity) {
         // we don't want to update ALL fields, just the nonpk fields that are in the passed GenericEntity
         List<ModelField> partialFields = new ArrayList<>(modelEntity.getNopksSize()); // SCIPIO: switched to ArrayList
         Collection<String> keys = entity.getAllKeys();
@@ -193,8 +272,72 @@ public class GenericDAO {
                 partialFields.add(curField);
             }
         }
+        return partialFields;
+    }
 
-        return customUpdate(entity, modelEntity, partialFields);
+    /**
+     * SCIPIO: Updates the entities by primary key like {@link #update(GenericEntity)}, the updates with the same
+     * statement (same entity and set of fields) being executed as one JDBC batch, after the others.
+     * The entities of view entities and entities with optimistic locking, and the entities without all their
+     * primary key values, are updated one by one.
+     *
+     * @return the number of rows updated
+     * @throws GenericEntityNotFoundException if the row of an entity does not exist
+     */
+    public int updateBatch(List<? extends GenericEntity> entities) throws GenericEntityException {
+        if (entities.isEmpty()) {
+            return 0;
+        }
+        try (SQLProcessor sqlP = new SQLProcessor(entities.get(0).getDelegator(), helperInfo)) {
+            try {
+                int retVal = 0;
+                Map<String, List<GenericEntity>> batches = new LinkedHashMap<>();
+                Map<String, List<ModelField>> batchFields = new HashMap<>();
+                for (GenericEntity entity : entities) {
+                    ModelEntity modelEntity = entity.getModelEntity();
+                    List<ModelField> fieldsToSave = getPartialFields(entity, modelEntity);
+                    if (modelEntity instanceof ModelViewEntity || modelEntity.lock() || fieldsToSave.isEmpty()
+                            || !EntitySqlTemplates.hasAllPkValues(modelEntity, entity)) {
+                        retVal += singleUpdate(entity, modelEntity, fieldsToSave, sqlP);
+                        continue;
+                    }
+                    setUpdateStamps(entity, modelEntity, fieldsToSave);
+                    String sql = getUpdateSql(entity, modelEntity, fieldsToSave);
+                    batches.computeIfAbsent(sql, k -> new ArrayList<>()).add(entity);
+                    batchFields.putIfAbsent(sql, fieldsToSave);
+                }
+                for (Map.Entry<String, List<GenericEntity>> batch : batches.entrySet()) {
+                    List<ModelField> fieldsToSave = batchFields.get(batch.getKey());
+                    List<GenericEntity> batchEntities = batch.getValue();
+                    int[] counts;
+                    try {
+                        sqlP.prepareStatement(batch.getKey());
+                        for (GenericEntity entity : batchEntities) {
+                            SqlJdbcUtil.setValues(sqlP, fieldsToSave, entity, modelFieldTypeReader);
+                            SqlJdbcUtil.setPkValues(sqlP, entity.getModelEntity(), entity, modelFieldTypeReader);
+                            sqlP.addBatch();
+                        }
+                        counts = sqlP.executeBatch();
+                    } catch (GenericEntityException e) {
+                        throw new GenericEntityException("Error while updating " + batchEntities.size() + " values of entity ["
+                                + batchEntities.get(0).getEntityName() + "]", e);
+                    }
+                    for (int i = 0; i < batchEntities.size(); i++) {
+                        GenericEntity entity = batchEntities.get(i);
+                        int count = (i < counts.length) ? counts[i] : Statement.SUCCESS_NO_INFO;
+                        if (count == 0) {
+                            throw new GenericEntityNotFoundException("Tried to update an entity that does not exist, entity: " + entity.toString());
+                        }
+                        entity.synchronizedWithDatasource();
+                        retVal += (count > 0) ? count : 1;
+                    }
+                }
+                return retVal;
+            } catch (GenericEntityException e) {
+                sqlP.rollback();
+                throw e;
+            }
+        }
     }
 
     private int customUpdate(GenericEntity entity, ModelEntity modelEntity, List<ModelField> fieldsToSave) throws GenericEntityException {
@@ -234,6 +377,28 @@ public class GenericDAO {
             }
         }
 
+        setUpdateStamps(entity, modelEntity, fieldsToSave);
+        String sql = getUpdateSql(entity, modelEntity, fieldsToSave);
+
+        int retVal = 0;
+
+        try {
+            sqlP.prepareStatement(sql);
+            SqlJdbcUtil.setValues(sqlP, fieldsToSave, entity, modelFieldTypeReader);
+            SqlJdbcUtil.setPkValues(sqlP, modelEntity, entity, modelFieldTypeReader);
+            retVal = sqlP.executeUpdate();
+            entity.synchronizedWithDatasource();
+        } catch (GenericEntityException e) {
+            throw new GenericEntityException("Error while updating: " + entity.toString(), e);
+        }
+
+        if (retVal == 0) {
+            throw new GenericEntityNotFoundException("Tried to update an entity that does not exist, entity: " + entity.toString());
+        }
+        return retVal;
+    }
+
+    private void setUpdateStamps(GenericEntity entity, ModelEntity modelEntity, List<ModelField> fieldsToSave) {
         // if we have a STAMP_TX_FIELD then set it with NOW, always do this before the STAMP_FIELD
         // NOTE: these fairly complicated if statements have a few objectives:
         //   1. don't run the TransationUtil.getTransaction*Stamp() methods when we don't need to
@@ -248,28 +413,33 @@ public class GenericDAO {
             entity.set(ModelEntity.STAMP_FIELD, TransactionUtil.getTransactionUniqueNowStamp());
             addFieldIfMissing(fieldsToSave, ModelEntity.STAMP_FIELD, modelEntity);
         }
+    }
 
-        StringBuilder sql = new StringBuilder().append("UPDATE ").append(modelEntity.getTableName(datasource)).append(" SET ");
-        modelEntity.colNameString(fieldsToSave, sql, "", "=?, ", "=?", false);
-        sql.append(" WHERE ");
-        SqlJdbcUtil.makeWhereStringFromFields(sql, modelEntity.getPkFieldsUnmodifiable(), entity, "AND");
-
-        int retVal = 0;
-
-        try {
-            sqlP.prepareStatement(sql.toString());
-            SqlJdbcUtil.setValues(sqlP, fieldsToSave, entity, modelFieldTypeReader);
-            SqlJdbcUtil.setPkValues(sqlP, modelEntity, entity, modelFieldTypeReader);
-            retVal = sqlP.executeUpdate();
-            entity.synchronizedWithDatasource();
-        } catch (GenericEntityException e) {
-            throw new GenericEntityException("Error while updating: " + entity.toString(), e);
+    /**
+     * SCIPIO: Returns the UPDATE by primary key statement of the given fields, from the SQL templates of the entity
+     * (by set of fields to save) when all the primary key values are set.
+     */
+    public String getUpdateSql(GenericEntity entity, ModelEntity modelEntity, List<ModelField> fieldsToSave) {
+        EntitySqlTemplates templates = EntitySqlTemplates.hasAllPkValues(modelEntity, entity) ? getSqlTemplates(modelEntity) : null;
+        String sql = (templates != null) ? templates.getUpdateByPkSql(fieldsToSave) : null;
+        if (sql == null) {
+            sql = makeUpdateSql(entity, modelEntity, fieldsToSave);
+            if (templates != null) {
+                templates.setUpdateByPkSql(fieldsToSave, sql);
+            }
         }
+        return sql;
+    }
 
-        if (retVal == 0) {
-            throw new GenericEntityNotFoundException("Tried to update an entity that does not exist, entity: " + entity.toString());
-        }
-        return retVal;
+    /**
+     * SCIPIO: Builds the UPDATE by primary key statement of the given fields.
+     */
+    public String makeUpdateSql(GenericEntity entity, ModelEntity modelEntity, List<ModelField> fieldsToSave) {
+        StringBuilder sqlB = new StringBuilder().append("UPDATE ").append(modelEntity.getTableName(datasource)).append(" SET ");
+        modelEntity.colNameString(fieldsToSave, sqlB, "", "=?, ", "=?", false);
+        sqlB.append(" WHERE ");
+        SqlJdbcUtil.makeWhereStringFromFields(sqlB, modelEntity.getPkFieldsUnmodifiable(), entity, "AND");
+        return sqlB.toString();
     }
 
     public int updateByCondition(Delegator delegator, ModelEntity modelEntity, Map<String, ? extends Object> fieldsToSet, EntityCondition condition) throws GenericEntityException {
@@ -473,18 +643,9 @@ public class GenericDAO {
             throw new GenericEntityException("Entity has no primary keys, cannot select by primary key");
         }
 
-        StringBuilder sqlBuffer = new StringBuilder("SELECT ");
-
-        if (modelEntity.getNopksSize() > 0) {
-            modelEntity.colNameString(modelEntity.getNopksCopy(), sqlBuffer, "", ", ", "", datasource.getAliasViewColumns());
-        } else {
-            sqlBuffer.append("*");
-        }
-
-        sqlBuffer.append(SqlJdbcUtil.makeFromClause(modelEntity, modelFieldTypeReader, datasource));
-        sqlBuffer.append(SqlJdbcUtil.makeWhereClause(modelEntity, modelEntity.getPkFieldsUnmodifiable(), entity, "AND", datasource.getJoinStyle()));
+        String sql = getSelectSql(entity, modelEntity); // SCIPIO: cached statement
 
-        sqlP.prepareStatement(sqlBuffer.toString(), true, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        sqlP.prepareStatement(sql, true, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
         SqlJdbcUtil.setPkValues(sqlP, modelEntity, entity, modelFieldTypeReader);
         sqlP.executeQuery();
 
@@ -504,6 +665,59 @@ public class GenericDAO {
         }
     }
 
+    /**
+     * SCIPIO: Returns the SELECT by primary key statement of all the fields, from the SQL templates of the entity when
+     * all the primary key values are set.
+     */
+    public String getSelectSql(GenericEntity entity, ModelEntity modelEntity) throws GenericEntityException {
+        EntitySqlTemplates templates = EntitySqlTemplates.hasAllPkValues(modelEntity, entity) ? getSqlTemplates(modelEntity) : null;
+        String sql = (templates != null) ? templates.getSelectByPkSql() : null;
+        if (sql == null) {
+            sql = makeSelectSql(entity, modelEntity, modelEntity.getNopksCopy(), getFromClause(modelEntity));
+            if (templates != null) {
+                templates.setSelectByPkSql(sql);
+            }
+        }
+        return sql;
+    }
+
+    /**
+     * SCIPIO: Returns the SELECT by primary key statement of the given fields, from the SQL templates of the entity
+     * (by set of fields to select) when all the primary key values are set.
+     */
+    public String getPartialSelectSql(GenericEntity entity, ModelEntity modelEntity, List<ModelField> selectFields) throws GenericEntityException {
+        EntitySqlTemplates templates = EntitySqlTemplates.hasAllPkValues(modelEntity, entity) ? getSqlTemplates(modelEntity) : null;
+        String sql = (templates != null) ? templates.getPartialSelectSql(selectFields) : null;
+        if (sql == null) {
+            sql = makeSelectSql(entity, modelEntity, selectFields, getFromClause(modelEntity));
+            if (templates != null) {
+                templates.setPartialSelectSql(selectFields, sql);
+            }
+        }
+        return sql;
+    }
+
+    /**
+     * SCIPIO: Builds the SELECT by primary key statement of the given fields, without any SQL template.
+     */
+    public String makeSelectSql(GenericEntity entity, ModelEntity modelEntity, List<ModelField> selectFields) throws GenericEntityException {
+        return makeSelectSql(entity, modelEntity, selectFields, SqlJdbcUtil.makeFromClause(modelEntity, modelFieldTypeReader, datasource));
+    }
+
+    private String makeSelectSql(GenericEntity entity, ModelEntity modelEntity, List<ModelField> selectFields, String fromClause) throws GenericEntityException {
+        StringBuilder sqlBuffer = new StringBuilder("SELECT ");
+
+        if (selectFields.size() > 0) {
+            modelEntity.colNameString(selectFields, sqlBuffer, "", ", ", "", datasource.getAliasViewColumns());
+        } else {
+            sqlBuffer.append("*");
+        }
+
+        sqlBuffer.append(fromClause);
+        sqlBuffer.append(SqlJdbcUtil.makeWhereClause(modelEntity, modelEntity.getPkFieldsUnmodifiable(), entity, "AND", datasource.getJoinStyle()));
+        return sqlBuffer.toString();
+    }
+
     public void partialSelect(GenericEntity entity, Set<String> keys) throws GenericEntityException {
         ModelEntity modelEntity = entity.getModelEntity();
 
@@ -529,18 +743,10 @@ public class GenericDAO {
             throw new GenericModelException("In partialSelect invalid field names specified: " + tempKeys.toString());
         }
 
-        StringBuilder sqlBuffer = new StringBuilder("SELECT ");
-
-        if (partialFields.size() > 0) {
-            modelEntity.colNameString(partialFields, sqlBuffer, "", ", ", "", datasource.getAliasViewColumns());
-        } else {
-            sqlBuffer.append("*");
-        }
-        sqlBuffer.append(SqlJdbcUtil.makeFromClause(modelEntity, modelFieldTypeReader, datasource));
-        sqlBuffer.append(SqlJdbcUtil.makeWhereClause(modelEntity, modelEntity.getPkFieldsUnmodifiable(), entity, "AND", datasource.getJoinStyle()));
+        String sql = getPartialSelectSql(entity, modelEntity, partialFields); // SCIPIO: cached statement by set of fields to select
 
         try (SQLProcessor sqlP = new SQLProcessor(entity.getDelegator(), helperInfo)) {
-            sqlP.prepareStatement(sqlBuffer.toString(), true, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            sqlP.prepareStatement(sql, true, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
             SqlJdbcUtil.setPkValues(sqlP, modelEntity, entity, modelFieldTypeReader);
             sqlP.executeQuery();
 
@@ -660,12 +866,21 @@ public class GenericDAO {
         }
 
         if (selectFields.size() > 0) {
-            // SCIPIO: 2.1.0: Allow override alias-view-columns using view-entity alias-columns
-            Boolean aliasColumns = modelEntity.getAliasColumns();
-            if (aliasColumns == null) {
-                aliasColumns = datasource.getAliasViewColumns();
+            // SCIPIO: the column list of all the fields is cached
+            EntitySqlTemplates templates = (selectFields == modelEntity.getSelectableFields()) ? getSqlTemplates(modelEntity) : null;
+            String columns = (templates != null) ? templates.getSelectableColumns() : null;
+            if (columns == null) {
+                // SCIPIO: 2.1.0: Allow override alias-view-columns using view-entity alias-columns
+                Boolean aliasColumns = modelEntity.getAliasColumns();
+                if (aliasColumns == null) {
+                    aliasColumns = datasource.getAliasViewColumns();
+                }
+                columns = modelEntity.colNameString(selectFields, new StringBuilder(), "", ", ", "", aliasColumns).toString();
+                if (templates != null) {
+                    templates.setSelectableColumns(columns);
+                }
             }
-            modelEntity.colNameString(selectFields, sqlBuffer, "", ", ", "", aliasColumns);
+            sqlBuffer.append(columns);
         } else {
             sqlBuffer.append("*");
         }
@@ -682,7 +897,7 @@ public class GenericDAO {
         }
 
         // FROM clause and when necessary the JOIN or LEFT JOIN clause(s) as well
-        sqlBuffer.append(SqlJdbcUtil.makeFromClause(modelEntity, modelFieldTypeReader, datasource));
+        sqlBuffer.append(getFromClause(modelEntity));
 
         // WHERE clause
         List<EntityConditionParam> whereEntityConditionParams = new ArrayList<>(); // SCIPIO: switched to ArrayList
@@ -713,6 +928,14 @@ public class GenericDAO {
         // OFFSET clause
         makeOffsetString(sqlBuffer, findOptions);
 
+        // SCIPIO: FOR UPDATE clause, if the database supports it
+        if (findOptions.getForUpdate() && datasource.getUseForUpdate()) {
+            sqlBuffer.append(" FOR UPDATE");
+            if (findOptions.getSkipLocked() && datasource.getUseSkipLocked()) {
+                sqlBuffer.append(" SKIP LOCKED");
+            }
+        }
+
         // make the final SQL String
         String sql = sqlBuffer.toString();
 
@@ -775,7 +998,7 @@ public class GenericDAO {
             }
         }
 
-        String viewClause = SqlJdbcUtil.makeViewWhereClause(modelEntity, datasource.getJoinStyle());
+        String viewClause = getViewWhereClause(modelEntity); // SCIPIO: cached
 
         if (viewClause.length() > 0) {
             conditions.add(EntityCondition.makeConditionWhere(viewClause));
@@ -1033,7 +1256,7 @@ public class GenericDAO {
         }
 
         // FROM clause and when necessary the JOIN or LEFT JOIN clause(s) as well
-        sqlBuffer.append(SqlJdbcUtil.makeFromClause(modelEntity, modelFieldTypeReader, datasource));
+        sqlBuffer.append(getFromClause(modelEntity));
 
         // WHERE clause
         List<EntityConditionParam> whereEntityConditionParams = new ArrayList<>(); // SCIPIO: switched to ArrayList
@@ -1113,17 +1336,41 @@ public class GenericDAO {
             throw new org.ofbiz.entity.GenericNotImplementedException("Operation delete not supported yet for view entities");
         }
 
-        StringBuilder sql = new StringBuilder().append("DELETE FROM ").append(modelEntity.getTableName(datasource)).append(" WHERE ");
-        SqlJdbcUtil.makeWhereStringFromFields(sql, modelEntity.getPkFieldsUnmodifiable(), entity, "AND");
+        String sql = getDeleteSql(entity, modelEntity); // SCIPIO: cached statement
 
         int retVal;
-        sqlP.prepareStatement(sql.toString());
+        sqlP.prepareStatement(sql);
         SqlJdbcUtil.setPkValues(sqlP, modelEntity, entity, modelFieldTypeReader);
         retVal = sqlP.executeUpdate();
         entity.removedFromDatasource();
         return retVal;
     }
 
+    /**
+     * SCIPIO: Returns the DELETE by primary key statement, from the SQL templates of the entity when all the primary
+     * key values are set.
+     */
+    public String getDeleteSql(GenericEntity entity, ModelEntity modelEntity) {
+        EntitySqlTemplates templates = EntitySqlTemplates.hasAllPkValues(modelEntity, entity) ? getSqlTemplates(modelEntity) : null;
+        String sql = (templates != null) ? templates.getDeleteByPkSql() : null;
+        if (sql == null) {
+            sql = makeDeleteSql(entity, modelEntity);
+            if (templates != null) {
+                templates.setDeleteByPkSql(sql);
+            }
+        }
+        return sql;
+    }
+
+    /**
+     * SCIPIO: Builds the DELETE by primary key statement.
+     */
+    public String makeDeleteSql(GenericEntity entity, ModelEntity modelEntity) {
+        StringBuilder sqlB = new StringBuilder().append("DELETE FROM ").append(modelEntity.getTableName(datasource)).append(" WHERE ");
+        SqlJdbcUtil.makeWhereStringFromFields(sqlB, modelEntity.getPkFieldsUnmodifiable(), entity, "AND");
+        return sqlB.toString();
+    }
+
     public int deleteByCondition(Delegator delegator, ModelEntity modelEntity, EntityCondition condition) throws GenericEntityException {
         try (SQLProcessor sqlP = new SQLProcessor(delegator, helperInfo)) {
             try {
@@ -120,6 +120,18 @@ public interface GenericHelper {
      */
     public int store(GenericValue value) throws GenericEntityException;
 
+    /** SCIPIO: Stores the values like {@link #store(GenericValue)}, in JDBC batches where the helper supports it
+     *@param values The GenericValue instances to update by primary key
+     *@return int representing number of rows effected by this operation
+     */
+    public default int storeBatch(List<GenericValue> values) throws GenericEntityException {
+        int retVal = 0;
+        for (GenericValue value : values) {
+            retVal += store(value);
+        }
+        return retVal;
+    }
+
     /** Check the datasource to make sure the entity definitions are correct, optionally adding missing entities or fields on the server
      *@param modelEntities Map of entityName names and ModelEntity values
      *@param messages List to put any result messages in
@@ -173,6 +173,15 @@ public class GenericHelperDAO implements GenericHelper {
         return genericDAO.update(value);
     }
 
+    /** SCIPIO: Stores the values by primary key, the updates of the same entity and fields in JDBC batches
+     *@param values The GenericValue instances to update by primary key
+     *@return int representing number of rows effected by this operation
+     */
+    @Override
+    public int storeBatch(List<GenericValue> values) throws GenericEntityException {
+        return genericDAO.updateBatch(values);
+    }
+
     /** Updates a group of values in a single pass.
      *@param modelEntity The ModelEntity of the Entity as defined in the entity XML file
      *@param fieldsToSet The fields of the named entity to set in the database
@@ -19,9 +19,12 @@
 package org.ofbiz.entity.datasource;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.ofbiz.base.util.Debug;
 import org.ofbiz.base.util.UtilValidate;
@@ -40,8 +43,14 @@ public class GenericHelperFactory {
     // SCIPIO: 2018-10-16: use unmodifiableMap for thread-safe reads
     //protected static final Map<String, GenericHelper> helperCache = new HashMap<String, GenericHelper>();
     protected static Map<String, GenericHelper> helperCache = Collections.emptyMap();
+    // SCIPIO: read replica routing helpers, by primary helper full name and read replica names
+    private static final Map<String, Map<List<String>, GenericHelper>> readReplicaHelperCache = new ConcurrentHashMap<>();
 
     public static GenericHelper getHelper(GenericHelperInfo helperInfo) {
+        // SCIPIO: groups with read replicas
+        if (!helperInfo.getReadHelperBaseNames().isEmpty()) {
+            return getReadReplicaHelper(helperInfo);
+        }
         GenericHelper helper = helperCache.get(helperInfo.getHelperFullName());
 
         if (helper == null) { // don't want to block here
@@ -105,4 +114,22 @@ public class GenericHelperFactory {
         }
         return helper;
     }
+
+    /**
+     * SCIPIO: Returns the helper routing the reads to the read replicas of the helper info, wrapping the helper
+     * of the primary datasource.
+     */
+    private static GenericHelper getReadReplicaHelper(GenericHelperInfo helperInfo) {
+        Map<List<String>, GenericHelper> helpers = readReplicaHelperCache.computeIfAbsent(helperInfo.getHelperFullName(), k -> new ConcurrentHashMap<>());
+        GenericHelper helper = helpers.get(helperInfo.getReadHelperBaseNames());
+        if (helper == null) {
+            GenericHelper primaryHelper = getHelper(new GenericHelperInfo(helperInfo.getEntityGroupName(), helperInfo.getHelperBaseName()));
+            List<GenericHelperInfo> readHelperInfos = new ArrayList<>(helperInfo.getReadHelperBaseNames().size());
+            for (String readHelperBaseName : helperInfo.getReadHelperBaseNames()) {
+                readHelperInfos.add(new GenericHelperInfo(helperInfo.getEntityGroupName(), readHelperBaseName));
+            }
+            helper = helpers.computeIfAbsent(helperInfo.getReadHelperBaseNames(), k -> new ReadReplicaHelper(primaryHelper, readHelperInfos));
+        }
+        return helper;
+    }
 }
@@ -19,6 +19,9 @@
 
 package org.ofbiz.entity.datasource;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * A container for datasource connection information.
  * <p><b>Note that this class is not synchronized.</b>
@@ -34,6 +37,7 @@ public final class GenericHelperInfo {
     private String overrideUsername = "";
     private String overridePassword = "";
     private String helperFullName = "";
+    private List<String> readHelperBaseNames = Collections.emptyList(); // SCIPIO
 
     public GenericHelperInfo(String entityGroupName, String helperBaseName) {
         this.entityGroupName = entityGroupName == null ? "" : entityGroupName;
@@ -64,6 +68,20 @@ public final class GenericHelperInfo {
         }
     }
 
+    /**
+     * Returns the names of the read replica datasources of the helper, empty if none (SCIPIO).
+     * Not part of the helper full name: the primary datasource connections are the same.
+     */
+    public List<String> getReadHelperBaseNames() {
+        return readHelperBaseNames;
+    }
+
+    public void setReadHelperBaseNames(List<String> readHelperBaseNames) {
+        if (readHelperBaseNames != null) {
+            this.readHelperBaseNames = readHelperBaseNames;
+        }
+    }
+
     public String getOverrideJdbcUri() {
         return overrideJdbcUri;
     }
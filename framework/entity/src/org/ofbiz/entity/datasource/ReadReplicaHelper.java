@@ -0,0 +1,277 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.entity.datasource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.transaction.Synchronization;
+import javax.transaction.SystemException;
+import javax.transaction.Transaction;
+
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilProperties;
+import org.ofbiz.entity.Delegator;
+import org.ofbiz.entity.GenericEntityException;
+import org.ofbiz.entity.GenericEntityNotFoundException;
+import org.ofbiz.entity.GenericPK;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.condition.EntityCondition;
+import org.ofbiz.entity.model.ModelEntity;
+import org.ofbiz.entity.model.ModelRelation;
+import org.ofbiz.entity.transaction.GenericTransactionException;
+import org.ofbiz.entity.transaction.TransactionFactoryLoader;
+import org.ofbiz.entity.transaction.TransactionUtil;
+import org.ofbiz.entity.util.EntityFindOptions;
+import org.ofbiz.entity.util.EntityListIterator;
+
+/**
+ * SCIPIO: Helper routing the reads of an entity group to its read replica datasources
+ * (<code>&lt;group-map read-datasource-names="..."/&gt;</code> in entityengine.xml).
+ * <p>
+ * Reads (find by primary key, find by condition, count, multi-relation) are balanced round-robin over the
+ * available replicas when no transaction is in place and the current thread did not write to the group in the last
+ * <code>entity.properties#readReplica.stickyAfterWriteTime</code> milliseconds, counted from the end of the
+ * transaction of the write (when the write becomes visible to the replicas); otherwise, and for all writes,
+ * the primary datasource helper is used, so that a thread reads its own writes. Entity cache misses are reads like
+ * any other, so values changed by other threads may be cached from a replica that is behind by its replication lag.
+ * <p>
+ * When a read fails on a replica, the replica is checked (connection validation); if unavailable it is not used for
+ * <code>readReplica.retryTime</code> milliseconds. The read is then done again on the primary datasource.
+ */
+public class ReadReplicaHelper implements GenericHelper {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    private static final long STICKY_AFTER_WRITE_TIME = UtilProperties.getPropertyAsLong("entity", "readReplica.stickyAfterWriteTime", 5000L);
+    private static final long RETRY_TIME = UtilProperties.getPropertyAsLong("entity", "readReplica.retryTime", 30000L);
+    private static final int VALIDATION_TIMEOUT = UtilProperties.getPropertyAsInteger("entity", "readReplica.validationTimeout", 5);
+
+    private final GenericHelper primaryHelper;
+    private final List<Replica> replicas;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final ThreadLocal<WriteState> writeState = ThreadLocal.withInitial(WriteState::new);
+
+    public ReadReplicaHelper(GenericHelper primaryHelper, List<GenericHelperInfo> readHelperInfos) {
+        this.primaryHelper = primaryHelper;
+        List<Replica> replicas = new ArrayList<>(readHelperInfos.size());
+        for (GenericHelperInfo readHelperInfo : readHelperInfos) {
+            replicas.add(new Replica(readHelperInfo, GenericHelperFactory.getHelper(readHelperInfo)));
+        }
+        this.replicas = replicas;
+        Debug.logInfo("Entity group helper [" + primaryHelper.getHelperName() + "] reads from replicas " + getReplicaNames(), module);
+    }
+
+    public String getHelperName() {
+        return primaryHelper.getHelperName();
+    }
+
+    public GenericHelper getPrimaryHelper() {
+        return primaryHelper;
+    }
+
+    /**
+     * Returns the replica to read from, or null to read from the primary datasource.
+     */
+    private Replica getReadReplica() {
+        if (TransactionUtil.isTransactionInPlaceSafe()) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (now - writeState.get().lastWriteTime < STICKY_AFTER_WRITE_TIME) {
+            return null;
+        }
+        int size = replicas.size();
+        int start = Math.floorMod(nextReplica.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.unavailableUntil <= now) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private <T> T read(ReadOperation<T> operation) throws GenericEntityException {
+        Replica replica = getReadReplica();
+        if (replica == null) {
+            return operation.run(primaryHelper);
+        }
+        try {
+            return operation.run(replica.helper);
+        } catch (GenericEntityNotFoundException e) {
+            throw e;
+        } catch (GenericEntityException e) {
+            Debug.logWarning("Read from replica [" + replica.helperInfo.getHelperBaseName() + "] failed, reading from primary datasource ["
+                    + primaryHelper.getHelperName() + "]: " + e.toString(), module);
+            checkReplica(replica);
+            return operation.run(primaryHelper);
+        }
+    }
+
+    private void checkReplica(Replica replica) {
+        String error;
+        try (Connection connection = TransactionFactoryLoader.getInstance().getConnection(replica.helperInfo)) {
+            if (connection != null && connection.isValid(VALIDATION_TIMEOUT)) {
+                return;
+            }
+            error = "connection not valid";
+        } catch (SQLException | GenericEntityException e) {
+            error = e.toString();
+        }
+        replica.unavailableUntil = System.currentTimeMillis() + RETRY_TIME;
+        Debug.logError("Replica [" + replica.helperInfo.getHelperBaseName() + "] unavailable, not used for " + RETRY_TIME + "ms: " + error, module);
+    }
+
+    /**
+     * Records a write of the current thread. In a transaction the write only reaches the replicas at commit, so the
+     * time is recorded again when the transaction completes (once per transaction).
+     */
+    private void wrote() {
+        WriteState state = writeState.get();
+        state.lastWriteTime = System.currentTimeMillis();
+        Transaction transaction;
+        try {
+            transaction = TransactionUtil.isTransactionInPlace() ? TransactionFactoryLoader.getInstance().getTransactionManager().getTransaction() : null;
+        } catch (GenericTransactionException | SystemException e) {
+            Debug.logWarning("Could not get the current transaction: " + e.toString(), module);
+            return;
+        }
+        if (transaction == null || transaction == state.transaction) {
+            return;
+        }
+        try {
+            TransactionUtil.registerSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    state.lastWriteTime = System.currentTimeMillis();
+                    if (state.transaction == transaction) {
+                        state.transaction = null;
+                    }
+                }
+            });
+            state.transaction = transaction;
+        } catch (GenericTransactionException e) {
+            Debug.logWarning("Could not register the read replica write synchronization: " + e.toString(), module);
+        }
+    }
+
+    private List<String> getReplicaNames() {
+        List<String> names = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            names.add(replica.helperInfo.getHelperBaseName());
+        }
+        return names;
+    }
+
+    public GenericValue create(GenericValue value) throws GenericEntityException {
+        wrote();
+        return primaryHelper.create(value);
+    }
+
+    public GenericValue findByPrimaryKey(GenericPK primaryKey) throws GenericEntityException {
+        return read(helper -> helper.findByPrimaryKey(primaryKey));
+    }
+
+    public GenericValue findByPrimaryKeyPartial(GenericPK primaryKey, Set<String> keys) throws GenericEntityException {
+        return read(helper -> helper.findByPrimaryKeyPartial(primaryKey, keys));
+    }
+
+    public List<GenericValue> findAllByPrimaryKeys(List<GenericPK> primaryKeys) throws GenericEntityException {
+        return read(helper -> helper.findAllByPrimaryKeys(primaryKeys));
+    }
+
+    public int removeByPrimaryKey(GenericPK primaryKey) throws GenericEntityException {
+        wrote();
+        return primaryHelper.removeByPrimaryKey(primaryKey);
+    }
+
+    public List<GenericValue> findByMultiRelation(GenericValue value, ModelRelation modelRelationOne, ModelEntity modelEntityOne,
+            ModelRelation modelRelationTwo, ModelEntity modelEntityTwo, List<String> orderBy) throws GenericEntityException {
+        return read(helper -> helper.findByMultiRelation(value, modelRelationOne, modelEntityOne, modelRelationTwo, modelEntityTwo, orderBy));
+    }
+
+    public EntityListIterator findListIteratorByCondition(Delegator delegator, ModelEntity modelEntity, EntityCondition whereEntityCondition,
+            EntityCondition havingEntityCondition, Collection<String> fieldsToSelect, List<String> orderBy, EntityFindOptions findOptions)
+            throws GenericEntityException {
+        return read(helper -> helper.findListIteratorByCondition(delegator, modelEntity, whereEntityCondition, havingEntityCondition,
+                fieldsToSelect, orderBy, findOptions));
+    }
+
+    public long findCountByCondition(Delegator delegator, ModelEntity modelEntity, EntityCondition whereEntityCondition,
+            EntityCondition havingEntityCondition, EntityFindOptions findOptions) throws GenericEntityException {
+        return read(helper -> helper.findCountByCondition(delegator, modelEntity, whereEntityCondition, havingEntityCondition, findOptions));
+    }
+
+    public int removeByCondition(Delegator delegator, ModelEntity modelEntity, EntityCondition condition) throws GenericEntityException {
+        wrote();
+        return primaryHelper.removeByCondition(delegator, modelEntity, condition);
+    }
+
+    public int storeByCondition(Delegator delegator, ModelEntity modelEntity, Map<String, ? extends Object> fieldsToSet, EntityCondition condition) throws GenericEntityException {
+        wrote();
+        return primaryHelper.storeByCondition(delegator, modelEntity, fieldsToSet, condition);
+    }
+
+    public int store(GenericValue value) throws GenericEntityException {
+        wrote();
+        return primaryHelper.store(value);
+    }
+
+    @Override
+    public int storeBatch(List<GenericValue> values) throws GenericEntityException {
+        wrote();
+        return primaryHelper.storeBatch(values);
+    }
+
+    public void checkDataSource(Map<String, ModelEntity> modelEntities, List<String> messages, boolean addMissing) throws GenericEntityException {
+        primaryHelper.checkDataSource(modelEntities, messages, addMissing);
+    }
+
+    @FunctionalInterface
+    private interface ReadOperation<T> {
+        T run(GenericHelper helper) throws GenericEntityException;
+    }
+
+    private static final class WriteState {
+        private volatile long lastWriteTime = 0;
+        private volatile Transaction transaction = null;
+    }
+
+    private static final class Replica {
+        private final GenericHelperInfo helperInfo;
+        private final GenericHelper helper;
+        private volatile long unavailableUntil = 0;
+
+        private Replica(GenericHelperInfo helperInfo, GenericHelper helper) {
+            this.helperInfo = helperInfo;
+            this.helper = helper;
+        }
+    }
+}
@@ -88,6 +88,15 @@ public class SQLProcessor implements AutoCloseable {
     // / true in case the connection shall be closed.
     private boolean _bDeleteConnection = false;
 
+    /** SCIPIO: Execution time of the current query, or -1 if not executed or already recorded in the SQL statistics */
+    private long _statsNanos = -1;
+
+    /** SCIPIO: Rows read of the current query, for the SQL statistics */
+    private long _statsRows = 0;
+
+    /** SCIPIO: Number of parameters of the rows of the current batch, for the SQL statistics */
+    private int _batchBindCount = 0;
+
     /**
      * Construct an object based on the helper/datasource
      *
@@ -202,6 +211,8 @@ public class SQLProcessor implements AutoCloseable {
      */
     @Override
     public void close() throws GenericDataSourceException {
+        recordQueryStatistics(); // SCIPIO
+
         if (_manualTX) {
             if (Debug.verboseOn()) Debug.logVerbose("SQLProcessor:close() calling commit : _manualTX=" + _manualTX, module);
             commit();
@@ -367,6 +378,8 @@ public class SQLProcessor implements AutoCloseable {
             getConnection();
         }
 
+        recordQueryStatistics(); // SCIPIO: previous statement of this processor
+
         try {
             _sql = sql;
             _ind = 1;
@@ -396,7 +409,12 @@ public class SQLProcessor implements AutoCloseable {
     public ResultSet executeQuery() throws GenericDataSourceException {
         try {
             // if (Debug.verboseOn()) Debug.logVerbose("[SQLProcessor.executeQuery] ps=" + _ps.toString(), module);
+            long startNanos = SQLStatistics.isEnabled() ? System.nanoTime() : 0; // SCIPIO
             _rs = _ps.executeQuery();
+            if (SQLStatistics.isEnabled()) { // SCIPIO: recorded on close, with the rows read
+                _statsNanos = System.nanoTime() - startNanos;
+                _statsRows = 0;
+            }
         } catch (SQLException sqle) {
             this.checkLockWaitInfo(sqle);
             throw GenericDataSourceException.from("SQL Exception while executing: " + _sql, sqle, this, getDelegator(), null);
@@ -427,7 +445,13 @@ public class SQLProcessor implements AutoCloseable {
         try {
             // if (Debug.verboseOn()) Debug.logVerbose("[SQLProcessor.executeUpdate] ps=" + _ps.toString(), module);
             //TransactionUtil.printAllThreadsTransactionBeginStacks();
-            return _ps.executeUpdate();
+            if (!SQLStatistics.isEnabled()) { // SCIPIO
+                return _ps.executeUpdate();
+            }
+            long startNanos = System.nanoTime();
+            int rows = _ps.executeUpdate();
+            SQLStatistics.record(_sql, System.nanoTime() - startNanos, rows, _ind - 1);
+            return rows;
         } catch (SQLException sqle) {
             this.checkLockWaitInfo(sqle);
             // don't display this here, may not be critical, allow handling further up... Debug.logError(sqle, "SQLProcessor.executeUpdate() : ERROR : ", module);
@@ -435,6 +459,46 @@ public class SQLProcessor implements AutoCloseable {
         }
     }
 
+    /**
+     * SCIPIO: Adds the parameters set on the prepared statement to its batch and resets the parameter index,
+     * for the parameters of the next row.
+     *
+     * @throws GenericDataSourceException
+     */
+    public void addBatch() throws GenericDataSourceException {
+        try {
+            _ps.addBatch();
+            _batchBindCount = _ind - 1;
+            _ind = 1;
+        } catch (SQLException sqle) {
+            throw GenericDataSourceException.from("SQL Exception while adding a batch row to: " + _sql, sqle, this, getDelegator(), null);
+        }
+    }
+
+    /**
+     * SCIPIO: Executes the batch of the prepared statement.
+     *
+     * @return The number of rows updated by each batch row; {@link java.sql.Statement#SUCCESS_NO_INFO} if not known
+     * @throws GenericDataSourceException
+     */
+    public int[] executeBatch() throws GenericDataSourceException {
+        try {
+            long startNanos = SQLStatistics.isEnabled() ? System.nanoTime() : 0;
+            int[] counts = _ps.executeBatch();
+            if (SQLStatistics.isEnabled()) {
+                long rows = 0;
+                for (int count : counts) {
+                    rows += Math.max(0, count);
+                }
+                SQLStatistics.record(_sql, System.nanoTime() - startNanos, rows, _batchBindCount);
+            }
+            return counts;
+        } catch (SQLException sqle) {
+            this.checkLockWaitInfo(sqle);
+            throw GenericDataSourceException.from("SQL Exception while executing the batch of the following:" + _sql, sqle, this, getDelegator(), null);
+        }
+    }
+
     /**
      * Execute update based on the SQL statement given
      *
@@ -459,12 +523,33 @@ public class SQLProcessor implements AutoCloseable {
      */
     public boolean next() throws GenericDataSourceException {
         try {
-            return _rs.next();
+            if (_rs.next()) {
+                _statsRows++; // SCIPIO
+                return true;
+            }
+            return false;
         } catch (SQLException sqle) {
             throw GenericDataSourceException.from("SQL Exception while executing: " + _sql, sqle, this, getDelegator(), null);
         }
     }
 
+    /**
+     * SCIPIO: Counts a row read directly from the result set, for the SQL statistics (used by EntityListIterator).
+     */
+    public void countFetchedRow() {
+        _statsRows++;
+    }
+
+    /**
+     * SCIPIO: Records the current query in the SQL statistics, if executed and not yet recorded.
+     */
+    private void recordQueryStatistics() {
+        if (_statsNanos >= 0 && _sql != null) {
+            SQLStatistics.record(_sql, _statsNanos, _statsRows, _ind - 1);
+        }
+        _statsNanos = -1;
+    }
+
     /**
      * Getter: get the currently active ResultSet
      *
@@ -506,6 +591,7 @@ public class SQLProcessor implements AutoCloseable {
             boolean keepGoing = true;
 
             while (keepGoing && _rs.next()) {
+                _statsRows++; // SCIPIO
                 keepGoing = aListener.processNextRow(_rs);
             }
 
@@ -0,0 +1,382 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.entity.jdbc;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.ObjectName;
+
+import org.ofbiz.base.metrics.LatencyHistogram;
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilProperties;
+
+/**
+ * SCIPIO: Execution statistics of the SQL statements run by {@link SQLProcessor}.
+ * <p>
+ * Statements are grouped by shape: the SQL text with its <code>?</code> placeholders, which identifies the entity
+ * (table or view joins) and the condition structure independently of the values. For each shape are kept the call
+ * count, the rows returned (read through the processor or the EntityListIterator) or updated, and a latency histogram
+ * of the execution time (execute of the statement, not the row fetching, see {@link LatencyHistogram}), giving percentiles
+ * within 25%. To keep the overhead low only one of <code>entity.properties#sqlStatistics.sampleRate</code>
+ * statements is recorded in the shape statistics; the call counts are sample counts.
+ * <p>
+ * Every statement slower than <code>sqlStatistics.slowQueryTime</code> is logged with its SQL, bind count, rows and
+ * a sample of the calling stack outside the entity engine, and kept in a bounded in-memory slow query log.
+ * The statistics are exposed through JMX ({@link SQLStatisticsMBean}) and the webtools SQL statistics page.
+ * <p>
+ * Disabled by default (<code>sqlStatistics.enable</code>); the statements are keyed by their SQL text, so at most
+ * <code>sqlStatistics.maxShapes</code> distinct statements are recorded and the others are counted together.
+ */
+public final class SQLStatistics implements SQLStatisticsMBean {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    private static final boolean ENABLED = UtilProperties.getPropertyAsBoolean("entity", "sqlStatistics.enable", false);
+    private static final int SAMPLE_RATE = Math.max(1, UtilProperties.getPropertyAsInteger("entity", "sqlStatistics.sampleRate", 10));
+    private static final int MAX_SHAPES = UtilProperties.getPropertyAsInteger("entity", "sqlStatistics.maxShapes", 2000);
+    private static final long SLOW_QUERY_TIME = UtilProperties.getPropertyAsLong("entity", "sqlStatistics.slowQueryTime", 1000L);
+    private static final int SLOW_QUERY_LOG_SIZE = UtilProperties.getPropertyAsInteger("entity", "sqlStatistics.slowQueryLog.size", 100);
+    private static final int STACK_DEPTH = UtilProperties.getPropertyAsInteger("entity", "sqlStatistics.slowQueryLog.stackDepth", 8);
+    private static final int TOP_SHAPES = 20;
+
+    /** Shape of the statements not recorded individually once the maximum number of shapes is reached. */
+    public static final String OTHER_SHAPE = "(other statements)";
+
+    private static final SQLStatistics INSTANCE = new SQLStatistics(SAMPLE_RATE, MAX_SHAPES, SLOW_QUERY_TIME, SLOW_QUERY_LOG_SIZE);
+
+    static {
+        if (ENABLED && UtilProperties.getPropertyAsBoolean("entity", "sqlStatistics.jmx.enable", true)) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName("org.ofbiz.entity:type=SQLStatistics"));
+            } catch (Exception e) {
+                Debug.logWarning("Could not register SQL statistics MBean: " + e.toString(), module);
+            }
+        }
+    }
+
+    private final Map<String, Shape> shapes = new ConcurrentHashMap<>();
+    private final Deque<SlowQuery> slowQueries = new ConcurrentLinkedDeque<>();
+    private final LongAdder statementCount = new LongAdder();
+    private final LongAdder slowQueryCount = new LongAdder();
+    private volatile long since = System.currentTimeMillis();
+    private final int sampleRate;
+    private final int maxShapes;
+    private final long slowQueryTime;
+    private final int slowQueryLogSize;
+
+    /**
+     * Makes statistics with the given settings; the statements of {@link SQLProcessor} are recorded in
+     * {@link #getInstance()}, configured by <code>entity.properties</code>.
+     * @param sampleRate one of how many statements is recorded in the shape statistics
+     * @param maxShapes the maximum number of distinct statements recorded
+     * @param slowQueryTime the execution time from which a statement is slow (ms; 0 to disable)
+     * @param slowQueryLogSize the number of slow queries kept
+     */
+    public SQLStatistics(int sampleRate, int maxShapes, long slowQueryTime, int slowQueryLogSize) {
+        this.sampleRate = Math.max(1, sampleRate);
+        this.maxShapes = maxShapes;
+        this.slowQueryTime = slowQueryTime;
+        this.slowQueryLogSize = slowQueryLogSize;
+    }
+
+    public static SQLStatistics getInstance() {
+        return INSTANCE;
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Records an executed statement.
+     * @param sql the SQL of the statement
+     * @param nanos the execution time
+     * @param rows the rows returned or updated
+     * @param bindCount the number of parameters bound
+     */
+    static void record(String sql, long nanos, long rows, int bindCount) {
+        INSTANCE.recordStatement(sql, nanos, rows, bindCount);
+    }
+
+    /**
+     * Records an executed statement in these statistics.
+     * @see #record(String, long, long, int)
+     */
+    public void recordStatement(String sql, long nanos, long rows, int bindCount) {
+        statementCount.increment();
+        if (slowQueryTime > 0 && nanos >= slowQueryTime * 1000000L) {
+            recordSlowQuery(sql, nanos, rows, bindCount);
+        }
+        if (sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0) {
+            getShape(sql).record(nanos, rows);
+        }
+    }
+
+    private Shape getShape(String sql) {
+        Shape shape = shapes.get(sql);
+        if (shape == null) {
+            String key = (shapes.size() < maxShapes) ? sql : OTHER_SHAPE;
+            shape = shapes.computeIfAbsent(key, k -> new Shape(k, sampleRate));
+        }
+        return shape;
+    }
+
+    private void recordSlowQuery(String sql, long nanos, long rows, int bindCount) {
+        slowQueryCount.increment();
+        List<String> stack = new ArrayList<>(STACK_DEPTH);
+        for (StackTraceElement element : Thread.currentThread().getStackTrace()) {
+            if (stack.size() >= STACK_DEPTH) {
+                break;
+            }
+            String className = element.getClassName();
+            if (!className.startsWith("org.ofbiz.entity.") && !className.startsWith("java.")) {
+                stack.add(element.toString());
+            }
+        }
+        SlowQuery slowQuery = new SlowQuery(sql, nanos, rows, bindCount, Thread.currentThread().getName(), stack);
+        Debug.logWarning("Slow SQL statement: " + slowQuery, module);
+        slowQueries.addFirst(slowQuery);
+        while (slowQueries.size() > slowQueryLogSize) {
+            slowQueries.pollLast();
+        }
+    }
+
+    /**
+     * Returns the shape statistics, by decreasing total execution time.
+     */
+    public List<Shape> getShapes() {
+        List<Shape> shapeList = new ArrayList<>(shapes.values());
+        shapeList.sort(Comparator.comparingLong(Shape::getTotalNanos).reversed());
+        return shapeList;
+    }
+
+    /**
+     * Returns the slow query log, latest first.
+     */
+    public List<SlowQuery> getSlowQueryLog() {
+        return Collections.unmodifiableList(new ArrayList<>(slowQueries));
+    }
+
+    /**
+     * Returns the time of the last reset (or start).
+     */
+    public Timestamp getSince() {
+        return new Timestamp(since);
+    }
+
+    @Override
+    public long getStatementCount() {
+        return statementCount.sum();
+    }
+
+    @Override
+    public long getSlowQueryCount() {
+        return slowQueryCount.sum();
+    }
+
+    @Override
+    public int getShapeCount() {
+        return shapes.size();
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public long getSlowQueryTime() {
+        return Math.max(0, slowQueryTime);
+    }
+
+    @Override
+    public String[] getTopShapes() {
+        List<Shape> shapeList = getShapes();
+        int count = Math.min(TOP_SHAPES, shapeList.size());
+        String[] lines = new String[count];
+        for (int i = 0; i < count; i++) {
+            lines[i] = shapeList.get(i).toString();
+        }
+        return lines;
+    }
+
+    @Override
+    public String[] getSlowQueries() {
+        List<SlowQuery> slowQueryList = getSlowQueryLog();
+        String[] lines = new String[slowQueryList.size()];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = slowQueryList.get(i).toString();
+        }
+        return lines;
+    }
+
+    @Override
+    public void reset() {
+        shapes.clear();
+        slowQueries.clear();
+        statementCount.reset();
+        slowQueryCount.reset();
+        since = System.currentTimeMillis();
+    }
+
+    /**
+     * Statistics of one statement shape.
+     */
+    public static final class Shape {
+        private final String sql;
+        private final int sampleRate;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private Shape(String sql, int sampleRate) {
+            this.sql = sql;
+            this.sampleRate = sampleRate;
+        }
+
+        private void record(long nanos, long rowCount) {
+            calls.increment();
+            rows.add(rowCount);
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            histogram.record(nanos / 1000);
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        /** Returns the number of recorded (sampled) calls. */
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        /** Returns the estimated number of calls: recorded calls times the sample rate. */
+        public long getEstimatedCalls() {
+            return calls.sum() * sampleRate;
+        }
+
+        public long getRows() {
+            return rows.sum();
+        }
+
+        public double getAvgRows() {
+            long callCount = calls.sum();
+            return (callCount > 0) ? ((double) rows.sum()) / callCount : 0;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public double getAvgMillis() {
+            long callCount = calls.sum();
+            return (callCount > 0) ? (totalNanos.sum() / 1000000.0) / callCount : 0;
+        }
+
+        public double getMaxMillis() {
+            return maxNanos.get() / 1000000.0;
+        }
+
+        /**
+         * Returns the latency below which the given fraction (0 to 1) of the calls are, in milliseconds,
+         * rounded up to the histogram bucket.
+         */
+        public double getPercentileMillis(double fraction) {
+            return Math.min(histogram.getPercentileMicros(fraction) / 1000.0, getMaxMillis());
+        }
+
+        @Override
+        public String toString() {
+            return String.format("calls=%d rows=%d avg=%.3fms p50=%.3fms p95=%.3fms p99=%.3fms max=%.3fms sql=%s",
+                    getCalls(), getRows(), getAvgMillis(), getPercentileMillis(0.5), getPercentileMillis(0.95),
+                    getPercentileMillis(0.99), getMaxMillis(), sql);
+        }
+    }
+
+    /**
+     * Slow query log entry.
+     */
+    public static final class SlowQuery {
+        private final long time = System.currentTimeMillis();
+        private final String sql;
+        private final long nanos;
+        private final long rows;
+        private final int bindCount;
+        private final String threadName;
+        private final List<String> stack;
+
+        private SlowQuery(String sql, long nanos, long rows, int bindCount, String threadName, List<String> stack) {
+            this.sql = sql;
+            this.nanos = nanos;
+            this.rows = rows;
+            this.bindCount = bindCount;
+            this.threadName = threadName;
+            this.stack = stack;
+        }
+
+        public Timestamp getTime() {
+            return new Timestamp(time);
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public double getMillis() {
+            return nanos / 1000000.0;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public int getBindCount() {
+            return bindCount;
+        }
+
+        public String getThreadName() {
+            return threadName;
+        }
+
+        /** Returns the calling stack sample: the innermost frames outside the entity engine. */
+        public List<String> getStack() {
+            return stack;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.3fms rows=%d binds=%d thread=%s sql=%s stack=%s", getMillis(), rows, bindCount, threadName, sql, stack);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.entity.jdbc;
+
+/**
+ * SCIPIO: JMX management interface of {@link SQLStatistics}, registered as <code>org.ofbiz.entity:type=SQLStatistics</code>.
+ */
+public interface SQLStatisticsMBean {
+
+    /** Returns the number of statements executed since the last reset (not sampled). */
+    long getStatementCount();
+
+    /** Returns the number of statements slower than the slow query time since the last reset. */
+    long getSlowQueryCount();
+
+    /** Returns the number of distinct statements (shapes) recorded. */
+    int getShapeCount();
+
+    /** Returns one of how many statements is recorded in the shape statistics. */
+    int getSampleRate();
+
+    /** Returns the execution time from which a statement is logged as slow (milliseconds; 0 if disabled). */
+    long getSlowQueryTime();
+
+    /** Returns the statistics of the shapes with the highest total execution time, one line per shape. */
+    String[] getTopShapes();
+
+    /** Returns the latest slow queries, one line per query. */
+    String[] getSlowQueries();
+
+    /** Clears all the statistics and the slow query log. */
+    void reset();
+}
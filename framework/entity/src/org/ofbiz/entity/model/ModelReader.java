@@ -30,11 +30,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.ofbiz.base.component.ComponentConfig;
+import org.ofbiz.base.concurrent.ExecutionPool;
 import org.ofbiz.base.config.GenericConfigException;
 import org.ofbiz.base.config.MainResourceHandler;
 import org.ofbiz.base.config.ResourceHandler;
+import org.ofbiz.base.config.ResourceSnapshot;
 import org.ofbiz.base.util.Debug;
 import org.ofbiz.base.util.UtilTimer;
 import org.ofbiz.base.util.UtilValidate;
@@ -84,6 +88,9 @@ public class ModelReader implements Serializable {
      */
     protected Map<String, ResourceHandler> entityResourceHandlerMap;
 
+    /** SCIPIO: Hash of the entity definition resources, set when model snapshots are enabled. */
+    protected String sourceHash;
+
     public static ModelReader getModelReader(String delegatorName) throws GenericEntityException {
         DelegatorElement delegatorInfo = EntityConfig.getInstance().getDelegator(delegatorName);
 
@@ -95,14 +102,58 @@ public class ModelReader implements Serializable {
         ModelReader reader = readers.get(tempModelName);
 
         if (reader == null) {
-            reader = new ModelReader(tempModelName);
-            // preload caches...
-            reader.getEntityCache();
+            // SCIPIO: May be read from the model snapshot
+            //reader = new ModelReader(tempModelName);
+            //// preload caches...
+            //reader.getEntityCache();
+            reader = createModelReader(tempModelName);
             reader = readers.putIfAbsentAndGet(tempModelName, reader);
         }
         return reader;
     }
 
+    /**
+     * Creates the reader of the given model with all its entities loaded, either from the model snapshot
+     * of the current entity definitions or, if there is none, from the definition XML files (SCIPIO).
+     * In the second case, the snapshot is written for the next startup.
+     */
+    private static ModelReader createModelReader(String modelName) throws GenericEntityException {
+        long startTime = System.currentTimeMillis();
+        ModelReader reader = new ModelReader(modelName);
+        if (!ResourceSnapshot.isEnabled()) {
+            reader.getEntityCache();
+            return reader;
+        }
+        String snapshotName = "entity-" + modelName;
+        String sourceHash;
+        try {
+            sourceHash = ResourceSnapshot.hashResources(reader.entityResourceHandlers, modelName,
+                    ResourceSnapshot.getCodeVersion(ModelReader.class));
+        } catch (GenericConfigException e) {
+            Debug.logWarning("Could not hash entity definitions of model [" + modelName + "]; not using model snapshot: " + e.toString(), module);
+            reader.getEntityCache();
+            return reader;
+        }
+        long hashTime = System.currentTimeMillis();
+        ModelReader snapshotReader = ResourceSnapshot.read(snapshotName, sourceHash, ModelReader.class);
+        if (snapshotReader != null && snapshotReader.entityCache != null) {
+            long endTime = System.currentTimeMillis();
+            Debug.logInfo("Loaded entity model [" + modelName + "] from snapshot; #Entities=" + snapshotReader.numEntities
+                    + " #ViewEntities=" + snapshotReader.numViewEntities + " in " + (endTime - startTime) + " ms (hash: "
+                    + (hashTime - startTime) + " ms, snapshot read: " + (endTime - hashTime) + " ms)", module);
+            return snapshotReader;
+        }
+        reader.sourceHash = sourceHash;
+        reader.getEntityCache();
+        long loadTime = System.currentTimeMillis();
+        boolean written = ResourceSnapshot.write(snapshotName, sourceHash, reader);
+        long endTime = System.currentTimeMillis();
+        Debug.logInfo("Loaded entity model [" + modelName + "] from definitions in " + (endTime - startTime) + " ms (hash: "
+                + (hashTime - startTime) + " ms, load: " + (loadTime - hashTime) + " ms, snapshot " + (written ? "write" : "write failed")
+                + ": " + (endTime - loadTime) + " ms)", module);
+        return reader;
+    }
+
     private ModelReader(String modelName) throws GenericEntityException {
         this.modelName = modelName;
         entityResourceHandlers = new LinkedList<>();
@@ -197,7 +248,7 @@ public class ModelReader implements Serializable {
 
     public Map<String, ModelEntity> getEntityCache() throws GenericEntityException {
         if (entityCache == null) { // don't want to block here
-            synchronized (ModelReader.class) {
+            synchronized (this) { // SCIPIO: per-reader lock: synchronized (ModelReader.class) {
                 // must check if null again as one of the blocked threads can still enter
                 if (entityCache == null) { // now it's safe
                     numEntities = 0;
@@ -211,17 +262,19 @@ public class ModelReader implements Serializable {
                     List<Element> tempExtendEntityElementList = new LinkedList<>();
 
                     UtilTimer utilTimer = new UtilTimer();
+                    long startTime = System.currentTimeMillis();
 
+                    // SCIPIO: Parse all the documents in parallel; the entities are still built in resource order below
+                    List<Future<Document>> documentFutures = new ArrayList<>(entityResourceHandlers.size());
                     for (ResourceHandler entityResourceHandler : entityResourceHandlers) {
+                        documentFutures.add(ExecutionPool.GLOBAL_FORK_JOIN.submit(entityResourceHandler::getDocument));
+                    }
+                    Iterator<Future<Document>> documentFutureIt = documentFutures.iterator();
 
-                        // utilTimer.timerString("Before getDocument in file " + entityFileName);
-                        Document document = null;
+                    for (ResourceHandler entityResourceHandler : entityResourceHandlers) {
 
-                        try {
-                            document = entityResourceHandler.getDocument();
-                        } catch (GenericConfigException e) {
-                            throw new GenericEntityConfException("Error getting document from resource handler", e);
-                        }
+                        // utilTimer.timerString("Before getDocument in file " + entityFileName);
+                        Document document = getDocument(entityResourceHandler, documentFutureIt.next());
                         if (document == null) {
                             throw new GenericEntityConfException("Could not get document for " + entityResourceHandler.toString());
                         }
@@ -265,6 +318,8 @@ public class ModelReader implements Serializable {
                         utilTimer.timerString("Finished " + entityResourceHandler.toString() + " - Total Entities: " + i + " FINISHED");
                     }
 
+                    long buildTime = System.currentTimeMillis();
+
                     // all entity elements in, now go through extend-entity elements and add their stuff
                     for (Element extendEntityElement : tempExtendEntityElementList) {
                         String entityName = UtilXml.checkEmpty(extendEntityElement.getAttribute("entity-name"));
@@ -329,6 +384,8 @@ public class ModelReader implements Serializable {
                         throw new GenericEntityConfException(sb.toString());
                     }
 
+                    long viewTime = System.currentTimeMillis();
+
                     // auto-create relationships
                     Set<String> orderedMessages = new TreeSet<>();
                     for (String curEntityName : new TreeSet<>(this.getEntityNames())) {
@@ -440,6 +497,10 @@ public class ModelReader implements Serializable {
                         Debug.logInfo("Finished loading entities; #Entities=" + numEntities + " #ViewEntities="
                                 + numViewEntities + " #Fields=" + numFields + " #Relationships=" + numRelations
                                 + " #AutoRelationships=" + numAutoRelations, module);
+                        long endTime = System.currentTimeMillis();
+                        Debug.logInfo("Entity model [" + modelName + "] loaded from " + entityResourceHandlers.size() + " resources in "
+                                + (endTime - startTime) + " ms (parse and build: " + (buildTime - startTime) + " ms, extend and views: "
+                                + (viewTime - buildTime) + " ms, auto relationships: " + (endTime - viewTime) + " ms)", module);
                     }
                 }
             }
@@ -447,6 +508,25 @@ public class ModelReader implements Serializable {
         return entityCache;
     }
 
+    private static Document getDocument(ResourceHandler entityResourceHandler, Future<Document> documentFuture) throws GenericEntityConfException { // SCIPIO
+        try {
+            return documentFuture.get();
+        } catch (ExecutionException e) {
+            throw new GenericEntityConfException("Error getting document from resource handler", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GenericEntityConfException("Interrupted while getting document from " + entityResourceHandler, e);
+        }
+    }
+
+    /**
+     * Returns the hash of the entity definition resources the model was loaded from, or null if model snapshots
+     * are disabled (SCIPIO).
+     */
+    public String getSourceHash() {
+        return sourceHash;
+    }
+
     /**
      * rebuilds the resourceHandlerEntities Map of Collections based on the current
      * entityResourceHandlerMap Map, must be done whenever a manual change is made
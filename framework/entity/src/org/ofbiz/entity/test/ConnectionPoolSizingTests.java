@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.entity.test;
+
+import org.ofbiz.entity.connection.ConnectionPoolStatistics.AdaptiveSizing;
+import org.ofbiz.entity.testtools.EntityTestCase;
+
+/**
+ * ConnectionPoolSizingTests (SCIPIO): grow and shrink steps of the adaptive connection pool sizing
+ * ({@link AdaptiveSizing}) for a configured maximum of 8 connections, a maximum size factor of 2 and a grow wait
+ * time of 50ms.
+ */
+public class ConnectionPoolSizingTests extends EntityTestCase {
+
+    private static final int CONFIGURED_MAX_TOTAL = 8;
+    private static final long GROW_WAIT_TIME = 50;
+
+    public ConnectionPoolSizingTests(String name) {
+        super(name);
+    }
+
+    public void testGrow() {
+        AdaptiveSizing sizing = new AdaptiveSizing(CONFIGURED_MAX_TOTAL, 2.0, GROW_WAIT_TIME);
+        assertEquals("Adaptive max", 16, sizing.getAdaptiveMaxTotal());
+        assertEquals("Grow on timeout", 10, sizing.getNewMaxTotal(8, 1, 0.0, 8));
+        assertEquals("Grow on average wait", 12, sizing.getNewMaxTotal(10, 0, 50.0, 10));
+        assertEquals("No change under the grow wait time", 10, sizing.getNewMaxTotal(10, 0, 49.0, 10));
+        assertEquals("Grow up to the adaptive max", 16, sizing.getNewMaxTotal(15, 3, 200.0, 15));
+        assertEquals("No grow over the adaptive max", 16, sizing.getNewMaxTotal(16, 3, 200.0, 16));
+        assertEquals("No shrink while growing", 20, sizing.getNewMaxTotal(20, 1, 0.0, 20));
+    }
+
+    public void testShrink() {
+        AdaptiveSizing sizing = new AdaptiveSizing(CONFIGURED_MAX_TOTAL, 2.0, GROW_WAIT_TIME);
+        assertEquals("Shrink on short waits", 14, sizing.getNewMaxTotal(16, 0, 10.0, 4));
+        assertEquals("Shrink down to the configured max", 8, sizing.getNewMaxTotal(9, 0, 0.0, 2));
+        assertEquals("No shrink under the configured max", 8, sizing.getNewMaxTotal(8, 0, 0.0, 0));
+        assertEquals("No shrink when the peak needs the connections", 16, sizing.getNewMaxTotal(16, 0, 10.0, 15));
+        assertEquals("No shrink on waits over half the grow wait time", 16, sizing.getNewMaxTotal(16, 0, 25.0, 4));
+    }
+
+    public void testSmallPool() {
+        // the step is at least one connection
+        AdaptiveSizing sizing = new AdaptiveSizing(2, 1.5, GROW_WAIT_TIME);
+        assertEquals("Adaptive max", 3, sizing.getAdaptiveMaxTotal());
+        assertEquals("Grow", 3, sizing.getNewMaxTotal(2, 1, 0.0, 2));
+        assertEquals("No grow over the adaptive max", 3, sizing.getNewMaxTotal(3, 1, 0.0, 3));
+        assertEquals("Shrink", 2, sizing.getNewMaxTotal(3, 0, 0.0, 1));
+        // a factor under 1 does not lower the pool
+        assertEquals("Factor under 1", 2, new AdaptiveSizing(2, 0.5, GROW_WAIT_TIME).getAdaptiveMaxTotal());
+    }
+}
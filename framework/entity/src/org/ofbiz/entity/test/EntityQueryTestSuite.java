@@ -28,12 +28,15 @@ import org.ofbiz.entity.GenericEntityException;
 import org.ofbiz.entity.GenericValue;
 import org.ofbiz.entity.condition.EntityCondition;
 import org.ofbiz.entity.condition.EntityOperator;
+import org.ofbiz.entity.model.DynamicViewEntity;
+import org.ofbiz.entity.model.ModelKeyMap;
 import org.ofbiz.entity.testtools.EntityTestCase;
 import org.ofbiz.entity.transaction.TransactionUtil;
 import org.ofbiz.entity.util.EntityFindOptions;
 import org.ofbiz.entity.util.EntityListIterator;
 import org.ofbiz.entity.util.EntityQuery;
 import org.ofbiz.entity.util.EntityUtil;
+import org.ofbiz.entity.util.KeysetPage;
 
 public class EntityQueryTestSuite extends EntityTestCase {
 
@@ -443,4 +446,109 @@ public class EntityQueryTestSuite extends EntityTestCase {
             TransactionUtil.rollback(transactionStarted, "Transaction is Rolled Back", e);
         }
     }
+
+    /*
+     * SCIPIO: queryKeysetPage(): following the continuation tokens, with a descending order-by on a non-unique field
+     * (the seek condition then also uses the primary key, appended to the order-by), returns each record once, in the order of queryList().
+     * assert: Concatenated pages equal the ordered list; seeking after a row gives the same page as its token
+     */
+    public void testKeysetPageSeek() throws GenericEntityException {
+        List<GenericValue> testingTypes = new LinkedList<>();
+        String[] descriptions = { "Keyset B", "Keyset A", "Keyset B", "Keyset A", "Keyset C", "Keyset B", "Keyset A" };
+        for (int i = 0; i < descriptions.length; i++) {
+            testingTypes.add(delegator.makeValue("TestingType", "testingTypeId", "keyset-" + (i + 1), "description", descriptions[i]));
+        }
+        delegator.storeAll(testingTypes);
+        EntityCondition condition = EntityCondition.makeCondition("testingTypeId", EntityOperator.LIKE, "keyset-%");
+
+        List<String> expectedIds = EntityUtil.getFieldListFromEntityList(EntityQuery.use(delegator).from("TestingType")
+                .where(condition).orderBy("-description", "testingTypeId").queryList(), "testingTypeId", false);
+        List<String> pagedIds = new LinkedList<>();
+        String token = null;
+        int pageCount = 0;
+        do {
+            KeysetPage<GenericValue> page = EntityQuery.use(delegator).from("TestingType").where(condition).orderBy("-description")
+                    .seekAfter(token).queryKeysetPage(3, KeysetPage.CountMode.EXACT);
+            assertEquals("queryKeysetPage(): page index", pageCount, page.getViewIndex());
+            assertEquals("queryKeysetPage(): exact count", descriptions.length, page.getListSize());
+            pagedIds.addAll(EntityUtil.getFieldListFromEntityList(page.getData(), "testingTypeId", false));
+            token = page.getNextToken();
+            pageCount++;
+        } while (token != null);
+        assertEquals("queryKeysetPage(): pages in order", expectedIds, pagedIds);
+        assertEquals("queryKeysetPage(): page count", 3, pageCount);
+
+        KeysetPage<GenericValue> firstPage = EntityQuery.use(delegator).from("TestingType").where(condition).orderBy("-description")
+                .queryKeysetPage(3, KeysetPage.CountMode.NONE);
+        GenericValue lastRow = firstPage.getData().get(2);
+        List<GenericValue> pageByToken = EntityQuery.use(delegator).from("TestingType").where(condition).orderBy("-description")
+                .seekAfter(firstPage.getNextToken()).queryKeysetPage(3, KeysetPage.CountMode.NONE).getData();
+        List<GenericValue> pageByRow = EntityQuery.use(delegator).from("TestingType").where(condition).orderBy("-description")
+                .seekAfter(lastRow).queryKeysetPage(3, KeysetPage.CountMode.NONE).getData();
+        assertEquals("queryKeysetPage(): seek after row and after token", pageByToken, pageByRow);
+    }
+
+    /*
+     * SCIPIO: queryKeysetPage(): the continuation token is only accepted, unaltered, by the query it was made for.
+     * assert: Altered tokens and tokens of another order-by or entity return the first page
+     */
+    public void testKeysetPageToken() throws GenericEntityException {
+        List<GenericValue> testingTypes = new LinkedList<>();
+        for (int i = 1; i <= 4; i++) {
+            testingTypes.add(delegator.makeValue("TestingType", "testingTypeId", "keysetToken-" + i, "description", "Keyset Token " + i));
+        }
+        delegator.storeAll(testingTypes);
+        EntityCondition condition = EntityCondition.makeCondition("testingTypeId", EntityOperator.LIKE, "keysetToken-%");
+
+        String token = EntityQuery.use(delegator).from("TestingType").where(condition).orderBy("description")
+                .queryKeysetPage(2, KeysetPage.CountMode.NONE).getNextToken();
+        assertNotNull("queryKeysetPage(): next page token", token);
+        KeysetPage<GenericValue> secondPage = EntityQuery.use(delegator).from("TestingType").where(condition).orderBy("description")
+                .seekAfter(token).queryKeysetPage(2, KeysetPage.CountMode.NONE);
+        assertEquals("queryKeysetPage(): token round trip", 1, secondPage.getViewIndex());
+        assertEquals("queryKeysetPage(): token round trip", UtilMisc.toList("keysetToken-3", "keysetToken-4"),
+                EntityUtil.getFieldListFromEntityList(secondPage.getData(), "testingTypeId", false));
+        assertNull("queryKeysetPage(): last page", secondPage.getNextToken());
+
+        // Altered token: a character of the MAC changed (not the last one, which may only hold unused bits)
+        int alteredIndex = token.length() - 5;
+        String alteredToken = token.substring(0, alteredIndex) + ((token.charAt(alteredIndex) == 'A') ? 'B' : 'A') + token.substring(alteredIndex + 1);
+        assertEquals("queryKeysetPage(): altered token returns first page", 0, EntityQuery.use(delegator).from("TestingType")
+                .where(condition).orderBy("description").seekAfter(alteredToken).queryKeysetPage(2, KeysetPage.CountMode.NONE).getViewIndex());
+        assertEquals("queryKeysetPage(): token of another order-by returns first page", 0, EntityQuery.use(delegator).from("TestingType")
+                .where(condition).orderBy("-description").seekAfter(token).queryKeysetPage(2, KeysetPage.CountMode.NONE).getViewIndex());
+        assertEquals("queryKeysetPage(): invalid token returns first page", 0, EntityQuery.use(delegator).from("TestingType")
+                .where(condition).orderBy("description").seekAfter("not a token").queryKeysetPage(2, KeysetPage.CountMode.NONE).getViewIndex());
+    }
+
+    /*
+     * SCIPIO: queryKeysetPage(): the exact and estimated counts are the counts of the rows of the pages, with the
+     * distinct select of a view without primary key.
+     * assert: Both counts equal the number of distinct (type description, testing name) rows
+     */
+    public void testKeysetPageDistinctCount() throws GenericEntityException {
+        List<GenericValue> values = new LinkedList<>();
+        values.add(delegator.makeValue("TestingType", "testingTypeId", "keysetCount-A", "description", "KeysetCount A"));
+        values.add(delegator.makeValue("TestingType", "testingTypeId", "keysetCount-B", "description", "KeysetCount B"));
+        values.add(delegator.makeValue("Testing", "testingId", "keysetCount-1", "testingTypeId", "keysetCount-A", "testingName", "n1"));
+        values.add(delegator.makeValue("Testing", "testingId", "keysetCount-2", "testingTypeId", "keysetCount-A", "testingName", "n2"));
+        values.add(delegator.makeValue("Testing", "testingId", "keysetCount-3", "testingTypeId", "keysetCount-B", "testingName", "n1"));
+        values.add(delegator.makeValue("Testing", "testingId", "keysetCount-4", "testingTypeId", "keysetCount-B", "testingName", "n1"));
+        delegator.storeAll(values);
+
+        DynamicViewEntity dve = new DynamicViewEntity();
+        dve.addMemberEntity("TT", "TestingType");
+        dve.addMemberEntity("T", "Testing");
+        dve.addAlias("TT", "typeDescription", "description", null, null, null, null);
+        dve.addAlias("T", "testingName");
+        dve.addViewLink("TT", "T", Boolean.FALSE, ModelKeyMap.makeKeyMapList("testingTypeId"));
+        EntityCondition condition = EntityCondition.makeCondition("typeDescription", EntityOperator.LIKE, "KeysetCount %");
+
+        for (KeysetPage.CountMode countMode : new KeysetPage.CountMode[] { KeysetPage.CountMode.EXACT, KeysetPage.CountMode.ESTIMATED }) {
+            KeysetPage<GenericValue> page = EntityQuery.use(delegator).select("typeDescription", "testingName").from(dve).where(condition)
+                    .orderBy("typeDescription", "testingName").distinct().queryKeysetPage(1, countMode);
+            assertEquals("queryKeysetPage(): " + countMode + " count of distinct rows", 3, page.getListSize());
+            assertFalse("queryKeysetPage(): " + countMode + " count not capped", page.isListSizeEstimated());
+        }
+    }
 }
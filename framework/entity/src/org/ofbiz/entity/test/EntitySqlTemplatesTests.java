@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.entity.test;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ofbiz.base.util.UtilMisc;
+import org.ofbiz.entity.GenericEntityException;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.datasource.GenericDAO;
+import org.ofbiz.entity.model.ModelEntity;
+import org.ofbiz.entity.model.ModelField;
+import org.ofbiz.entity.testtools.EntityTestCase;
+
+/**
+ * EntitySqlTemplatesTests (SCIPIO): checks that the statements {@link GenericDAO} takes from its SQL templates are the
+ * ones it builds without them, for values other than the one the templates were made for, and that values without all
+ * their primary key values (<code>IS NULL</code> conditions) do not use the templates.
+ */
+public class EntitySqlTemplatesTests extends EntityTestCase {
+
+    public EntitySqlTemplatesTests(String name) {
+        super(name);
+    }
+
+    public void testSinglePkEntity() throws Exception {
+        GenericValue first = delegator.makeValue("TestingType", "testingTypeId", "SQL-TEMPLATE-1", "description", "first");
+        GenericValue second = delegator.makeValue("TestingType", "testingTypeId", "SQL-TEMPLATE-2");
+        assertTemplateSql(first, second);
+    }
+
+    public void testMultiPkEntity() throws Exception {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        GenericValue first = delegator.makeValue("TestingNodeMember", "testingNodeId", "SQL-TEMPLATE-1", "testingId", "SQL-TEMPLATE-1", "fromDate", now);
+        GenericValue second = delegator.makeValue("TestingNodeMember", "testingNodeId", "SQL-TEMPLATE-2", "testingId", "SQL-TEMPLATE-2", "fromDate", now);
+        assertTemplateSql(first, second);
+    }
+
+    public void testNullPkNotTemplated() throws Exception {
+        GenericValue complete = delegator.makeValue("TestingNodeMember", "testingNodeId", "SQL-TEMPLATE-1", "testingId", "SQL-TEMPLATE-1",
+                "fromDate", new Timestamp(System.currentTimeMillis()));
+        GenericValue incomplete = delegator.makeValue("TestingNodeMember", "testingNodeId", "SQL-TEMPLATE-1", "testingId", "SQL-TEMPLATE-1");
+        ModelEntity modelEntity = complete.getModelEntity();
+        GenericDAO dao = getDAO(modelEntity);
+        // Fill the templates, then check the value without fromDate gets its own statement
+        dao.getSelectSql(complete, modelEntity);
+        dao.getDeleteSql(complete, modelEntity);
+        String selectSql = dao.getSelectSql(incomplete, modelEntity);
+        assertEquals(dao.makeSelectSql(incomplete, modelEntity, modelEntity.getNopksCopy()), selectSql);
+        assertTrue("IS NULL condition: " + selectSql, selectSql.contains(" IS NULL"));
+        assertEquals(dao.makeDeleteSql(incomplete, modelEntity), dao.getDeleteSql(incomplete, modelEntity));
+        assertFalse(dao.getSelectSql(complete, modelEntity).equals(selectSql));
+    }
+
+    private void assertTemplateSql(GenericValue first, GenericValue second) throws GenericEntityException {
+        ModelEntity modelEntity = first.getModelEntity();
+        GenericDAO dao = getDAO(modelEntity);
+        List<ModelField> allFields = modelEntity.getFieldsUnmodifiable();
+        List<ModelField> updateFields = modelEntity.getNopksCopy();
+        List<ModelField> partialFields = new ArrayList<>(modelEntity.getPkFieldsUnmodifiable());
+        partialFields.add(updateFields.get(0));
+        // The first value makes the templates, the second uses them
+        for (GenericValue value : UtilMisc.toList(first, second)) {
+            assertEquals(dao.makeInsertSql(modelEntity, allFields), dao.getInsertSql(modelEntity, allFields));
+            assertEquals(dao.makeSelectSql(value, modelEntity, modelEntity.getNopksCopy()), dao.getSelectSql(value, modelEntity));
+            assertEquals(dao.makeSelectSql(value, modelEntity, partialFields), dao.getPartialSelectSql(value, modelEntity, partialFields));
+            assertEquals(dao.makeUpdateSql(value, modelEntity, updateFields), dao.getUpdateSql(value, modelEntity, updateFields));
+            assertEquals(dao.makeDeleteSql(value, modelEntity), dao.getDeleteSql(value, modelEntity));
+        }
+    }
+
+    private GenericDAO getDAO(ModelEntity modelEntity) {
+        return GenericDAO.getGenericDAO(delegator.getGroupHelperInfo(delegator.getEntityGroupName(modelEntity.getEntityName())));
+    }
+}
@@ -35,6 +35,7 @@ import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.sql.rowset.serial.SerialBlob;
+import javax.transaction.Transaction;
 
 import org.ofbiz.base.concurrent.ExecutionPool;
 import org.ofbiz.base.util.Debug;
@@ -42,13 +43,17 @@ import org.ofbiz.base.util.Observable;
 import org.ofbiz.base.util.Observer;
 import org.ofbiz.base.util.UtilDateTime;
 import org.ofbiz.base.util.UtilMisc;
+import org.ofbiz.base.util.UtilObject;
 import org.ofbiz.base.util.UtilXml;
 import org.ofbiz.entity.Delegator;
 import org.ofbiz.entity.DelegatorFactory;
 import org.ofbiz.entity.GenericEntity;
+import org.ofbiz.entity.GenericEntityCodec;
 import org.ofbiz.entity.GenericEntityException;
 import org.ofbiz.entity.GenericPK;
 import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.WriteCoalescer;
+import org.ofbiz.entity.WriteCoalescerMBean;
 import org.ofbiz.entity.condition.EntityCondition;
 import org.ofbiz.entity.condition.EntityOperator;
 import org.ofbiz.entity.config.model.Datasource;
@@ -328,6 +333,236 @@ public class EntityTestSuite extends EntityTestCase {
         TransactionUtil.rollback(transBegin, null, null);
     }
 
+    /*
+     * Tests binary serialization (GenericEntityCodec) by encoding/decoding a GenericValue, directly and through Java serialization
+     * (which uses the codec if entity.properties#binarySerialization.enable is true)
+     */
+    public void testBinarySerialization() throws Exception {
+        Delegator localDelegator = DelegatorFactory.getDelegator("default");
+        GenericValue testValue = localDelegator.makeValue("Testing", "testingId", "BIN-1", "testingTypeId", "TEST-BIN",
+                "description", "Binary serialization \u00e9", "testingSize", 42L, "testingDate", UtilDateTime.nowTimestamp(),
+                "comments", null);
+        testValue.synchronizedWithDatasource();
+        testValue.setImmutable();
+
+        GenericValue newValue = (GenericValue) GenericEntityCodec.decode(GenericEntityCodec.encode(testValue));
+        assertEquals("Decoded value has the same fields", testValue, newValue);
+        assertTrue("Decoded value has the null field set", newValue.containsKey("comments"));
+        assertEquals("Decoded value has the same timestamp", testValue.getTimestamp("testingDate"), newValue.getTimestamp("testingDate"));
+        assertFalse("Decoded value is immutable", newValue.isMutable());
+        assertEquals("Decoded value has the original database values", "BIN-1", newValue.getOriginalDbValue("testingId"));
+
+        newValue = (GenericValue) UtilObject.getObject(UtilObject.getBytes(testValue));
+        assertEquals("Deserialized value has the same fields", testValue, newValue);
+        GenericPK newPk = (GenericPK) UtilObject.getObject(UtilObject.getBytes(testValue.getPrimaryKey()));
+        assertEquals("Deserialized primary key has the same fields", testValue.getPrimaryKey(), newPk);
+    }
+
+    /*
+     * Tests write coalescing (WriteCoalescer): the repeated stores of a value in a transaction are merged into one update,
+     * written at commit
+     */
+    public void testWriteCoalescingMerge() throws Exception {
+        boolean wasEnabled = enableWriteCoalescing();
+        try {
+            GenericValue value = delegator.create("TestingType", "testingTypeId", "COALESCE-MERGE", "description", "Coalesce merge");
+            WriteCoalescerMBean statistics = WriteCoalescer.getStatistics();
+            long storesDeferred = statistics.getStoresDeferred();
+            long statementsSaved = statistics.getStatementsSaved();
+            long commitFlushes = statistics.getCommitFlushes();
+            long valuesWritten = statistics.getValuesWritten();
+
+            boolean beganTransaction = TransactionUtil.begin();
+            try {
+                for (int i = 1; i <= 3; i++) {
+                    value.set("description", "Coalesce merge store " + i);
+                    delegator.store(value);
+                }
+                TransactionUtil.commit(beganTransaction);
+            } catch (GenericEntityException e) {
+                TransactionUtil.rollback(beganTransaction, "Error testing write coalescing", e);
+                throw e;
+            }
+            assertEquals("Stores deferred", storesDeferred + 1, statistics.getStoresDeferred());
+            assertEquals("Statements saved", statementsSaved + 2, statistics.getStatementsSaved());
+            assertEquals("Commit flushes", commitFlushes + 1, statistics.getCommitFlushes());
+            assertEquals("Values written", valuesWritten + 1, statistics.getValuesWritten());
+            assertEquals("Last store written", "Coalesce merge store 3", findTestingTypeDescription("COALESCE-MERGE"));
+        } finally {
+            WriteCoalescer.setEnabled(wasEnabled);
+        }
+    }
+
+    /*
+     * Tests that the pending coalesced stores are written before a query on their entity and before a query on a view
+     * entity having it as member
+     */
+    public void testWriteCoalescingQueryFlush() throws Exception {
+        boolean wasEnabled = enableWriteCoalescing();
+        try {
+            GenericValue value = delegator.create("TestingType", "testingTypeId", "COALESCE-QUERY", "description", "Coalesce query");
+            delegator.create("TestingSubtype", "testingTypeId", "COALESCE-QUERY", "subtypeDescription", "Coalesce query subtype");
+            WriteCoalescerMBean statistics = WriteCoalescer.getStatistics();
+            long queryFlushes = statistics.getQueryFlushes();
+
+            boolean beganTransaction = TransactionUtil.begin();
+            try {
+                value.set("description", "Coalesce query entity");
+                delegator.store(value);
+                assertEquals("Entity query reads the pending store", "Coalesce query entity", findTestingTypeDescription("COALESCE-QUERY"));
+                assertEquals("Query flushes after entity query", queryFlushes + 1, statistics.getQueryFlushes());
+
+                value.set("description", "Coalesce query view");
+                delegator.store(value);
+                GenericValue viewValue = EntityQuery.use(delegator).from("TestingViewPks").where("testingTypeId", "COALESCE-QUERY").queryOne();
+                assertEquals("View query reads the pending store", "Coalesce query view", viewValue.getString("description"));
+                assertEquals("Query flushes after view query", queryFlushes + 2, statistics.getQueryFlushes());
+                TransactionUtil.commit(beganTransaction);
+            } catch (GenericEntityException e) {
+                TransactionUtil.rollback(beganTransaction, "Error testing write coalescing", e);
+                throw e;
+            }
+        } finally {
+            WriteCoalescer.setEnabled(wasEnabled);
+        }
+    }
+
+    /*
+     * Tests that the pending coalesced stores are written before the transaction is suspended, and that the stores of
+     * the transaction run meanwhile and of the resumed transaction are coalesced on their own
+     */
+    public void testWriteCoalescingSuspendResume() throws Exception {
+        boolean wasEnabled = enableWriteCoalescing();
+        try {
+            GenericValue value = delegator.create("TestingType", "testingTypeId", "COALESCE-SUSPEND", "description", "Coalesce suspend");
+            GenericValue innerValue = delegator.create("TestingType", "testingTypeId", "COALESCE-SUSPEND-INNER", "description", "Coalesce suspend inner");
+            WriteCoalescerMBean statistics = WriteCoalescer.getStatistics();
+            long suspendFlushes = statistics.getSuspendFlushes();
+            long commitFlushes = statistics.getCommitFlushes();
+
+            boolean beganTransaction = TransactionUtil.begin();
+            try {
+                value.set("description", "Coalesce suspend before");
+                delegator.store(value);
+                Transaction parentTransaction = TransactionUtil.suspend();
+                assertEquals("Suspend flushes", suspendFlushes + 1, statistics.getSuspendFlushes());
+                try {
+                    boolean beganInnerTransaction = TransactionUtil.begin();
+                    try {
+                        innerValue.set("description", "Coalesce suspend inner store");
+                        delegator.store(innerValue);
+                        TransactionUtil.commit(beganInnerTransaction);
+                    } catch (GenericEntityException e) {
+                        TransactionUtil.rollback(beganInnerTransaction, "Error testing write coalescing", e);
+                        throw e;
+                    }
+                } finally {
+                    TransactionUtil.resume(parentTransaction);
+                }
+                value.set("description", "Coalesce suspend after");
+                delegator.store(value);
+                TransactionUtil.commit(beganTransaction);
+            } catch (GenericEntityException e) {
+                TransactionUtil.rollback(beganTransaction, "Error testing write coalescing", e);
+                throw e;
+            }
+            assertEquals("Commit flushes", commitFlushes + 2, statistics.getCommitFlushes());
+            assertEquals("Inner transaction store written", "Coalesce suspend inner store", findTestingTypeDescription("COALESCE-SUSPEND-INNER"));
+            assertEquals("Resumed transaction store written", "Coalesce suspend after", findTestingTypeDescription("COALESCE-SUSPEND"));
+        } finally {
+            WriteCoalescer.setEnabled(wasEnabled);
+        }
+    }
+
+    /*
+     * Tests that the pending coalesced stores of an entity referencing another are written before a remove on the other:
+     * the pending store moves the reference off the removed row, which would otherwise fail on the foreign key
+     */
+    public void testWriteCoalescingForeignKeyFlush() throws Exception {
+        boolean wasEnabled = enableWriteCoalescing();
+        try {
+            removeCoalescingEnumerations();
+            GenericValue enumType1 = delegator.create("EnumerationType", "enumTypeId", "COALESCE-ET1", "description", "Coalesce type 1");
+            delegator.create("EnumerationType", "enumTypeId", "COALESCE-ET2", "description", "Coalesce type 2");
+            GenericValue enumeration = delegator.create("Enumeration", "enumId", "COALESCE-E1", "enumTypeId", "COALESCE-ET1", "description", "Coalesce enum");
+            WriteCoalescerMBean statistics = WriteCoalescer.getStatistics();
+            long storesDeferred = statistics.getStoresDeferred();
+            long writeFlushes = statistics.getWriteFlushes();
+
+            boolean beganTransaction = TransactionUtil.begin();
+            try {
+                enumeration.set("enumTypeId", "COALESCE-ET2");
+                delegator.store(enumeration);
+                assertEquals("Stores deferred", storesDeferred + 1, statistics.getStoresDeferred());
+                delegator.removeValue(enumType1);
+                assertEquals("Write flushes", writeFlushes + 1, statistics.getWriteFlushes());
+                TransactionUtil.commit(beganTransaction);
+            } catch (GenericEntityException e) {
+                TransactionUtil.rollback(beganTransaction, "Error testing write coalescing", e);
+                throw e;
+            }
+            assertNull("Type removed", EntityQuery.use(delegator).from("EnumerationType").where("enumTypeId", "COALESCE-ET1").queryOne());
+            assertEquals("Reference moved", "COALESCE-ET2",
+                    EntityQuery.use(delegator).from("Enumeration").where("enumId", "COALESCE-E1").queryOne().getString("enumTypeId"));
+        } finally {
+            WriteCoalescer.setEnabled(wasEnabled);
+            removeCoalescingEnumerations();
+        }
+    }
+
+    /*
+     * Tests that a coalesced store of a row that does not exist fails when written at commit, rolling back the
+     * transaction
+     */
+    public void testWriteCoalescingMissingRowRollback() throws Exception {
+        boolean wasEnabled = enableWriteCoalescing();
+        try {
+            WriteCoalescerMBean statistics = WriteCoalescer.getStatistics();
+            long failedFlushes = statistics.getFailedFlushes();
+
+            boolean beganTransaction = TransactionUtil.begin();
+            try {
+                delegator.create("TestingType", "testingTypeId", "COALESCE-ROLLBACK", "description", "Coalesce rollback");
+                GenericValue missingValue = delegator.makeValue("TestingType", "testingTypeId", "COALESCE-MISSING", "description", "Coalesce missing");
+                assertEquals("Deferred store of a missing row", 1, delegator.store(missingValue));
+            } catch (GenericEntityException e) {
+                TransactionUtil.rollback(beganTransaction, "Error testing write coalescing", e);
+                throw e;
+            }
+            try {
+                TransactionUtil.commit(beganTransaction);
+                fail("Commit with a deferred store of a missing row should fail");
+            } catch (GenericTransactionException e) {
+                // expected: the deferred update found no row and the transaction was rolled back
+            }
+            assertEquals("Failed flushes", failedFlushes + 1, statistics.getFailedFlushes());
+            assertNull("Create rolled back", EntityQuery.use(delegator).from("TestingType").where("testingTypeId", "COALESCE-ROLLBACK").queryOne());
+            assertNull("Missing row not created", EntityQuery.use(delegator).from("TestingType").where("testingTypeId", "COALESCE-MISSING").queryOne());
+        } finally {
+            WriteCoalescer.setEnabled(wasEnabled);
+        }
+    }
+
+    /**
+     * Turns write coalescing on, removing the test values of the previous runs; returns the previous state.
+     */
+    protected boolean enableWriteCoalescing() throws GenericEntityException {
+        delegator.removeByCondition("TestingSubtype", EntityCondition.makeCondition("testingTypeId", EntityOperator.LIKE, "COALESCE-%"));
+        delegator.removeByCondition("TestingType", EntityCondition.makeCondition("testingTypeId", EntityOperator.LIKE, "COALESCE-%"));
+        boolean wasEnabled = WriteCoalescer.isEnabled();
+        WriteCoalescer.setEnabled(true);
+        return wasEnabled;
+    }
+
+    protected String findTestingTypeDescription(String testingTypeId) throws GenericEntityException {
+        return EntityQuery.use(delegator).from("TestingType").where("testingTypeId", testingTypeId).queryOne().getString("description");
+    }
+
+    protected void removeCoalescingEnumerations() throws GenericEntityException {
+        delegator.removeByCondition("Enumeration", EntityCondition.makeCondition("enumId", EntityOperator.LIKE, "COALESCE-%"));
+        delegator.removeByCondition("EnumerationType", EntityCondition.makeCondition("enumTypeId", EntityOperator.LIKE, "COALESCE-%"));
+    }
+
     protected long flushAndRecreateTree(String descriptionPrefix) throws Exception {
         //
         // The tree has a root, the root has level1max children.
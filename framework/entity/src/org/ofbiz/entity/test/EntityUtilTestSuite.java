@@ -22,6 +22,7 @@ import org.ofbiz.base.util.StringUtil;
 import org.ofbiz.base.util.UtilMisc;
 import org.ofbiz.entity.GenericValue;
 import org.ofbiz.entity.condition.EntityCondition;
+import org.ofbiz.entity.condition.EntityConditionPredicate;
 import org.ofbiz.entity.condition.EntityExpr;
 import org.ofbiz.entity.condition.EntityOperator;
 import org.ofbiz.entity.testtools.EntityTestCase;
@@ -29,6 +30,7 @@ import org.ofbiz.entity.util.EntityUtil;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 public class EntityUtilTestSuite extends EntityTestCase {
 
@@ -98,4 +100,27 @@ public class EntityUtilTestSuite extends EntityTestCase {
         assertEquals("Filter condition using List<EntityExpr> must have " + (TEST_COUNT / 10 + 1) + " results",
                 TEST_COUNT / 10 + 1, filteredWithCondition.size());
     }
+
+    public void testCompiledConditionMatches() {
+        List<GenericValue> newValues = prepareGenericValueList();
+        List<String> testingIds = new ArrayList<>();
+        for (int i = 0; i < TEST_COUNT; i += 7) {
+            testingIds.add(StringUtil.padNumberString(String.valueOf(i), 5));
+        }
+        EntityCondition condition = EntityCondition.makeCondition(UtilMisc.toList(
+                EntityCondition.makeCondition("testingId", EntityOperator.LIKE, "00%"),
+                EntityCondition.makeCondition(
+                        EntityCondition.makeCondition("testingId", EntityOperator.IN, testingIds),
+                        EntityOperator.OR,
+                        EntityCondition.makeCondition("testingId", EntityOperator.GREATER_THAN_EQUAL_TO, "00990")),
+                EntityCondition.makeCondition("description", EntityOperator.NOT_EQUAL, "Description 3"),
+                EntityCondition.makeCondition("testingId", EntityOperator.NOT_LIKE, "%5")), EntityOperator.AND);
+
+        List<GenericValue> interpreted = newValues.stream().filter(condition::entityMatches).collect(Collectors.toList());
+        List<GenericValue> compiled = newValues.stream().filter(value -> EntityConditionPredicate.entityMatches(condition, value)).collect(Collectors.toList());
+        assertFalse("Compiled condition must match some values", compiled.isEmpty());
+        assertEquals("Compiled condition must match the same values as the interpreted condition", interpreted, compiled);
+        assertEquals("EntityUtil.filterByCondition must match the same values as the interpreted condition", interpreted,
+                EntityUtil.filterByCondition(newValues, condition));
+    }
 }
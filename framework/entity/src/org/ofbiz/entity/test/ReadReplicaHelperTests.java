@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.entity.test;
+
+import java.util.ArrayList;
+
+import javax.transaction.Transaction;
+
+import org.ofbiz.base.util.UtilMisc;
+import org.ofbiz.base.util.UtilProperties;
+import org.ofbiz.entity.GenericEntityException;
+import org.ofbiz.entity.GenericPK;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.condition.EntityCondition;
+import org.ofbiz.entity.datasource.GenericHelper;
+import org.ofbiz.entity.datasource.GenericHelperFactory;
+import org.ofbiz.entity.datasource.GenericHelperInfo;
+import org.ofbiz.entity.datasource.ReadReplicaHelper;
+import org.ofbiz.entity.model.ModelEntity;
+import org.ofbiz.entity.testtools.EntityTestCase;
+import org.ofbiz.entity.transaction.TransactionUtil;
+
+/**
+ * ReadReplicaHelperTests (SCIPIO): routes the TestingType reads of a {@link ReadReplicaHelper} between the datasource of
+ * the test delegator (primary) and the in-memory Derby datasource <code>localderbyreplicatest</code> (replica), which
+ * hold different descriptions for the same record, so that each read shows which datasource it was done on.
+ */
+public class ReadReplicaHelperTests extends EntityTestCase {
+
+    private static final String REPLICA_DATASOURCE = "localderbyreplicatest";
+    private static final String TESTING_TYPE_ID = "READ-REPLICA-TEST";
+
+    protected GenericHelper primaryHelper = null;
+    protected GenericHelper replicaHelper = null;
+    protected Transaction suspendedTransaction = null;
+
+    public ReadReplicaHelperTests(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        // The routing depends on the transaction of the thread: the tests start without one
+        suspendedTransaction = TransactionUtil.isTransactionInPlace() ? TransactionUtil.suspend() : null;
+
+        ModelEntity modelEntity = delegator.getModelEntity("TestingType");
+        primaryHelper = delegator.getEntityHelper("TestingType");
+        if (primaryHelper instanceof ReadReplicaHelper) {
+            primaryHelper = ((ReadReplicaHelper) primaryHelper).getPrimaryHelper();
+        }
+        GenericHelperInfo replicaInfo = new GenericHelperInfo(delegator.getEntityGroupName("TestingType"), REPLICA_DATASOURCE);
+        replicaHelper = GenericHelperFactory.getHelper(replicaInfo);
+        replicaHelper.checkDataSource(UtilMisc.toMap("TestingType", modelEntity), new ArrayList<>(), true);
+
+        GenericPK pk = makePK();
+        primaryHelper.removeByPrimaryKey(pk);
+        replicaHelper.removeByPrimaryKey(pk);
+        primaryHelper.create(delegator.makeValue("TestingType", "testingTypeId", TESTING_TYPE_ID, "description", "primary"));
+        replicaHelper.create(delegator.makeValue("TestingType", "testingTypeId", TESTING_TYPE_ID, "description", "replica"));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        primaryHelper.removeByPrimaryKey(makePK());
+        replicaHelper.removeByPrimaryKey(makePK());
+        if (suspendedTransaction != null) {
+            TransactionUtil.resume(suspendedTransaction);
+        }
+    }
+
+    public void testReadsOutsideTransactionUseReplica() throws Exception {
+        ReadReplicaHelper helper = makeHelper();
+        assertEquals("replica", helper.findByPrimaryKey(makePK()).getString("description"));
+        assertEquals(1, helper.findCountByCondition(delegator, delegator.getModelEntity("TestingType"),
+                EntityCondition.makeCondition("description", "replica"), null, null));
+    }
+
+    public void testReadsInTransactionUsePrimary() throws Exception {
+        ReadReplicaHelper helper = makeHelper();
+        boolean beganTransaction = TransactionUtil.begin();
+        try {
+            assertEquals("primary", helper.findByPrimaryKey(makePK()).getString("description"));
+        } finally {
+            TransactionUtil.commit(beganTransaction);
+        }
+    }
+
+    public void testReadYourWrites() throws Exception {
+        ReadReplicaHelper helper = makeHelper();
+        boolean beganTransaction = TransactionUtil.begin();
+        try {
+            GenericValue value = helper.findByPrimaryKey(makePK());
+            value.set("description", "written");
+            helper.store(value);
+            // In the transaction, the write is read back from the primary
+            assertEquals("written", helper.findByPrimaryKey(makePK()).getString("description"));
+        } finally {
+            TransactionUtil.commit(beganTransaction);
+        }
+        // After the commit the thread still reads from the primary (readReplica.stickyAfterWriteTime), not the replica
+        // that is behind
+        assertEquals("written", helper.findByPrimaryKey(makePK()).getString("description"));
+    }
+
+    public void testStickyWindowFromCommit() throws Exception {
+        ReadReplicaHelper helper = makeHelper();
+        long stickyAfterWriteTime = UtilProperties.getPropertyAsLong("entity", "readReplica.stickyAfterWriteTime", 5000L);
+        boolean beganTransaction = TransactionUtil.begin();
+        try {
+            GenericValue value = helper.findByPrimaryKey(makePK());
+            value.set("description", "written-long-transaction");
+            helper.store(value);
+            // The transaction outlasts the window counted from the write
+            Thread.sleep(stickyAfterWriteTime + 200);
+        } finally {
+            TransactionUtil.commit(beganTransaction);
+        }
+        // The window starts at the commit, when the replicas can start receiving the write
+        assertEquals("written-long-transaction", helper.findByPrimaryKey(makePK()).getString("description"));
+    }
+
+    private ReadReplicaHelper makeHelper() {
+        GenericHelperInfo replicaInfo = new GenericHelperInfo(delegator.getEntityGroupName("TestingType"), REPLICA_DATASOURCE);
+        return new ReadReplicaHelper(primaryHelper, UtilMisc.toList(replicaInfo));
+    }
+
+    private GenericPK makePK() throws GenericEntityException {
+        return delegator.makePK("TestingType", "testingTypeId", TESTING_TYPE_ID);
+    }
+}
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.entity.test;
+
+import java.util.List;
+
+import org.ofbiz.entity.jdbc.SQLStatistics;
+import org.ofbiz.entity.jdbc.SQLStatistics.Shape;
+import org.ofbiz.entity.testtools.EntityTestCase;
+
+/**
+ * SQLStatisticsTests (SCIPIO): shape statistics, shape limit, sampling and slow query log of {@link SQLStatistics},
+ * on instances separate from the one recording the statements of the entity engine.
+ */
+public class SQLStatisticsTests extends EntityTestCase {
+
+    private static final long MILLIS = 1000000L;
+
+    public SQLStatisticsTests(String name) {
+        super(name);
+    }
+
+    public void testShapes() {
+        SQLStatistics stats = new SQLStatistics(1, 10, 0, 10);
+        for (int i = 0; i < 3; i++) {
+            stats.recordStatement("SELECT * FROM A WHERE ID = ?", 2 * MILLIS, 2, 1);
+        }
+        stats.recordStatement("SELECT * FROM B", MILLIS, 10, 0);
+        assertEquals(4, stats.getStatementCount());
+        assertEquals(2, stats.getShapeCount());
+        List<Shape> shapes = stats.getShapes();
+        Shape shape = shapes.get(0);
+        assertEquals("by decreasing total time", "SELECT * FROM A WHERE ID = ?", shape.getSql());
+        assertEquals(3, shape.getCalls());
+        assertEquals(3, shape.getEstimatedCalls());
+        assertEquals(6, shape.getRows());
+        assertEquals(2.0, shape.getAvgRows(), 0.0001);
+        assertEquals(2.0, shape.getAvgMillis(), 0.0001);
+        assertEquals(2.0, shape.getMaxMillis(), 0.0001);
+        assertTrue(shape.getPercentileMillis(0.5) > 0 && shape.getPercentileMillis(0.99) <= shape.getMaxMillis());
+        assertEquals("SELECT * FROM B", shapes.get(1).getSql());
+        assertEquals(0, stats.getSlowQueryCount());
+    }
+
+    public void testMaxShapes() {
+        SQLStatistics stats = new SQLStatistics(1, 2, 0, 10);
+        for (int i = 0; i < 5; i++) {
+            stats.recordStatement("SELECT * FROM T" + i, MILLIS, 1, 0);
+        }
+        stats.recordStatement("SELECT * FROM T0", MILLIS, 1, 0);
+        assertEquals("two statements and the others", 3, stats.getShapeCount());
+        for (Shape shape : stats.getShapes()) {
+            if (SQLStatistics.OTHER_SHAPE.equals(shape.getSql())) {
+                assertEquals(3, shape.getCalls());
+            } else if ("SELECT * FROM T0".equals(shape.getSql())) {
+                assertEquals("recorded statements are still counted", 2, shape.getCalls());
+            }
+        }
+    }
+
+    public void testSampling() {
+        SQLStatistics stats = new SQLStatistics(4, 10, 0, 10);
+        for (int i = 0; i < 4000; i++) {
+            stats.recordStatement("SELECT * FROM A", MILLIS, 1, 0);
+        }
+        assertEquals("all statements counted", 4000, stats.getStatementCount());
+        Shape shape = stats.getShapes().get(0);
+        assertTrue("about one of four recorded: " + shape.getCalls(), shape.getCalls() > 700 && shape.getCalls() < 1300);
+        assertEquals(shape.getCalls() * 4, shape.getEstimatedCalls());
+    }
+
+    public void testSlowQueryLog() {
+        SQLStatistics stats = new SQLStatistics(1000, 10, 5, 2);
+        stats.recordStatement("SELECT FAST", 4 * MILLIS, 1, 0);
+        stats.recordStatement("SELECT SLOW1", 5 * MILLIS, 1, 0);
+        stats.recordStatement("SELECT SLOW2", 6 * MILLIS, 1, 0);
+        stats.recordStatement("SELECT SLOW3", 7 * MILLIS, 1, 0);
+        assertEquals(3, stats.getSlowQueryCount());
+        String[] slowQueries = stats.getSlowQueries();
+        assertEquals("bounded log", 2, slowQueries.length);
+        assertTrue("latest first: " + slowQueries[0], slowQueries[0].contains("SELECT SLOW3"));
+        assertTrue(slowQueries[1].contains("SELECT SLOW2"));
+
+        stats.reset();
+        assertEquals(0, stats.getStatementCount());
+        assertEquals(0, stats.getSlowQueryCount());
+        assertEquals(0, stats.getShapeCount());
+        assertEquals(0, stats.getSlowQueries().length);
+    }
+}
@@ -50,6 +50,7 @@ import org.ofbiz.base.util.UtilDateTime;
 import org.ofbiz.base.util.UtilValidate;
 import org.ofbiz.entity.GenericEntityConfException;
 import org.ofbiz.entity.GenericEntityException;
+import org.ofbiz.entity.WriteCoalescer;
 import org.ofbiz.entity.config.model.Datasource;
 import org.ofbiz.entity.config.model.EntityConfig;
 import org.ofbiz.entity.datasource.GenericHelperInfo;
@@ -432,6 +433,12 @@ public final class TransactionUtil implements Status {
             if (TransactionUtil.getStatus() != STATUS_NO_TRANSACTION) {
                 TransactionManager txMgr = TransactionFactoryLoader.getInstance().getTransactionManager();
                 if (txMgr != null) {
+                    // SCIPIO: Write the coalesced stores of the transaction while it is current
+                    try {
+                        WriteCoalescer.flushForSuspend();
+                    } catch (GenericEntityException e) {
+                        throw new GenericTransactionException("Could not write the pending stores of the transaction before suspending it", e);
+                    }
                     pushTransactionBeginStackSave(clearTransactionBeginStack());
                     pushSetRollbackOnlyCauseSave(clearSetRollbackOnlyCause());
                     Transaction trans = txMgr.suspend();
@@ -48,6 +48,10 @@ public class EntityFindOptions implements java.io.Serializable {
     protected int fetchSize = -1;
     protected int maxRows = -1;
     protected boolean distinct = false;
+    /** SCIPIO: Lock the selected rows until the end of the transaction (SELECT ... FOR UPDATE) */
+    protected boolean forUpdate = false;
+    /** SCIPIO: With forUpdate, skip the rows locked by other transactions (SKIP LOCKED), if the datasource supports it */
+    protected boolean skipLocked = false;
 
     /** LIMIT option */
     protected int limit = -1;
@@ -159,6 +163,31 @@ public class EntityFindOptions implements java.io.Serializable {
         return this;
     }
 
+    /** SCIPIO: Specifies whether the selected rows are locked until the end of the transaction (SELECT ... FOR UPDATE). */
+    public boolean getForUpdate() {
+        return forUpdate;
+    }
+
+    /** SCIPIO: Specifies whether the selected rows are locked until the end of the transaction (SELECT ... FOR UPDATE);
+     * ignored if the datasource declares <code>use-for-update="false"</code>. */
+    public EntityFindOptions setForUpdate(boolean forUpdate) {
+        this.forUpdate = forUpdate;
+        return this;
+    }
+
+    /** SCIPIO: Specifies whether, with forUpdate, the rows locked by other transactions are skipped instead of waited for
+     * (SELECT ... FOR UPDATE SKIP LOCKED); ignored unless the datasource declares <code>use-skip-locked="true"</code>. */
+    public boolean getSkipLocked() {
+        return skipLocked;
+    }
+
+    /** SCIPIO: Specifies whether, with forUpdate, the rows locked by other transactions are skipped instead of waited for
+     * (SELECT ... FOR UPDATE SKIP LOCKED); ignored unless the datasource declares <code>use-skip-locked="true"</code>. */
+    public EntityFindOptions setSkipLocked(boolean skipLocked) {
+        this.skipLocked = skipLocked;
+        return this;
+    }
+
 
     /** Get the LIMIT number. */
     public int getLimit() {
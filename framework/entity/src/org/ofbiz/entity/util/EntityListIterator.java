@@ -351,7 +351,11 @@ public class EntityListIterator implements AutoCloseable, ListIterator<GenericVa
      */
     public GenericValue next() {
         try {
-            return resultSet.next() ? currentGenericValue() : null;
+            if (resultSet.next()) {
+                sqlp.countFetchedRow(); // SCIPIO: SQL statistics
+                return currentGenericValue();
+            }
+            return null;
         } catch (SQLException e) {
             tryCloseWithWarning("Warning: auto-closed EntityListIterator because of exception: " + e.toString());
             throw new GeneralRuntimeException("Error getting the next result", e);
@@ -31,6 +31,7 @@ import java.util.Set;
 import org.ofbiz.base.util.Debug;
 import org.ofbiz.base.util.UtilGenerics;
 import org.ofbiz.base.util.UtilMisc;
+import org.ofbiz.base.util.UtilProperties;
 import org.ofbiz.base.util.UtilValidate;
 import org.ofbiz.base.util.collections.PagedList;
 import org.ofbiz.entity.Delegator;
@@ -40,8 +41,10 @@ import org.ofbiz.entity.GenericPK;
 import org.ofbiz.entity.GenericValue;
 import org.ofbiz.entity.condition.EntityCondition;
 import org.ofbiz.entity.condition.EntityJoinOperator;
+import org.ofbiz.entity.condition.OrderByItem;
 import org.ofbiz.entity.model.DynamicViewEntity;
 import org.ofbiz.entity.model.ModelEntity;
+import org.ofbiz.entity.model.ModelViewEntity;
 
 /**
  * Used to setup various options for and subsequently execute entity queries.
@@ -67,12 +70,16 @@ public class EntityQuery {
     private Integer fetchSize = null;
     private Integer maxRows = null;
     private Boolean distinct = null;
+    private boolean forUpdate = false; // SCIPIO
+    private boolean skipLocked = false; // SCIPIO
     private EntityCondition havingEntityCondition = null;
     private boolean filterByDate = false;
     private Timestamp filterByDateMoment;
     private List<String> filterByFieldNames = null;
     private boolean searchPkOnly = false;
     private Map<String, Object> fieldMap = null;
+    private String seekAfterToken = null; // SCIPIO: keyset pagination
+    private Map<String, ?> seekAfterValues = null; // SCIPIO: keyset pagination
 
 
 
@@ -242,6 +249,31 @@ public class EntityQuery {
         return this;
     }
 
+    /** SCIPIO: Sets the position of the page returned by {@link #queryKeysetPage(int, KeysetPage.CountMode)}: the page after the one
+     * the continuation token was returned with ({@link KeysetPage#getNextToken()}); null or empty for the first page.
+     *
+     * @param token - The continuation token of the previous page
+     * @return this EntityQuery object, to enable chaining
+     */
+    public EntityQuery seekAfter(String token) {
+        this.seekAfterToken = token;
+        this.seekAfterValues = null;
+        return this;
+    }
+
+    /** SCIPIO: Sets the position of the page returned by {@link #queryKeysetPage(int, KeysetPage.CountMode)}: the rows after the given
+     * last seen row in the order-by; the row must contain the non-null values of the order-by and primary key fields.
+     * The page index of the returned page is then 0.
+     *
+     * @param lastSeen - The last row of the previous page, or null for the first page
+     * @return this EntityQuery object, to enable chaining
+     */
+    public EntityQuery seekAfter(Map<String, ?> lastSeen) {
+        this.seekAfterValues = lastSeen;
+        this.seekAfterToken = null;
+        return this;
+    }
+
     /** Indicate that the ResultSet object's cursor may move only forward (this is the default behavior)
      *
      * @return this EntityQuery object, to enable chaining
@@ -311,6 +343,31 @@ public class EntityQuery {
         return this;
     }
 
+    /** SCIPIO: Specifies whether the selected rows are locked until the end of the transaction (SELECT ... FOR UPDATE);
+     * the cache is not used for such queries, which must run in a transaction. If the datasource declares
+     * <code>use-for-update="false"</code>, the rows are selected without locking.
+     *
+     * @param forUpdate - boolean indicating whether the selected rows should be locked
+     * @return this EntityQuery object, to enable chaining
+     */
+    public EntityQuery forUpdate(boolean forUpdate) {
+        this.forUpdate = forUpdate;
+        return this;
+    }
+
+    /** SCIPIO: Like {@link #forUpdate(boolean)}, but the rows locked by other transactions are skipped instead of waited for
+     * (SELECT ... FOR UPDATE SKIP LOCKED), if the datasource declares <code>use-skip-locked="true"</code>;
+     * otherwise this is a plain {@link #forUpdate(boolean)}.
+     *
+     * @param skipLocked - boolean indicating whether the selected rows should be locked, skipping the rows already locked
+     * @return this EntityQuery object, to enable chaining
+     */
+    public EntityQuery skipLocked(boolean skipLocked) {
+        this.forUpdate = skipLocked;
+        this.skipLocked = skipLocked;
+        return this;
+    }
+
     /** Specifies whether results should be read from the cache (or written to the cache if the results have not yet been cached)
      *
      * @return this EntityQuery object, to enable chaining
@@ -663,6 +720,7 @@ public class EntityQuery {
             findOptions = efo;
         }
         List<GenericValue> result = null;
+        boolean useCache = this.useCache && !forUpdate; // SCIPIO: locking reads go to the database
         if (dynamicViewEntity == null) {
             result = delegator.findList(entityName, makeWhereCondition(useCache), fieldsToSelect, orderBy, findOptions, useCache);
         } else {
@@ -694,11 +752,15 @@ public class EntityQuery {
         if (distinct != null) {
             findOptions.setDistinct(distinct);
         }
+        if (forUpdate) {
+            findOptions.setForUpdate(true);
+            findOptions.setSkipLocked(skipLocked);
+        }
         return findOptions;
     }
 
     private boolean hasEntityFindOptions() { // SCIPIO
-        return (resultSetType != EntityFindOptions.TYPE_FORWARD_ONLY) || (fetchSize != null) || (maxRows != null) || (distinct != null);
+        return (resultSetType != EntityFindOptions.TYPE_FORWARD_ONLY) || (fetchSize != null) || (maxRows != null) || (distinct != null) || forUpdate;
     }
 
     private EntityCondition makeWhereCondition(boolean usingCache) {
@@ -883,6 +945,124 @@ public class EntityQuery {
         }
     }
 
+    /**
+     * SCIPIO: Query a keyset (seek) paginated page: the first viewSize rows after the position set by
+     * {@link #seekAfter(String)} or {@link #seekAfter(Map)}, or the first page.
+     * <p>
+     * The order-by must be on plain fields, non-null for all rows; the primary key fields are added to it
+     * so that the order is total. The cache and maxRows settings are ignored.
+     * @param viewSize
+     * @param countMode how the total row count is determined
+     * @return KeysetPage with the rows of the page and the continuation token of the next page
+     * @throws GenericEntityException
+     * @see KeysetPage
+     */
+    public KeysetPage<GenericValue> queryKeysetPage(int viewSize, KeysetPage.CountMode countMode) throws GenericEntityException {
+        if (viewSize < 1) {
+            throw new IllegalArgumentException("Keyset pagination view size must be positive: " + viewSize);
+        }
+        ModelEntity modelEntity = (dynamicViewEntity != null) ? dynamicViewEntity.makeModelViewEntity(delegator) : delegator.getModelEntity(entityName);
+        List<OrderByItem> keysetOrderBy = KeysetPage.makeOrderBy(modelEntity, orderBy);
+        List<String> keysetOrderByStrings = KeysetPage.makeOrderByStrings(keysetOrderBy);
+
+        int viewIndex = 0;
+        List<Object> lastValues = null;
+        if (seekAfterValues != null) {
+            lastValues = KeysetPage.getSeekValues(keysetOrderBy, seekAfterValues);
+        } else if (seekAfterToken != null) {
+            KeysetPage.Token token = KeysetPage.readToken(seekAfterToken, delegator, modelEntity, keysetOrderBy);
+            if (token != null) {
+                viewIndex = token.viewIndex;
+                lastValues = token.lastValues;
+            }
+        }
+
+        EntityCondition whereCondition = makeWhereCondition(false);
+        EntityCondition pageCondition = whereCondition;
+        if (lastValues != null) {
+            EntityCondition seekCondition = KeysetPage.makeSeekCondition(keysetOrderBy, lastValues);
+            pageCondition = (whereCondition != null) ? EntityCondition.makeCondition(whereCondition, seekCondition) : seekCondition;
+        }
+        Set<String> pageFieldsToSelect = fieldsToSelect;
+        if (pageFieldsToSelect != null) {
+            pageFieldsToSelect = new LinkedHashSet<>(fieldsToSelect);
+            for (OrderByItem item : keysetOrderBy) {
+                pageFieldsToSelect.add(KeysetPage.getFieldName(item));
+            }
+        }
+        EntityFindOptions findOptions = makeEntityFindOptions();
+        findOptions.setMaxRows(viewSize + 1); // one more row tells if there is a next page
+        List<GenericValue> data;
+        try (EntityListIterator it = (dynamicViewEntity == null)
+                ? delegator.find(entityName, pageCondition, havingEntityCondition, pageFieldsToSelect, keysetOrderByStrings, findOptions)
+                : delegator.findListIteratorByCondition(dynamicViewEntity, pageCondition, havingEntityCondition, pageFieldsToSelect, keysetOrderByStrings, findOptions)) {
+            data = it.getCompleteList();
+        }
+        String nextToken = null;
+        if (data.size() > viewSize) {
+            data = new ArrayList<>(data.subList(0, viewSize));
+            GenericValue lastRow = data.get(viewSize - 1);
+            nextToken = KeysetPage.makeToken(viewIndex + 1, modelEntity.getEntityName(), keysetOrderBy, KeysetPage.getSeekValues(keysetOrderBy, lastRow));
+        }
+
+        int startIndex = viewIndex * viewSize;
+        int listSize = startIndex + data.size() + ((nextToken != null) ? 1 : 0);
+        boolean listSizeKnown = (nextToken == null);
+        boolean listSizeEstimated = false;
+        if (countMode == KeysetPage.CountMode.EXACT && nextToken != null) {
+            listSize = (int) findKeysetCount(whereCondition, pageFieldsToSelect, -1);
+            listSizeKnown = true;
+        } else if (countMode == KeysetPage.CountMode.ESTIMATED && nextToken != null) {
+            int maxCount = UtilProperties.getPropertyAsInteger("entity", "keysetPagination.estimatedCount.max", 1000);
+            if (maxCount <= listSize) {
+                listSizeEstimated = true;
+            } else {
+                listSize = (int) findKeysetCount(whereCondition, pageFieldsToSelect, maxCount);
+                listSizeEstimated = (listSize >= maxCount);
+            }
+            listSizeKnown = true;
+        }
+        return new KeysetPage<>(viewIndex, viewSize, data, listSize, listSizeKnown, listSizeEstimated, nextToken);
+    }
+
+    /**
+     * SCIPIO: Counts the rows of the query, up to maxCount if positive.
+     * <p>
+     * The rows are those of the page query: same fields selected (pageFieldsToSelect) and distinct setting, since with
+     * distinct, or with the group-by of a view entity, they determine the rows. Only a plain entity query without distinct,
+     * whose rows do not depend on the selected fields, is counted with <code>COUNT(*)</code> or by reading its first
+     * primary key field.
+     */
+    private long findKeysetCount(EntityCondition whereCondition, Set<String> pageFieldsToSelect, int maxCount) throws GenericEntityException {
+        ModelEntity modelEntity = (dynamicViewEntity != null) ? dynamicViewEntity.makeModelViewEntity(delegator) : delegator.getModelEntity(entityName);
+        EntityFindOptions findOptions = makeEntityFindOptions();
+        boolean rowsIndependentOfFields = (dynamicViewEntity == null) && !(modelEntity instanceof ModelViewEntity)
+                && (!findOptions.getDistinct() || pageFieldsToSelect == null);
+        if (maxCount <= 0 && rowsIndependentOfFields) {
+            return delegator.findCountByCondition(entityName, whereCondition, havingEntityCondition, findOptions);
+        }
+        Set<String> countFields = pageFieldsToSelect;
+        if (rowsIndependentOfFields && !findOptions.getDistinct()) {
+            countFields = UtilMisc.toSet(modelEntity.getPkFieldNames().isEmpty()
+                    ? modelEntity.getAllFieldNames().get(0) : modelEntity.getPkFieldNames().get(0));
+        }
+        if (maxCount > 0) {
+            findOptions.setMaxRows(maxCount);
+        }
+        try (EntityListIterator it = (dynamicViewEntity == null)
+                ? delegator.find(entityName, whereCondition, havingEntityCondition, countFields, null, findOptions)
+                : delegator.findListIteratorByCondition(dynamicViewEntity, whereCondition, havingEntityCondition, countFields, null, findOptions)) {
+            if (maxCount <= 0) {
+                return it.getResultsSizeAfterPartialList();
+            }
+            long count = 0;
+            while (it.next() != null) {
+                count++;
+            }
+            return count;
+        }
+    }
+
     /** SCIPIO: Executes the EntityQuery and returns a list of results; returns null if GenericEntityException.
      * NOTE: Unchecked exceptions representing programming errors may still be thrown.
      *
@@ -1018,6 +1198,20 @@ public class EntityQuery {
         }
     }
 
+    /**
+     * SCIPIO: Query a keyset (seek) paginated page; returns null if GenericEntityException.
+     * NOTE: Unchecked exceptions representing programming errors may still be thrown.
+     * @see #queryKeysetPage(int, KeysetPage.CountMode)
+     */
+    public KeysetPage<GenericValue> queryKeysetPageSafe(int viewSize, KeysetPage.CountMode countMode) {
+        try {
+            return queryKeysetPage(viewSize, countMode);
+        } catch (GenericEntityException e) {
+            Debug.logError(e, "Error in queryKeysetPage(): " + e.getMessage() + toLogAppend(), module);
+            return null;
+        }
+    }
+
     @Override
     public String toString() { // SCIPIO: Debugging help
         return "{entityName='" + entityName + '\'' +
@@ -412,7 +412,10 @@ public class EntitySaxReader extends DefaultHandler {
         return numberRead;
     }
 
-    private long parse(InputStream is, String docDescription) throws SAXException, java.io.IOException {
+    /**
+     * Parses the entity XML of the stream, which is not closed (SCIPIO: now public, e.g. for compressed files).
+     */
+    public long parse(InputStream is, String docDescription) throws SAXException, java.io.IOException {
         SAXParser parser;
         try {
             parser = SAXParserFactory.newInstance().newSAXParser();
@@ -50,6 +50,7 @@ import org.ofbiz.entity.GenericEntityException;
 import org.ofbiz.entity.GenericPK;
 import org.ofbiz.entity.GenericValue;
 import org.ofbiz.entity.condition.EntityCondition;
+import org.ofbiz.entity.condition.EntityConditionPredicate;
 import org.ofbiz.entity.condition.EntityDateFilterCondition;
 import org.ofbiz.entity.condition.OrderByList;
 import org.ofbiz.entity.model.ModelEntity;
@@ -383,7 +384,7 @@ public final class EntityUtil {
             boolean include = true;
 
             for (EntityCondition condition: exprs) {
-                include = condition.entityMatches(value);
+                include = EntityConditionPredicate.entityMatches(condition, value); // SCIPIO: compiled condition
                 if (!include) break;
             }
             if (include) {
@@ -411,7 +412,7 @@ public final class EntityUtil {
             boolean include = false;
             for (Object condition: exprs) {
                 if (condition instanceof EntityCondition) {
-                    include = ((EntityCondition) condition).entityMatches(value);
+                    include = EntityConditionPredicate.entityMatches((EntityCondition) condition, value); // SCIPIO: compiled condition
                 } else if (condition instanceof Map) {
                     include = value.matchesFields((Map<String, Object>) condition);
                 }
@@ -508,7 +509,7 @@ public final class EntityUtil {
 
         List<T> result = new ArrayList<>(values.size()); // SCIPIO: switched to ArrayList
         for (T value: values) {
-            if (condition.entityMatches(value)) {
+            if (EntityConditionPredicate.entityMatches(condition, value)) { // SCIPIO: compiled condition
                 result.add(value);
             }
         }
@@ -520,7 +521,7 @@ public final class EntityUtil {
 
         List<T> result = new ArrayList<>(values.size()); // SCIPIO: switched to ArrayList
         for (T value: values) {
-            if (!condition.entityMatches(value)) {
+            if (!EntityConditionPredicate.entityMatches(condition, value)) { // SCIPIO: compiled condition
                 result.add(value);
             }
         }
@@ -0,0 +1,304 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.entity.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilProperties;
+import org.ofbiz.base.util.UtilValidate;
+import org.ofbiz.base.util.collections.PagedList;
+import org.ofbiz.entity.Delegator;
+import org.ofbiz.entity.GenericEntity;
+import org.ofbiz.entity.GenericEntityException;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.condition.EntityComparisonOperator;
+import org.ofbiz.entity.condition.EntityCondition;
+import org.ofbiz.entity.condition.EntityFieldValue;
+import org.ofbiz.entity.condition.EntityOperator;
+import org.ofbiz.entity.condition.OrderByItem;
+import org.ofbiz.entity.model.ModelEntity;
+
+/**
+ * SCIPIO: Page of a keyset (seek) paginated query, returned by {@link EntityQuery#queryKeysetPage(int, CountMode)}.
+ * <p>
+ * Instead of skipping the rows of the previous pages (offset), the query of the next page selects the rows that come
+ * after the last row of the current page in the order-by, which the database resolves from an index on the order-by
+ * fields whatever the page number. The position is carried by an opaque continuation token ({@link #getNextToken()})
+ * to pass back to {@link EntityQuery#seekAfter(String)}; it holds the page index and the order-by values of the last
+ * row, as readable strings, with an HMAC of them and of the entity and order-by, keyed by
+ * <code>entity.properties#keysetPagination.token.secret</code>, so that an altered token or one made for another query
+ * is rejected (the first page is returned). The values only set a position in the query, whose conditions still apply.
+ * <p>
+ * Pages can only be followed forward from a token: there is no token for the previous or the last page.
+ * The list size is the exact count, a capped count (estimated) or unknown depending on the {@link CountMode}; when
+ * unknown, {@link #getListSize()} returns the number of rows up to this page, plus one if there is a next page.
+ */
+public class KeysetPage<E> extends PagedList<E> {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    private static final String TOKEN_MAC_ALGORITHM = "HmacSHA256";
+    private static final int TOKEN_MAC_LENGTH = 16;
+    private static final SecretKeySpec TOKEN_KEY = makeTokenKey();
+
+    /**
+     * How the total number of rows is determined.
+     */
+    public enum CountMode {
+        /** No count query; the list size is only known when on the last page. */
+        NONE,
+        /** Exact count (<code>SELECT COUNT(*)</code> of the whole query). */
+        EXACT,
+        /** Count of at most <code>entity.properties#keysetPagination.estimatedCount.max</code> rows. */
+        ESTIMATED
+    }
+
+    private final String nextToken;
+    private final boolean listSizeKnown;
+    private final boolean listSizeEstimated;
+
+    public KeysetPage(int viewIndex, int viewSize, List<E> data, int listSize, boolean listSizeKnown, boolean listSizeEstimated, String nextToken) {
+        super(viewIndex * viewSize, (viewIndex * viewSize) + data.size() - 1, listSize, viewIndex, viewSize, data);
+        this.nextToken = nextToken;
+        this.listSizeKnown = listSizeKnown;
+        this.listSizeEstimated = listSizeEstimated;
+    }
+
+    /**
+     * Returns the continuation token of the next page, or null if this is the last page.
+     */
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    public boolean hasMore() {
+        return nextToken != null;
+    }
+
+    /**
+     * Returns true if {@link #getListSize()} is a count, exact or estimated.
+     */
+    public boolean isListSizeKnown() {
+        return listSizeKnown;
+    }
+
+    /**
+     * Returns true if {@link #getListSize()} is the count cap, the query having at least that many rows.
+     */
+    public boolean isListSizeEstimated() {
+        return listSizeEstimated;
+    }
+
+    /**
+     * Returns the order-by items of the keyset query: the plain field order-by items of the query, followed by the
+     * primary key fields it does not sort on, in ascending order, so that the order of the rows is total.
+     */
+    static List<OrderByItem> makeOrderBy(ModelEntity modelEntity, List<String> orderBy) {
+        List<OrderByItem> items = new ArrayList<>();
+        List<String> fieldNames = new ArrayList<>();
+        if (orderBy != null) {
+            for (String orderByString : orderBy) {
+                OrderByItem item = OrderByItem.parse(orderByString);
+                if (!(item.getValue() instanceof EntityFieldValue)) {
+                    throw new IllegalArgumentException("Keyset pagination only supports order-by on plain fields, not [" + orderByString + "]");
+                }
+                items.add(item);
+                fieldNames.add(((EntityFieldValue) item.getValue()).getFieldName());
+            }
+        }
+        for (String pkFieldName : modelEntity.getPkFieldNames()) {
+            if (!fieldNames.contains(pkFieldName)) {
+                items.add(new OrderByItem(EntityFieldValue.makeFieldValue(pkFieldName), false));
+                fieldNames.add(pkFieldName);
+            }
+        }
+        if (items.isEmpty()) {
+            throw new IllegalArgumentException("Keyset pagination requires an order-by or a primary key on entity [" + modelEntity.getEntityName() + "]");
+        }
+        return items;
+    }
+
+    static String getFieldName(OrderByItem item) {
+        return ((EntityFieldValue) item.getValue()).getFieldName();
+    }
+
+    static List<String> makeOrderByStrings(List<OrderByItem> orderBy) {
+        List<String> orderByStrings = new ArrayList<>(orderBy.size());
+        for (OrderByItem item : orderBy) {
+            orderByStrings.add(getFieldName(item) + (item.getDescending() ? " DESC" : ""));
+        }
+        return orderByStrings;
+    }
+
+    /**
+     * Returns the seek condition selecting the rows after the given order-by values:
+     * <code>(f1 &gt; v1) OR (f1 = v1 AND f2 &gt; v2) OR ...</code>, with &lt; for the descending fields.
+     */
+    static EntityCondition makeSeekCondition(List<OrderByItem> orderBy, List<Object> lastValues) {
+        List<EntityCondition> orConds = new ArrayList<>(orderBy.size());
+        for (int i = 0; i < orderBy.size(); i++) {
+            List<EntityCondition> andConds = new ArrayList<>(i + 1);
+            for (int j = 0; j < i; j++) {
+                andConds.add(EntityCondition.makeCondition(getFieldName(orderBy.get(j)), EntityOperator.EQUALS, lastValues.get(j)));
+            }
+            OrderByItem item = orderBy.get(i);
+            EntityComparisonOperator<?, ?> operator = item.getDescending() ? EntityOperator.LESS_THAN : EntityOperator.GREATER_THAN;
+            andConds.add(EntityCondition.makeCondition(getFieldName(item), operator, lastValues.get(i)));
+            orConds.add((andConds.size() == 1) ? andConds.get(0) : EntityCondition.makeCondition(andConds, EntityOperator.AND));
+        }
+        return (orConds.size() == 1) ? orConds.get(0) : EntityCondition.makeCondition(orConds, EntityOperator.OR);
+    }
+
+    /**
+     * Returns the order-by values of the given row (last row seen), failing on null values, which cannot be sought.
+     */
+    static List<Object> getSeekValues(List<OrderByItem> orderBy, Map<String, ?> row) throws GenericEntityException {
+        List<Object> values = new ArrayList<>(orderBy.size());
+        for (OrderByItem item : orderBy) {
+            Object value = row.get(getFieldName(item));
+            if (value == null || value == GenericEntity.NULL_FIELD) {
+                throw new GenericEntityException("Keyset pagination requires non-null order-by values; field [" + getFieldName(item) + "] is null");
+            }
+            values.add(value);
+        }
+        return values;
+    }
+
+    /**
+     * Makes the continuation token of the page following the one ending with the given values.
+     */
+    static String makeToken(int nextViewIndex, String entityName, List<OrderByItem> orderBy, List<Object> lastValues) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(nextViewIndex);
+            out.writeShort(lastValues.size());
+            for (Object value : lastValues) {
+                out.writeUTF(value.toString());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // in-memory stream
+        }
+        byte[] payload = bytes.toByteArray();
+        byte[] mac = makeMac(payload, entityName, orderBy);
+        byte[] token = Arrays.copyOf(payload, payload.length + mac.length);
+        System.arraycopy(mac, 0, token, payload.length, mac.length);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+    }
+
+    /**
+     * Decodes a continuation token into the page index and the typed order-by values; returns null, so that the first
+     * page is returned, if the token is not valid or was made for another entity or order-by.
+     */
+    static Token readToken(String token, Delegator delegator, ModelEntity modelEntity, List<OrderByItem> orderBy) {
+        if (UtilValidate.isEmpty(token)) {
+            return null;
+        }
+        byte[] tokenBytes;
+        try {
+            tokenBytes = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException e) {
+            Debug.logWarning("Invalid keyset pagination token for entity [" + modelEntity.getEntityName() + "]; returning first page: " + e.toString(), module);
+            return null;
+        }
+        int payloadLength = tokenBytes.length - TOKEN_MAC_LENGTH;
+        if (payloadLength < 0 || !MessageDigest.isEqual(makeMac(Arrays.copyOf(tokenBytes, payloadLength), modelEntity.getEntityName(), orderBy),
+                Arrays.copyOfRange(tokenBytes, payloadLength, tokenBytes.length))) {
+            Debug.logWarning("Keyset pagination token was altered or does not match the query on entity [" + modelEntity.getEntityName()
+                    + "] ordered by " + makeOrderByStrings(orderBy) + "; returning first page", module);
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(tokenBytes, 0, payloadLength))) {
+            int viewIndex = in.readInt();
+            if (in.readShort() != orderBy.size() || viewIndex < 0) {
+                Debug.logWarning("Keyset pagination token does not match the query on entity [" + modelEntity.getEntityName()
+                        + "] ordered by " + makeOrderByStrings(orderBy) + "; returning first page", module);
+                return null;
+            }
+            GenericValue value = GenericValue.create(modelEntity);
+            value.setDelegator(delegator);
+            List<Object> lastValues = new ArrayList<>(orderBy.size());
+            for (OrderByItem item : orderBy) {
+                value.setString(getFieldName(item), in.readUTF());
+                lastValues.add(value.get(getFieldName(item)));
+            }
+            return new Token(viewIndex, lastValues);
+        } catch (IOException | IllegalArgumentException e) {
+            Debug.logWarning("Invalid keyset pagination token for entity [" + modelEntity.getEntityName() + "]; returning first page: " + e.toString(), module);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the truncated HMAC of the token payload, the entity and the order-by.
+     */
+    private static byte[] makeMac(byte[] payload, String entityName, List<OrderByItem> orderBy) {
+        try {
+            Mac mac = Mac.getInstance(TOKEN_MAC_ALGORITHM);
+            mac.init(TOKEN_KEY);
+            mac.update(payload);
+            mac.update((entityName + makeOrderByStrings(orderBy)).getBytes(StandardCharsets.UTF_8));
+            return Arrays.copyOf(mac.doFinal(), TOKEN_MAC_LENGTH);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to sign keyset pagination token", e);
+        }
+    }
+
+    /**
+     * Returns the token key: the configured secret, which must be the same on all the servers of a cluster, or a random
+     * key, valid until the server restarts.
+     */
+    private static SecretKeySpec makeTokenKey() {
+        String secret = UtilProperties.getPropertyValue("entity", "keysetPagination.token.secret");
+        byte[] key;
+        if (UtilValidate.isNotEmpty(secret)) {
+            key = secret.getBytes(StandardCharsets.UTF_8);
+        } else {
+            key = new byte[32];
+            new SecureRandom().nextBytes(key);
+        }
+        return new SecretKeySpec(key, TOKEN_MAC_ALGORITHM);
+    }
+
+    static final class Token {
+        final int viewIndex;
+        final List<Object> lastValues;
+
+        Token(int viewIndex, List<Object> lastValues) {
+            this.viewIndex = viewIndex;
+            this.lastValues = lastValues;
+        }
+    }
+}
@@ -0,0 +1,527 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.entityext.synchronization;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.entity.Delegator;
+import org.ofbiz.entity.GenericEntity;
+import org.ofbiz.entity.GenericEntityCodec;
+import org.ofbiz.entity.GenericEntityException;
+import org.ofbiz.entity.GenericPK;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.condition.EntityCondition;
+import org.ofbiz.entity.condition.EntityOperator;
+import org.ofbiz.entity.model.ModelEntity;
+import org.ofbiz.entity.model.ModelRelation;
+import org.ofbiz.entity.util.EntityQuery;
+import org.ofbiz.entityext.synchronization.EntitySyncContext.SyncValueSink;
+import org.ofbiz.service.GenericServiceException;
+import org.ofbiz.service.ServiceUtil;
+
+/**
+ * SCIPIO: Chunk of the changes of an entity sync split, for the chunked transport of EntitySync
+ * (<code>runEntitySync</code> with <code>chunkServiceName</code>, <code>runPullEntitySync</code> with <code>chunkSize</code>).
+ * <p>
+ * A chunk is a GZIP-compressed binary stream holding the time range of the split, the sequence number of the chunk in
+ * the split (from 1) and up to a given number of rows, each an operation (create, store, remove) and a value encoded
+ * with {@link GenericEntityCodec}; both instances must have the same definitions of the synced entities.
+ * <p>
+ * Chunks are stored with {@link #store(Delegator, String, boolean)}: the consecutive values of the same entity are looked up by
+ * batches of primary keys instead of one query per value, then inserted or updated as by <code>storeEntitySyncData</code>. The
+ * last chunk stored for the split is recorded in EntitySyncChunkAck in the same transaction, with its digest.
+ * <p>
+ * The digest of a chunk is a SHA-256 over the digest of the previous chunk of the split and the rows of the chunk, so
+ * that it identifies the content of the split up to the chunk. The split is read again when a run is resumed and may
+ * not be chunked the same way (rows changed or added since), so the target only accepts the chunk following the one it
+ * acknowledged when the previous digest of the chunk matches, and the sender only skips the chunks the target holds
+ * when the digest acknowledged by the target matches its own; otherwise the split is sent again from its first chunk
+ * (see {@link #sendChunks}).
+ */
+public final class EntitySyncChunk {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    public static final byte OP_CREATE = 1;
+    public static final byte OP_STORE = 2;
+    public static final byte OP_REMOVE = 3;
+    private static final byte OP_END = 0;
+
+    private static final int MAGIC = 0x45534332; // "ESC2"
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    /** Maximum number of primary keys looked up by query when storing. */
+    private static final int STORE_BATCH_SIZE = 200;
+
+    private final long splitStartTime;
+    private final long splitEndTime;
+    private final long chunkSeq;
+    private final String prevDigest;
+    private final String digest;
+    private final List<GenericValue> valuesToCreate = new ArrayList<>();
+    private final List<GenericValue> valuesToStore = new ArrayList<>();
+    private final List<GenericEntity> keysToRemove = new ArrayList<>();
+
+    private EntitySyncChunk(long splitStartTime, long splitEndTime, long chunkSeq, String prevDigest, String digest) {
+        this.splitStartTime = splitStartTime;
+        this.splitEndTime = splitEndTime;
+        this.chunkSeq = chunkSeq;
+        this.prevDigest = prevDigest;
+        this.digest = digest;
+    }
+
+    public long getChunkSeq() {
+        return chunkSeq;
+    }
+
+    /**
+     * Returns the digest of the split up to and including this chunk (Base64).
+     */
+    public String getDigest() {
+        return digest;
+    }
+
+    public int getRowCount() {
+        return valuesToCreate.size() + valuesToStore.size() + keysToRemove.size();
+    }
+
+    /**
+     * Decodes a chunk, making its values for the given delegator.
+     */
+    public static EntitySyncChunk read(byte[] chunk, Delegator delegator) throws IOException {
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(chunk)))) {
+            if (in.readInt() != MAGIC) {
+                throw new StreamCorruptedException("Not an entity sync chunk");
+            }
+            EntitySyncChunk syncChunk = new EntitySyncChunk(in.readLong(), in.readLong(), in.readLong(), in.readUTF(), in.readUTF());
+            byte op;
+            while ((op = in.readByte()) != OP_END) {
+                GenericEntity value = GenericEntityCodec.read(in, delegator);
+                switch (op) {
+                case OP_CREATE:
+                    syncChunk.valuesToCreate.add((GenericValue) value);
+                    break;
+                case OP_STORE:
+                    syncChunk.valuesToStore.add((GenericValue) value);
+                    break;
+                case OP_REMOVE:
+                    syncChunk.keysToRemove.add(value);
+                    break;
+                default:
+                    throw new StreamCorruptedException("Unknown entity sync chunk operation " + op);
+                }
+            }
+            return syncChunk;
+        }
+    }
+
+    /**
+     * Returns the digest of a chunk (see {@link #getDigest()}), decoding only its header.
+     */
+    public static String readDigest(byte[] chunk) throws IOException {
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(chunk)))) {
+            if (in.readInt() != MAGIC) {
+                throw new StreamCorruptedException("Not an entity sync chunk");
+            }
+            in.readLong();
+            in.readLong();
+            in.readLong();
+            in.readUTF();
+            return in.readUTF();
+        }
+    }
+
+    /**
+     * Stores the chunk if it follows the last chunk the delegator stored for the split, and returns the result of
+     * <code>storeEntitySyncChunk</code>: the counts of <code>storeEntitySyncData</code> and the last stored chunk
+     * sequence number and digest (<code>lastChunkSeq</code>, <code>lastChunkDigest</code>), which the sender compares
+     * with its own chunks. Must run in a transaction.
+     * <p>
+     * The first chunk of a split is stored unless the delegator holds chunks of the same split, and always when
+     * restartSplit is set; another chunk is stored only if its previous digest is the acknowledged digest. A chunk is
+     * never stored twice: the last stored chunk is acknowledged again when its digest matches, and any other chunk is
+     * acknowledged with the last stored chunk without being stored.
+     */
+    public Map<String, Object> store(Delegator delegator, String entitySyncId, boolean restartSplit) throws GenericEntityException {
+        long[] createCounts = new long[3];
+        long[] storeCounts = new long[3];
+        long toRemoveDeleted = 0;
+        long toRemoveAlreadyDeleted = 0;
+
+        GenericValue chunkAck = EntityQuery.use(delegator).from("EntitySyncChunkAck").where("entitySyncId", entitySyncId).queryOne();
+        boolean sameSplit = chunkAck != null && splitStartTime == chunkAck.getLong("splitStartTime") && splitEndTime == chunkAck.getLong("splitEndTime");
+        long lastChunkSeq = sameSplit ? chunkAck.getLong("lastChunkSeq") : 0;
+        String lastChunkDigest = sameSplit ? chunkAck.getString("lastChunkDigest") : null;
+
+        boolean follows;
+        if (chunkSeq == 1) {
+            follows = restartSplit || !sameSplit;
+        } else {
+            follows = chunkSeq == lastChunkSeq + 1 && prevDigest.equals(lastChunkDigest);
+        }
+        if (!follows) {
+            if (chunkSeq == lastChunkSeq && digest.equals(lastChunkDigest)) {
+                if (Debug.infoOn()) Debug.logInfo("Entity sync chunk [" + chunkSeq + "] for entitySyncId [" + entitySyncId + "] already stored", module);
+            } else {
+                Debug.logWarning("Entity sync chunk [" + chunkSeq + "] for entitySyncId [" + entitySyncId + "] does not follow the last stored chunk ["
+                        + lastChunkSeq + "] of the split or does not match its content; not storing it", module);
+            }
+            return makeResult(createCounts, storeCounts, toRemoveDeleted, toRemoveAlreadyDeleted, lastChunkSeq, lastChunkDigest);
+        }
+
+        storeValues(delegator, valuesToCreate, createCounts);
+        storeValues(delegator, valuesToStore, storeCounts);
+
+        for (GenericEntity pkToRemove : keysToRemove) {
+            // always do a removeByAnd, if it was a removeByAnd great, if it was a removeByPrimaryKey, this will also work and save us a query
+            pkToRemove.setIsFromEntitySync(true);
+
+            // remove the stamp fields set by EntitySyncContext.readKeysToRemove
+            pkToRemove.remove(ModelEntity.STAMP_TX_FIELD);
+            pkToRemove.remove(ModelEntity.STAMP_FIELD);
+            pkToRemove.remove(ModelEntity.CREATE_STAMP_TX_FIELD);
+            pkToRemove.remove(ModelEntity.CREATE_STAMP_FIELD);
+
+            if (delegator.removeByAnd(pkToRemove.getEntityName(), pkToRemove) == 0) {
+                toRemoveAlreadyDeleted++;
+            } else {
+                toRemoveDeleted++;
+            }
+        }
+
+        if (chunkAck == null) {
+            chunkAck = delegator.makeValue("EntitySyncChunkAck", "entitySyncId", entitySyncId);
+        }
+        chunkAck.set("splitStartTime", splitStartTime);
+        chunkAck.set("splitEndTime", splitEndTime);
+        chunkAck.set("lastChunkSeq", chunkSeq);
+        chunkAck.set("lastChunkDigest", digest);
+        delegator.createOrStore(chunkAck);
+
+        return makeResult(createCounts, storeCounts, toRemoveDeleted, toRemoveAlreadyDeleted, chunkSeq, digest);
+    }
+
+    /**
+     * Sends a chunk to the target, which stores it as by {@link #store}.
+     */
+    @FunctionalInterface
+    public interface Sender {
+        Map<String, Object> send(byte[] chunk, boolean restartSplit) throws GenericServiceException;
+    }
+
+    /**
+     * Sends the chunks of a split (from {@link Writer#finish()}) in order, starting with the first. When the target
+     * acknowledges a chunk whose digest matches the digest of the chunk with the same sequence number, the chunks up
+     * to it are the same on both sides and the next chunk is sent (so the chunks stored in an interrupted run are
+     * skipped); otherwise the target holds chunks of a different content of the split and the split is sent again
+     * from its first chunk, once. Returns null, or the first error result of the target or an error if the chunks
+     * still do not match.
+     */
+    public static Map<String, Object> sendChunks(List<byte[]> chunks, Sender sender) throws GenericServiceException, IOException {
+        List<String> digests = new ArrayList<>(chunks.size());
+        for (byte[] chunk : chunks) {
+            digests.add(readDigest(chunk));
+        }
+
+        int chunkSeq = 1;
+        boolean restartSplit = false;
+        boolean restarted = false;
+        while (chunkSeq <= chunks.size()) {
+            Map<String, Object> result = sender.send(chunks.get(chunkSeq - 1), restartSplit);
+            if (ServiceUtil.isError(result)) {
+                return result;
+            }
+            restartSplit = false;
+
+            Long ackedChunkSeq = (Long) result.get("lastChunkSeq");
+            if (ackedChunkSeq != null && ackedChunkSeq >= 1 && ackedChunkSeq <= chunks.size()
+                    && digests.get(ackedChunkSeq.intValue() - 1).equals(result.get("lastChunkDigest"))) {
+                chunkSeq = ackedChunkSeq.intValue() + 1;
+            } else if (restarted) {
+                return ServiceUtil.returnError("The target acknowledged chunk [" + ackedChunkSeq + "] of the split after it was sent again from its first chunk;"
+                        + " it does not match chunk [" + chunkSeq + "] that was sent");
+            } else {
+                Debug.logWarning("The target holds entity sync chunks up to [" + ackedChunkSeq + "] of a different content of the split; sending the split"
+                        + " again from its first chunk", module);
+                chunkSeq = 1;
+                restartSplit = true;
+                restarted = true;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates or updates the values, unless the existing value was updated after the synced one; counts are inserted,
+     * updated, not updated. The existing values of consecutive values of the same entity are read by batches, except
+     * for entities referencing themselves, for which the foreign key check may create the values of the next rows.
+     */
+    private static void storeValues(Delegator delegator, List<GenericValue> values, long[] counts) throws GenericEntityException {
+        int start = 0;
+        while (start < values.size()) {
+            ModelEntity modelEntity = values.get(start).getModelEntity();
+            int batchSize = hasSelfRelation(modelEntity) ? 1 : STORE_BATCH_SIZE;
+            int end = start + 1;
+            while (end < values.size() && end - start < batchSize && values.get(end).getModelEntity() == modelEntity) {
+                end++;
+            }
+            List<GenericValue> batch = values.subList(start, end);
+            Map<GenericPK, GenericValue> existingValues = findExistingValues(delegator, modelEntity, batch);
+
+            for (GenericValue value : batch) {
+                // maintain the original timestamps when doing storage of synced data, by default with will update the timestamps to now
+                value.setIsFromEntitySync(true);
+
+                // check to make sure all foreign keys are created; if not create dummy values as place holders
+                value.checkFks(true);
+
+                GenericPK primaryKey = value.getPrimaryKey();
+                GenericValue existingValue = existingValues.get(primaryKey);
+                if (existingValue == null) {
+                    delegator.create(value);
+                    existingValues.put(primaryKey, value);
+                    counts[0]++;
+                } else if (existingValue.get(ModelEntity.STAMP_FIELD) != null
+                        && existingValue.getTimestamp(ModelEntity.STAMP_FIELD).after(value.getTimestamp(ModelEntity.STAMP_FIELD))) {
+                    // the existing value has a stamp field that is AFTER the stamp on the value, don't update it
+                    counts[2]++;
+                } else {
+                    delegator.store(value);
+                    existingValues.put(primaryKey, value);
+                    counts[1]++;
+                }
+            }
+            start = end;
+        }
+    }
+
+    private static boolean hasSelfRelation(ModelEntity modelEntity) {
+        for (ModelRelation relation : modelEntity.getRelationsOneList()) {
+            if (modelEntity.getEntityName().equals(relation.getRelEntityName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Map<GenericPK, GenericValue> findExistingValues(Delegator delegator, ModelEntity modelEntity, List<GenericValue> values) throws GenericEntityException {
+        EntityCondition condition;
+        if (modelEntity.getPksSize() == 1) {
+            String pkFieldName = modelEntity.getFirstPkFieldName();
+            List<Object> pkValues = new ArrayList<>(values.size());
+            for (GenericValue value : values) {
+                pkValues.add(value.get(pkFieldName));
+            }
+            condition = EntityCondition.makeCondition(pkFieldName, EntityOperator.IN, pkValues);
+        } else {
+            List<EntityCondition> pkConds = new ArrayList<>(values.size());
+            for (GenericValue value : values) {
+                pkConds.add(EntityCondition.makeCondition(value.getPrimaryKey()));
+            }
+            condition = EntityCondition.makeCondition(pkConds, EntityOperator.OR);
+        }
+        Map<GenericPK, GenericValue> existingValues = new HashMap<>();
+        for (GenericValue existingValue : EntityQuery.use(delegator).from(modelEntity.getEntityName()).where(condition).queryList()) {
+            existingValues.put(existingValue.getPrimaryKey(), existingValue);
+        }
+        return existingValues;
+    }
+
+    private static Map<String, Object> makeResult(long[] createCounts, long[] storeCounts, long toRemoveDeleted, long toRemoveAlreadyDeleted,
+            long lastChunkSeq, String lastChunkDigest) {
+        Map<String, Object> result = ServiceUtil.returnSuccess();
+        result.put("toCreateInserted", createCounts[0]);
+        result.put("toCreateUpdated", createCounts[1]);
+        result.put("toCreateNotUpdated", createCounts[2]);
+        result.put("toStoreInserted", storeCounts[0]);
+        result.put("toStoreUpdated", storeCounts[1]);
+        result.put("toStoreNotUpdated", storeCounts[2]);
+        result.put("toRemoveDeleted", toRemoveDeleted);
+        result.put("toRemoveAlreadyDeleted", toRemoveAlreadyDeleted);
+        result.put("lastChunkSeq", lastChunkSeq);
+        result.put("lastChunkDigest", lastChunkDigest);
+        return result;
+    }
+
+    /**
+     * Encodes the rows of a split into chunks. The values are encoded as they are read and only their encoding is kept;
+     * the created and updated values of the entities are merged in tx stamp and record stamp order like the lists of
+     * the assemble methods of {@link EntitySyncContext}, so that the referenced values are stored first.
+     */
+    public static final class Writer {
+        private final long splitStartTime;
+        private final long splitEndTime;
+        private final int chunkSize;
+        private final List<RowSink> sinks = new ArrayList<>();
+
+        public Writer(Timestamp splitStartTime, Timestamp splitEndTime, int chunkSize) {
+            this.splitStartTime = splitStartTime.getTime();
+            this.splitEndTime = splitEndTime.getTime();
+            this.chunkSize = (chunkSize > 0) ? chunkSize : DEFAULT_CHUNK_SIZE;
+        }
+
+        /**
+         * Returns a sink adding the values it receives with the given operation; the rows of the sinks are written in
+         * the order the sinks were made.
+         */
+        public SyncValueSink sink(byte op) {
+            RowSink sink;
+            if (op == OP_CREATE) {
+                sink = new RowSink(op, ModelEntity.CREATE_STAMP_TX_FIELD, ModelEntity.CREATE_STAMP_FIELD);
+            } else if (op == OP_STORE) {
+                sink = new RowSink(op, ModelEntity.STAMP_TX_FIELD, ModelEntity.STAMP_FIELD);
+            } else {
+                // the removed keys are read in stamp order
+                sink = new RowSink(op, null, null);
+            }
+            sinks.add(sink);
+            return sink;
+        }
+
+        /**
+         * Writes the rows and returns the chunks, in sequence order.
+         */
+        public List<byte[]> finish() throws IOException {
+            List<byte[]> chunks = new ArrayList<>();
+            List<RowSink> chunkSinks = new ArrayList<>(chunkSize);
+            List<Row> chunkRows = new ArrayList<>(chunkSize);
+            String prevDigest = "";
+            for (RowSink sink : sinks) {
+                for (Row row : sink.rows) {
+                    chunkSinks.add(sink);
+                    chunkRows.add(row);
+                    if (chunkRows.size() >= chunkSize) {
+                        prevDigest = writeChunk(chunks, chunkSinks, chunkRows, prevDigest);
+                    }
+                }
+                sink.rows.clear();
+            }
+            if (!chunkRows.isEmpty()) {
+                writeChunk(chunks, chunkSinks, chunkRows, prevDigest);
+            }
+            return chunks;
+        }
+
+        private String writeChunk(List<byte[]> chunks, List<RowSink> chunkSinks, List<Row> chunkRows, String prevDigest) throws IOException {
+            MessageDigest messageDigest = getMessageDigest();
+            messageDigest.update(prevDigest.getBytes(StandardCharsets.UTF_8));
+            for (int i = 0; i < chunkRows.size(); i++) {
+                messageDigest.update(chunkSinks.get(i).op);
+                messageDigest.update(chunkRows.get(i).data);
+            }
+            String digest = Base64.getEncoder().encodeToString(messageDigest.digest());
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes, 8192))) {
+                out.writeInt(MAGIC);
+                out.writeLong(splitStartTime);
+                out.writeLong(splitEndTime);
+                out.writeLong(chunks.size() + 1);
+                out.writeUTF(prevDigest);
+                out.writeUTF(digest);
+                for (int i = 0; i < chunkRows.size(); i++) {
+                    out.writeByte(chunkSinks.get(i).op);
+                    out.write(chunkRows.get(i).data);
+                }
+                out.writeByte(OP_END);
+            }
+            chunks.add(bytes.toByteArray());
+            chunkSinks.clear();
+            chunkRows.clear();
+            return digest;
+        }
+
+        private static MessageDigest getMessageDigest() {
+            try {
+                return MessageDigest.getInstance(DIGEST_ALGORITHM);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static final class RowSink implements SyncValueSink {
+        private final byte op;
+        private final String txStampField;
+        private final String stampField;
+        private final List<Row> rows = new ArrayList<>();
+        private int insertBefore = 0;
+
+        private RowSink(byte op, String txStampField, String stampField) {
+            this.op = op;
+            this.txStampField = txStampField;
+            this.stampField = stampField;
+        }
+
+        @Override
+        public void startEntity() {
+            insertBefore = 0;
+        }
+
+        @Override
+        public void add(GenericEntity value) throws IOException {
+            byte[] data = GenericEntityCodec.encode(value);
+            if (txStampField == null) {
+                rows.add(new Row(null, null, data));
+                return;
+            }
+            Row row = new Row(value.getTimestamp(txStampField), value.getTimestamp(stampField), data);
+            // same merge as EntitySyncContext.SortedValueList
+            while (insertBefore < rows.size() && rows.get(insertBefore).txStamp.before(row.txStamp)) {
+                insertBefore++;
+            }
+            while (insertBefore < rows.size() && rows.get(insertBefore).stamp.before(row.stamp)) {
+                insertBefore++;
+            }
+            rows.add(insertBefore, row);
+        }
+    }
+
+    private static final class Row {
+        private final Timestamp txStamp;
+        private final Timestamp stamp;
+        private final byte[] data;
+
+        private Row(Timestamp txStamp, Timestamp stamp, byte[] data) {
+            this.txStamp = txStamp;
+            this.stamp = stamp;
+            this.data = data;
+        }
+    }
+}
@@ -314,11 +314,39 @@ public class EntitySyncContext {
 
     public ArrayList<GenericValue> assembleValuesToCreate() throws SyncDataErrorException {
         // first grab all values inserted in the date range, then get the updates (leaving out all values inserted in the data range)
-        ArrayList<GenericValue> valuesToCreate = new ArrayList<GenericValue>(); // make it an ArrayList to easily merge in sorted lists
+        SortedValueList<GenericValue> sortedValues = new SortedValueList<>(ModelEntity.CREATE_STAMP_TX_FIELD, ModelEntity.CREATE_STAMP_FIELD);
+        readValuesToCreate(sortedValues);
+        ArrayList<GenericValue> valuesToCreate = sortedValues.values;
+
+        // TEST SECTION: leave false for normal use
+        boolean logValues = false;
+        if (logValues && valuesToCreate.size() > 0) {
+            StringBuilder toCreateInfo = new StringBuilder();
+            for (GenericValue valueToCreate: valuesToCreate) {
+                toCreateInfo.append("\n-->[");
+                toCreateInfo.append(valueToCreate.get(ModelEntity.CREATE_STAMP_TX_FIELD));
+                toCreateInfo.append(":");
+                toCreateInfo.append(valueToCreate.get(ModelEntity.CREATE_STAMP_FIELD));
+                toCreateInfo.append("] ");
+                toCreateInfo.append(valueToCreate.getPrimaryKey());
+            }
+            Debug.logInfo(toCreateInfo.toString(), module);
+        }
+
+        return valuesToCreate;
+    }
+
+    /**
+     * SCIPIO: Reads the values created in the current time range into the given sink, entity by entity, each entity
+     * in create tx stamp order; returns the number of values read. The values are not kept, so that the chunked
+     * transport can encode them as they are read (see {@link EntitySyncChunk.Writer}).
+     */
+    public long readValuesToCreate(SyncValueSink sink) throws SyncDataErrorException {
+        long totalValues = 0;
 
         if (this.nextCreateTxTime != null && (this.nextCreateTxTime.equals(currentRunEndTime) || this.nextCreateTxTime.after(currentRunEndTime))) {
             // this means that for all entities in this pack we found on the last pass that there would be nothing for this one, so just return nothing...
-            return valuesToCreate;
+            return totalValues;
         }
 
         //Debug.logInfo("Getting values to create; currentRunStartTime=" + currentRunStartTime + ", currentRunEndTime=" + currentRunEndTime, module);
@@ -327,7 +355,7 @@ public class EntitySyncContext {
 
         // iterate through entities, get all records with tx stamp in the current time range, put all in a single list
         for (ModelEntity modelEntity: entityModelToUseList) {
-            int insertBefore = 0;
+            sink.startEntity();
 
             // first test to see if we know that there are no records for this entity in this time period...
             Timestamp knownNextCreateTime = this.nextEntityCreateTxTime.get(modelEntity.getEntityName());
@@ -359,15 +387,7 @@ public class EntitySyncContext {
                     GenericValue nextValue = null;
 
                     while ((nextValue = eli.next()) != null) {
-                        // sort by the tx stamp and then the record stamp
-                        // find first value in valuesToCreate list, starting with the current insertBefore value, that has a CREATE_STAMP_TX_FIELD after the nextValue.CREATE_STAMP_TX_FIELD, then do the same with CREATE_STAMP_FIELD
-                        while (insertBefore < valuesToCreate.size() && valuesToCreate.get(insertBefore).getTimestamp(ModelEntity.CREATE_STAMP_TX_FIELD).before(nextValue.getTimestamp(ModelEntity.CREATE_STAMP_TX_FIELD))) {
-                            insertBefore++;
-                        }
-                        while (insertBefore < valuesToCreate.size() && valuesToCreate.get(insertBefore).getTimestamp(ModelEntity.CREATE_STAMP_FIELD).before(nextValue.getTimestamp(ModelEntity.CREATE_STAMP_FIELD))) {
-                            insertBefore++;
-                        }
-                        valuesToCreate.add(insertBefore, nextValue);
+                        sink.add(nextValue);
                         valuesPerEntity++;
                     }
                 } catch (GenericEntityException e) {
@@ -378,6 +398,7 @@ public class EntitySyncContext {
                     }
                     throw new SyncDataErrorException("Error getting values to create from the datasource", e);
                 }
+                totalValues += valuesPerEntity;
 
                 // if we didn't find anything for this entity, find the next value's Timestamp and keep track of it
                 if (valuesPerEntity == 0) {
@@ -442,37 +463,49 @@ public class EntitySyncContext {
             if (Debug.infoOn()) Debug.logInfo("In assembleValuesToCreate skipped [" + entitiesSkippedForKnownNext + "/" + entityModelToUseList + "] entities for the time period ending at [" + currentRunEndTime + "] because of next known create times", module);
         }
 
-        // TEST SECTION: leave false for normal use
-        boolean logValues = false;
-        if (logValues && valuesToCreate.size() > 0) {
-            StringBuilder toCreateInfo = new StringBuilder();
-            for (GenericValue valueToCreate: valuesToCreate) {
-                toCreateInfo.append("\n-->[");
-                toCreateInfo.append(valueToCreate.get(ModelEntity.CREATE_STAMP_TX_FIELD));
-                toCreateInfo.append(":");
-                toCreateInfo.append(valueToCreate.get(ModelEntity.CREATE_STAMP_FIELD));
-                toCreateInfo.append("] ");
-                toCreateInfo.append(valueToCreate.getPrimaryKey());
-            }
-            Debug.logInfo(toCreateInfo.toString(), module);
-        }
-
         // As the this.nextCreateTxTime calculation is only based on entities without values to create, if there at least one value to create returned
         // this calculation is false, so it needs to be nullified
-        if (valuesToCreate.size() > 0) {
+        if (totalValues > 0) {
             this.nextCreateTxTime = null;
         }
 
-        return valuesToCreate;
+        return totalValues;
     }
 
     public ArrayList<GenericValue> assembleValuesToStore() throws SyncDataErrorException {
         // simulate two ordered lists and merge them on-the-fly for faster combined sorting
-        ArrayList<GenericValue> valuesToStore = new ArrayList<GenericValue>(); // make it an ArrayList to easily merge in sorted lists
+        SortedValueList<GenericValue> sortedValues = new SortedValueList<>(ModelEntity.STAMP_TX_FIELD, ModelEntity.STAMP_FIELD);
+        readValuesToStore(sortedValues);
+        ArrayList<GenericValue> valuesToStore = sortedValues.values;
+
+        // TEST SECTION: leave false for normal use
+        boolean logValues = false;
+        if (logValues && valuesToStore.size() > 0) {
+            StringBuilder toStoreInfo = new StringBuilder();
+            for (GenericValue valueToStore: valuesToStore) {
+                toStoreInfo.append("\n-->[");
+                toStoreInfo.append(valueToStore.get(ModelEntity.STAMP_TX_FIELD));
+                toStoreInfo.append(":");
+                toStoreInfo.append(valueToStore.get(ModelEntity.STAMP_FIELD));
+                toStoreInfo.append("] ");
+                toStoreInfo.append(valueToStore.getPrimaryKey());
+            }
+            Debug.logInfo(toStoreInfo.toString(), module);
+        }
+
+        return valuesToStore;
+    }
+
+    /**
+     * SCIPIO: Reads the values updated but not created in the current time range into the given sink, entity by entity,
+     * each entity in tx stamp order; returns the number of values read.
+     */
+    public long readValuesToStore(SyncValueSink sink) throws SyncDataErrorException {
+        long totalValues = 0;
 
         if (this.nextUpdateTxTime != null && (this.nextUpdateTxTime.equals(currentRunEndTime) || this.nextUpdateTxTime.after(currentRunEndTime))) {
             // this means that for all entities in this pack we found on the last pass that there would be nothing for this one, so just return nothing...
-            return valuesToStore;
+            return totalValues;
         }
 
         // Debug.logInfo("Getting values to store; currentRunStartTime=" + currentRunStartTime + ", currentRunEndTime=" + currentRunEndTime, module);
@@ -481,7 +514,7 @@ public class EntitySyncContext {
 
         // iterate through entities, get all records with tx stamp in the current time range, put all in a single list
         for (ModelEntity modelEntity: entityModelToUseList) {
-            int insertBefore = 0;
+            sink.startEntity();
 
             // first test to see if we know that there are no records for this entity in this time period...
             Timestamp knownNextUpdateTime = this.nextEntityUpdateTxTime.get(modelEntity.getEntityName());
@@ -515,18 +548,11 @@ public class EntitySyncContext {
                 GenericValue nextValue = null;
                 long valuesPerEntity = 0;
                 while ((nextValue = eli.next()) != null) {
-                    // sort by the tx stamp and then the record stamp
-                    // find first value in valuesToStore list, starting with the current insertBefore value, that has a STAMP_TX_FIELD after the nextValue.STAMP_TX_FIELD, then do the same with STAMP_FIELD
-                    while (insertBefore < valuesToStore.size() && valuesToStore.get(insertBefore).getTimestamp(ModelEntity.STAMP_TX_FIELD).before(nextValue.getTimestamp(ModelEntity.STAMP_TX_FIELD))) {
-                        insertBefore++;
-                    }
-                    while (insertBefore < valuesToStore.size() && valuesToStore.get(insertBefore).getTimestamp(ModelEntity.STAMP_FIELD).before(nextValue.getTimestamp(ModelEntity.STAMP_FIELD))) {
-                        insertBefore++;
-                    }
-                    valuesToStore.add(insertBefore, nextValue);
+                    sink.add(nextValue);
                     valuesPerEntity++;
                 }
                 eli.close();
+                totalValues += valuesPerEntity;
 
                 // definately remove this message and related data gathering
                 //long preCount = delegator.findCountByCondition(modelEntity.getEntityName(), findValCondition, null);
@@ -594,37 +620,48 @@ public class EntitySyncContext {
             if (Debug.infoOn()) Debug.logInfo("In assembleValuesToStore skipped [" + entitiesSkippedForKnownNext + "/" + entityModelToUseList + "] entities for the time period ending at [" + currentRunEndTime + "] because of next known update times", module);
         }
 
-        // TEST SECTION: leave false for normal use
-        boolean logValues = false;
-        if (logValues && valuesToStore.size() > 0) {
-            StringBuilder toStoreInfo = new StringBuilder();
-            for (GenericValue valueToStore: valuesToStore) {
-                toStoreInfo.append("\n-->[");
-                toStoreInfo.append(valueToStore.get(ModelEntity.STAMP_TX_FIELD));
-                toStoreInfo.append(":");
-                toStoreInfo.append(valueToStore.get(ModelEntity.STAMP_FIELD));
-                toStoreInfo.append("] ");
-                toStoreInfo.append(valueToStore.getPrimaryKey());
-            }
-            Debug.logInfo(toStoreInfo.toString(), module);
-        }
-
         // As the this.nextUpdateTxTime calculation is only based on entities without values to store, if there at least one value to store returned
         // this calculation is false, so it needs to be nullified
-        if (valuesToStore.size() > 0) {
+        if (totalValues > 0) {
             this.nextUpdateTxTime = null;
         }
 
-        return valuesToStore;
+        return totalValues;
     }
 
     public LinkedList<GenericEntity> assembleKeysToRemove() throws SyncDataErrorException {
         // get all removed items from the given time range, add to list for those
         LinkedList<GenericEntity> keysToRemove = new LinkedList<GenericEntity>();
+        readKeysToRemove(keysToRemove::add);
+
+        // TEST SECTION: leave false for normal use
+        boolean logValues = false;
+        if (logValues && keysToRemove.size() > 0) {
+            StringBuilder toRemoveInfo = new StringBuilder();
+            for (GenericEntity keyToRemove: keysToRemove) {
+                toRemoveInfo.append("\n-->[");
+                toRemoveInfo.append(keyToRemove.get(ModelEntity.STAMP_TX_FIELD));
+                toRemoveInfo.append(":");
+                toRemoveInfo.append(keyToRemove.get(ModelEntity.STAMP_FIELD));
+                toRemoveInfo.append("] ");
+                toRemoveInfo.append(keyToRemove);
+            }
+            Debug.logInfo(toRemoveInfo.toString(), module);
+        }
+
+        return keysToRemove;
+    }
+
+    /**
+     * SCIPIO: Reads the primary keys removed in the current time range into the given sink, in tx stamp order;
+     * returns the number of keys read.
+     */
+    public long readKeysToRemove(SyncValueSink sink) throws SyncDataErrorException {
+        long totalKeys = 0;
 
         if (this.nextRemoveTxTime != null && (this.nextRemoveTxTime.equals(currentRunEndTime) || this.nextRemoveTxTime.after(currentRunEndTime))) {
             // this means that for all entities in this pack we found on the last pass that there would be nothing for this one, so just return nothing...
-            return keysToRemove;
+            return totalKeys;
         }
 
         //Debug.logInfo("Getting keys to remove; currentRunStartTime=" + currentRunStartTime + ", currentRunEndTime=" + currentRunEndTime, module);
@@ -666,13 +703,14 @@ public class EntitySyncContext {
                 pkToRemove.set(ModelEntity.CREATE_STAMP_FIELD, entitySyncRemove.get(ModelEntity.CREATE_STAMP_FIELD));
 
                 if (this.entityNameToUseSet.contains(pkToRemove.getEntityName())) {
-                    keysToRemove.add(pkToRemove);
+                    sink.add(pkToRemove);
+                    totalKeys++;
                 }
             }
             removeEli.close();
 
             // if we didn't find anything for this entity, find the next value's Timestamp and keep track of it
-            if (keysToRemove.size() == 0) {
+            if (totalKeys == 0) {
                 EntityCondition findNextCondition = EntityCondition.makeCondition(ModelEntity.STAMP_TX_FIELD, EntityOperator.GREATER_THAN_EQUAL_TO, currentRunEndTime);
                 EntityListIterator eliNext = EntityQuery.use(delegator)
                                                         .from("EntitySyncRemove")
@@ -711,28 +749,13 @@ public class EntitySyncContext {
             throw new SyncDataErrorException("Commit transaction failed", e);
         }
 
-        // TEST SECTION: leave false for normal use
-        boolean logValues = false;
-        if (logValues && keysToRemove.size() > 0) {
-            StringBuilder toRemoveInfo = new StringBuilder();
-            for (GenericEntity keyToRemove: keysToRemove) {
-                toRemoveInfo.append("\n-->[");
-                toRemoveInfo.append(keyToRemove.get(ModelEntity.STAMP_TX_FIELD));
-                toRemoveInfo.append(":");
-                toRemoveInfo.append(keyToRemove.get(ModelEntity.STAMP_FIELD));
-                toRemoveInfo.append("] ");
-                toRemoveInfo.append(keyToRemove);
-            }
-            Debug.logInfo(toRemoveInfo.toString(), module);
-        }
-
         // As this.nextRemoveTxTime calculation is only based on entities without keys to remove, if there at least one key to remove returned
         // this calculation is false, so it needs to be nullified
-        if (keysToRemove.size() > 0) {
+        if (totalKeys > 0) {
             this.nextRemoveTxTime = null;
         }
 
-        return keysToRemove;
+        return totalKeys;
     }
 
     public void saveResultsReportedFromDataStore() throws SyncDataErrorException, SyncServiceErrorException {
@@ -984,29 +1007,81 @@ public class EntitySyncContext {
 
                 this.totalStoreCalls++;
 
-                long toCreateInsertedCur = remoteStoreResult.get("toCreateInserted") == null ? 0 : (Long) remoteStoreResult.get("toCreateInserted");
-                long toCreateUpdatedCur = remoteStoreResult.get("toCreateUpdated") == null ? 0 : (Long) remoteStoreResult.get("toCreateUpdated");
-                long toCreateNotUpdatedCur = remoteStoreResult.get("toCreateNotUpdated") == null ? 0 : (Long) remoteStoreResult.get("toCreateNotUpdated");
-                long toStoreInsertedCur = remoteStoreResult.get("toStoreInserted") == null ? 0 : (Long) remoteStoreResult.get("toStoreInserted");
-                long toStoreUpdatedCur = remoteStoreResult.get("toStoreUpdated") == null ? 0 : (Long) remoteStoreResult.get("toStoreUpdated");
-                long toStoreNotUpdatedCur = remoteStoreResult.get("toStoreNotUpdated") == null ? 0 : (Long) remoteStoreResult.get("toStoreNotUpdated");
-                long toRemoveDeletedCur = remoteStoreResult.get("toRemoveDeleted") == null ? 0 : (Long) remoteStoreResult.get("toRemoveDeleted");
-                long toRemoveAlreadyDeletedCur = remoteStoreResult.get("toRemoveAlreadyDeleted") == null ? 0 : (Long) remoteStoreResult.get("toRemoveAlreadyDeleted");
-
-                this.toCreateInserted += toCreateInsertedCur;
-                this.toCreateUpdated += toCreateUpdatedCur;
-                this.toCreateNotUpdated += toCreateNotUpdatedCur;
-                this.toStoreInserted += toStoreInsertedCur;
-                this.toStoreUpdated += toStoreUpdatedCur;
-                this.toStoreNotUpdated += toStoreNotUpdatedCur;
-                this.toRemoveDeleted += toRemoveDeletedCur;
-                this.toRemoveAlreadyDeleted += toRemoveAlreadyDeletedCur;
+                this.addStoreResults(remoteStoreResult);
             } catch (GenericServiceException e) {
                 throw new SyncServiceErrorException(serviceErrorMsg, e);
             }
         }
     }
 
+    protected void addStoreResults(Map<String, Object> remoteStoreResult) {
+        long toCreateInsertedCur = remoteStoreResult.get("toCreateInserted") == null ? 0 : (Long) remoteStoreResult.get("toCreateInserted");
+        long toCreateUpdatedCur = remoteStoreResult.get("toCreateUpdated") == null ? 0 : (Long) remoteStoreResult.get("toCreateUpdated");
+        long toCreateNotUpdatedCur = remoteStoreResult.get("toCreateNotUpdated") == null ? 0 : (Long) remoteStoreResult.get("toCreateNotUpdated");
+        long toStoreInsertedCur = remoteStoreResult.get("toStoreInserted") == null ? 0 : (Long) remoteStoreResult.get("toStoreInserted");
+        long toStoreUpdatedCur = remoteStoreResult.get("toStoreUpdated") == null ? 0 : (Long) remoteStoreResult.get("toStoreUpdated");
+        long toStoreNotUpdatedCur = remoteStoreResult.get("toStoreNotUpdated") == null ? 0 : (Long) remoteStoreResult.get("toStoreNotUpdated");
+        long toRemoveDeletedCur = remoteStoreResult.get("toRemoveDeleted") == null ? 0 : (Long) remoteStoreResult.get("toRemoveDeleted");
+        long toRemoveAlreadyDeletedCur = remoteStoreResult.get("toRemoveAlreadyDeleted") == null ? 0 : (Long) remoteStoreResult.get("toRemoveAlreadyDeleted");
+
+        this.toCreateInserted += toCreateInsertedCur;
+        this.toCreateUpdated += toCreateUpdatedCur;
+        this.toCreateNotUpdated += toCreateNotUpdatedCur;
+        this.toStoreInserted += toStoreInsertedCur;
+        this.toStoreUpdated += toStoreUpdatedCur;
+        this.toStoreNotUpdated += toStoreNotUpdatedCur;
+        this.toRemoveDeleted += toRemoveDeletedCur;
+        this.toRemoveAlreadyDeleted += toRemoveAlreadyDeletedCur;
+    }
+
+    // ======================== Chunked Transport Methods ========================
+    /**
+     * SCIPIO: Reads the changes of the current time range (creates, then stores, then removes) from the entity list
+     * iterators into compressed chunks of at most chunkSize rows (see {@link EntitySyncChunk}), so that only the binary
+     * encoding of the split is held in memory instead of its values; sets the row counts like {@link #setTotalRowCounts}.
+     */
+    public List<byte[]> makeChunks(int chunkSize) throws SyncDataErrorException {
+        EntitySyncChunk.Writer writer = new EntitySyncChunk.Writer(currentRunStartTime, currentRunEndTime, chunkSize);
+        this.totalRowsToCreate = this.readValuesToCreate(writer.sink(EntitySyncChunk.OP_CREATE));
+        this.totalRowsToStore = this.readValuesToStore(writer.sink(EntitySyncChunk.OP_STORE));
+        this.totalRowsToRemove = this.readKeysToRemove(writer.sink(EntitySyncChunk.OP_REMOVE));
+        this.totalRowsPerSplit = this.totalRowsToCreate + this.totalRowsToStore + this.totalRowsToRemove;
+        try {
+            return writer.finish();
+        } catch (IOException e) {
+            throw new SyncDataErrorException("Error encoding entity sync chunks", e);
+        }
+    }
+
+    /**
+     * SCIPIO: Chunked alternative to the assemble methods and {@link #runPushSendData}: sends the changes of the
+     * current time range chunk by chunk through the transport. The target acknowledges each chunk with the last chunk
+     * it stored for the time range and its digest; the chunks it already stored in an interrupted run are skipped if
+     * their content is unchanged, otherwise the time range is sent again (see {@link EntitySyncChunk#sendChunks}).
+     */
+    public void runPushSendChunks(EntitySyncTransport transport, int chunkSize) throws SyncDataErrorException, SyncOtherErrorException, SyncServiceErrorException {
+        List<byte[]> chunks = this.makeChunks(chunkSize);
+
+        String serviceErrorMsg = "Error running EntitySync [" + entitySyncId + "], sending [" + chunks.size() + "] chunks to [" + transport.getName() + "] failed.";
+        try {
+            Map<String, Object> remoteStoreError = EntitySyncChunk.sendChunks(chunks, (chunk, restartSplit) -> {
+                Map<String, Object> remoteStoreResult = transport.sendChunk(this, chunk, restartSplit);
+                if (!ServiceUtil.isError(remoteStoreResult)) {
+                    this.totalStoreCalls++;
+                    this.addStoreResults(remoteStoreResult);
+                }
+                return remoteStoreResult;
+            });
+            if (remoteStoreError != null) {
+                throw new SyncOtherErrorException(serviceErrorMsg, null, null, remoteStoreError, null);
+            }
+        } catch (GenericServiceException e) {
+            throw new SyncServiceErrorException(serviceErrorMsg, e);
+        } catch (IOException e) {
+            throw new SyncDataErrorException("Error decoding entity sync chunks", e);
+        }
+    }
+
     // ======================== PULL Methods ========================
     public void runPullStartOrRestoreSavedResults() throws SyncDataErrorException, SyncServiceErrorException, SyncAbortException {
         // if EntitySync.statusId is ESR_RUNNING, make sure startDate matches EntitySync.lastHistoryStartDate; or return error
@@ -1120,6 +1195,54 @@ public class EntitySyncContext {
 
     /** This class signifies an abort condition, so the state and such of the EntitySync value in the datasource should not be changed */
     @SuppressWarnings("serial")
+    /**
+     * SCIPIO: Receives the values read by the <code>readXxx</code> methods.
+     */
+    @FunctionalInterface
+    public interface SyncValueSink {
+        /** Called before the values of each entity. */
+        default void startEntity() {
+        }
+
+        void add(GenericEntity value) throws IOException;
+    }
+
+    /**
+     * SCIPIO: Sink merging the values of the entities into a single list sorted by tx stamp and then record stamp,
+     * as returned by the assemble methods.
+     */
+    protected static class SortedValueList<T extends GenericEntity> implements SyncValueSink {
+        protected final ArrayList<T> values = new ArrayList<>(); // make it an ArrayList to easily merge in sorted lists
+        protected final String txStampField;
+        protected final String stampField;
+        protected int insertBefore = 0;
+
+        protected SortedValueList(String txStampField, String stampField) {
+            this.txStampField = txStampField;
+            this.stampField = stampField;
+        }
+
+        @Override
+        public void startEntity() {
+            insertBefore = 0;
+        }
+
+        @Override
+        public void add(GenericEntity value) {
+            @SuppressWarnings("unchecked")
+            T nextValue = (T) value;
+            // sort by the tx stamp and then the record stamp
+            // find first value in the list, starting with the current insertBefore value, that has a tx stamp after the nextValue tx stamp, then do the same with the record stamp
+            while (insertBefore < values.size() && values.get(insertBefore).getTimestamp(txStampField).before(nextValue.getTimestamp(txStampField))) {
+                insertBefore++;
+            }
+            while (insertBefore < values.size() && values.get(insertBefore).getTimestamp(stampField).before(nextValue.getTimestamp(stampField))) {
+                insertBefore++;
+            }
+            values.add(insertBefore, nextValue);
+        }
+    }
+
     public static class SyncAbortException extends GeneralServiceException {
         public SyncAbortException() {
             super();
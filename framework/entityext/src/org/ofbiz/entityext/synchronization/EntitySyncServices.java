@@ -72,6 +72,10 @@ public class EntitySyncServices {
     private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
     public static final String resource = "EntityExtUiLabels";
 
+    /** SCIPIO: Names of the counts returned by storeEntitySyncData and storeEntitySyncChunk. */
+    private static final List<String> storeCountNames = UtilMisc.toList("toCreateInserted", "toCreateUpdated", "toCreateNotUpdated",
+            "toStoreInserted", "toStoreUpdated", "toStoreNotUpdated", "toRemoveDeleted", "toRemoveAlreadyDeleted");
+
     /**
      * Run an Entity Sync (checks to see if other already running, etc)
      *@param dctx The DispatchContext that this service is operating in
@@ -79,6 +83,18 @@ public class EntitySyncServices {
      *@return Map with the result of the service, the output parameters
      */
     public static Map<String, Object> runEntitySync(DispatchContext dctx, Map<String, ? extends Object> context) {
+        // SCIPIO: chunked transport
+        String chunkServiceName = (String) context.get("chunkServiceName");
+        EntitySyncTransport transport = UtilValidate.isNotEmpty(chunkServiceName) ? new EntitySyncTransport.ServiceTransport(chunkServiceName) : null;
+        Integer chunkSize = (Integer) context.get("chunkSize");
+        return runEntitySync(dctx, context, transport, (chunkSize != null) ? chunkSize : EntitySyncChunk.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * SCIPIO: Runs an Entity Sync, sending the data in chunks of at most chunkSize rows through the given transport
+     * instead of calling the targetServiceName of the EntitySync with value lists, if the transport is not null.
+     */
+    public static Map<String, Object> runEntitySync(DispatchContext dctx, Map<String, ? extends Object> context, EntitySyncTransport transport, int chunkSize) {
         Locale locale = (Locale) context.get("locale");
         EntitySyncContext esc = null;
         try {
@@ -86,6 +102,10 @@ public class EntitySyncServices {
             if ("Y".equals(esc.entitySync.get("forPullOnly"))) {
                 return ServiceUtil.returnError(UtilProperties.getMessage(resource, "EntityExtCannotDoEntitySyncPush", locale));
             }
+            if (transport != null) {
+                // the targetServiceName of the EntitySync takes value lists
+                esc.targetServiceName = transport.getName();
+            }
 
             esc.runPushStartRunning();
 
@@ -102,14 +122,18 @@ public class EntitySyncServices {
                 // keep track of how long these sync runs take and store that info on the history table
                 // saves info about removed, all entities that don't have no-auto-stamp set, this will be done in the GenericDAO like the stamp sets
 
-                // ===== INSERTS =====
-                ArrayList<GenericValue> valuesToCreate = esc.assembleValuesToCreate();
-                // ===== UPDATES =====
-                ArrayList<GenericValue> valuesToStore = esc.assembleValuesToStore();
-                // ===== DELETES =====
-                List<GenericEntity> keysToRemove = esc.assembleKeysToRemove();
-
-                esc.runPushSendData(valuesToCreate, valuesToStore, keysToRemove);
+                if (transport != null) {
+                    esc.runPushSendChunks(transport, chunkSize);
+                } else {
+                    // ===== INSERTS =====
+                    ArrayList<GenericValue> valuesToCreate = esc.assembleValuesToCreate();
+                    // ===== UPDATES =====
+                    ArrayList<GenericValue> valuesToStore = esc.assembleValuesToStore();
+                    // ===== DELETES =====
+                    List<GenericEntity> keysToRemove = esc.assembleKeysToRemove();
+
+                    esc.runPushSendData(valuesToCreate, valuesToStore, keysToRemove);
+                }
 
                 esc.saveResultsReportedFromDataStore();
                 esc.advanceRunTimes();
@@ -259,6 +283,36 @@ public class EntitySyncServices {
         }
     }
 
+    /**
+     * SCIPIO: Store Entity Sync Chunk - stores a chunk of the chunked transport (see {@link EntitySyncChunk}).
+     *@param dctx The DispatchContext that this service is operating in
+     *@param context Map containing the input parameters
+     *@return Map with the result of the service, the output parameters
+     */
+    public static Map<String, Object> storeEntitySyncChunk(DispatchContext dctx, Map<String, Object> context) {
+        Delegator delegator = dctx.getDelegator();
+        String overrideDelegatorName = (String) context.get("delegatorName");
+        Locale locale = (Locale) context.get("locale");
+        if (UtilValidate.isNotEmpty(overrideDelegatorName)) {
+            delegator = DelegatorFactory.getDelegator(overrideDelegatorName);
+            if (delegator == null) {
+                return ServiceUtil.returnError(UtilProperties.getMessage(resource, "EntityExtCannotFindDelegator", UtilMisc.toMap("overrideDelegatorName", overrideDelegatorName), locale));
+            }
+        }
+
+        String entitySyncId = (String) context.get("entitySyncId");
+        byte[] chunk = (byte[]) context.get("chunk");
+        boolean restartSplit = Boolean.TRUE.equals(context.get("restartSplit"));
+        try {
+            EntitySyncChunk syncChunk = EntitySyncChunk.read(chunk, delegator);
+            if (Debug.infoOn()) Debug.logInfo("Running storeEntitySyncChunk (" + entitySyncId + ") - chunk [" + syncChunk.getChunkSeq() + "] with [" + syncChunk.getRowCount() + "] rows, [" + chunk.length + "] bytes", module);
+            return syncChunk.store(delegator, entitySyncId, restartSplit);
+        } catch (GenericEntityException | IOException e) {
+            Debug.logError(e, "Exception saving Entity Sync Chunk for entitySyncId [" + entitySyncId + "]: " + e.toString(), module);
+            return ServiceUtil.returnError(UtilProperties.getMessage(resource, "EntityExtExceptionSavingEntitySyncData", UtilMisc.toMap("entitySyncId", entitySyncId, "errorString", e.toString()), locale));
+        }
+    }
+
     /**
      * Run Pull Entity Sync - Pull From Remote
      *@param dctx The DispatchContext that this service is operating in
@@ -270,6 +324,7 @@ public class EntitySyncServices {
         Locale locale = (Locale) context.get("locale");
         String entitySyncId = (String) context.get("entitySyncId");
         String remotePullAndReportEntitySyncDataName = (String) context.get("remotePullAndReportEntitySyncDataName");
+        Integer chunkSize = (Integer) context.get("chunkSize"); // SCIPIO
 
         Debug.logInfo("Running runPullEntitySync for entitySyncId=" + context.get("entitySyncId"), module);
 
@@ -304,6 +359,9 @@ public class EntitySyncServices {
             remoteCallContext.put("toStoreNotUpdated", toStoreNotUpdated);
             remoteCallContext.put("toRemoveDeleted", toRemoveDeleted);
             remoteCallContext.put("toRemoveAlreadyDeleted", toRemoveAlreadyDeleted);
+            if (chunkSize != null) {
+                remoteCallContext.put("chunkSize", chunkSize);
+            }
 
             try {
                 Map<String, Object> result = dispatcher.runSync(remotePullAndReportEntitySyncDataName, remoteCallContext);
@@ -316,8 +374,37 @@ public class EntitySyncServices {
                 try {
                     // store data returned, get results (just call storeEntitySyncData locally, get the numbers back and boom shakalaka)
 
-                    // anything to store locally?
-                    if (startDate != null && (UtilValidate.isNotEmpty(result.get("valuesToCreate")) ||
+                    // SCIPIO: anything to store locally, as chunks?
+                    List<byte[]> chunks = checkList(result.get("chunks"), byte[].class);
+                    if (startDate != null && UtilValidate.isNotEmpty(chunks)) {
+                        gotMoreData = true;
+
+                        Map<String, Long> storeTotals = new HashMap<String, Long>();
+                        Map<String, Object> storeError = EntitySyncChunk.sendChunks(chunks, (chunk, restartSplit) -> {
+                            Map<String, Object> callLocalStoreContext = UtilMisc.toMap("entitySyncId", entitySyncId, "delegatorName", context.get("localDelegatorName"),
+                                    "chunk", chunk, "restartSplit", restartSplit, "userLogin", context.get("userLogin"));
+                            Map<String, Object> storeResult = dispatcher.runSync("storeEntitySyncChunk", callLocalStoreContext);
+                            if (!ServiceUtil.isError(storeResult)) {
+                                for (String countName : storeCountNames) {
+                                    storeTotals.merge(countName, (Long) storeResult.get(countName), Long::sum);
+                                }
+                            }
+                            return storeResult;
+                        });
+                        if (storeError != null) {
+                            return ServiceUtil.returnError(UtilProperties.getMessage(resource, "EntityExtErrorCallingService", locale), null, null, storeError);
+                        }
+
+                        // get results for next pass
+                        toCreateInserted = storeTotals.get("toCreateInserted");
+                        toCreateUpdated = storeTotals.get("toCreateUpdated");
+                        toCreateNotUpdated = storeTotals.get("toCreateNotUpdated");
+                        toStoreInserted = storeTotals.get("toStoreInserted");
+                        toStoreUpdated = storeTotals.get("toStoreUpdated");
+                        toStoreNotUpdated = storeTotals.get("toStoreNotUpdated");
+                        toRemoveDeleted = storeTotals.get("toRemoveDeleted");
+                        toRemoveAlreadyDeleted = storeTotals.get("toRemoveAlreadyDeleted");
+                    } else if (startDate != null && (UtilValidate.isNotEmpty(result.get("valuesToCreate")) ||
                             UtilValidate.isNotEmpty(result.get("valuesToStore")) ||
                             UtilValidate.isNotEmpty(result.get("keysToRemove")))) {
 
@@ -405,6 +492,21 @@ public class EntitySyncServices {
                 // Part 2: get the next set of data for the given entitySyncId
                 // Part 2a: return it back for storage but leave the EntitySyncHistory without results, and don't update the EntitySync last time
 
+                // SCIPIO: chunked transport
+                if (context.get("chunkSize") != null) {
+                    List<byte[]> chunks = esc.makeChunks((Integer) context.get("chunkSize"));
+                    if (Debug.infoOn()) Debug.logInfo("Service pullAndReportEntitySyncData returning - [" + chunks.size() + "] chunks; [" + esc.totalRowsPerSplit + "] total rows per split.", module);
+                    if (esc.totalRowsPerSplit > 0) {
+                        Map<String, Object> result = ServiceUtil.returnSuccess();
+                        result.put("startDate", esc.startDate);
+                        result.put("chunks", chunks);
+                        return result;
+                    }
+                    esc.saveResultsReportedFromDataStore();
+                    esc.advanceRunTimes();
+                    continue;
+                }
+
                 // ===== INSERTS =====
                 ArrayList<GenericValue> valuesToCreate = esc.assembleValuesToCreate();
                 // ===== UPDATES =====
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.entityext.synchronization;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilMisc;
+import org.ofbiz.base.util.UtilValidate;
+import org.ofbiz.entity.Delegator;
+import org.ofbiz.entity.GenericEntityException;
+import org.ofbiz.entity.transaction.TransactionUtil;
+import org.ofbiz.service.GenericServiceException;
+import org.ofbiz.service.ServiceUtil;
+
+/**
+ * SCIPIO: Sends the chunks of the chunked EntitySync push (see {@link EntitySyncContext#runPushSendChunks}) to the
+ * target instance, which stores them and returns the result of <code>storeEntitySyncChunk</code>.
+ */
+public interface EntitySyncTransport {
+
+    /**
+     * Returns the name of the target, for messages.
+     */
+    String getName();
+
+    /**
+     * Sends a chunk, to be stored as by {@link EntitySyncChunk#store}; restartSplit is set when the split is sent again
+     * from its first chunk.
+     */
+    Map<String, Object> sendChunk(EntitySyncContext esc, byte[] chunk, boolean restartSplit) throws GenericServiceException;
+
+    /**
+     * Calls a service implementing <code>storeEntitySyncChunk</code>, usually one of the remote services
+     * (<code>remoteStoreEntitySyncChunkHttp</code>, <code>remoteStoreEntitySyncChunkRmi</code>).
+     */
+    class ServiceTransport implements EntitySyncTransport {
+        private final String serviceName;
+
+        public ServiceTransport(String serviceName) {
+            this.serviceName = serviceName;
+        }
+
+        @Override
+        public String getName() {
+            return serviceName;
+        }
+
+        @Override
+        public Map<String, Object> sendChunk(EntitySyncContext esc, byte[] chunk, boolean restartSplit) throws GenericServiceException {
+            Map<String, Object> serviceContext = UtilMisc.toMap("entitySyncId", esc.entitySyncId, "chunk", chunk, "restartSplit", restartSplit, "userLogin", esc.userLogin);
+            if (UtilValidate.isNotEmpty(esc.targetDelegatorName)) {
+                serviceContext.put("delegatorName", esc.targetDelegatorName);
+            }
+            return esc.dispatcher.runSync(serviceName, serviceContext);
+        }
+    }
+
+    /**
+     * Stores the chunks in a delegator of this instance, in a new transaction per chunk, going through the chunk
+     * encoding without a service call; meant for tests and for syncing between delegators of the same instance.
+     */
+    class LoopbackTransport implements EntitySyncTransport {
+        private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+        private final Delegator targetDelegator;
+
+        public LoopbackTransport(Delegator targetDelegator) {
+            this.targetDelegator = targetDelegator;
+        }
+
+        @Override
+        public String getName() {
+            return "loopback:" + targetDelegator.getDelegatorName();
+        }
+
+        @Override
+        public Map<String, Object> sendChunk(EntitySyncContext esc, byte[] chunk, boolean restartSplit) throws GenericServiceException {
+            return sendChunk(esc.entitySyncId, chunk, restartSplit);
+        }
+
+        /**
+         * Stores a chunk for the given entity sync, as {@link #sendChunk(EntitySyncContext, byte[], boolean)}.
+         */
+        public Map<String, Object> sendChunk(String entitySyncId, byte[] chunk, boolean restartSplit) {
+            try {
+                EntitySyncChunk syncChunk = EntitySyncChunk.read(chunk, targetDelegator);
+                return TransactionUtil.doNewTransaction(() -> syncChunk.store(targetDelegator, entitySyncId, restartSplit),
+                        "Error storing entity sync chunk", 900, true);
+            } catch (IOException | GenericEntityException e) {
+                Debug.logError(e, "Error storing entity sync chunk for entitySyncId [" + entitySyncId + "] in delegator ["
+                        + targetDelegator.getDelegatorName() + "]: " + e.toString(), module);
+                return ServiceUtil.returnError(e.toString());
+            }
+        }
+    }
+}
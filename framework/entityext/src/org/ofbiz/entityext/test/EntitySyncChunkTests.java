@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.entityext.test;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.ofbiz.base.util.UtilMisc;
+import org.ofbiz.entity.GenericEntityException;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.condition.EntityCondition;
+import org.ofbiz.entity.condition.EntityOperator;
+import org.ofbiz.entity.model.ModelEntity;
+import org.ofbiz.entity.testtools.EntityTestCase;
+import org.ofbiz.entity.util.EntityQuery;
+import org.ofbiz.entityext.synchronization.EntitySyncChunk;
+import org.ofbiz.entityext.synchronization.EntitySyncContext.SyncValueSink;
+import org.ofbiz.entityext.synchronization.EntitySyncTransport;
+import org.ofbiz.service.ServiceUtil;
+
+/**
+ * EntitySyncChunkTests (SCIPIO): sends chunks of TestingType values of a split through a
+ * {@link EntitySyncTransport.LoopbackTransport} to the test delegator, interrupting the run after some chunks and
+ * resuming it with the split chunked again, unchanged or with a row added before the stored ones.
+ */
+public class EntitySyncChunkTests extends EntityTestCase {
+
+    private static final String ENTITY_SYNC_ID = "ESCTEST";
+    private static final String TESTING_TYPE_PREFIX = "ESCTEST-";
+    private static final int CHUNK_SIZE = 2;
+
+    protected EntitySyncTransport.LoopbackTransport transport = null;
+    protected Timestamp splitStartTime = null;
+    protected Timestamp splitEndTime = null;
+
+    public EntitySyncChunkTests(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        transport = new EntitySyncTransport.LoopbackTransport(delegator);
+        splitStartTime = new Timestamp(System.currentTimeMillis() - 60000);
+        splitEndTime = new Timestamp(splitStartTime.getTime() + 60000);
+        removeTestValues();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        removeTestValues();
+    }
+
+    public void testResumeUnchangedSplit() throws Exception {
+        List<byte[]> chunks = makeChunks(1, 2, 3, 4, 5);
+        assertEquals("Chunks", 3, chunks.size());
+
+        // interrupted run: only the first chunk was stored
+        assertStored(transport.sendChunk(ENTITY_SYNC_ID, chunks.get(0), false), 1);
+        // a chunk not following the last stored one is not stored
+        Map<String, Object> gapResult = transport.sendChunk(ENTITY_SYNC_ID, chunks.get(2), false);
+        assertStored(gapResult, 1);
+        assertEquals("Gap chunk inserted", 0L, gapResult.get("toCreateInserted"));
+        assertNull("Gap chunk value", findTestingType(5));
+
+        List<Integer> sent = new ArrayList<>();
+        long[] inserted = new long[1];
+        assertNull("Send result", EntitySyncChunk.sendChunks(chunks, (chunk, restartSplit) -> {
+            sent.add(restartSplit ? -(chunks.indexOf(chunk) + 1) : chunks.indexOf(chunk) + 1);
+            Map<String, Object> result = transport.sendChunk(ENTITY_SYNC_ID, chunk, restartSplit);
+            inserted[0] += (Long) result.get("toCreateInserted");
+            return result;
+        }));
+        assertEquals("Sent chunks", UtilMisc.toList(1, 2, 3), sent);
+        assertEquals("Inserted on resume", 3L, inserted[0]);
+        assertTestingTypes(1, 2, 3, 4, 5);
+        assertEquals("Last acknowledged chunk", 3L, (long) findChunkAck().getLong("lastChunkSeq"));
+    }
+
+    public void testResumeChangedSplit() throws Exception {
+        List<byte[]> chunks = makeChunks(1, 2, 3, 4, 5);
+
+        // interrupted run: the first two chunks (rows 1 to 4) were stored
+        assertStored(transport.sendChunk(ENTITY_SYNC_ID, chunks.get(0), false), 1);
+        assertStored(transport.sendChunk(ENTITY_SYNC_ID, chunks.get(1), false), 2);
+
+        // the split read again has a row before the stored ones, so its chunks shifted: skipping the first two
+        // chunks because of their sequence numbers would lose row 0
+        List<byte[]> newChunks = makeChunks(0, 1, 2, 3, 4, 5);
+        assertEquals("Chunks", 3, newChunks.size());
+
+        List<Integer> sent = new ArrayList<>();
+        assertNull("Send result", EntitySyncChunk.sendChunks(newChunks, (chunk, restartSplit) -> {
+            sent.add(restartSplit ? -(newChunks.indexOf(chunk) + 1) : newChunks.indexOf(chunk) + 1);
+            return transport.sendChunk(ENTITY_SYNC_ID, chunk, restartSplit);
+        }));
+        // the first chunk is refused, the target acknowledging chunk 2 of the old content, then the split is sent again
+        assertEquals("Sent chunks", UtilMisc.toList(1, -1, 2, 3), sent);
+        assertTestingTypes(0, 1, 2, 3, 4, 5);
+        GenericValue chunkAck = findChunkAck();
+        assertEquals("Last acknowledged chunk", 3L, (long) chunkAck.getLong("lastChunkSeq"));
+        assertEquals("Last acknowledged digest", EntitySyncChunk.readDigest(newChunks.get(2)), chunkAck.getString("lastChunkDigest"));
+    }
+
+    protected List<byte[]> makeChunks(int... testingTypeNums) throws Exception {
+        EntitySyncChunk.Writer writer = new EntitySyncChunk.Writer(splitStartTime, splitEndTime, CHUNK_SIZE);
+        SyncValueSink sink = writer.sink(EntitySyncChunk.OP_CREATE);
+        sink.startEntity();
+        for (int testingTypeNum : testingTypeNums) {
+            // the stamps follow the number so that the rows keep their order
+            Timestamp stamp = new Timestamp(splitStartTime.getTime() + testingTypeNum * 1000L);
+            GenericValue value = delegator.makeValue("TestingType", "testingTypeId", TESTING_TYPE_PREFIX + testingTypeNum,
+                    "description", "Entity sync chunk test " + testingTypeNum);
+            value.set(ModelEntity.CREATE_STAMP_TX_FIELD, stamp);
+            value.set(ModelEntity.CREATE_STAMP_FIELD, stamp);
+            value.set(ModelEntity.STAMP_TX_FIELD, stamp);
+            value.set(ModelEntity.STAMP_FIELD, stamp);
+            sink.add(value);
+        }
+        return writer.finish();
+    }
+
+    protected void assertStored(Map<String, Object> result, long lastChunkSeq) {
+        assertTrue("Store result: " + result, ServiceUtil.isSuccess(result));
+        assertEquals("Last chunk", lastChunkSeq, (long) (Long) result.get("lastChunkSeq"));
+    }
+
+    protected void assertTestingTypes(int... testingTypeNums) throws GenericEntityException {
+        for (int testingTypeNum : testingTypeNums) {
+            assertNotNull("TestingType " + testingTypeNum, findTestingType(testingTypeNum));
+        }
+        assertEquals("TestingType count", testingTypeNums.length, EntityQuery.use(delegator).from("TestingType")
+                .where(EntityCondition.makeCondition("testingTypeId", EntityOperator.LIKE, TESTING_TYPE_PREFIX + "%")).queryCount());
+    }
+
+    protected GenericValue findTestingType(int testingTypeNum) throws GenericEntityException {
+        return EntityQuery.use(delegator).from("TestingType").where("testingTypeId", TESTING_TYPE_PREFIX + testingTypeNum).queryOne();
+    }
+
+    protected GenericValue findChunkAck() throws GenericEntityException {
+        return EntityQuery.use(delegator).from("EntitySyncChunkAck").where("entitySyncId", ENTITY_SYNC_ID).queryOne();
+    }
+
+    protected void removeTestValues() throws GenericEntityException {
+        delegator.removeByCondition("TestingType", EntityCondition.makeCondition("testingTypeId", EntityOperator.LIKE, TESTING_TYPE_PREFIX + "%"));
+        delegator.removeByAnd("EntitySyncChunkAck", "entitySyncId", ENTITY_SYNC_ID);
+    }
+}
@@ -99,6 +99,7 @@ public final class SecurityFactory {
         public void clearUserData(GenericValue userLogin) {
             if (userLogin != null) {
                 delegator.getCache().remove("UserLoginSecurityGroup", EntityCondition.makeCondition("userLoginId", EntityOperator.EQUALS, userLogin.getString("userLoginId")));
+                UserLoginPermissionSet.clear(delegator, userLogin.getString("userLoginId")); // SCIPIO
             }
         }
 
@@ -121,18 +122,9 @@ public final class SecurityFactory {
         @Override
         public boolean hasEntityPermission(String entity, String action, GenericValue userLogin) {
             if (userLogin == null || entity == null || action == null) return false;
-            String permission = entity.concat(action);
-            String adminPermission = entity.concat("_ADMIN");
-            Iterator<GenericValue> iterator = findUserLoginSecurityGroupByUserLoginId(userLogin.getString("userLoginId"));
-            while (iterator.hasNext()) {
-                GenericValue userLoginSecurityGroup = iterator.next();
-                if (securityGroupPermissionExists(userLoginSecurityGroup.getString("groupId"), permission))
-                    return true;
-                if (securityGroupPermissionExists(userLoginSecurityGroup.getString("groupId"), adminPermission))
-                    return true;
-            }
-
-            return false;
+            // SCIPIO: now checked against the precomputed permission set
+            UserLoginPermissionSet permissionSet = getPermissionSet(userLogin);
+            return permissionSet != null && permissionSet.hasEntityPermission(entity, action);
         }
 
         @Override
@@ -161,13 +153,21 @@ public final class SecurityFactory {
             if (userLogin == null) {
                 return false;
             }
-            Iterator<GenericValue> iterator = findUserLoginSecurityGroupByUserLoginId(userLogin.getString("userLoginId"));
-            GenericValue userLoginSecurityGroup = null;
-            while (iterator.hasNext()) {
-                userLoginSecurityGroup = iterator.next();
-                if (securityGroupPermissionExists(userLoginSecurityGroup.getString("groupId"), permission)) return true;
+            // SCIPIO: now checked against the precomputed permission set
+            UserLoginPermissionSet permissionSet = getPermissionSet(userLogin);
+            return permissionSet != null && permissionSet.hasPermission(permission);
+        }
+
+        /**
+         * SCIPIO: Returns the permission set of the user, or null if it could not be read.
+         */
+        private UserLoginPermissionSet getPermissionSet(GenericValue userLogin) {
+            try {
+                return UserLoginPermissionSet.get(delegator, userLogin.getString("userLoginId"));
+            } catch (GenericEntityException e) {
+                Debug.logWarning(e, module);
+                return null;
             }
-            return false;
         }
 
         @Override
@@ -219,8 +219,8 @@ public final class SecurityFactory {
             if (hasEntityPermission(application + "_ROLE", action, userLogin)) {
                 // we have the permission now, we check to make sure we are allowed access
                 try {
-                    List<GenericValue> roleTest = EntityQuery.use(delegator).from(entityName).where(condition).queryList();
-                    if (!roleTest.isEmpty()) {
+                    // SCIPIO: only existence matters
+                    if (EntityQuery.use(delegator).from(entityName).where(condition).queryFirst() != null) {
                         return true;
                     }
                 } catch (GenericEntityException e) {
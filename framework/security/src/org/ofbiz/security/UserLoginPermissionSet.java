@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.security;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.transaction.Synchronization;
+
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilProperties;
+import org.ofbiz.base.util.cache.UtilCache;
+import org.ofbiz.entity.Delegator;
+import org.ofbiz.entity.GenericEntityException;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.condition.EntityCondition;
+import org.ofbiz.entity.condition.EntityOperator;
+import org.ofbiz.entity.transaction.GenericTransactionException;
+import org.ofbiz.entity.transaction.TransactionUtil;
+import org.ofbiz.entity.util.EntityQuery;
+
+/**
+ * Effective permissions of a UserLogin, precomputed from its security groups (SCIPIO).
+ * <p>
+ * Used by the default {@link Security} implementation instead of walking the UserLoginSecurityGroup rows and
+ * looking up SecurityGroupPermission per group on every check: the permissionIds of all the groups the user is
+ * currently a member of are merged into one immutable hash set, and the entities the user administers
+ * (<code>ENTITY_ADMIN</code> permissions) into another, so every check is one or two hash lookups.
+ * <p>
+ * {@link #hasEntityPermission(String, String)} checks <code>entity + action</code> (the action includes its leading
+ * underscore, e.g. <code>_VIEW</code>) and the entity's <code>_ADMIN</code> permission, as the original implementation;
+ * {@link #hasPermission(String)} stays an exact lookup.
+ * <p>
+ * A set is valid until the earliest time one of its group memberships starts or ends (fromDate/thruDate), and at most
+ * <code>security.properties#security.permissionSet.maxAge</code> seconds; past that, it is rebuilt on the next check.
+ * Sets are removed by the <code>clearUserLoginPermissionSets</code> service, which is triggered by the
+ * UserLoginSecurityGroup and SecurityGroupPermission entity ECAs, again once the changing transaction completes.
+ */
+public final class UserLoginPermissionSet {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    /** Key format: userLoginId::delegatorName */
+    private static final UtilCache<String, UserLoginPermissionSet> permissionSetCache = UtilCache.createUtilCache("security.UserLoginPermissionSet", true);
+
+    private static final String ADMIN_SUFFIX = "_ADMIN";
+
+    /** Maximum age of a set in milliseconds, so a missed clear (e.g. a change from another server) is bounded. */
+    private static final long MAX_AGE = UtilProperties.getPropertyAsLong("security", "security.permissionSet.maxAge", 1800) * 1000;
+
+    private final String userLoginId;
+    private final Set<String> groupIds;
+    private final Set<String> permissions;
+    private final Set<String> adminEntities;
+    private final long validUntil;
+
+    private UserLoginPermissionSet(String userLoginId, Set<String> groupIds, Set<String> permissions, long validUntil) {
+        this.userLoginId = userLoginId;
+        this.groupIds = Collections.unmodifiableSet(groupIds);
+        this.permissions = Collections.unmodifiableSet(permissions);
+        Set<String> adminEntities = new HashSet<>();
+        for (String permission : permissions) {
+            if (permission.endsWith(ADMIN_SUFFIX)) {
+                adminEntities.add(permission.substring(0, permission.length() - ADMIN_SUFFIX.length()));
+            }
+        }
+        this.adminEntities = Collections.unmodifiableSet(adminEntities);
+        this.validUntil = validUntil;
+    }
+
+    /**
+     * Returns the current permission set of the user, building it if not cached or no longer valid.
+     */
+    public static UserLoginPermissionSet get(Delegator delegator, String userLoginId) throws GenericEntityException {
+        String cacheKey = userLoginId + "::" + delegator.getDelegatorName();
+        UserLoginPermissionSet permissionSet = permissionSetCache.get(cacheKey);
+        long now = System.currentTimeMillis();
+        if (permissionSet == null || now >= permissionSet.validUntil) {
+            UserLoginPermissionSet newPermissionSet = build(delegator, userLoginId, now);
+            if (permissionSet == null) {
+                permissionSet = permissionSetCache.putIfAbsentAndGet(cacheKey, newPermissionSet);
+            } else {
+                permissionSetCache.put(cacheKey, newPermissionSet);
+                permissionSet = newPermissionSet;
+            }
+        }
+        return permissionSet;
+    }
+
+    private static UserLoginPermissionSet build(Delegator delegator, String userLoginId, long now) throws GenericEntityException {
+        List<GenericValue> memberships = EntityQuery.use(delegator).from("UserLoginSecurityGroup").where("userLoginId", userLoginId).queryList();
+        Set<String> groupIds = new HashSet<>();
+        long validUntil = (MAX_AGE > 0) ? now + MAX_AGE : Long.MAX_VALUE;
+        for (GenericValue membership : memberships) {
+            Timestamp fromDate = membership.getTimestamp("fromDate");
+            Timestamp thruDate = membership.getTimestamp("thruDate");
+            if (fromDate != null && fromDate.getTime() > now) {
+                // Not started yet: the set changes when it does
+                validUntil = Math.min(validUntil, fromDate.getTime());
+                continue;
+            }
+            if (thruDate != null) {
+                if (thruDate.getTime() <= now) {
+                    continue;
+                }
+                validUntil = Math.min(validUntil, thruDate.getTime());
+            }
+            groupIds.add(membership.getString("groupId"));
+        }
+        Set<String> permissions = new HashSet<>();
+        if (!groupIds.isEmpty()) {
+            List<GenericValue> groupPermissions = EntityQuery.use(delegator).select("permissionId").from("SecurityGroupPermission")
+                    .where(EntityCondition.makeCondition("groupId", EntityOperator.IN, new ArrayList<>(groupIds))).queryList();
+            for (GenericValue groupPermission : groupPermissions) {
+                permissions.add(groupPermission.getString("permissionId"));
+            }
+        }
+        if (Debug.verboseOn()) {
+            Debug.logVerbose("Built permission set for UserLogin [" + userLoginId + "]: " + groupIds.size() + " groups, "
+                    + permissions.size() + " permissions", module);
+        }
+        return new UserLoginPermissionSet(userLoginId, groupIds, permissions, validUntil);
+    }
+
+    /**
+     * Removes the permission set of the given user, or all the permission sets of the delegator if userLoginId is null.
+     * <p>
+     * If a transaction is in place, the sets are removed again after it completes, because a set rebuilt in the
+     * meantime by another thread still reads the committed (old) security groups.
+     */
+    public static void clear(Delegator delegator, String userLoginId) {
+        removeSets(delegator, userLoginId);
+        try {
+            if (TransactionUtil.isTransactionInPlace()) {
+                TransactionUtil.registerSynchronization(new Synchronization() {
+                    @Override
+                    public void beforeCompletion() {
+                    }
+                    @Override
+                    public void afterCompletion(int status) {
+                        removeSets(delegator, userLoginId);
+                    }
+                });
+            }
+        } catch (GenericTransactionException e) {
+            Debug.logWarning(e, "Unable to register permission set clear with the current transaction; sets will expire after "
+                    + (MAX_AGE / 1000) + " seconds", module);
+        }
+    }
+
+    private static void removeSets(Delegator delegator, String userLoginId) {
+        if (userLoginId == null) {
+            String keySuffix = "::" + delegator.getDelegatorName();
+            permissionSetCache.removeByFilter((key, value) -> key.endsWith(keySuffix));
+            return;
+        }
+        permissionSetCache.remove(userLoginId + "::" + delegator.getDelegatorName());
+    }
+
+    /**
+     * Returns true if the user has the exact given permission.
+     */
+    public boolean hasPermission(String permission) {
+        return permission != null && permissions.contains(permission);
+    }
+
+    /**
+     * Returns true if the user has the entity + action permission (e.g. <code>PARTYMGR</code> + <code>_VIEW</code>) or the
+     * <code>_ADMIN</code> permission of the entity, as {@link Security#hasEntityPermission(String, String, GenericValue)}.
+     */
+    public boolean hasEntityPermission(String entity, String action) {
+        if (entity == null || action == null) {
+            return false;
+        }
+        return permissions.contains(entity.concat(action)) || adminEntities.contains(entity);
+    }
+
+    public String getUserLoginId() {
+        return userLoginId;
+    }
+
+    /**
+     * Returns the security groups the user was a member of when the set was built.
+     */
+    public Set<String> getGroupIds() {
+        return groupIds;
+    }
+
+    /**
+     * Returns the permissionIds of all the groups of the user.
+     */
+    public Set<String> getPermissions() {
+        return permissions;
+    }
+}
@@ -356,14 +356,6 @@ public class DispatchContext implements Serializable {
         return model.toWSDL(locationURI);
     }
 
-    private Callable<Map<String, ModelService>> createServiceReaderCallable(final ResourceHandler handler) {
-        return new Callable<Map<String, ModelService>>() {
-            public Map<String, ModelService> call() throws Exception {
-                return ModelServiceReader.getModelServiceMap(handler, DispatchContext.this.getDelegator());
-            }
-        };
-    }
-
     /**
      * Creates a per-component service reader for {@link com.ilscipio.scipio.service.def.Service}.
      *
@@ -391,14 +383,18 @@ public class DispatchContext implements Serializable {
                 Debug.logError(e, module);
                 throw new RuntimeException(e.getMessage());
             }
+            // SCIPIO: The XML definitions are read together, in parallel, by ModelServiceReader, which may use its model snapshot
+            List<ResourceHandler> handlers = new ArrayList<>();
             for (GlobalServices globalServices : globalServicesList) {
                 ResourceHandler handler = new MainResourceHandler(ServiceConfigUtil.getServiceEngineXmlFileName(), globalServices.getLoader(), globalServices.getLocation());
-                futures.add(ExecutionPool.GLOBAL_FORK_JOIN.submit(createServiceReaderCallable(handler)));
+                //futures.add(ExecutionPool.GLOBAL_FORK_JOIN.submit(createServiceReaderCallable(handler)));
+                handlers.add(handler);
             }
 
             // get all of the component resource model stuff, ie specified in each scipio-component.xml file
             for (ComponentConfig.ServiceResourceInfo componentResourceInfo: ComponentConfig.getAllServiceResourceInfos("model")) {
-                futures.add(ExecutionPool.GLOBAL_FORK_JOIN.submit(createServiceReaderCallable(componentResourceInfo.createResourceHandler())));
+                //futures.add(ExecutionPool.GLOBAL_FORK_JOIN.submit(createServiceReaderCallable(componentResourceInfo.createResourceHandler())));
+                handlers.add(componentResourceInfo.createResourceHandler());
             }
 
             // SCIPIO: 3.0.0: Handle @Service annotation definitions
@@ -406,7 +402,9 @@ public class DispatchContext implements Serializable {
                 futures.add(ExecutionPool.GLOBAL_FORK_JOIN.submit(createAnnotationsServiceReaderCallable(cri)));
             }
 
-            for (Map<String, ModelService> servicesMap: ExecutionPool.getAllFutures(futures)) {
+            List<Map<String, ModelService>> serviceMaps = new ArrayList<>(ModelServiceReader.getModelServiceMaps(handlers, getDelegator()));
+            serviceMaps.addAll(ExecutionPool.getAllFutures(futures));
+            for (Map<String, ModelService> servicesMap: serviceMaps) {
                 if (servicesMap != null) {
                     // SCIPIO: 2.1.0: Check duplicates for overriddenService
                     //serviceMap.putAll(servicesMap);
@@ -29,6 +29,7 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -45,8 +46,10 @@ import com.ilscipio.scipio.service.def.Permissions;
 import com.ilscipio.scipio.service.def.Property;
 import com.ilscipio.scipio.service.def.Service;
 import com.ilscipio.scipio.service.def.TypeValidate;
+import org.ofbiz.base.concurrent.ExecutionPool;
 import org.ofbiz.base.config.GenericConfigException;
 import org.ofbiz.base.config.ResourceHandler;
+import org.ofbiz.base.config.ResourceSnapshot;
 import org.ofbiz.base.metrics.MetricsFactory;
 import org.ofbiz.base.util.Debug;
 import org.ofbiz.base.util.GeneralException;
@@ -105,6 +108,57 @@ public class ModelServiceReader implements Serializable {
         return reader.getModelServices();
     }
 
+    /**
+     * Reads the services of all the given definition resources, in parallel, or from the model snapshot of the
+     * current definitions if there is one (SCIPIO).
+     * <p>
+     * The snapshot is keyed by the contents of the resources and by the entity model of the delegator, which is used
+     * for the entity auto-attributes; it is written after reading the resources, before the returned services are
+     * linked to the services they override.
+     * @return the service maps of the resources, in resource order
+     */
+    public static List<Map<String, ModelService>> getModelServiceMaps(List<ResourceHandler> handlers, Delegator delegator) {
+        long startTime = System.currentTimeMillis();
+        String snapshotName = "service-" + delegator.getDelegatorName();
+        String sourceHash = null;
+        String entitySourceHash = delegator.getModelReader().getSourceHash();
+        if (ResourceSnapshot.isEnabled() && entitySourceHash != null) {
+            try {
+                sourceHash = ResourceSnapshot.hashResources(handlers, entitySourceHash,
+                        ResourceSnapshot.getCodeVersion(ModelServiceReader.class, ModelService.class));
+            } catch (GenericConfigException e) {
+                Debug.logWarning("Could not hash service definitions; not using model snapshot: " + e.toString(), module);
+            }
+        }
+        long hashTime = System.currentTimeMillis();
+        if (sourceHash != null) {
+            @SuppressWarnings("unchecked")
+            List<Map<String, ModelService>> serviceMaps = ResourceSnapshot.read(snapshotName, sourceHash, ArrayList.class);
+            if (serviceMaps != null) {
+                long endTime = System.currentTimeMillis();
+                Debug.logInfo("Loaded service definitions of " + serviceMaps.size() + " resources from snapshot in " + (endTime - startTime)
+                        + " ms (hash: " + (hashTime - startTime) + " ms, snapshot read: " + (endTime - hashTime) + " ms)", module);
+                return serviceMaps;
+            }
+        }
+
+        List<Future<Map<String, ModelService>>> futures = new ArrayList<>(handlers.size());
+        for (ResourceHandler handler : handlers) {
+            futures.add(ExecutionPool.GLOBAL_FORK_JOIN.submit(() -> getModelServiceMap(handler, delegator)));
+        }
+        ArrayList<Map<String, ModelService>> serviceMaps = new ArrayList<>(ExecutionPool.getAllFutures(futures));
+        long loadTime = System.currentTimeMillis();
+        String snapshotResult = "not written";
+        if (sourceHash != null && serviceMaps.size() == handlers.size() && !serviceMaps.contains(null)) {
+            snapshotResult = ResourceSnapshot.write(snapshotName, sourceHash, serviceMaps) ? "written" : "write failed";
+        }
+        long endTime = System.currentTimeMillis();
+        Debug.logInfo("Loaded service definitions of " + handlers.size() + " resources in " + (endTime - startTime) + " ms (hash: "
+                + (hashTime - startTime) + " ms, parse and build: " + (loadTime - hashTime) + " ms, snapshot " + snapshotResult + ": "
+                + (endTime - loadTime) + " ms)", module);
+        return serviceMaps;
+    }
+
     public static Map<String, ModelService> getModelServiceMap(ComponentReflectInfo reflectInfo, Delegator delegator) {
         ModelServiceReader reader = new ModelServiceReader(false, null, null, reflectInfo, delegator);
         return reader.getModelServices();
@@ -18,16 +18,29 @@
  *******************************************************************************/
 package org.ofbiz.service.calendar;
 
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
+import javax.transaction.Synchronization;
+
+import org.ofbiz.base.util.DateRange;
 import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilProperties;
 import org.ofbiz.base.util.UtilValidate;
+import org.ofbiz.base.util.cache.UtilCache;
 import org.ofbiz.entity.Delegator;
 import org.ofbiz.entity.GenericEntityException;
 import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.transaction.GenericTransactionException;
+import org.ofbiz.entity.transaction.TransactionUtil;
 import org.ofbiz.entity.util.EntityQuery;
+import org.ofbiz.service.DispatchContext;
+import org.ofbiz.service.ServiceUtil;
+
+import com.ibm.icu.util.Calendar;
 
 /** TemporalExpression persistence worker. */
 public final class TemporalExpressionWorker {
@@ -55,6 +68,16 @@ public final class TemporalExpressionWorker {
     private final static String EXCLUDE = "EXCLUDE";
     private final static String SUBSTITUTE = "SUBSTITUTE";
 
+    /**
+     * SCIPIO: Built expressions by delegator and tempExprId, and expanded occurrences by expression, range and calendar settings.
+     * Both are cleared by the clearTemporalExpressionCaches service (entity ECAs on TemporalExpression and TemporalExpressionAssoc).
+     */
+    private static final UtilCache<String, TemporalExpression> expressionCache = UtilCache.createUtilCache("service.TemporalExpression", 0, 0);
+    private static final UtilCache<String, long[]> occurrenceCache = UtilCache.createUtilCache("service.TemporalExpression.occurrences",
+            UtilProperties.getPropertyAsInteger("service", "tempExpr.occurrenceCache.maxSize", 5000), 0);
+    /** Ranges with more occurrences are expanded but not cached. */
+    private static final int OCCURRENCE_CACHE_MAX_OCCURRENCES = UtilProperties.getPropertyAsInteger("service", "tempExpr.occurrenceCache.maxOccurrences", 10000);
+
     private TemporalExpressionWorker () {}
 
     /** Get a <code>TemporalExpression</code> from persistent storage.
@@ -67,16 +90,85 @@ public final class TemporalExpressionWorker {
         if (UtilValidate.isEmpty(tempExprId)) {
             throw new IllegalArgumentException("tempExprId argument cannot be empty");
         }
+        // SCIPIO: The built expressions are immutable, so they are cached
+        String cacheKey = delegator.getDelegatorName() + "::" + tempExprId;
+        TemporalExpression result = expressionCache.get(cacheKey);
+        if (result != null) {
+            return result;
+        }
         GenericValue exprValue = EntityQuery.use(delegator).from("TemporalExpression").where("tempExprId", tempExprId).cache().queryOne();
         if (UtilValidate.isEmpty(exprValue)) {
             throw new IllegalArgumentException("tempExprId argument invalid - expression not found");
         }
-        TemporalExpression result = makeTemporalExpression(delegator, exprValue);
+        result = makeTemporalExpression(delegator, exprValue);
         if (Debug.verboseOn()) {
             TemporalExpressionPrinter printer = new TemporalExpressionPrinter(result);
             Debug.logVerbose(printer.toString(), module);
         }
-        return result;
+        return expressionCache.putIfAbsentAndGet(cacheKey, result);
+    }
+
+    /**
+     * Returns the occurrences of the persisted expression within the range, as {@link TemporalExpression#getRange}
+     * starting from <code>cal</code>, from the cache of expanded occurrences (SCIPIO).
+     * The returned set is a new modifiable set.
+     */
+    public static Set<Date> getRange(Delegator delegator, String tempExprId, DateRange range, Calendar cal) throws GenericEntityException {
+        String cacheKey = delegator.getDelegatorName() + "::" + tempExprId + "::" + range.start().getTime() + "::" + range.end().getTime()
+                + "::" + cal.getTimeInMillis() + "::" + cal.getTimeZone().getID() + "::" + cal.getType()
+                + "::" + cal.getFirstDayOfWeek() + "::" + cal.getMinimalDaysInFirstWeek();
+        long[] occurrenceTimes = occurrenceCache.get(cacheKey);
+        if (occurrenceTimes == null) {
+            Set<Date> occurrences = getTemporalExpression(delegator, tempExprId).getRange(range, cal);
+            if (occurrences.size() > OCCURRENCE_CACHE_MAX_OCCURRENCES) {
+                return occurrences;
+            }
+            occurrenceTimes = new long[occurrences.size()];
+            int i = 0;
+            for (Date occurrence : occurrences) {
+                occurrenceTimes[i++] = occurrence.getTime();
+            }
+            occurrenceCache.put(cacheKey, occurrenceTimes);
+        }
+        Set<Date> occurrences = new TreeSet<>();
+        for (long occurrenceTime : occurrenceTimes) {
+            occurrences.add(new Date(occurrenceTime));
+        }
+        return occurrences;
+    }
+
+    /**
+     * Removes all the cached expressions and occurrences (SCIPIO).
+     */
+    public static void clearCaches() {
+        expressionCache.clear();
+        occurrenceCache.clear();
+    }
+
+    /**
+     * Service that removes all the cached expressions and occurrences; called by the entity ECAs of the expression entities (SCIPIO).
+     * <p>
+     * The ECAs run before the changes are committed, so another transaction may cache the old expression again in
+     * the meantime: the caches are also cleared when the current transaction completes.
+     */
+    public static Map<String, Object> clearTemporalExpressionCaches(DispatchContext dctx, Map<String, ?> context) {
+        clearCaches();
+        try {
+            if (TransactionUtil.isTransactionInPlace()) {
+                TransactionUtil.registerSynchronization(new Synchronization() {
+                    @Override
+                    public void beforeCompletion() {
+                    }
+                    @Override
+                    public void afterCompletion(int status) {
+                        clearCaches();
+                    }
+                });
+            }
+        } catch (GenericTransactionException e) {
+            Debug.logWarning(e, "Unable to register temporal expression cache clear with the current transaction", module);
+        }
+        return ServiceUtil.returnSuccess();
     }
 
     /** Create a <code>TemporalExpression</code> instance from a TemporalExpression
@@ -789,6 +789,25 @@ public class TemporalExpressions implements Serializable {
             if (deltaMillis < 1000) {
                 return skip;
             }
+            if (this.freqType == Calendar.MONTH || this.freqType == Calendar.YEAR) {
+                // SCIPIO: Skip whole months/years as well, when adding them at once gives the same date as adding them one at
+                // a time (start day in every month, so never clamped); otherwise first() steps from the start date
+                int startDay = skip.get(Calendar.DAY_OF_MONTH);
+                if ((this.freqType == Calendar.MONTH && startDay > 28)
+                        || (this.freqType == Calendar.YEAR && startDay == 29 && skip.get(Calendar.MONTH) == Calendar.FEBRUARY)) {
+                    return skip;
+                }
+                long units = cal.get(Calendar.YEAR) - skip.get(Calendar.YEAR);
+                if (this.freqType == Calendar.MONTH) {
+                    units = units * 12 + (cal.get(Calendar.MONTH) - skip.get(Calendar.MONTH));
+                }
+                units -= units % this.freqCount;
+                skip.add(this.freqType, (int) units);
+                while (skip.after(cal)) {
+                    skip.add(this.freqType, -this.freqCount);
+                }
+                return skip;
+            }
             long divisor = deltaMillis;
             if (this.freqType == Calendar.DAY_OF_MONTH) {
                 divisor = 86400000;
@@ -22,10 +22,16 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
 
 import org.apache.tomcat.util.buf.StringUtils;
 import org.ofbiz.base.GeneralConfig;
@@ -43,7 +49,11 @@ import org.ofbiz.entity.condition.EntityCondition;
 import org.ofbiz.entity.condition.EntityExpr;
 import org.ofbiz.entity.condition.EntityJoinOperator;
 import org.ofbiz.entity.condition.EntityOperator;
+import org.ofbiz.entity.config.model.Datasource;
+import org.ofbiz.entity.config.model.EntityConfig;
+import org.ofbiz.entity.datasource.GenericHelperInfo;
 import org.ofbiz.entity.serialize.XmlSerializer;
+import org.ofbiz.entity.transaction.GenericTransactionException;
 import org.ofbiz.entity.transaction.TransactionUtil;
 import org.ofbiz.entity.util.EntityFilter;
 import org.ofbiz.entity.util.EntityListIterator;
@@ -87,6 +97,9 @@ public final class JobManager {
     private static final boolean debugPollLogIntervalVerbose = UtilProperties.getPropertyAsBoolean("service", "jobManager.debug.poll.logInterval.verbose", false);
     private static volatile long debugPollLogLastTimestamp = 0;
     private static final List<String> jobPollMainCondOrderBy = UtilMisc.unmodifiableArrayList("priority DESC NULLS LAST", "runTime"); // SCIPIO: refactored
+    // SCIPIO: Job claiming and poller wake-up
+    private static final String CLAIM_MODE = UtilProperties.getPropertyValue("service", "jobManager.poll.claimMode", "auto");
+    private static final boolean POLL_WAKE_UP = UtilProperties.getPropertyAsBoolean("service", "jobManager.poll.wakeUp", true);
 
     private static void assertIsRunning() {
         if (isShutDown) {
@@ -134,6 +147,9 @@ public final class JobManager {
      */
     private volatile boolean startupJobsQueued = false;
 
+    private final ClaimStats claimStats = new ClaimStats(); // SCIPIO
+    private volatile Boolean skipLockedClaim = null; // SCIPIO: see isSkipLockedClaim
+
     private JobManager(Delegator delegator) {
         this.delegator = delegator;
     }
@@ -317,12 +333,11 @@ public final class JobManager {
                 return poll;
             }
 
-            try (EntityListIterator jobsIterator = EntityQuery.use(delegator)
-                    .from("JobSandbox").where(mainCondition)
-                    .orderBy(jobPollMainCondOrderBy)
-                    .maxRows(limit).queryIterator()) { // SCIPIO: maxRows
-                // SCIPIO: factored out into method
-                jobsResult.add(ownAndCollectJobs(dctx, delegator, limit, jobsIterator, poll, null));
+            // SCIPIO: Claim all the due jobs at once where the database supports it, otherwise row by row
+            if (limit < 0 || poll.size() < limit) {
+                for (GenericValue jobValue : claimJobs(mainCondition, (limit < 0) ? -1 : limit - poll.size())) {
+                    poll.add(new PersistedServiceJob(dctx, jobValue, null));
+                }
             }
             //} catch (GenericEntityException e) { // SCIPIO: 2018-08-29: this catch is counter-productive
             //    Debug.logWarning(e, module);
@@ -393,7 +408,7 @@ public final class JobManager {
             if ((currentTimestamp - debugPollLogLastTimestamp) > debugPollLogInterval) {
                 debugPollLogLastTimestamp = currentTimestamp;
                 String msg = (noJobs ? "No jobs to run; purging " + poll.size() + " jobs" : "Polled " + poll.size() + " jobs")
-                    + getJobPoller().toLogPoolConfigStr(debugPollLogIntervalVerbose);
+                    + "; claim stats: " + claimStats.toMap() + getJobPoller().toLogPoolConfigStr(debugPollLogIntervalVerbose);
                 Debug.logInfo(msg, module);
             }
         }
@@ -414,12 +429,10 @@ public final class JobManager {
                 // SCIPIO: filter
                 if (ignoreFilter != null && ignoreFilter.matches(jobValue)) {
                     result.ignored++;
+                    jobValue = jobsIterator.next(); // SCIPIO: fixed: was not advancing
                     continue;
                 }
-                // Claim ownership of this value. Using storeByCondition to avoid a race condition.
-                List<EntityExpr> updateExpression = UtilMisc.toList(EntityCondition.makeCondition("jobId", EntityOperator.EQUALS, jobValue.get("jobId")), EntityCondition.makeCondition("runByInstanceId", EntityOperator.EQUALS, null));
-                int rowsUpdated = delegator.storeByCondition("JobSandbox", UtilMisc.toMap("runByInstanceId", instanceId), EntityCondition.makeCondition(updateExpression));
-                if (rowsUpdated == 1) {
+                if (claimJob(jobValue)) { // SCIPIO: factored out
                     poll.add(new PersistedServiceJob(dctx, jobValue, null));
                     if (limit >= 0 && poll.size() == limit) { // SCIPIO: modified to support limit = -1
                         break;
@@ -431,6 +444,129 @@ public final class JobManager {
         return result;
     }
 
+    /**
+     * SCIPIO: Claims ownership of a job found due (runByInstanceId), with a conditional update to avoid a race
+     * condition with the pollers of other instances.
+     * @return true if claimed, false if claimed by another instance in between
+     */
+    protected boolean claimJob(GenericValue jobValue) throws GenericEntityException {
+        // Claim ownership of this value. Using storeByCondition to avoid a race condition.
+        List<EntityExpr> updateExpression = UtilMisc.toList(EntityCondition.makeCondition("jobId", EntityOperator.EQUALS, jobValue.get("jobId")), EntityCondition.makeCondition("runByInstanceId", EntityOperator.EQUALS, null));
+        int rowsUpdated = delegator.storeByCondition("JobSandbox", UtilMisc.toMap("runByInstanceId", instanceId), EntityCondition.makeCondition(updateExpression));
+        if (rowsUpdated == 1) {
+            jobValue.set("runByInstanceId", instanceId);
+            jobValue.synchronizedWithDatasource();
+            claimStats.claimed(jobValue.getTimestamp("runTime"), System.currentTimeMillis());
+            return true;
+        }
+        claimStats.collisions.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * SCIPIO: Claims for this instance up to <code>limit</code> (-1 for no limit) due jobs matching the condition,
+     * in priority and run time order, and returns them.
+     * <p>
+     * If the datasource of JobSandbox declares <code>use-skip-locked="true"</code> (entityengine.xml), the jobs are
+     * selected with <code>SELECT ... FOR UPDATE SKIP LOCKED</code> and claimed with a single update: rows being claimed
+     * by the pollers of other instances are skipped rather than waited for or collided on, so instances sharing the
+     * JobSandbox claim disjoint batches. Otherwise, or with <code>service.properties#jobManager.poll.claimMode=conditional</code>,
+     * the jobs are claimed row by row with a conditional update.
+     * <p>
+     * Must run in a transaction, which holds the row locks until the claim is committed.
+     */
+    public List<GenericValue> claimJobs(EntityCondition condition, int limit) throws GenericEntityException {
+        Integer maxRows = (limit >= 0) ? limit : null;
+        if (isSkipLockedClaim()) {
+            List<GenericValue> jobValues = EntityQuery.use(delegator).from("JobSandbox").where(condition)
+                    .orderBy(jobPollMainCondOrderBy).maxRows(maxRows).skipLocked(true).queryList();
+            if (jobValues.isEmpty()) {
+                return jobValues;
+            }
+            List<String> jobIds = new ArrayList<>(jobValues.size());
+            for (GenericValue jobValue : jobValues) {
+                jobIds.add(jobValue.getString("jobId"));
+            }
+            // The rows are locked by this transaction, so the runByInstanceId condition is only a safeguard
+            int rowsUpdated = delegator.storeByCondition("JobSandbox", UtilMisc.toMap("runByInstanceId", instanceId),
+                    EntityCondition.makeCondition(EntityCondition.makeCondition("jobId", EntityOperator.IN, jobIds),
+                            EntityCondition.makeCondition("runByInstanceId", EntityOperator.EQUALS, null)));
+            if (rowsUpdated != jobValues.size()) {
+                // Should not happen; let the rows be claimed again by the next poll
+                throw new GenericEntityException("Claimed " + rowsUpdated + " of " + jobValues.size() + " locked JobSandbox rows; rolling back claim");
+            }
+            long claimTime = System.currentTimeMillis();
+            for (GenericValue jobValue : jobValues) {
+                jobValue.set("runByInstanceId", instanceId);
+                jobValue.synchronizedWithDatasource();
+                claimStats.claimed(jobValue.getTimestamp("runTime"), claimTime);
+            }
+            return jobValues;
+        }
+        List<GenericValue> jobValues = new ArrayList<>();
+        try (EntityListIterator jobsIterator = EntityQuery.use(delegator).from("JobSandbox").where(condition)
+                .orderBy(jobPollMainCondOrderBy).maxRows(maxRows).queryIterator()) {
+            GenericValue jobValue;
+            while ((limit < 0 || jobValues.size() < limit) && (jobValue = jobsIterator.next()) != null) {
+                if (claimJob(jobValue)) {
+                    jobValues.add(jobValue);
+                }
+            }
+        }
+        return jobValues;
+    }
+
+    private boolean isSkipLockedClaim() {
+        Boolean skipLockedClaim = this.skipLockedClaim;
+        if (skipLockedClaim == null) {
+            skipLockedClaim = false;
+            if (!"conditional".equals(CLAIM_MODE)) {
+                GenericHelperInfo helperInfo = delegator.getGroupHelperInfo(delegator.getEntityGroupName("JobSandbox"));
+                Datasource datasource = (helperInfo != null) ? EntityConfig.getDatasource(helperInfo.getHelperBaseName()) : null;
+                skipLockedClaim = (datasource != null && datasource.getUseSkipLocked());
+            }
+            Debug.logInfo("Job claiming for delegator " + delegator.getDelegatorName() + ": " + (skipLockedClaim ? "SKIP LOCKED" : "row by row"), module);
+            this.skipLockedClaim = skipLockedClaim;
+        }
+        return skipLockedClaim;
+    }
+
+    /**
+     * SCIPIO: Returns the job claiming statistics of this instance since startup: jobs claimed, claim collisions
+     * (jobs found due but claimed by another instance first, row-by-row claiming only) and queue latency (time between
+     * the scheduled run time of a job and its claim, in milliseconds).
+     */
+    public Map<String, Object> getClaimStats() {
+        return claimStats.toMap();
+    }
+
+    private static class ClaimStats {
+        final AtomicLong claimed = new AtomicLong();
+        final AtomicLong collisions = new AtomicLong();
+        final AtomicLong totalLatency = new AtomicLong();
+        final LongAccumulator maxLatency = new LongAccumulator(Long::max, 0);
+
+        void claimed(Timestamp runTime, long claimTime) {
+            claimed.incrementAndGet();
+            if (runTime != null) {
+                long latency = Math.max(claimTime - runTime.getTime(), 0);
+                totalLatency.addAndGet(latency);
+                maxLatency.accumulate(latency);
+            }
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            long claimedCount = claimed.get();
+            map.put("instanceId", instanceId);
+            map.put("claimed", claimedCount);
+            map.put("collisions", collisions.get());
+            map.put("averageQueueLatency", (claimedCount > 0) ? totalLatency.get() / claimedCount : 0L);
+            map.put("maxQueueLatency", maxLatency.get());
+            return map;
+        }
+    }
+
     private static class CollectJobsResult {
         int ignored = 0;
         public int getIgnored() { return ignored; }
@@ -744,6 +880,9 @@ public final class JobManager {
         } catch (GenericEntityException e) {
             throw new JobManagerException(e.getMessage(), e);
         }
+        if (eventId == null) {
+            wakeUpPoller(jobV.getString("poolId"), startTime); // SCIPIO
+        }
         return PersistedServiceJob.makeResultJob(getDispatcher().getDispatchContext(), jobV, serviceOptions); // SCIPIO
     }
 
@@ -963,6 +1102,43 @@ public final class JobManager {
         schedule(jobName, poolName, serviceName, dataId, startTime, frequency, interval, count, endTime, maxRetry, null);
     }
 
+    /**
+     * SCIPIO: Wakes up the local job poller for a job just scheduled to run at runTime, if this instance runs jobs from its
+     * pool and runTime is before the next regular poll; the poller is woken once the current transaction, if any, is
+     * committed, as the job is not visible to it before.
+     */
+    private void wakeUpPoller(String poolId, long runTime) {
+        if (!POLL_WAKE_UP) {
+            return;
+        }
+        try {
+            if (poolId != null && !getRunPools().contains(poolId)) {
+                return;
+            }
+        } catch (GenericConfigException e) {
+            return;
+        }
+        try {
+            if (TransactionUtil.isTransactionInPlace()) {
+                TransactionUtil.registerSynchronization(new Synchronization() {
+                    @Override
+                    public void beforeCompletion() {
+                    }
+                    @Override
+                    public void afterCompletion(int status) {
+                        if (status == Status.STATUS_COMMITTED) {
+                            getJobPoller().wakeUp(runTime);
+                        }
+                    }
+                });
+                return;
+            }
+        } catch (GenericTransactionException e) {
+            Debug.logWarning(e, "Unable to register job poller wake-up with the current transaction; waking up now", module);
+        }
+        getJobPoller().wakeUp(runTime);
+    }
+
     /** Returns true if service.properties#jobManager.debug=true or verbose logging enabled (SCIPIO). */
     public static boolean isDebug() {
         return DEBUG || Debug.verboseOn();
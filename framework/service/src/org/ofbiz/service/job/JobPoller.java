@@ -29,6 +29,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
@@ -81,6 +82,12 @@ public final class JobPoller implements ServiceConfigListener {
     private final Object globalServiceStatsLock = new Object();
     private final Map<CurrentServiceStats, Boolean> currentServiceStats = new ConcurrentHashMap<>();
 
+    // SCIPIO: Poll wake-up requests (see wakeUp); times are in milliseconds, guarded by pollWaitLock for waiting
+    private final long wakeUpMinInterval = UtilProperties.getPropertyAsLong("service", "jobManager.poll.wakeUp.minInterval", 100);
+    private final ConcurrentSkipListSet<Long> wakeUpTimes = new ConcurrentSkipListSet<>();
+    private final Object pollWaitLock = new Object();
+    private volatile long lastPollTime = 0;
+
     /**
      * Returns the <code>JobPoller</code> instance.
      */
@@ -151,6 +158,54 @@ public final class JobPoller implements ServiceConfigListener {
         jobManagers.putIfAbsent(jm.getDelegator().getDelegatorName(), jm);
     }
 
+    /**
+     * Requests the polling thread to poll the JobSandbox no later than the given time instead of waiting for the
+     * end of the poll interval (SCIPIO).
+     * <p>
+     * Used by {@link JobManager} when a job due before the next regular poll is scheduled locally, so it does not wait
+     * up to a full poll interval to be picked up. Wake-ups later than the next regular poll are ignored, and polls are
+     * never closer than <code>jobManager.poll.wakeUp.minInterval</code> milliseconds.
+     */
+    public void wakeUp(long atTime) {
+        if (jobManagerPollerThread == null || atTime >= lastPollTime + pollWaitTime()) {
+            return;
+        }
+        wakeUpTimes.add(atTime);
+        synchronized (pollWaitLock) {
+            pollWaitLock.notifyAll();
+        }
+    }
+
+    /**
+     * Requests the polling thread to poll the JobSandbox now (SCIPIO).
+     */
+    public void wakeUp() {
+        wakeUp(System.currentTimeMillis());
+    }
+
+    /**
+     * Waits until the end of the poll interval or the earliest wake-up time requested, whichever comes first (SCIPIO).
+     */
+    private void waitForNextPoll() throws InterruptedException {
+        long pollTime = lastPollTime + pollWaitTime();
+        synchronized (pollWaitLock) {
+            while (true) {
+                long now = System.currentTimeMillis();
+                long nextTime = pollTime;
+                Long wakeUpTime = wakeUpTimes.isEmpty() ? null : wakeUpTimes.first();
+                if (wakeUpTime != null && wakeUpTime < nextTime) {
+                    nextTime = Math.max(wakeUpTime, lastPollTime + wakeUpMinInterval);
+                }
+                if (nextTime <= now) {
+                    break;
+                }
+                pollWaitLock.wait(nextTime - now);
+            }
+        }
+        // Requests up to now are served by the coming poll
+        wakeUpTimes.headSet(System.currentTimeMillis(), true).clear();
+    }
+
     private JobPoller() {
         if (pollEnabled()) {
             jobManagerPollerThread = new Thread(new JobManagerPoller(), "Scipio-JobPoller");
@@ -457,6 +512,7 @@ public final class JobPoller implements ServiceConfigListener {
                     }
                 }
                 while (!executor.isShutdown()) {
+                    lastPollTime = System.currentTimeMillis(); // SCIPIO
                     // SCIPIO: NOTE: The following line was changed for priority patch
                     //int remainingCapacity = executor.getQueue().remainingCapacity();
                     int remainingCapacity = queueSize() - executor.getQueue().size();
@@ -511,14 +567,14 @@ public final class JobPoller implements ServiceConfigListener {
                     }
                     if (JobManager.isDebug() && pollSleepWarnInterval > 0) { // SCIPIO
                         long sleepStart = System.currentTimeMillis();
-                        Thread.sleep(pollWaitTime());
+                        waitForNextPoll(); // SCIPIO: was: Thread.sleep(pollWaitTime());
                         long realSleepTime = System.currentTimeMillis() - sleepStart;
                         if (realSleepTime > pollSleepWarnInterval) {
                             Debug.log(JobManager.getDebugProblemLevel(), "Polling thread sleep exceeded expected time, took "
                                     + realSleepTime + "ms, limit " + pollSleepWarnInterval + "ms" + toLogPoolConfigStr(pollSleepWarnIntervalVerbose), module);
                         }
                     } else {
-                        Thread.sleep(pollWaitTime());
+                        waitForNextPoll(); // SCIPIO: was: Thread.sleep(pollWaitTime());
                     }
                 }
             } catch (InterruptedException e) {
@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.service.test;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.ofbiz.base.util.UtilDateTime;
+import org.ofbiz.base.util.UtilMisc;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.condition.EntityCondition;
+import org.ofbiz.entity.condition.EntityOperator;
+import org.ofbiz.entity.transaction.TransactionUtil;
+import org.ofbiz.entity.util.EntityQuery;
+import org.ofbiz.service.job.JobManager;
+import org.ofbiz.service.testtools.OFBizTestCase;
+
+/**
+ * JobClaimTests (SCIPIO): several threads claim the same due jobs concurrently with {@link JobManager#claimJobs};
+ * each job must be claimed exactly once (SKIP LOCKED where the datasource supports it, conditional updates otherwise).
+ */
+public class JobClaimTests extends OFBizTestCase {
+
+    private static final String POOL_ID = "claimtest"; // not served by the job poller
+    private static final int JOB_COUNT = 60;
+    private static final int THREAD_COUNT = 4;
+    private static final int BATCH_SIZE = 5;
+
+    public JobClaimTests(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        delegator.removeByAnd("JobSandbox", UtilMisc.toMap("poolId", POOL_ID));
+        Timestamp runTime = UtilDateTime.adjustTimestamp(UtilDateTime.nowTimestamp(), Calendar.MINUTE, -1);
+        List<GenericValue> jobs = new ArrayList<>(JOB_COUNT);
+        for (int i = 0; i < JOB_COUNT; i++) {
+            jobs.add(delegator.makeValue("JobSandbox", UtilMisc.toMap("jobId", "CLAIMTEST_" + i, "jobName", "Job claim test " + i,
+                    "poolId", POOL_ID, "runTime", runTime, "serviceName", "testScv", "statusId", "SERVICE_PENDING")));
+        }
+        delegator.storeAll(jobs);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        delegator.removeByAnd("JobSandbox", UtilMisc.toMap("poolId", POOL_ID));
+    }
+
+    public void testConcurrentClaims() throws Exception {
+        JobManager jobManager = JobManager.getInstance(delegator, false);
+        EntityCondition condition = EntityCondition.makeCondition(EntityCondition.makeCondition("poolId", POOL_ID),
+                EntityCondition.makeCondition("runByInstanceId", EntityOperator.EQUALS, null),
+                EntityCondition.makeCondition("runTime", EntityOperator.LESS_THAN_EQUAL_TO, UtilDateTime.nowTimestamp()));
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        List<Future<List<String>>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREAD_COUNT; i++) {
+                futures.add(executor.submit(() -> {
+                    List<String> claimedJobIds = new ArrayList<>();
+                    while (true) {
+                        boolean beganTransaction = TransactionUtil.begin();
+                        List<GenericValue> claimedJobs;
+                        try {
+                            claimedJobs = jobManager.claimJobs(condition, BATCH_SIZE);
+                            TransactionUtil.commit(beganTransaction);
+                        } catch (Exception e) {
+                            TransactionUtil.rollback(beganTransaction, "Could not claim jobs", e);
+                            throw e;
+                        }
+                        if (claimedJobs.isEmpty()) {
+                            return claimedJobIds;
+                        }
+                        assertTrue("Claimed batch size", claimedJobs.size() <= BATCH_SIZE);
+                        for (GenericValue claimedJob : claimedJobs) {
+                            claimedJobIds.add(claimedJob.getString("jobId"));
+                        }
+                    }
+                }));
+            }
+            Set<String> claimedJobIds = new HashSet<>();
+            for (Future<List<String>> future : futures) {
+                for (String jobId : future.get()) {
+                    assertTrue("Job " + jobId + " claimed more than once", claimedJobIds.add(jobId));
+                }
+            }
+            assertEquals("Claimed jobs", JOB_COUNT, claimedJobIds.size());
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals("Unclaimed jobs", 0, EntityQuery.use(delegator).from("JobSandbox").where("poolId", POOL_ID, "runByInstanceId", null).queryCount());
+    }
+}
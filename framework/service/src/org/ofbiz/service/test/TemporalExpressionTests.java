@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.service.test;
+
+import org.ofbiz.service.calendar.TemporalExpressions.Frequency;
+import org.ofbiz.service.testtools.OFBizTestCase;
+
+import com.ibm.icu.util.Calendar;
+import com.ibm.icu.util.TimeZone;
+
+/**
+ * TemporalExpressionTests (SCIPIO): the monthly and yearly {@link Frequency} expressions, which skip ahead by whole
+ * periods, must give the same occurrences as stepping one period at a time from the start date, including start days
+ * clamped at the end of short months (day &gt; 28, February 29) and frequency counts greater than one.
+ */
+public class TemporalExpressionTests extends OFBizTestCase {
+
+    private static final TimeZone TIME_ZONE = TimeZone.getTimeZone("UTC");
+
+    public TemporalExpressionTests(String name) {
+        super(name);
+    }
+
+    public void testMonthly() {
+        for (int startDay : new int[] { 1, 15, 28, 29, 30, 31 }) {
+            for (int freqCount : new int[] { 1, 2, 3, 5, 12 }) {
+                assertSameOccurrences(makeCal(2011, Calendar.JANUARY, startDay, 9, 30), Calendar.MONTH, freqCount, 2011, 2016);
+                assertSameOccurrences(makeCal(2011, Calendar.MARCH, startDay, 0, 0), Calendar.MONTH, freqCount, 2011, 2016);
+            }
+        }
+    }
+
+    public void testMonthlyEndOfMonthClamping() {
+        // Stepping one month at a time from January 31: February 28, then the 28th of every month
+        Frequency frequency = new Frequency(makeCal(2011, Calendar.JANUARY, 31, 0, 0).getTime(), Calendar.MONTH, 1);
+        assertEquals(makeCal(2011, Calendar.FEBRUARY, 28, 0, 0), frequency.first(makeCal(2011, Calendar.FEBRUARY, 10, 0, 0)));
+        assertEquals(makeCal(2011, Calendar.JULY, 28, 0, 0), frequency.first(makeCal(2011, Calendar.JULY, 2, 0, 0)));
+    }
+
+    public void testYearly() {
+        for (int freqCount : new int[] { 1, 2, 3, 4 }) {
+            assertSameOccurrences(makeCal(2000, Calendar.FEBRUARY, 29, 12, 0), Calendar.YEAR, freqCount, 2000, 2030);
+            assertSameOccurrences(makeCal(2001, Calendar.FEBRUARY, 28, 12, 0), Calendar.YEAR, freqCount, 2001, 2030);
+            assertSameOccurrences(makeCal(2001, Calendar.MARCH, 1, 0, 0), Calendar.YEAR, freqCount, 2001, 2030);
+            assertSameOccurrences(makeCal(2003, Calendar.DECEMBER, 31, 23, 59), Calendar.YEAR, freqCount, 2003, 2030);
+        }
+    }
+
+    public void testYearlyFebruary29() {
+        // Stepping one year at a time from February 29, 2000: February 28 from 2001 on, also in leap years
+        Frequency frequency = new Frequency(makeCal(2000, Calendar.FEBRUARY, 29, 0, 0).getTime(), Calendar.YEAR, 1);
+        assertEquals(makeCal(2004, Calendar.FEBRUARY, 28, 0, 0), frequency.first(makeCal(2004, Calendar.JANUARY, 1, 0, 0)));
+        assertTrue(frequency.includesDate(makeCal(2010, Calendar.FEBRUARY, 28, 0, 0)));
+        assertFalse(frequency.includesDate(makeCal(2008, Calendar.FEBRUARY, 29, 0, 0)));
+    }
+
+    /**
+     * Checks first, next and includesDate at midnight and at the start time of every day between the given years
+     * against stepping one period at a time from the start date.
+     */
+    private static void assertSameOccurrences(Calendar start, int freqType, int freqCount, int fromYear, int toYear) {
+        Frequency frequency = new Frequency(start.getTime(), freqType, freqCount);
+        Calendar day = makeCal(fromYear, Calendar.JANUARY, 1, 0, 0);
+        Calendar end = makeCal(toYear, Calendar.JANUARY, 1, 0, 0);
+        Calendar expected = (Calendar) start.clone();
+        while (day.before(end)) {
+            Calendar startTime = (Calendar) day.clone();
+            startTime.set(Calendar.HOUR_OF_DAY, start.get(Calendar.HOUR_OF_DAY));
+            startTime.set(Calendar.MINUTE, start.get(Calendar.MINUTE));
+            for (Calendar cal : new Calendar[] { day, startTime }) {
+                while (expected.before(cal)) {
+                    expected.add(freqType, freqCount);
+                }
+                String message = "start " + start.getTime() + ", type " + freqType + ", count " + freqCount + ", date " + cal.getTime();
+                assertEquals(message, expected, frequency.first(cal));
+                assertEquals(message, expected.equals(cal), frequency.includesDate(cal));
+                if (expected.equals(cal)) {
+                    Calendar expectedNext = (Calendar) expected.clone();
+                    expectedNext.add(freqType, freqCount);
+                    assertEquals(message, expectedNext, frequency.next(cal, null));
+                }
+            }
+            day.add(Calendar.DAY_OF_MONTH, 1);
+        }
+    }
+
+    private static Calendar makeCal(int year, int month, int day, int hour, int minute) {
+        Calendar cal = Calendar.getInstance(TIME_ZONE);
+        cal.clear();
+        cal.set(year, month, day, hour, minute, 0);
+        return cal;
+    }
+}
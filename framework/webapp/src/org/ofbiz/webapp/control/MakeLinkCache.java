@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.webapp.control;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import org.ofbiz.base.util.UtilProperties;
+import org.ofbiz.base.util.cache.UtilCache;
+import org.ofbiz.webapp.FullWebappInfo;
+import org.ofbiz.webapp.website.WebSiteProperties;
+
+/**
+ * Caches for {@link RequestHandler#makeLink} (SCIPIO).
+ * <p>
+ * Two levels, matching what each part of link building depends on:
+ * <ul>
+ * <li>The unencoded link (scheme and host, webapp path prefix, context root, control servlet path and url) only depends on
+ * the current and target webapps, their effective web site settings (hosts, ports, path prefix), the control path and
+ * context path of the request (a webapp may map the controller under several servlet paths), the secure/full-path
+ * outcome and the url, so it is kept in the bounded global <code>webapp.url.build.link</code> cache keyed by those.</li>
+ * <li>The <code>response.encodeURL</code> result goes through the urlrewrite outbound-rules and the response wrappers
+ * of the filters (SEO, CMS, session id), which may depend on the request (locale, store, session), so it is only
+ * memoized for the current request and response, in a bounded map: a category page builds the same product and
+ * category links many times, and each repeat skips the whole filter chain.</li>
+ * </ul>
+ */
+public final class MakeLinkCache {
+
+    private static final boolean ENABLED = UtilProperties.getPropertyAsBoolean("url", "webapp.url.build.cache.enable", true);
+    private static final int ENCODE_MEMO_MAX_SIZE = UtilProperties.getPropertyAsInteger("url", "webapp.url.build.encodeMemo.maxSize", 2000);
+    private static final String ENCODE_MEMO_ATTR = "_SCP_LINK_ENCODE_MEMO_";
+
+    private static final UtilCache<String, String> linkCache = UtilCache.createUtilCache("webapp.url.build.link", 100000, 0);
+
+    private MakeLinkCache() {
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Returns the key of an unencoded link.
+     * @param request the current request, for the control path ({@link RequestHandler#getControlPath}) and context path
+     * @param targetWebappInfo the target webapp for inter-webapp links, otherwise null
+     * @param targetWebSiteProps the target web site settings for inter-webapp links, otherwise null
+     */
+    public static String makeLinkKey(HttpServletRequest request, String url, FullWebappInfo targetWebappInfo, FullWebappInfo currentWebappInfo,
+            WebSiteProperties targetWebSiteProps, WebSiteProperties requestWebSiteProps, boolean controller, boolean didFullSecure, boolean didFullStandard) {
+        StringBuilder sb = new StringBuilder(200);
+        sb.append(currentWebappInfo.getContextPath()).append('\u0000').append(requestWebSiteProps).append('\u0000');
+        sb.append(RequestHandler.getControlPath(request)).append('\u0000').append(request.getContextPath()).append('\u0000');
+        if (targetWebappInfo != null) {
+            sb.append(targetWebappInfo.getContextPath()).append('\u0000').append(targetWebSiteProps);
+        }
+        sb.append('\u0000').append(controller ? 'C' : '-').append(didFullSecure ? 'S' : (didFullStandard ? 'F' : '-'));
+        sb.append('\u0000').append(url);
+        return sb.toString();
+    }
+
+    static String getLink(String linkKey) {
+        return linkCache.get(linkKey);
+    }
+
+    static void putLink(String linkKey, String link) {
+        linkCache.put(linkKey, link);
+    }
+
+    /**
+     * Returns <code>response.encodeURL(url)</code>, memoized for the request and response.
+     * The caller must have set the request attributes read by the outbound-rules for the link
+     * (<code>UrlFilterHelper.OUT_URL_WEBAPP</code>, which is the given targetWebappInfo).
+     */
+    static String encodeURL(HttpServletRequest request, HttpServletResponse response, String url, FullWebappInfo targetWebappInfo) {
+        if (!ENABLED || ENCODE_MEMO_MAX_SIZE <= 0) {
+            return response.encodeURL(url);
+        }
+        EncodeMemo memo = (EncodeMemo) request.getAttribute(ENCODE_MEMO_ATTR);
+        if (memo == null || memo.response != response) {
+            memo = new EncodeMemo(response);
+            request.setAttribute(ENCODE_MEMO_ATTR, memo);
+        }
+        // The session id is added to URLs only once a session exists and until the client uses the cookie
+        HttpSession session = request.getSession(false);
+        boolean urlSessionId = (session != null) && !request.isRequestedSessionIdFromCookie();
+        String key = ((targetWebappInfo != null) ? targetWebappInfo.getContextPath() : "") + '\u0000' + (urlSessionId ? 'S' : '-') + url;
+        String encodedUrl = memo.get(key);
+        if (encodedUrl == null) {
+            encodedUrl = response.encodeURL(url);
+            if (encodedUrl != null) {
+                memo.put(key, encodedUrl);
+            }
+        }
+        return encodedUrl;
+    }
+
+    /**
+     * Removes all the cached unencoded links, e.g. after web site settings changes.
+     */
+    public static void clear() {
+        linkCache.clear();
+    }
+
+    @SuppressWarnings("serial")
+    private static final class EncodeMemo extends LinkedHashMap<String, String> {
+        private final HttpServletResponse response;
+
+        EncodeMemo(HttpServletResponse response) {
+            super(64, 0.75f, true);
+            this.response = response;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > ENCODE_MEMO_MAX_SIZE;
+        }
+    }
+}
@@ -2150,7 +2150,6 @@ public class RequestHandler {
         }
 
         Delegator delegator = (Delegator) request.getAttribute("delegator"); // SCIPIO: need delegator
-        OfbizUrlBuilder builder = null; // SCIPIO: reuse this outside
 
         // SCIPIO: enforce this check for time being
         if (interWebapp && targetWebappInfo == null) {
@@ -2273,6 +2272,43 @@ public class RequestHandler {
                 ;
             }
         }
+        // SCIPIO: The unencoded link only depends on the webapps, web site settings, control path, flags and url, so is cached by those
+        StringBuilder newURL;
+        String linkKey = MakeLinkCache.isEnabled() ? MakeLinkCache.makeLinkKey(request, url, interWebapp ? targetWebappInfo : null, currentWebappInfo,
+                interWebapp ? webSiteProps : null, requestWebSiteProps, controller, didFullSecure, didFullStandard) : null;
+        String cachedLink = (linkKey != null) ? MakeLinkCache.getLink(linkKey) : null;
+        if (cachedLink != null) {
+            newURL = new StringBuilder(cachedLink);
+        } else {
+            newURL = buildLinkUrl(request, url, interWebapp, targetWebappInfo, currentWebappInfo, controller, didFullSecure, didFullStandard);
+            if (newURL == null) {
+                return null;
+            }
+            if (linkKey != null) {
+                MakeLinkCache.putLink(linkKey, newURL.toString());
+            }
+        }
+
+        String encodedUrl;
+        if (encode) {
+            // SCIPIO: Delegated code
+            encodedUrl = doLinkURLEncode(request, response, newURL, interWebapp, targetWebappInfo, currentWebappInfo, didFullStandard, didFullSecure);
+        } else {
+            encodedUrl = newURL.toString();
+        }
+
+        return encodedUrl;
+    }
+
+    /**
+     * SCIPIO: Builds the unencoded link for {@link #makeLink(HttpServletRequest, HttpServletResponse, String, Boolean, FullWebappInfo, Boolean, Boolean, Boolean, Boolean)}:
+     * scheme and host part if full, path part (context root, servlet/controller path) and the url.
+     * The result only depends on the arguments and the control and context paths of the request (see {@link MakeLinkCache#makeLinkKey}).
+     * @return the link, or null if it could not be built (logged)
+     */
+    private static StringBuilder buildLinkUrl(HttpServletRequest request, String url, boolean interWebapp, FullWebappInfo targetWebappInfo,
+            FullWebappInfo currentWebappInfo, boolean controller, boolean didFullSecure, boolean didFullStandard) {
+        OfbizUrlBuilder builder = null;
         StringBuilder newURL = new StringBuilder(250);
         if (didFullSecure || didFullStandard) {
             // Build the scheme and host part
@@ -2364,16 +2400,7 @@ public class RequestHandler {
             //}
             newURL.append(url);
         }
-
-        String encodedUrl;
-        if (encode) {
-            // SCIPIO: Delegated code
-            encodedUrl = doLinkURLEncode(request, response, newURL, interWebapp, targetWebappInfo, currentWebappInfo, didFullStandard, didFullSecure);
-        } else {
-            encodedUrl = newURL.toString();
-        }
-
-        return encodedUrl;
+        return newURL;
     }
 
     private static String getMakeLinkLogSuffix() { // SCIPIO: better info when logging link errors
@@ -2644,7 +2671,7 @@ public class RequestHandler {
                 // OUT_URL_WEBAPP invalid! For now we assume this is not the case, otherwise the lookups
                 // in UrlFilterHelper may become prohibitive...
                 request.setAttribute(UrlFilterHelper.OUT_URL_WEBAPP, targetWebappInfo);
-                encodedUrl = response.encodeURL(newURL.toString());
+                encodedUrl = MakeLinkCache.encodeURL(request, response, newURL.toString(), targetWebappInfo); // SCIPIO: memoized per request
                 if (interWebapp) {
                     // SCIPIO: SPECIAL: Since urlrewrite.xml is what normally delegates the inter-webapp rewriting
                     // (through response.encodeURL above and urlrewrite.xml invokes UrlFilterHelper.doInterWebappUrlRewrite),
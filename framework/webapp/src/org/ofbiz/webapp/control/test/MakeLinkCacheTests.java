@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.webapp.control.test;
+
+import java.lang.reflect.Proxy;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.ofbiz.base.test.GenericTestCaseBase;
+import org.ofbiz.entity.Delegator;
+import org.ofbiz.webapp.ExtWebappInfo;
+import org.ofbiz.webapp.FullWebappInfo;
+import org.ofbiz.webapp.control.MakeLinkCache;
+
+/**
+ * MakeLinkCacheTests (SCIPIO): tests that the unencoded link cache keys of {@link MakeLinkCache} separate requests
+ * made through different control servlet paths or context paths of the same webapp.
+ */
+public class MakeLinkCacheTests extends GenericTestCaseBase {
+
+    public MakeLinkCacheTests(String name) {
+        super(name);
+    }
+
+    public void testControlPathInKey() {
+        FullWebappInfo webappInfo = new TestWebappInfo("/shop");
+        String controlKey = makeLinkKey(makeRequest("/shop", "/shop/control"), webappInfo, "main");
+        String apiKey = makeLinkKey(makeRequest("/shop", "/shop/api"), webappInfo, "main");
+        assertFalse("links built under two servlet paths must not share a key", controlKey.equals(apiKey));
+        assertEquals(controlKey, makeLinkKey(makeRequest("/shop", "/shop/control"), webappInfo, "main"));
+        assertFalse(controlKey.equals(makeLinkKey(makeRequest("/shop", "/shop/control"), webappInfo, "other")));
+    }
+
+    public void testContextPathInKey() {
+        FullWebappInfo webappInfo = new TestWebappInfo("/shop");
+        String key = makeLinkKey(makeRequest("/shop", "/control"), webappInfo, "main");
+        String otherKey = makeLinkKey(makeRequest("/shop2", "/control"), webappInfo, "main");
+        assertFalse("links built under two context paths must not share a key", key.equals(otherKey));
+    }
+
+    private static String makeLinkKey(HttpServletRequest request, FullWebappInfo webappInfo, String url) {
+        return MakeLinkCache.makeLinkKey(request, url, null, webappInfo, null, null, true, false, false);
+    }
+
+    private static HttpServletRequest makeRequest(String contextPath, String controlPath) {
+        return (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(), new Class<?>[] { HttpServletRequest.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "getContextPath":
+                        return contextPath;
+                    case "getAttribute":
+                        return "_CONTROL_PATH_".equals(args[0]) ? controlPath : null;
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    case "toString":
+                        return "TestRequest[" + contextPath + ", " + controlPath + "]";
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static class TestWebappInfo extends FullWebappInfo {
+        private final String contextPath;
+
+        TestWebappInfo(String contextPath) {
+            super((Delegator) null, (ExtWebappInfo) null);
+            this.contextPath = contextPath;
+        }
+
+        @Override
+        public String getContextPath() {
+            return contextPath;
+        }
+    }
+}
@@ -0,0 +1,538 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.webtools;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.ofbiz.base.concurrent.ExecutionPool;
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.StringUtil;
+import org.ofbiz.entity.Delegator;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.condition.EntityCondition;
+import org.ofbiz.entity.condition.EntityOperator;
+import org.ofbiz.entity.model.ModelEntity;
+import org.ofbiz.entity.model.ModelRelation;
+import org.ofbiz.entity.model.ModelViewEntity;
+import org.ofbiz.entity.transaction.TransactionUtil;
+import org.ofbiz.entity.util.EntityListIterator;
+import org.ofbiz.entity.util.EntityQuery;
+import org.ofbiz.entity.util.EntitySaxReader;
+
+/**
+ * SCIPIO: Parallel full database export and import ("dump") for the entityExportAll and entityImportDir services.
+ * <p>
+ * The export streams each entity with an {@link EntityListIterator} (forward-only cursor, configurable fetch size)
+ * on a bounded pool of worker threads, one transaction per entity, into chunk files of at most
+ * <code>maxRecordsPerFile</code> records (<code>Entity.00001.xml[.gz]</code>), optionally gzip compressed, and
+ * writes a manifest ({@link #MANIFEST_FILE_NAME}) listing for each file its entity, row count and SHA-256 checksum.
+ * <p>
+ * The import of a directory holding a manifest checks the checksums, then loads the files by dependency level:
+ * the entities referenced by the foreign keys (type "one" relations) of an entity are loaded in the levels before
+ * it, and the files of a level are loaded in parallel, each in its own transaction with the values written by
+ * batches of {@link EntitySaxReader}. Files that fail (e.g. self references, circular dependencies) are retried
+ * in further passes, like the serial import.
+ */
+public final class EntityDumpWorker {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    public static final String MANIFEST_FILE_NAME = "entity-export-manifest.txt";
+
+    private EntityDumpWorker() {
+    }
+
+    public static boolean hasManifest(File dir) {
+        return new File(dir, MANIFEST_FILE_NAME).isFile();
+    }
+
+    /**
+     * Export options; all have defaults.
+     */
+    public static class ExportOptions {
+        private int threads = 4;
+        private int fetchSize = 1000;
+        private int maxRecordsPerFile = 100000;
+        private boolean compress = true;
+        private Timestamp fromDate;
+        private int txTimeout = 7200;
+
+        public ExportOptions setThreads(Integer threads) {
+            if (threads != null && threads > 0) {
+                this.threads = threads;
+            }
+            return this;
+        }
+
+        public ExportOptions setFetchSize(Integer fetchSize) {
+            if (fetchSize != null && fetchSize > 0) {
+                this.fetchSize = fetchSize;
+            }
+            return this;
+        }
+
+        public ExportOptions setMaxRecordsPerFile(Integer maxRecordsPerFile) {
+            if (maxRecordsPerFile != null && maxRecordsPerFile > 0) {
+                this.maxRecordsPerFile = maxRecordsPerFile;
+            }
+            return this;
+        }
+
+        public ExportOptions setCompress(Boolean compress) {
+            if (compress != null) {
+                this.compress = compress;
+            }
+            return this;
+        }
+
+        public ExportOptions setFromDate(Timestamp fromDate) {
+            this.fromDate = fromDate;
+            return this;
+        }
+
+        public ExportOptions setTxTimeout(Integer txTimeout) {
+            if (txTimeout != null) {
+                this.txTimeout = txTimeout;
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Import options; the reader settings are applied to the {@link EntitySaxReader} of each file.
+     */
+    public interface ReaderConfigurer {
+        void configure(EntitySaxReader reader) throws Exception;
+    }
+
+    /**
+     * Exports all the (non-view) entities into the directory and returns the result messages.
+     */
+    public static List<String> exportAll(Delegator delegator, Collection<String> entityNames, File outdir, ExportOptions options) {
+        List<String> results = new ArrayList<>();
+        List<ModelEntity> modelEntities = new ArrayList<>();
+        for (String entityName : entityNames) {
+            ModelEntity modelEntity = delegator.getModelEntity(entityName);
+            if (modelEntity instanceof ModelViewEntity) {
+                results.add("[vvv] " + entityName + " skipping view entity");
+            } else if (modelEntity != null) {
+                modelEntities.add(modelEntity);
+            }
+        }
+
+        ExecutorService executor = ExecutionPool.getScheduledExecutor(null, "entity-export", options.threads, 0, false);
+        List<Future<ExportResult>> futures = new ArrayList<>(modelEntities.size());
+        try {
+            for (ModelEntity modelEntity : modelEntities) {
+                futures.add(executor.submit(() -> exportEntity(delegator, modelEntity, outdir, options)));
+            }
+            List<ManifestEntry> entries = new ArrayList<>();
+            for (Future<ExportResult> future : futures) {
+                ExportResult result = getResult(future);
+                results.add(result.message);
+                entries.addAll(result.entries);
+            }
+            writeManifest(new File(outdir, MANIFEST_FILE_NAME), entries);
+            long totalRows = 0;
+            for (ManifestEntry entry : entries) {
+                totalRows += entry.rows;
+            }
+            results.add("Wrote " + totalRows + " records in " + entries.size() + " files, manifest: " + MANIFEST_FILE_NAME);
+        } catch (IOException e) {
+            Debug.logError(e, "Could not write entity export manifest", module);
+            results.add("[xxx] Error when writing " + MANIFEST_FILE_NAME + ": " + e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    private static ExportResult exportEntity(Delegator delegator, ModelEntity modelEntity, File outdir, ExportOptions options) {
+        String entityName = modelEntity.getEntityName();
+        List<ManifestEntry> entries = new ArrayList<>();
+        ChunkWriter chunk = null;
+        long rows = 0;
+        boolean beganTx = false;
+        try {
+            beganTx = TransactionUtil.begin(options.txTimeout);
+            EntityQuery query = EntityQuery.use(delegator).from(entityName).orderBy(modelEntity.getPkFieldNames())
+                    .cursorForwardOnly().fetchSize(options.fetchSize);
+            if (options.fromDate != null) {
+                query.where(EntityCondition.makeCondition("createdStamp", EntityOperator.GREATER_THAN_EQUAL_TO, options.fromDate));
+            }
+            try (EntityListIterator values = query.queryIterator()) {
+                GenericValue value;
+                while ((value = values.next()) != null) {
+                    if (chunk == null) {
+                        chunk = new ChunkWriter(outdir, entityName, entries.size() + 1, options.compress);
+                    }
+                    value.writeXmlText(chunk.writer, "");
+                    chunk.rows++;
+                    rows++;
+                    if (chunk.rows >= options.maxRecordsPerFile) {
+                        entries.add(chunk.close());
+                        chunk = null;
+                    }
+                }
+            }
+            if (chunk != null) {
+                entries.add(chunk.close());
+                chunk = null;
+            }
+            TransactionUtil.commit(beganTx);
+        } catch (Exception e) {
+            Debug.logError(e, "Error exporting entity [" + entityName + "]", module);
+            try {
+                TransactionUtil.rollback(beganTx, "Error exporting entity [" + entityName + "]", e);
+            } catch (Exception e2) {
+                Debug.logError(e2, module);
+            }
+            if (chunk != null) {
+                chunk.abort();
+            }
+            for (ManifestEntry entry : entries) {
+                new File(outdir, entry.fileName).delete();
+            }
+            return new ExportResult("[xxx] Error when writing " + entityName + ": " + e, new ArrayList<>());
+        }
+        if (entries.isEmpty()) {
+            return new ExportResult("[---] " + entityName + " has no records, not writing file", entries);
+        }
+        return new ExportResult("[" + rows + "] " + entityName + " wrote " + rows + " records in " + entries.size() + " file(s)", entries);
+    }
+
+    /**
+     * Imports the files listed in the manifest of the directory and returns the result messages.
+     */
+    public static List<String> importDir(Delegator delegator, File dir, int threads, boolean deleteFiles, ReaderConfigurer configurer) {
+        List<String> messages = new ArrayList<>();
+        List<ManifestEntry> entries;
+        try {
+            entries = readManifest(new File(dir, MANIFEST_FILE_NAME));
+        } catch (IOException e) {
+            messages.add("Could not read " + MANIFEST_FILE_NAME + ": " + e);
+            return messages;
+        }
+
+        // Group the files by dependency level of their entities
+        Set<String> entityNames = new HashSet<>();
+        for (ManifestEntry entry : entries) {
+            entityNames.add(entry.entityName);
+        }
+        Map<String, Integer> levels = new HashMap<>();
+        for (String entityName : entityNames) {
+            getLevel(delegator, entityName, entityNames, levels, new HashSet<>());
+        }
+        Map<Integer, List<ManifestEntry>> entriesByLevel = new TreeMap<>();
+        for (ManifestEntry entry : entries) {
+            entriesByLevel.computeIfAbsent(levels.get(entry.entityName), k -> new ArrayList<>()).add(entry);
+        }
+
+        ExecutorService executor = ExecutionPool.getScheduledExecutor(null, "entity-import", Math.max(threads, 1), 0, false);
+        List<ManifestEntry> failed = new ArrayList<>();
+        List<ManifestEntry> rejected = new ArrayList<>();
+        long totalRows = 0;
+        int succeeded = 0;
+        try {
+            for (Map.Entry<Integer, List<ManifestEntry>> levelEntries : entriesByLevel.entrySet()) {
+                messages.add("Importing level " + levelEntries.getKey() + ": " + levelEntries.getValue().size() + " file(s)");
+                List<Future<ImportResult>> futures = new ArrayList<>();
+                for (ManifestEntry entry : levelEntries.getValue()) {
+                    futures.add(executor.submit(() -> importFile(delegator, dir, entry, configurer)));
+                }
+                for (Future<ImportResult> future : futures) {
+                    ImportResult result = getResult(future);
+                    messages.add(result.message);
+                    if (result.success) {
+                        totalRows += result.rows;
+                        succeeded++;
+                        if (deleteFiles) {
+                            new File(dir, result.entry.fileName).delete();
+                        }
+                    } else if (result.checksumError) {
+                        rejected.add(result.entry);
+                    } else {
+                        failed.add(result.entry);
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Retry the failed files serially until no more can be loaded
+        int passes = 0;
+        while (!failed.isEmpty()) {
+            passes++;
+            List<ManifestEntry> stillFailed = new ArrayList<>();
+            for (ManifestEntry entry : failed) {
+                ImportResult result = importFile(delegator, dir, entry, configurer);
+                messages.add("Pass " + passes + ": " + result.message);
+                if (result.success) {
+                    totalRows += result.rows;
+                    succeeded++;
+                    if (deleteFiles) {
+                        new File(dir, entry.fileName).delete();
+                    }
+                } else {
+                    stillFailed.add(entry);
+                }
+            }
+            if (stillFailed.size() == failed.size()) {
+                break;
+            }
+            failed = stillFailed;
+        }
+
+        messages.add("---------------------------------------");
+        messages.add("Imported " + totalRows + " records from " + succeeded + " of " + entries.size() + " files");
+        if (succeeded < entries.size()) {
+            messages.add("Failed files:");
+            for (ManifestEntry entry : rejected) {
+                messages.add(entry.fileName + " (checksum mismatch)");
+            }
+            for (ManifestEntry entry : failed) {
+                messages.add(entry.fileName);
+            }
+        }
+        return messages;
+    }
+
+    private static ImportResult importFile(Delegator delegator, File dir, ManifestEntry entry, ReaderConfigurer configurer) {
+        File file = new File(dir, entry.fileName);
+        try {
+            String checksum = getChecksum(file);
+            if (!checksum.equals(entry.checksum)) {
+                return new ImportResult(entry, false, true, 0, "[xxx] " + entry.fileName + " checksum mismatch, not imported");
+            }
+            EntitySaxReader reader = new EntitySaxReader(delegator);
+            configurer.configure(reader);
+            long rows;
+            try (InputStream in = openInput(file)) {
+                rows = reader.parse(in, file.getPath());
+            }
+            if (rows != entry.rows) {
+                Debug.logWarning("Imported " + rows + " values from " + entry.fileName + ", manifest lists " + entry.rows, module);
+            }
+            return new ImportResult(entry, true, false, rows, "[" + rows + "] " + entry.fileName + " imported");
+        } catch (Exception e) {
+            Debug.logError(e, "Error importing file [" + file + "]", module);
+            return new ImportResult(entry, false, false, 0, "[xxx] " + entry.fileName + " failed: " + e);
+        }
+    }
+
+    /**
+     * Returns the dependency level of the entity: 0 if it references no other entity of the import, otherwise one
+     * more than the highest level of the entities it references. References in cycles are ignored.
+     */
+    private static int getLevel(Delegator delegator, String entityName, Set<String> entityNames, Map<String, Integer> levels, Set<String> visiting) {
+        Integer level = levels.get(entityName);
+        if (level != null) {
+            return level;
+        }
+        int maxLevel = -1;
+        ModelEntity modelEntity = delegator.getModelEntity(entityName);
+        if (modelEntity != null) {
+            visiting.add(entityName);
+            for (ModelRelation relation : modelEntity.getRelationsOneList()) {
+                String relEntityName = relation.getRelEntityName();
+                if ("one".equals(relation.getType()) && entityNames.contains(relEntityName) && !visiting.contains(relEntityName)) {
+                    maxLevel = Math.max(maxLevel, getLevel(delegator, relEntityName, entityNames, levels, visiting));
+                }
+            }
+            visiting.remove(entityName);
+        }
+        levels.put(entityName, maxLevel + 1);
+        return maxLevel + 1;
+    }
+
+    private static <T> T getResult(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static InputStream openInput(File file) throws IOException {
+        InputStream in = Files.newInputStream(file.toPath());
+        if (file.getName().endsWith(".gz")) {
+            return new GZIPInputStream(in, 65536);
+        }
+        return in;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String getChecksum(File file) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[65536];
+        try (InputStream in = new DigestInputStream(new FileInputStream(file), digest)) {
+            while (in.read(buffer) != -1) {
+                // digest only
+            }
+        }
+        return StringUtil.toHexString(digest.digest());
+    }
+
+    private static void writeManifest(File file, List<ManifestEntry> entries) throws IOException {
+        entries.sort((first, second) -> first.fileName.compareTo(second.fileName));
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+            writer.println("# Entity export manifest: file, entity, records, SHA-256 of the file");
+            for (ManifestEntry entry : entries) {
+                writer.println(entry.fileName + "\t" + entry.entityName + "\t" + entry.rows + "\t" + entry.checksum);
+            }
+        }
+    }
+
+    private static List<ManifestEntry> readManifest(File file) throws IOException {
+        List<ManifestEntry> entries = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\t");
+                if (parts.length != 4 || parts[0].contains("/") || parts[0].contains("\\")) {
+                    throw new IOException("Invalid manifest line: " + line);
+                }
+                try {
+                    entries.add(new ManifestEntry(parts[0], parts[1], Long.parseLong(parts[2]), parts[3]));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid manifest line: " + line);
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static final class ManifestEntry {
+        private final String fileName;
+        private final String entityName;
+        private final long rows;
+        private final String checksum;
+
+        private ManifestEntry(String fileName, String entityName, long rows, String checksum) {
+            this.fileName = fileName;
+            this.entityName = entityName;
+            this.rows = rows;
+            this.checksum = checksum;
+        }
+    }
+
+    private static final class ChunkWriter {
+        private final File file;
+        private final String entityName;
+        private final MessageDigest digest = newDigest();
+        private final PrintWriter writer;
+        private long rows = 0;
+
+        private ChunkWriter(File outdir, String entityName, int number, boolean compress) throws IOException {
+            this.file = new File(outdir, entityName + "." + String.format("%05d", number) + (compress ? ".xml.gz" : ".xml"));
+            this.entityName = entityName;
+            OutputStream out = new DigestOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536), digest);
+            if (compress) {
+                out = new GZIPOutputStream(out, 65536);
+            }
+            this.writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+            writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            writer.println("<entity-engine-xml>");
+        }
+
+        private ManifestEntry close() throws IOException {
+            writer.println("</entity-engine-xml>");
+            writer.close();
+            if (writer.checkError()) {
+                throw new IOException("Error writing file " + file);
+            }
+            return new ManifestEntry(file.getName(), entityName, rows, StringUtil.toHexString(digest.digest()));
+        }
+
+        private void abort() {
+            writer.close();
+            file.delete();
+        }
+    }
+
+    private static final class ExportResult {
+        private final String message;
+        private final List<ManifestEntry> entries;
+
+        private ExportResult(String message, List<ManifestEntry> entries) {
+            this.message = message;
+            this.entries = entries;
+        }
+    }
+
+    private static final class ImportResult {
+        private final ManifestEntry entry;
+        private final boolean success;
+        private final boolean checksumError;
+        private final long rows;
+        private final String message;
+
+        private ImportResult(ManifestEntry entry, boolean success, boolean checksumError, long rows, String message) {
+            this.entry = entry;
+            this.success = success;
+            this.checksumError = checksumError;
+            this.rows = rows;
+            this.message = message;
+        }
+    }
+}
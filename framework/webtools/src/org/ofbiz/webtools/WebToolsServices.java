@@ -346,7 +346,21 @@ public class WebToolsServices {
             long pauseLong = filePause != null ? filePause : 0;
             File baseDir = new File(path);
 
-            if (baseDir.isDirectory() && baseDir.canRead()) {
+            if (baseDir.isDirectory() && baseDir.canRead() && EntityDumpWorker.hasManifest(baseDir)) {
+                // SCIPIO: directory written by the parallel export: parallel import ordered by foreign key dependencies
+                Integer threads = (Integer) context.get("threads");
+                final int finalTxTimeout = txTimeout;
+                messages.addAll(EntityDumpWorker.importDir(dctx.getDelegator(), baseDir,
+                        (threads != null) ? threads : Math.min(Runtime.getRuntime().availableProcessors(), 8), deleteFiles, reader -> {
+                    reader.setUseTryInsertMethod(checkEntityImportBooleanArg(mostlyInserts));
+                    reader.setMaintainTxStamps(checkEntityImportBooleanArg(maintainTimeStamps));
+                    reader.setTransactionTimeout(finalTxTimeout);
+                    reader.setCreateDummyFks(checkEntityImportBooleanArg(createDummyFks));
+                    reader.setCheckDataOnly(checkEntityImportBooleanArg(checkDataOnly));
+                    reader.setPlaceholderValues(placeholderValues);
+                    commonOptions.toReader(reader);
+                }));
+            } else if (baseDir.isDirectory() && baseDir.canRead()) {
                 File[] fileArray = baseDir.listFiles();
                 List<File> files = new LinkedList<File>();
                 for (File file: fileArray) {
@@ -611,6 +625,15 @@ public class WebToolsServices {
                 } catch (Exception exc) {
                     return ServiceUtil.returnError(UtilProperties.getMessage(resource, "EntityImportErrorRetrievingEntityNames", locale));
                 }
+                Integer threads = (Integer) context.get("threads");
+                if (threads != null && threads > 0) {
+                    // SCIPIO: parallel export in compressed chunk files with a manifest
+                    results.addAll(EntityDumpWorker.exportAll(delegator, passedEntityNames, outdir, new EntityDumpWorker.ExportOptions()
+                            .setThreads(threads).setFetchSize((Integer) context.get("fetchSize"))
+                            .setMaxRecordsPerFile((Integer) context.get("maxRecordsPerFile"))
+                            .setCompress((Boolean) context.get("compress")).setFromDate(fromDate).setTxTimeout(txTimeout)));
+                    return UtilMisc.<String, Object>toMap("results", results);
+                }
                 int fileNumber = 1;
 
                 for (String curEntityName: passedEntityNames) {
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.ofbiz.webtools.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.List;
+
+import javax.transaction.Transaction;
+
+import org.ofbiz.base.util.UtilDateTime;
+import org.ofbiz.base.util.UtilMisc;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.testtools.EntityTestCase;
+import org.ofbiz.entity.transaction.TransactionUtil;
+import org.ofbiz.entity.util.EntityQuery;
+import org.ofbiz.webtools.EntityDumpWorker;
+import org.ofbiz.webtools.EntityDumpWorker.ExportOptions;
+
+/**
+ * EntityDumpWorkerTests (SCIPIO): exports Testing records of three foreign key levels (TestingType, Testing,
+ * TestingNodeMember) with {@link EntityDumpWorker}, removes them and imports the directory back: the files are loaded
+ * level by level without retry passes and the records are restored; a file not matching its manifest checksum is
+ * not imported.
+ */
+public class EntityDumpWorkerTests extends EntityTestCase {
+
+    private static final String TESTING_TYPE_ID = "DUMP-TEST";
+    private static final String TESTING_NODE_ID = "DUMP-TEST-NODE";
+    private static final List<String> ENTITY_NAMES = UtilMisc.toList("TestingType", "Testing", "TestingNode", "TestingNodeMember");
+
+    protected Transaction suspendedTransaction = null;
+    protected Path dumpDir = null;
+
+    public EntityDumpWorkerTests(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        // The export and import run in their own threads and transactions: the test data must be committed
+        suspendedTransaction = TransactionUtil.isTransactionInPlace() ? TransactionUtil.suspend() : null;
+        removeTestData();
+        dumpDir = Files.createTempDirectory("EntityDumpWorkerTests");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        removeTestData();
+        File[] files = dumpDir.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dumpDir.toFile().delete();
+        if (suspendedTransaction != null) {
+            TransactionUtil.resume(suspendedTransaction);
+        }
+    }
+
+    public void testExportImportByLevel() throws Exception {
+        Timestamp fromDate = UtilDateTime.nowTimestamp();
+        createTestData(3);
+        File dir = dumpDir.toFile();
+        List<String> exportMessages = EntityDumpWorker.exportAll(delegator, ENTITY_NAMES, dir,
+                new ExportOptions().setThreads(2).setMaxRecordsPerFile(2).setFromDate(fromDate));
+        assertTrue("manifest written: " + exportMessages, EntityDumpWorker.hasManifest(dir));
+        assertTrue("chunks of 2 records", new File(dir, "Testing.00002.xml.gz").isFile());
+        assertFalse(new File(dir, "Testing.00003.xml.gz").isFile());
+
+        removeTestData();
+        assertEquals(0, EntityQuery.use(delegator).from("Testing").where("testingTypeId", TESTING_TYPE_ID).queryCount());
+
+        List<String> importMessages = EntityDumpWorker.importDir(delegator, dir, 2, false, reader -> { });
+        int typeIndex = indexOf(importMessages, "TestingType.00001.xml.gz imported");
+        int testingIndex = indexOf(importMessages, "Testing.00002.xml.gz imported");
+        int memberIndex = indexOf(importMessages, "TestingNodeMember.00001.xml.gz imported");
+        assertTrue("TestingType imported: " + importMessages, typeIndex >= 0);
+        assertTrue("Testing imported after TestingType: " + importMessages, testingIndex > typeIndex);
+        assertTrue("TestingNodeMember imported after Testing: " + importMessages, memberIndex > testingIndex);
+        assertTrue(importMessages.contains("Importing level 2: 2 file(s)"));
+        for (String message : importMessages) {
+            assertFalse("no retry pass needed: " + message, message.startsWith("Pass "));
+        }
+
+        List<GenericValue> testings = EntityQuery.use(delegator).from("Testing").where("testingTypeId", TESTING_TYPE_ID).orderBy("testingId").queryList();
+        assertEquals(3, testings.size());
+        assertEquals("Dump test 2", testings.get(1).getString("testingName"));
+        assertEquals(3, EntityQuery.use(delegator).from("TestingNodeMember").where("testingNodeId", TESTING_NODE_ID).queryCount());
+    }
+
+    public void testChecksumMismatchNotImported() throws Exception {
+        Timestamp fromDate = UtilDateTime.nowTimestamp();
+        createTestData(0);
+        File dir = dumpDir.toFile();
+        EntityDumpWorker.exportAll(delegator, UtilMisc.toList("TestingType"), dir, new ExportOptions().setCompress(false).setFromDate(fromDate));
+        try (FileOutputStream out = new FileOutputStream(new File(dir, "TestingType.00001.xml"), true)) {
+            out.write(' ');
+        }
+        removeTestData();
+
+        List<String> importMessages = EntityDumpWorker.importDir(delegator, dir, 1, false, reader -> { });
+        assertTrue("checksum mismatch reported: " + importMessages, indexOf(importMessages, "checksum mismatch") >= 0);
+        assertNull(EntityQuery.use(delegator).from("TestingType").where("testingTypeId", TESTING_TYPE_ID).queryOne());
+    }
+
+    private void createTestData(int count) throws Exception {
+        delegator.create("TestingType", "testingTypeId", TESTING_TYPE_ID, "description", "Dump test");
+        if (count == 0) {
+            return;
+        }
+        delegator.create("TestingNode", "testingNodeId", TESTING_NODE_ID, "description", "Dump test node");
+        Timestamp now = UtilDateTime.nowTimestamp();
+        for (int i = 1; i <= count; i++) {
+            String testingId = TESTING_TYPE_ID + "-" + i;
+            delegator.create("Testing", "testingId", testingId, "testingTypeId", TESTING_TYPE_ID, "testingName", "Dump test " + i);
+            delegator.create("TestingNodeMember", "testingNodeId", TESTING_NODE_ID, "testingId", testingId, "fromDate", now);
+        }
+    }
+
+    private void removeTestData() throws Exception {
+        delegator.removeByAnd("TestingNodeMember", UtilMisc.toMap("testingNodeId", TESTING_NODE_ID));
+        delegator.removeByAnd("Testing", UtilMisc.toMap("testingTypeId", TESTING_TYPE_ID));
+        delegator.removeByAnd("TestingNode", UtilMisc.toMap("testingNodeId", TESTING_NODE_ID));
+        delegator.removeByAnd("TestingType", UtilMisc.toMap("testingTypeId", TESTING_TYPE_ID));
+    }
+
+    private static int indexOf(List<String> messages, String text) {
+        for (int i = 0; i < messages.size(); i++) {
+            if (messages.get(i).contains(text)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
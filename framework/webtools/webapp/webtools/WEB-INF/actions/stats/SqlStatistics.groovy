@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.ofbiz.base.util.UtilFormatOut;
+import org.ofbiz.base.util.UtilProperties;
+import org.ofbiz.entity.jdbc.SQLStatistics;
+
+// SCIPIO: SQL statement statistics and slow query log of the entity engine
+sqlStatistics = SQLStatistics.getInstance();
+context.sqlStatisticsEnabled = SQLStatistics.isEnabled();
+if ("true".equals(parameters.clear)) {
+    sqlStatistics.reset();
+}
+
+context.sqlStatisticsSummary = UtilProperties.getMessage("WebtoolsUiLabels", "WebtoolsSqlStatisticsSummary",
+        [statementCount: sqlStatistics.getStatementCount(), since: sqlStatistics.getSince().toString(),
+         slowQueryCount: sqlStatistics.getSlowQueryCount(), slowQueryTime: sqlStatistics.getSlowQueryTime(),
+         sampleRate: sqlStatistics.getSampleRate()], locale);
+
+sqlShapeList = [];
+for (shape in sqlStatistics.getShapes()) {
+    sqlShapeList.add([sql: shape.getSql(),
+            calls: shape.getCalls(),
+            rows: shape.getRows(),
+            avgRows: UtilFormatOut.formatQuantity(shape.getAvgRows()),
+            totalTime: UtilFormatOut.formatQuantity(shape.getTotalNanos() / 1000000.0),
+            avgTime: UtilFormatOut.formatQuantity(shape.getAvgMillis()),
+            p50Time: UtilFormatOut.formatQuantity(shape.getPercentileMillis(0.5)),
+            p95Time: UtilFormatOut.formatQuantity(shape.getPercentileMillis(0.95)),
+            p99Time: UtilFormatOut.formatQuantity(shape.getPercentileMillis(0.99)),
+            maxTime: UtilFormatOut.formatQuantity(shape.getMaxMillis())]);
+}
+context.sqlShapeList = sqlShapeList;
+
+slowQueryList = [];
+for (slowQuery in sqlStatistics.getSlowQueryLog()) {
+    slowQueryList.add([time: slowQuery.getTime(),
+            sql: slowQuery.getSql(),
+            queryTime: UtilFormatOut.formatQuantity(slowQuery.getMillis()),
+            rows: slowQuery.getRows(),
+            bindCount: slowQuery.getBindCount(),
+            threadName: slowQuery.getThreadName(),
+            stack: slowQuery.getStack().join("\n")]);
+}
+context.slowQueryList = slowQueryList;
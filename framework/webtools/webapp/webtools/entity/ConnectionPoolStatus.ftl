@@ -18,6 +18,11 @@ code package.
         <@th>Min Idle</@th>
         <@th>Min Evictable Idle Time</@th>
         <@th>Max Wait</@th>
+        <@th>Waiters</@th>
+        <@th>Borrows</@th>
+        <@th>Timeouts</@th>
+        <@th>Wait Avg/P95/P99/Max (ms)</@th>
+        <@th>Longest Held (ms)</@th>
     </@tr>
     </@thead>
     <#if (groups?has_content)>
@@ -31,14 +36,46 @@ code package.
                         <@td>${dataSourceInfo.poolNumActive!}</@td>
                         <@td>${dataSourceInfo.poolNumIdle!}</@td>
                         <@td>${dataSourceInfo.poolNumTotal!}</@td>
-                        <@td>${dataSourceInfo.poolMaxActive!}</@td>
+                        <@td>${dataSourceInfo.poolMaxActive!}<#if dataSourceInfo.poolAdaptive!false> (adaptive, configured ${dataSourceInfo.poolConfiguredMaxActive!})</#if></@td>
                         <@td>${dataSourceInfo.poolMaxIdle!}</@td>
                         <@td>${dataSourceInfo.poolMinIdle!}</@td>
                         <@td>${dataSourceInfo.poolMinEvictableIdleTimeMillis!}</@td>
                         <@td>${dataSourceInfo.poolMaxWait!}</@td>
+                        <@td>${dataSourceInfo.poolNumWaiters!}</@td>
+                        <@td>${dataSourceInfo.poolBorrowCount!}</@td>
+                        <@td>${dataSourceInfo.poolTimeoutCount!}</@td>
+                        <@td><#if dataSourceInfo.poolWaitAvgMillis??>${dataSourceInfo.poolWaitAvgMillis?string("0.###")} / ${dataSourceInfo.poolWaitP95Millis?string("0.###")} / ${dataSourceInfo.poolWaitP99Millis?string("0.###")} / ${dataSourceInfo.poolWaitMaxMillis?string("0.###")}</#if></@td>
+                        <@td>${dataSourceInfo.poolLongestHeldMillis!}</@td>
                     </@tr>
+                    <#if dataSourceInfo.poolLongestHeldThread??>
+                        <#assign longestHeldInfos = (longestHeldInfos![]) + [{"helper":helper} + dataSourceInfo]/>
+                    </#if>
                 </#if>
             </#if>
         </#list>
     </#if>
 </@table>
+
+<#-- SCIPIO: connection held the longest per pool -->
+<#if longestHeldInfos?has_content>
+  <@section title="Longest Held Connections">
+    <@table type="data-list" autoAltRows=true class="+light-grid ${styles.table_spacing_tiny_hint!}">
+      <@thead>
+        <@tr class="header-row">
+            <@th>Helper Name</@th>
+            <@th>Held (ms)</@th>
+            <@th>Thread</@th>
+            <@th>Stack</@th>
+        </@tr>
+      </@thead>
+      <#list longestHeldInfos as info>
+        <@tr>
+            <@td>${info.helper}</@td>
+            <@td>${info.poolLongestHeldMillis}</@td>
+            <@td>${info.poolLongestHeldThread}</@td>
+            <@td><em>${info.poolLongestHeldBorrowStack?then("Borrowed at", "Currently at")}</em><br/><#list info.poolLongestHeldStack as frame>${frame}<#sep><br/></#list></@td>
+        </@tr>
+      </#list>
+    </@table>
+  </@section>
+</#if>
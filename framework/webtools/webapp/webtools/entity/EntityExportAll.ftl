@@ -16,5 +16,11 @@ code package.
     <@field type="input" size="60" name="outpath" value=(outpath!) label=uiLabelMap.WebtoolsOutputDirectory />
     <@field type="datetime" label=uiLabelMap.CommonFromDate name="fromDate" value="" size="25" maxlength="30" id="fromDate" />
     <@field type="input" label=uiLabelMap.WebtoolsTimeoutSeconds size="6" value=txTimeout!'7200' name="txTimeout"/>
+    <@field type="input" label=uiLabelMap.WebtoolsExportThreads size="6" value=(threads!) name="threads"/>
+    <@field type="input" label=uiLabelMap.WebtoolsExportMaxRecordsPerFile size="10" value=(maxRecordsPerFile!'100000') name="maxRecordsPerFile"/>
+    <@field type="select" label=uiLabelMap.WebtoolsExportCompress name="compress">
+        <option value="true">${uiLabelMap.CommonY}</option>
+        <option value="false"<#if (compress!) == "false"> selected="selected"</#if>>${uiLabelMap.CommonN}</option>
+    </@field>
     <@field type="submit" text=uiLabelMap.WebtoolsExport class="${styles.link_run_sys!} ${styles.action_export!}" />
 </form>
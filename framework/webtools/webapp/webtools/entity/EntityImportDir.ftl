@@ -20,6 +20,8 @@ code package.
     <@field type="text" name="txTimeout" value=(txTimeoutStr!"7200") label=uiLabelMap.WebtoolsTimeoutSeconds size="6"/>
     <@field type="text" name="filePause" value=(filePauseStr!"0") label=uiLabelMap.WebtoolsPause size="6"/>
 
+    <@field type="text" name="threads" value=(threads!) label=uiLabelMap.WebtoolsImportThreads size="6"/>
+
     <@field type="submit" text=uiLabelMap.WebtoolsImport class="${styles.link_run_sys!} ${styles.action_import!}"/>
   </form>
 
@@ -42,6 +42,7 @@ import org.ofbiz.base.util.collections.RenderMapStack;
 import org.ofbiz.entity.GenericEntity;
 import org.ofbiz.entity.GenericEntityException;
 import org.ofbiz.entity.util.EntityListIterator;
+import org.ofbiz.entity.util.KeysetPage;
 import org.ofbiz.widget.WidgetWorker;
 import org.ofbiz.widget.model.AbstractModelAction;
 import org.ofbiz.widget.model.FieldInfo;
@@ -1092,6 +1093,8 @@ public class FormRenderer {
                 iter = (Iterator<?>) obj;
             } else if (obj instanceof List<?>) {
                 iter = ((List<?>) obj).listIterator();
+            } else if (obj instanceof KeysetPage<?>) { // SCIPIO
+                iter = ((KeysetPage<?>) obj).iterator();
             }
 
             // set low and high index
@@ -1105,6 +1108,9 @@ public class FormRenderer {
             if (modelForm.isOverridenListSize()) {
                 lowIndex = 0;
                 highIndex = (Integer) context.get("viewSize");
+            } else if (obj instanceof KeysetPage<?>) { // SCIPIO: keyset page: holds the rows of the page only
+                lowIndex = 0;
+                highIndex = ((KeysetPage<?>) obj).getData().size();
             }
 
             // SCIPIO: factored this out; I don't recall in which cases this could be false, but keeping for safety.
@@ -31,6 +31,7 @@ import org.ofbiz.base.util.UtilValidate;
 import org.ofbiz.base.util.collections.PagedList;
 import org.ofbiz.entity.GenericEntityException;
 import org.ofbiz.entity.util.EntityListIterator;
+import org.ofbiz.entity.util.KeysetPage;
 import org.ofbiz.widget.WidgetWorker;
 import org.ofbiz.widget.model.ModelForm;
 
@@ -83,7 +84,17 @@ public final class Paginator {
             PagedList<?> pagedList = (PagedList<?>) entryList;
             listSize = pagedList.getListSize(); // SCIPIO: getSize() -> getListSize()
         }
-        if (modelForm.getPaginate(context)) {
+        // SCIPIO: keyset page: the page position comes from the continuation token, not the view index parameter
+        context.put("keysetPagination", entryList instanceof KeysetPage);
+        context.put("keysetNextToken", null);
+        if (entryList instanceof KeysetPage) {
+            KeysetPage<?> keysetPage = (KeysetPage<?>) entryList;
+            context.put("keysetNextToken", keysetPage.getNextToken());
+            viewIndex = keysetPage.getViewIndex();
+            viewSize = keysetPage.getViewSize();
+            lowIndex = keysetPage.getStartIndex();
+            highIndex = lowIndex + keysetPage.getData().size();
+        } else if (modelForm.getPaginate(context)) {
             viewIndex = getViewIndex(modelForm, context);
             viewSize = getViewSize(modelForm, context);
             lowIndex = viewIndex * viewSize;
@@ -101,6 +112,34 @@ public final class Paginator {
         context.put("highIndex", highIndex);
     }
 
+    /**
+     * SCIPIO: Returns true if the list of the last {@link #getListLimits} call is a {@link KeysetPage}.
+     */
+    public static boolean isKeysetPagination(Map<String, Object> context) {
+        return Boolean.TRUE.equals(context.get("keysetPagination"));
+    }
+
+    /**
+     * SCIPIO: Returns the name of the request parameter carrying the keyset pagination continuation token
+     * of the current paginator, set by the next page links of keyset paginated list forms.
+     */
+    public static String getKeysetTokenParam(Map<String, Object> context) {
+        return "KEYSET_AFTER" + "_" + WidgetWorker.getPaginatorNumber(context);
+    }
+
+    /**
+     * SCIPIO: Returns the keyset pagination continuation token of the current paginator from the request parameters,
+     * to pass to {@link org.ofbiz.entity.util.EntityQuery#seekAfter(String)} when preparing the list; null for the first page.
+     */
+    public static String getKeysetToken(Map<String, Object> context) {
+        Map<String, Object> parameters = UtilGenerics.cast(context.get("parameters"));
+        if (parameters == null) {
+            return null;
+        }
+        Object token = parameters.get(getKeysetTokenParam(context));
+        return (token instanceof String && !((String) token).isEmpty()) ? (String) token : null;
+    }
+
     public static int getListSize(Map<String, Object> context) {
         Integer value = (Integer) context.get("listSize");
         return value != null ? value : 0;
@@ -202,6 +241,11 @@ public final class Paginator {
         // set low and high index
         getListLimits(modelForm, context, obj);
 
+        if (obj instanceof KeysetPage<?>) { // SCIPIO: the page holds the rows of the page only
+            context.put("actualPageSize", ((KeysetPage<?>) obj).getData().size());
+            return;
+        }
+
         int listSize = (Integer) context.get("listSize");
         int lowIndex = (Integer) context.get("lowIndex");
         int highIndex = (Integer) context.get("highIndex");
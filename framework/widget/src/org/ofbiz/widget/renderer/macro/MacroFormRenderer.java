@@ -2582,6 +2582,14 @@ public final class MacroFormRenderer implements FormStringRenderer {
         int lowIndex = Paginator.getLowIndex(context);
         int highIndex = Paginator.getHighIndex(context);
         int actualPageSize = Paginator.getActualPageSize(context);
+        // SCIPIO: keyset pagination: the page position comes from the token; pages can only be followed forward
+        boolean keysetPagination = Paginator.isKeysetPagination(context);
+        String keysetTokenParam = Paginator.getKeysetTokenParam(context);
+        String keysetNextToken = (String) context.get("keysetNextToken");
+        if (keysetPagination) {
+            viewIndex = (Integer) context.get("viewIndex");
+            viewSize = (Integer) context.get("viewSize");
+        }
         // needed for the "Page" and "rows" labels
         Map<String, String> uiLabelMap = UtilGenerics.checkMap(context.get("uiLabelMap"));
         String pageLabel = "";
@@ -2611,6 +2619,7 @@ public final class MacroFormRenderer implements FormStringRenderer {
         Set<String> paramNames = new HashSet<>();
         paramNames.add(viewIndexParam);
         paramNames.add(viewSizeParam);
+        paramNames.add(keysetTokenParam); // SCIPIO
         queryString = UtilHttp.stripNamedParamsFromQueryString(queryString, paramNames);
         String anchor = "";
         String paginateAnchor = modelForm.getPaginateTargetAnchor();
@@ -2701,7 +2710,7 @@ public final class MacroFormRenderer implements FormStringRenderer {
                 firstUrl = rh.makeLink(this.request, this.response, urlPath + linkText);
             }
         }
-        if (viewIndex > 0) {
+        if (viewIndex > 0 && (!keysetPagination || viewIndex == 1)) { // SCIPIO: keyset: only the first page can be gone back to
             if (ajaxEnabled) {
                 ajaxPreviousUrl = createAjaxParamsFromUpdateAreas(updateAreas, prepLinkText + (viewIndex - 1) + anchor, context);
             } else {
@@ -2710,7 +2719,7 @@ public final class MacroFormRenderer implements FormStringRenderer {
             }
         }
         // Page select dropdown
-        if (listSize > 0) { // SCIPIO: removed: && this.javaScriptEnabled
+        if (listSize > 0 && !keysetPagination) { // SCIPIO: removed: && this.javaScriptEnabled; keyset pages cannot be jumped to
             if (ajaxEnabled) {
                 ajaxSelectUrl = createAjaxParamsFromUpdateAreas(updateAreas, prepLinkText + "' + this.value + '", context);
             } else {
@@ -2722,7 +2731,17 @@ public final class MacroFormRenderer implements FormStringRenderer {
             }
         }
         // Next button
-        if (highIndex < listSize) {
+        if (keysetPagination) { // SCIPIO: keyset: the next page is the one after the token
+            if (keysetNextToken != null) {
+                String keysetText = (ajaxEnabled ? "&" : "&amp;") + keysetTokenParam + "=" + keysetNextToken;
+                if (ajaxEnabled) {
+                    ajaxNextUrl = createAjaxParamsFromUpdateAreas(updateAreas, prepLinkText + (viewIndex + 1) + keysetText + anchor, context);
+                } else {
+                    linkText = prepLinkText + (viewIndex + 1) + keysetText + anchor;
+                    nextUrl = rh.makeLink(this.request, this.response, urlPath + linkText);
+                }
+            }
+        } else if (highIndex < listSize) {
             if (ajaxEnabled) {
                 ajaxNextUrl = createAjaxParamsFromUpdateAreas(updateAreas, prepLinkText + (viewIndex + 1) + anchor, context);
             } else {
@@ -2731,7 +2750,7 @@ public final class MacroFormRenderer implements FormStringRenderer {
             }
         }
         // Last button
-        if (highIndex < listSize) {
+        if (highIndex < listSize && !keysetPagination) { // SCIPIO: keyset: no token for the last page
             int lastIndex = UtilMisc.getViewLastIndex(listSize, viewSize);
             if (ajaxEnabled) {
                 ajaxLastUrl = createAjaxParamsFromUpdateAreas(updateAreas, prepLinkText + lastIndex + anchor, context);
@@ -905,6 +905,14 @@ public class MacroScreenRenderer implements ScreenStringRenderer {
 
         int highIndex = Paginator.getHighIndex(context);
         int actualPageSize = Paginator.getActualPageSize(context);
+        // SCIPIO: keyset pagination: the page position comes from the token; pages can only be followed forward
+        boolean keysetPagination = Paginator.isKeysetPagination(context);
+        String keysetTokenParam = Paginator.getKeysetTokenParam(context);
+        String keysetNextToken = (String) context.get("keysetNextToken");
+        if (keysetPagination) {
+            viewIndex = (Integer) context.get("viewIndex");
+            viewSize = (Integer) context.get("viewSize");
+        }
 
         // if this is all there seems to be (if listSize < 0, then size is unknown)
         if (actualPageSize >= listSize && listSize >= 0) {
@@ -944,6 +952,7 @@ public class MacroScreenRenderer implements ScreenStringRenderer {
         HashSet<String> paramNames = new HashSet<>();
         paramNames.add(viewIndexParam);
         paramNames.add(viewSizeParam);
+        paramNames.add(keysetTokenParam); // SCIPIO
         queryString = UtilHttp.stripNamedParamsFromQueryString(queryString, paramNames);
 
         String anchor = "";
@@ -972,19 +981,24 @@ public class MacroScreenRenderer implements ScreenStringRenderer {
         // these links in reverse order
         // Last button
         String lastLinkUrl = "";
-        if (highIndex < listSize) {
+        if (highIndex < listSize && !keysetPagination) { // SCIPIO: keyset: no token for the last page
             int lastIndex = UtilMisc.getViewLastIndex(listSize, viewSize);
             linkText = prepLinkText + lastIndex + anchor;
             lastLinkUrl = rh.makeLink(request, response, linkText);
         }
         String nextLinkUrl = "";
-        if (highIndex < listSize) {
+        if (keysetPagination) { // SCIPIO: keyset: the next page is the one after the token
+            if (keysetNextToken != null) {
+                linkText = prepLinkText + (viewIndex + 1) + "&amp;" + keysetTokenParam + "=" + keysetNextToken + anchor;
+                nextLinkUrl = rh.makeLink(request, response, linkText);
+            }
+        } else if (highIndex < listSize) {
             linkText = prepLinkText + (viewIndex + 1) + anchor;
             // - make the link
             nextLinkUrl = rh.makeLink(request, response, linkText);
         }
         String previousLinkUrl = "";
-        if (viewIndex > 0) {
+        if (viewIndex > 0 && (!keysetPagination || viewIndex == 1)) { // SCIPIO: keyset: only the first page can be gone back to
             linkText = prepLinkText + (viewIndex - 1) + anchor;
             previousLinkUrl = rh.makeLink(request, response, linkText);
         }